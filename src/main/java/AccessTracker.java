@@ -0,0 +1,381 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opt-in tracking of which files and folders are read most, to drive caching and tiering decisions. File content
+ * reads and reads and listings through a {@link TreeFileSystem} are reported here; when no tracker is enabled the
+ * only cost of a read is one volatile field read.
+ * <p>
+ * Only one read in every N is sampled. Sampled reads are counted in count-min sketches, which also keep an
+ * approximate last access time per entity, spread over independently locked stripes by the entity's identity hash.
+ * A sample that finds its stripe busy is dropped rather than waited for, so readers never contend. Counts are
+ * halved every minute, so the estimates favour recent reads; the halving is by time rather than by the number of
+ * samples, as {@link FrequencySketch} does, so that estimates from different stripes stay comparable. The sketches
+ * are sized by the error the caller accepts rather than by how many entities are read, so their memory is fixed.
+ * <p>
+ * Each stripe also keeps a bounded set of the entities with the highest estimates, from which the hottest paths are
+ * reported. The set holds entities weakly, so it never keeps a deleted file alive, and a tracker following a manager
+ * through {@link #follow(FileSystemManager)} drops deleted files and folders from it straight away, so their old
+ * paths are not reported.
+ * @author Tshiamo
+ */
+public final class AccessTracker {
+
+    /**
+     * An entity that is read often.
+     * @param path the path of the entity from the root of its tree.
+     * @param reads the estimated number of recent reads, scaled up by the sampling rate.
+     * @param lastAccessMillis roughly when it was last read, in epoch milliseconds.
+     */
+    public record Hotspot(String path, long reads, long lastAccessMillis) {
+    }
+
+    private static final int STRIPES = 16;
+    private static final int DEPTH = 4;
+    private static final double MIN_ERROR = 1e-4;
+    private static final int CANDIDATES_PER_STRIPE = 256;
+    static final long HALF_LIFE_MILLIS = 60_000;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static volatile AccessTracker active;
+
+    private final int sampleOneIn;
+    private final long startMillis;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * An entity held weakly and compared by identity, as files with the same name and content are equal.
+     */
+    private static final class Candidate extends WeakReference<FileSystemEntity> {
+        private final int hash;
+
+        private Candidate(FileSystemEntity entity, ReferenceQueue<FileSystemEntity> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            FileSystemEntity entity = get();
+            return o instanceof Candidate other && entity != null && entity == other.get();
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int width;
+        private final int[] counts;
+        private final int[] lastSeconds;
+        private final Set<Candidate> candidates = new HashSet<>();
+        private final ReferenceQueue<FileSystemEntity> collected = new ReferenceQueue<>();
+        private long agedPeriods;
+        private int admitAbove;
+
+        private Stripe(int width) {
+            this.width = width;
+            this.counts = new int[width * DEPTH];
+            this.lastSeconds = new int[width * DEPTH];
+        }
+    }
+
+    /**
+     * A count-min sketch of width e / error overestimates by at most error times the reads counted, with a
+     * probability of failure falling by e with each row.
+     */
+    private AccessTracker(int sampleOneIn, double error) {
+        this.sampleOneIn = sampleOneIn;
+        this.startMillis = System.currentTimeMillis();
+        int width = Integer.highestOneBit((int) Math.ceil(Math.E / error) - 1) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(width);
+        }
+    }
+
+    /**
+     * Starts tracking reads, replacing any tracker already enabled. An error of 0.01 costs 256 KiB of sketches
+     * and an error of 0.001 costs 2 MiB, whatever the size of the tree.
+     * @param sampleOneIn how many reads each sample stands for; 1 samples every read.
+     * @param error how far an estimate may overcount, as a fraction of the reads sampled in its stripe, with 98%
+     *              confidence; at least 0.0001.
+     * @return the new tracker.
+     */
+    public static AccessTracker enable(int sampleOneIn, double error) {
+        if (sampleOneIn < 1) {
+            throw new IllegalArgumentException("The sampling rate must be at least 1.");
+        }
+        if (!(error >= MIN_ERROR && error < 1)) {
+            throw new IllegalArgumentException("The error must be at least " + MIN_ERROR + " and below 1.");
+        }
+        AccessTracker tracker = new AccessTracker(sampleOneIn, error);
+        active = tracker;
+        return tracker;
+    }
+
+    /**
+     * Stops tracking reads.
+     */
+    public static void disable() {
+        active = null;
+    }
+
+    /**
+     * @return the enabled tracker, or null if reads are not being tracked.
+     */
+    public static AccessTracker active() {
+        return active;
+    }
+
+    /**
+     * Registers the tracker to stop reporting files and folders as the manager deletes them, along with
+     * everything beneath a deleted folder.
+     * @param manager a manager whose files are read.
+     */
+    public void follow(FileSystemManager manager) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        manager.addListener(new FileSystemListener() {
+            @Override
+            public void fileDeleted(File file) {
+                forget(file);
+            }
+
+            @Override
+            public void folderDeleted(Folder folder) {
+                forgetBeneath(folder);
+            }
+        });
+    }
+
+    /**
+     * Reports a read of a file's content or of a folder's listing to the enabled tracker, if there is one.
+     */
+    static void recordRead(FileSystemEntity entity) {
+        AccessTracker tracker = active;
+        if (tracker != null) {
+            tracker.sample(entity);
+        }
+    }
+
+    /**
+     * @return the estimated number of recent reads of an entity, scaled up by the sampling rate.
+     */
+    public long estimateReads(FileSystemEntity entity) {
+        int key = key(entity);
+        Stripe stripe = stripes[key & (STRIPES - 1)];
+        stripe.lock.lock();
+        try {
+            age(stripe);
+            return (long) estimate(stripe, key) * sampleOneIn;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * @return roughly when an entity was last read, in epoch milliseconds, or 0 if no read was sampled.
+     */
+    public long lastAccessMillis(FileSystemEntity entity) {
+        int key = key(entity);
+        Stripe stripe = stripes[key & (STRIPES - 1)];
+        stripe.lock.lock();
+        try {
+            return lastAccess(stripe, key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the most read files and folders, most read first.
+     * @param k how many to return.
+     * @return up to k hotspots.
+     */
+    public List<Hotspot> hottest(int k) {
+        record Ranked(FileSystemEntity entity, long reads, long lastAccessMillis) {
+        }
+        List<Ranked> all = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                age(stripe);
+                for (Candidate candidate : stripe.candidates) {
+                    FileSystemEntity entity = candidate.get();
+                    if (entity == null) {
+                        continue;
+                    }
+                    int key = key(entity);
+                    all.add(new Ranked(entity, (long) estimate(stripe, key) * sampleOneIn, lastAccess(stripe, key)));
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        all.sort(Comparator.comparingLong(Ranked::reads).reversed());
+        List<Hotspot> hotspots = new ArrayList<>(Math.min(k, all.size()));
+        for (Ranked ranked : all.subList(0, Math.min(k, all.size()))) {
+            if (ranked.reads > 0) {
+                hotspots.add(new Hotspot(OperationLog.pathOf(ranked.entity), ranked.reads, ranked.lastAccessMillis));
+            }
+        }
+        return hotspots;
+    }
+
+    private void sample(FileSystemEntity entity) {
+        if (sampleOneIn > 1 && ThreadLocalRandom.current().nextInt(sampleOneIn) != 0) {
+            return;
+        }
+        int key = key(entity);
+        Stripe stripe = stripes[key & (STRIPES - 1)];
+        if (!stripe.lock.tryLock()) {
+            return;
+        }
+        try {
+            age(stripe);
+            int seconds = (int) ((System.currentTimeMillis() - startMillis) / 1000);
+            for (int row = 0; row < DEPTH; row++) {
+                int index = row * stripe.width + index(stripe, key, row);
+                if (stripe.counts[index] < Integer.MAX_VALUE) {
+                    stripe.counts[index]++;
+                }
+                stripe.lastSeconds[index] = Math.max(stripe.lastSeconds[index], seconds);
+            }
+            if (estimate(stripe, key) > stripe.admitAbove) {
+                expunge(stripe);
+                stripe.candidates.add(new Candidate(entity, stripe.collected));
+                if (stripe.candidates.size() > 2 * CANDIDATES_PER_STRIPE) {
+                    prune(stripe);
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void forget(FileSystemEntity entity) {
+        Stripe stripe = stripes[key(entity) & (STRIPES - 1)];
+        stripe.lock.lock();
+        try {
+            stripe.candidates.remove(new Candidate(entity, null));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void forgetBeneath(Folder folder) {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.candidates.removeIf(candidate -> {
+                    FileSystemEntity entity = candidate.get();
+                    return entity == null || folder.isParentOf(entity instanceof Folder f ? f : entity.getParent());
+                });
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops the candidates whose entities have been garbage collected.
+     */
+    private static void expunge(Stripe stripe) {
+        for (Reference<? extends FileSystemEntity> cleared = stripe.collected.poll(); cleared != null;
+             cleared = stripe.collected.poll()) {
+            stripe.candidates.remove(cleared);
+        }
+    }
+
+    /**
+     * Keeps the candidates with the highest estimates and only admits new ones that beat the weakest kept.
+     */
+    private static void prune(Stripe stripe) {
+        List<Map.Entry<Candidate, Integer>> ranked = new ArrayList<>();
+        for (Candidate candidate : stripe.candidates) {
+            FileSystemEntity entity = candidate.get();
+            if (entity != null) {
+                ranked.add(Map.entry(candidate, estimate(stripe, key(entity))));
+            }
+        }
+        ranked.sort(Map.Entry.<Candidate, Integer>comparingByValue().reversed());
+        stripe.candidates.clear();
+        for (Map.Entry<Candidate, Integer> entry : ranked.subList(0, Math.min(CANDIDATES_PER_STRIPE, ranked.size()))) {
+            stripe.candidates.add(entry.getKey());
+        }
+        if (ranked.size() >= CANDIDATES_PER_STRIPE) {
+            stripe.admitAbove = ranked.get(CANDIDATES_PER_STRIPE - 1).getValue();
+        }
+    }
+
+    /**
+     * @return the number of counters in each row of a stripe's sketch.
+     */
+    int sketchWidth() {
+        return stripes[0].width;
+    }
+
+    /**
+     * Halves the stripe's counts once for every half-life that has passed since they were last halved.
+     */
+    private void age(Stripe stripe) {
+        long periods = (System.currentTimeMillis() - startMillis) / HALF_LIFE_MILLIS;
+        int shift = (int) Math.min(31, periods - stripe.agedPeriods);
+        if (shift > 0) {
+            for (int i = 0; i < stripe.counts.length; i++) {
+                stripe.counts[i] >>= shift;
+            }
+            stripe.admitAbove >>= shift;
+            stripe.agedPeriods = periods;
+        }
+    }
+
+    private static int estimate(Stripe stripe, int key) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, stripe.counts[row * stripe.width + index(stripe, key, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * The latest time recorded in each row may belong to another entity sharing the counter, so the earliest of
+     * them is the closest estimate.
+     */
+    private long lastAccess(Stripe stripe, int key) {
+        int seconds = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            seconds = Math.min(seconds, stripe.lastSeconds[row * stripe.width + index(stripe, key, row)]);
+        }
+        return seconds == 0 && estimate(stripe, key) == 0 ? 0 : startMillis + seconds * 1000L;
+    }
+
+    private static int key(FileSystemEntity entity) {
+        int hash = System.identityHashCode(entity);
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    private static int index(Stripe stripe, int key, int row) {
+        long hash = ((key >>> 4) + SEEDS[row]) * SEEDS[row];
+        hash ^= hash >>> 32;
+        return (int) hash & (stripe.width - 1);
+    }
+}
@@ -0,0 +1,239 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * File content that can be appended to, for log-style files that grow a little at a time. The content is kept
+ * as a list of segments, so an append adds the new bytes as a segment of their own without copying what is
+ * already there. Once enough small segments have built up a background compaction merges them into larger
+ * ones, keeping reads cheap.
+ * <p>
+ * Readers always see a stable prefix: every read works from the segments that were published when it started,
+ * so it is never torn by an append or a compaction running at the same time. Appends are serialised.
+ * Each segment carries the CRC32C checksum of its bytes, and compaction checks the segments it merges so that
+ * corruption is never sealed in under a fresh checksum.
+ * Appends go through {@link FileSystemManager#appendToFile(File, byte[])}, which also keeps the file's hashes, the
+ * memory budget and the manager's listeners up to date.
+ * @author Tshiamo
+ */
+public final class AppendableContent implements FileContent {
+
+    static final int TARGET_SEGMENT_SIZE = 64 * 1024;
+    static final int COMPACTION_THRESHOLD = 64;
+
+    /**
+     * The published segments. Slots past {@code count} may be filled by later appends, but the first
+     * {@code count} slots of an array never change once published.
+     */
+    private record Segments(byte[][] segments, int[] checksums, int count, long size) {
+    }
+
+    private final Object appendLock = new Object();
+    private final Object compactLock = new Object();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile Segments state;
+    private int appendedSinceCompaction;
+
+    public AppendableContent() {
+        this.state = new Segments(new byte[8][], new int[8], 0, 0);
+    }
+
+    /**
+     * @param initial the first segment; the array is kept, not copied.
+     */
+    public AppendableContent(byte[] initial) {
+        this();
+        append(initial);
+    }
+
+    private AppendableContent(Segments snapshot) {
+        int capacity = Math.max(8, snapshot.count);
+        this.state = new Segments(Arrays.copyOf(snapshot.segments, capacity), Arrays.copyOf(snapshot.checksums, capacity),
+                snapshot.count, snapshot.size);
+    }
+
+    /**
+     * Adds bytes to the end of the content. The array is kept as a segment, not copied, so the caller must
+     * not change it afterwards. Content that belongs to a file is appended to through
+     * {@link FileSystemManager#appendToFile(File, byte[])}, which also clears the file's hashes, charges the
+     * memory budget and tells listeners.
+     * @param bytes the bytes to append.
+     */
+    void append(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Bytes parameter cannot be null.");
+        }
+        if (bytes.length == 0) {
+            return;
+        }
+        int checksum = Checksums.crc(bytes, 0, bytes.length);
+        boolean compact;
+        synchronized (appendLock) {
+            Segments current = state;
+            byte[][] segments = current.segments;
+            int[] checksums = current.checksums;
+            if (current.count == segments.length) {
+                segments = Arrays.copyOf(segments, segments.length * 2);
+                checksums = Arrays.copyOf(checksums, checksums.length * 2);
+            }
+            segments[current.count] = bytes;
+            checksums[current.count] = checksum;
+            state = new Segments(segments, checksums, current.count + 1, current.size + bytes.length);
+            compact = bytes.length < TARGET_SEGMENT_SIZE && ++appendedSinceCompaction >= COMPACTION_THRESHOLD;
+        }
+        if (compact && compacting.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("content-compactor").start(() -> {
+                try {
+                    compact();
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Merges runs of small segments into segments of up to 64 KiB. The merge is done outside the append lock,
+     * from a snapshot, and the segments appended meanwhile are carried over when the result is published.
+     * Nothing is merged if any segment fails its checksum.
+     */
+    public void compact() {
+        synchronized (compactLock) {
+            Segments snapshot = state;
+            if (!verify(snapshot)) {
+                return;
+            }
+            byte[][] merged = new byte[Math.max(8, snapshot.count)][];
+            int[] checksums = new int[merged.length];
+            int mergedCount = 0;
+            int runStart = 0;
+            long runSize = 0;
+            for (int i = 0; i <= snapshot.count; i++) {
+                byte[] segment = i < snapshot.count ? snapshot.segments[i] : null;
+                boolean small = segment != null && segment.length < TARGET_SEGMENT_SIZE;
+                if (small && runSize + segment.length <= TARGET_SEGMENT_SIZE) {
+                    runSize += segment.length;
+                    continue;
+                }
+                if (i - runStart == 1) {
+                    checksums[mergedCount] = snapshot.checksums[runStart];
+                    merged[mergedCount++] = snapshot.segments[runStart];
+                } else if (i > runStart) {
+                    byte[] run = concatenate(snapshot.segments, runStart, i, runSize);
+                    checksums[mergedCount] = Checksums.crc(run, 0, run.length);
+                    merged[mergedCount++] = run;
+                }
+                runStart = i;
+                runSize = 0;
+                if (small) {
+                    runSize = segment.length;
+                } else if (segment != null) {
+                    checksums[mergedCount] = snapshot.checksums[i];
+                    merged[mergedCount++] = segment;
+                    runStart = i + 1;
+                }
+            }
+            synchronized (appendLock) {
+                Segments current = state;
+                int appended = current.count - snapshot.count;
+                if (mergedCount + appended > merged.length) {
+                    int capacity = Math.max(merged.length * 2, mergedCount + appended);
+                    merged = Arrays.copyOf(merged, capacity);
+                    checksums = Arrays.copyOf(checksums, capacity);
+                }
+                System.arraycopy(current.segments, snapshot.count, merged, mergedCount, appended);
+                System.arraycopy(current.checksums, snapshot.count, checksums, mergedCount, appended);
+                state = new Segments(merged, checksums, mergedCount + appended, current.size);
+                appendedSinceCompaction = appended;
+            }
+        }
+    }
+
+    /**
+     * @return the number of segments the content is currently held in.
+     */
+    public int segmentCount() {
+        return state.count;
+    }
+
+    @Override
+    public long size() {
+        return state.size;
+    }
+
+    /**
+     * Returns the content as a single array. Content held in one segment is returned as is; otherwise the
+     * segments are copied into a new array.
+     */
+    @Override
+    public byte[] toByteArray() {
+        Segments snapshot = state;
+        if (snapshot.count == 1) {
+            return snapshot.segments[0];
+        }
+        return concatenate(snapshot.segments, 0, snapshot.count, snapshot.size);
+    }
+
+    @Override
+    public boolean verify() {
+        return verify(state);
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the start of the content, sharing the first segment if it holds all of it and otherwise copying only
+     * the segments it covers.
+     */
+    @Override
+    public ByteBuffer prefix(int length) {
+        Segments snapshot = state;
+        int wanted = (int) Math.min(length, snapshot.size);
+        if (snapshot.count > 0 && snapshot.segments[0].length >= wanted) {
+            return ByteBuffer.wrap(snapshot.segments[0], 0, wanted).slice().asReadOnlyBuffer();
+        }
+        byte[] bytes = new byte[wanted];
+        int offset = 0;
+        for (int i = 0; offset < wanted; i++) {
+            int copied = Math.min(snapshot.segments[i].length, wanted - offset);
+            System.arraycopy(snapshot.segments[i], 0, bytes, offset, copied);
+            offset += copied;
+        }
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns content for a copied file holding the bytes appended so far. The copy shares the existing
+     * segments but appends to each are independent.
+     */
+    @Override
+    public FileContent copy() {
+        return new AppendableContent(state);
+    }
+
+    private static boolean verify(Segments snapshot) {
+        for (int i = 0; i < snapshot.count; i++) {
+            byte[] segment = snapshot.segments[i];
+            if (Checksums.crc(segment, 0, segment.length) != snapshot.checksums[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] concatenate(byte[][] segments, int from, int to, long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Content of " + size + " bytes does not fit in an array.");
+        }
+        byte[] bytes = new byte[(int) size];
+        int offset = 0;
+        for (int i = from; i < to; i++) {
+            System.arraycopy(segments[i], 0, bytes, offset, segments[i].length);
+            offset += segments[i].length;
+        }
+        return bytes;
+    }
+}
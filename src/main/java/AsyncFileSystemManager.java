@@ -0,0 +1,369 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * An asynchronous facade over a {@link FileSystemManager}, returning a {@link CompletableFuture} for every operation.
+ * Each operation runs on its own virtual thread, which is where it waits for locks and content backends. Copying
+ * a folder's subtree is CPU-bound, so the virtual thread hands that part to a bounded fork-join pool.
+ * Folder copies and moves can be cancelled through their future and report their progress.
+ * The manager is not thread-safe, so mutations are serialised by a write lock; subtree copies only read the
+ * source and run under the read lock, so several can proceed at once. Memory an operation adds is acquired from
+ * the manager's {@link MemoryBudget} before the write lock is taken, so a blocking budget does not hold up the
+ * writers that would release memory.
+ * @author Tshiamo
+ */
+public class AsyncFileSystemManager implements AutoCloseable {
+    private static final long PROGRESS_INTERVAL = 1024;
+
+    private final FileSystemManager manager;
+    private final ExecutorService virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+    private final ForkJoinPool subtreePool;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public AsyncFileSystemManager(FileSystemManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param manager the FileSystemManager to run operations against.
+     * @param parallelism the maximum number of threads used for subtree work.
+     */
+    public AsyncFileSystemManager(FileSystemManager manager, int parallelism) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        this.manager = manager;
+        this.subtreePool = new ForkJoinPool(parallelism);
+    }
+
+    public FileSystemManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the lock serialising the manager's mutations, for jobs such as {@link SubtreeJobs} that work on the
+     * manager alongside this facade.
+     */
+    ReadWriteLock lock() {
+        return lock;
+    }
+
+    public CompletableFuture<Void> createFile(File f) {
+        if (f == null) {
+            return write(null, null, () -> manager.createFile(f));
+        }
+        return write(f.getParent() != null ? f.getParent() : manager.getRoot(), costOf(f),
+                () -> manager.createFile(f));
+    }
+
+    public CompletableFuture<Void> deleteFile(File f) {
+        return write(null, null, () -> manager.deleteFile(f));
+    }
+
+    public CompletableFuture<Void> appendToFile(File f, byte[] bytes) {
+        if (f == null || bytes == null) {
+            return write(null, null, () -> manager.appendToFile(f, bytes));
+        }
+        return write(f.getParent(), () -> bytes.length, () -> manager.appendToFile(f, bytes));
+    }
+
+    /**
+     * Writes bytes into a file with block content, having acquired the memory of the blocks the write adds as the
+     * file is before the write lock is taken. If another write gets in first and the write then needs more, the
+     * rest is refused rather than waited for.
+     */
+    public CompletableFuture<Void> writeFile(File f, long offset, byte[] bytes) {
+        if (f == null || bytes == null || offset < 0 || !(f.getFileContent() instanceof BlockContent content)) {
+            return write(null, null, () -> manager.writeFile(f, offset, bytes));
+        }
+        return write(f.getParent(), () -> content.heapSizeAddedBy(offset, bytes.length),
+                () -> manager.writeFile(f, offset, bytes));
+    }
+
+    public CompletableFuture<Void> truncateFile(File f, long length) {
+        return write(null, null, () -> manager.truncateFile(f, length));
+    }
+
+    public CompletableFuture<Void> copyFile(File f, Folder d) {
+        return write(d, costOf(f), () -> manager.copyFile(f, d));
+    }
+
+    public CompletableFuture<Void> moveFile(File f, Folder d) {
+        return write(d, costOf(f), () -> manager.moveFile(f, d));
+    }
+
+    public CompletableFuture<Void> createFolder(Folder f) {
+        if (f == null) {
+            return write(null, null, () -> manager.createFolder(f));
+        }
+        return write(f.getParent() != null ? f.getParent() : manager.getRoot(), costOf(f),
+                () -> manager.createFolder(f));
+    }
+
+    public CompletableFuture<Void> deleteFolder(Folder f) {
+        return write(null, null, () -> manager.deleteFolder(f));
+    }
+
+    public CompletableFuture<Void> copyFolder(Folder f, Folder d) {
+        return copyFolder(f, d, null);
+    }
+
+    /**
+     * Copies a folder and its subtree to a destination folder. The copy is built in parallel under the read lock and
+     * attached under the write lock. Cancelling the returned future stops the copy before anything is attached.
+     * @param f the Folder object to copy.
+     * @param d the destination Folder object.
+     * @param listener receives the number of entities copied so far, or null.
+     * @return a future completed once the copy is attached.
+     */
+    public CompletableFuture<Void> copyFolder(Folder f, Folder d, ProgressListener listener) {
+        if (f == null || d == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Folder parameters cannot be null."));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        run(future, () -> {
+            long started = System.nanoTime();
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("copyFolder");
+            Folder copy;
+            String path;
+            lock.readLock().lock();
+            try {
+                path = OperationLog.pathOf(f);
+                copy = copySubtree(f, future, listener);
+            } finally {
+                lock.readLock().unlock();
+            }
+            long reserved = reserve(d, costOf(copy));
+            lock.writeLock().lock();
+            try {
+                manager.runReserved(d, reserved, () -> {
+                    checkCancelled(future);
+                    copy.setParent(d);
+                    manager.attachCopy(f, d, copy, false, path, started, event);
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+        return future;
+    }
+
+    public CompletableFuture<Void> moveFolder(Folder f, Folder d) {
+        return moveFolder(f, d, null);
+    }
+
+    /**
+     * Moves a folder and its subtree to a destination folder. The move holds the write lock throughout so that the
+     * source cannot change between being copied and being removed. Cancelling the returned future stops the move
+     * before anything is attached.
+     * @param f the Folder object to move.
+     * @param d the destination Folder object.
+     * @param listener receives the number of entities copied so far, or null.
+     * @return a future completed once the folder has moved.
+     */
+    public CompletableFuture<Void> moveFolder(Folder f, Folder d, ProgressListener listener) {
+        if (f == null || d == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Folder parameters cannot be null."));
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        run(future, () -> {
+            long started = System.nanoTime();
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("moveFolder");
+            long reserved = reserve(d, costOf(f));
+            lock.writeLock().lock();
+            try {
+                manager.runReserved(d, reserved, () -> {
+                    if (f.isParentOf(d)) {
+                        throw new IllegalStateException("Illegal operation: Cannot move a folder into its subfolder.");
+                    }
+                    Folder copy = copySubtree(f, future, listener);
+                    checkCancelled(future);
+                    copy.setParent(d);
+                    manager.attachCopy(f, d, copy, true, OperationLog.pathOf(f), started, event);
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Reads the tree under the read lock, so that the read sees no mutation half done.
+     * @param reader the read to make, given the root folder.
+     * @return a future completed with what the read returns.
+     */
+    public <T> CompletableFuture<T> read(Function<Folder, T> reader) {
+        if (reader == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Reader parameter cannot be null."));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        run(future, () -> {
+            lock.readLock().lock();
+            try {
+                return reader.apply(manager.getRoot());
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Shuts down the executors once submitted operations have finished.
+     */
+    @Override
+    public void close() {
+        virtualThreads.close();
+        subtreePool.shutdown();
+    }
+
+    /**
+     * Runs a mutation under the write lock, having first acquired the memory it adds from the manager's budget.
+     * @param parent the folder the operation adds beneath, or null if it adds nothing.
+     * @param cost the bytes the operation adds, worked out under the read lock, or null if it adds nothing.
+     */
+    private CompletableFuture<Void> write(Folder parent, LongSupplier cost, Runnable operation) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        run(future, () -> {
+            long reserved = reserve(parent, cost);
+            lock.writeLock().lock();
+            try {
+                manager.runReserved(parent, reserved, () -> {
+                    checkCancelled(future);
+                    operation.run();
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return null;
+        });
+        return future;
+    }
+
+    /**
+     * Acquires the memory an operation will add beneath a folder before the write lock is taken, so that a blocking
+     * budget waits while other writers, which may be releasing memory, can still run. Nothing is acquired if the
+     * manager has no budget.
+     * @return the bytes acquired.
+     */
+    private long reserve(Folder parent, LongSupplier cost) {
+        MemoryBudget budget = manager.getMemoryBudget();
+        if (budget == null || parent == null || cost == null) {
+            return 0;
+        }
+        long bytes;
+        lock.readLock().lock();
+        try {
+            bytes = cost.getAsLong();
+        } finally {
+            lock.readLock().unlock();
+        }
+        budget.acquire(parent, bytes);
+        return bytes;
+    }
+
+    private static LongSupplier costOf(FileSystemEntity entity) {
+        return () -> MemoryBudget.costOf(entity);
+    }
+
+    private <T> void run(CompletableFuture<T> future, Supplier<T> task) {
+        virtualThreads.execute(() -> {
+            try {
+                future.complete(task.get());
+            } catch (CancellationException e) {
+                future.cancel(false);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private Folder copySubtree(Folder f, CompletableFuture<?> future, ProgressListener listener) {
+        long total = listener == null ? 0 : countEntities(f);
+        CopyTask task = new CopyTask(f, future, listener, new AtomicLong(), total);
+        Folder copy = subtreePool.invoke(task);
+        if (listener != null) {
+            listener.progress(total, total);
+        }
+        return copy;
+    }
+
+    private static long countEntities(Folder folder) {
+        long count = 1 + folder.getFiles().size();
+        for (Folder subFolder : folder.getFolders()) {
+            count += countEntities(subFolder);
+        }
+        return count;
+    }
+
+    private static void checkCancelled(CompletableFuture<?> future) {
+        if (future.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Copies one folder, forking a task per subfolder.
+     */
+    private static final class CopyTask extends RecursiveTask<Folder> {
+        private final Folder source;
+        private final CompletableFuture<?> future;
+        private final ProgressListener listener;
+        private final AtomicLong done;
+        private final long total;
+
+        private CopyTask(Folder source, CompletableFuture<?> future, ProgressListener listener, AtomicLong done, long total) {
+            this.source = source;
+            this.future = future;
+            this.listener = listener;
+            this.done = done;
+            this.total = total;
+        }
+
+        @Override
+        protected Folder compute() {
+            checkCancelled(future);
+            Folder copy = new Folder(source.getName(), null);
+            List<CopyTask> subTasks = new ArrayList<>();
+            for (Folder folder : source.getFolders()) {
+                CopyTask subTask = new CopyTask(folder, future, listener, done, total);
+                subTask.fork();
+                subTasks.add(subTask);
+            }
+            for (File file : source.getFiles()) {
+                File copiedFile = new File(file);
+                copiedFile.setParent(copy);
+                copy.getFiles().add(copiedFile);
+            }
+            report(1 + source.getFiles().size());
+            for (CopyTask subTask : subTasks) {
+                Folder copiedFolder = subTask.join();
+                copiedFolder.setParent(copy);
+                copy.getFolders().add(copiedFolder);
+            }
+            return copy;
+        }
+
+        private void report(long count) {
+            long before = done.getAndAdd(count);
+            if (listener != null && (before / PROGRESS_INTERVAL != (before + count) / PROGRESS_INTERVAL)) {
+                listener.progress(before + count, total);
+            }
+        }
+    }
+}
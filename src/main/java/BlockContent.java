@@ -0,0 +1,226 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * File content that can be patched in place, for large binary files where small regions change. The content
+ * is split into fixed-size blocks kept in an extent map from block index to block, so a write only copies the
+ * blocks it touches and regions never written are holes that read as zeros and take no memory.
+ * <p>
+ * Blocks are never changed once stored; a write replaces them. A copy therefore shares every block with the
+ * original, and shares the extent map itself until either side is written to. Each block carries the CRC32C
+ * checksum of its bytes, computed when it is written.
+ * @author Tshiamo
+ */
+public final class BlockContent implements FileContent {
+
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private record Block(byte[] data, int checksum) {
+
+        private Block(byte[] data) {
+            this(data, Checksums.crc(data, 0, data.length));
+        }
+    }
+
+    private final int blockSize;
+    private TreeMap<Long, Block> blocks;
+    private boolean mapShared;
+    private long size;
+
+    /**
+     * Creates empty content with 4 KiB blocks.
+     */
+    public BlockContent() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize the size of each block in bytes.
+     */
+    public BlockContent(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.blockSize = blockSize;
+        this.blocks = new TreeMap<>();
+    }
+
+    /**
+     * @param initial the starting content, which is copied into blocks.
+     * @param blockSize the size of each block in bytes.
+     */
+    public BlockContent(byte[] initial, int blockSize) {
+        this(blockSize);
+        write(0, initial);
+    }
+
+    private BlockContent(BlockContent original) {
+        this.blockSize = original.blockSize;
+        this.blocks = original.blocks;
+        this.mapShared = true;
+        this.size = original.size;
+    }
+
+    /**
+     * Writes bytes at an offset, growing the content if they reach past its end. A gap between the old end and
+     * the offset becomes a hole. Content that belongs to a file is written through
+     * {@link FileSystemManager#writeFile(File, long, byte[])}, which also keeps the file's hashes, the memory
+     * budget and listeners up to date.
+     * @param offset where the first byte goes.
+     * @param bytes the bytes to write.
+     */
+    synchronized void write(long offset, byte[] bytes) {
+        if (offset < 0 || bytes == null) {
+            throw new IllegalArgumentException("Offset cannot be negative and bytes parameter cannot be null.");
+        }
+        ownMap();
+        int written = 0;
+        while (written < bytes.length) {
+            long position = offset + written;
+            long index = position / blockSize;
+            int from = (int) (position % blockSize);
+            int length = Math.min(blockSize - from, bytes.length - written);
+            Block block = blocks.get(index);
+            byte[] data = block == null ? new byte[blockSize] : block.data.clone();
+            System.arraycopy(bytes, written, data, from, length);
+            blocks.put(index, new Block(data));
+            written += length;
+        }
+        size = Math.max(size, offset + bytes.length);
+    }
+
+    /**
+     * Sets the length of the content. Shrinking drops the blocks past the new end; growing adds a hole. Content
+     * that belongs to a file is truncated through {@link FileSystemManager#truncateFile(File, long)}.
+     * @param length the new length in bytes.
+     */
+    synchronized void truncate(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative.");
+        }
+        if (length < size) {
+            ownMap();
+            long lastIndex = (length - 1) / blockSize;
+            blocks.tailMap(length == 0 ? 0 : lastIndex + 1, true).clear();
+            int tail = (int) (length % blockSize);
+            Block last = length == 0 ? null : blocks.get(lastIndex);
+            if (last != null && tail != 0) {
+                // Zero the cut-off bytes so growing the content again reads them as a hole.
+                byte[] trimmed = last.data.clone();
+                Arrays.fill(trimmed, tail, blockSize, (byte) 0);
+                blocks.put(lastIndex, new Block(trimmed));
+            }
+        }
+        size = length;
+    }
+
+    /**
+     * @return the number of blocks holding data; holes are not counted.
+     */
+    public synchronized int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * @return the bytes held in block arrays; holes take none.
+     */
+    synchronized long heapSize() {
+        return (long) blocks.size() * blockSize;
+    }
+
+    /**
+     * @return the bytes of the blocks a write would add, leaving out blocks that already hold data.
+     */
+    synchronized long heapSizeAddedBy(long offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        long first = offset / blockSize;
+        long last = (offset + length - 1) / blockSize;
+        long present = blocks.subMap(first, true, last, true).size();
+        return (last - first + 1 - present) * blockSize;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized byte[] toByteArray() {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Content of " + size + " bytes does not fit in an array.");
+        }
+        byte[] bytes = new byte[(int) size];
+        for (Map.Entry<Long, Block> entry : blocks.entrySet()) {
+            long start = entry.getKey() * blockSize;
+            int length = (int) Math.min(blockSize, size - start);
+            System.arraycopy(entry.getValue().data, 0, bytes, (int) start, length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies out only the blocks covering the start of the content.
+     */
+    @Override
+    public synchronized ByteBuffer prefix(int length) {
+        int wanted = (int) Math.min(length, size);
+        byte[] bytes = new byte[wanted];
+        for (Map.Entry<Long, Block> entry : blocks.headMap(((long) wanted + blockSize - 1) / blockSize).entrySet()) {
+            long start = entry.getKey() * blockSize;
+            System.arraycopy(entry.getValue().data, 0, bytes, (int) start, (int) Math.min(blockSize, wanted - start));
+        }
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Checks every block against its checksum. Blocks never change once stored, so the check runs on a snapshot
+     * of the extent map without holding up writes.
+     */
+    @Override
+    public boolean verify() {
+        List<Block> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(blocks.values());
+        }
+        for (Block block : snapshot) {
+            if (Checksums.crc(block.data, 0, block.data.length) != block.checksum) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns content for a copied file that shares every block, and the extent map, with this content.
+     */
+    @Override
+    public synchronized FileContent copy() {
+        mapShared = true;
+        return new BlockContent(this);
+    }
+
+    /**
+     * Gives this content its own extent map before it is changed, if the map is shared with a copy.
+     */
+    private void ownMap() {
+        if (mapShared) {
+            blocks = new TreeMap<>(blocks);
+            mapShared = false;
+        }
+    }
+}
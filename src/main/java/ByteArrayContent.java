@@ -0,0 +1,57 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * File content held in a heap byte array. Checksums of the array are recorded when the content is created.
+ * @author Tshiamo
+ */
+public final class ByteArrayContent implements FileContent {
+    private final byte[] bytes;
+    private final int[] checksums;
+
+    public ByteArrayContent(byte[] bytes) {
+        this(bytes, Checksums.of(bytes));
+    }
+
+    private ByteArrayContent(byte[] bytes, int[] checksums) {
+        this.bytes = bytes;
+        this.checksums = checksums;
+    }
+
+    @Override
+    public long size() {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return bytes == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean verify() {
+        return Checksums.matches(bytes, checksums);
+    }
+
+    /**
+     * Copies the array, so a copied file never shares its array with the original. The copy keeps the original's
+     * checksums rather than computing new ones, so corruption in the original is carried over and detected.
+     */
+    @Override
+    public FileContent copy() {
+        return new ByteArrayContent(bytes == null ? null : Arrays.copyOf(bytes, bytes.length), checksums);
+    }
+
+    /**
+     * Returns this content itself, since the array is never changed once the content holds it.
+     */
+    @Override
+    public FileContent snapshot() {
+        return this;
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C checksums over fixed-size blocks of content, recorded when content is written so that corruption
+ * can be detected later by an {@link IntegrityScrubber}. CRC32C is computed with hardware support on most
+ * platforms, so recording and checking it is cheap next to the cost of reading the bytes.
+ * @author Tshiamo
+ */
+final class Checksums {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private Checksums() {
+    }
+
+    /**
+     * @return the checksum of each 64 KiB block of the bytes; the last block may be shorter.
+     */
+    static int[] of(byte[] bytes) {
+        if (bytes == null) {
+            return new int[0];
+        }
+        int[] checksums = new int[(bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        for (int i = 0; i < checksums.length; i++) {
+            int offset = i * BLOCK_SIZE;
+            checksums[i] = crc(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+        }
+        return checksums;
+    }
+
+    /**
+     * @return true if every block of the bytes still has the checksum recorded for it.
+     */
+    static boolean matches(byte[] bytes, int[] checksums) {
+        if (bytes == null) {
+            return checksums.length == 0;
+        }
+        if ((bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE != checksums.length) {
+            return false;
+        }
+        for (int i = 0; i < checksums.length; i++) {
+            int offset = i * BLOCK_SIZE;
+            if (crc(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset)) != checksums[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int crc(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * A lightweight flyweight view of a file in a {@link CompactNodeStore}. It holds only the store and the
+ * node id, with the id's generation so that using the view after the file is deleted fails; every property
+ * is read from the store's arrays.
+ * @author Tshiamo
+ */
+public final class CompactFile {
+    private final CompactNodeStore store;
+    private final int id;
+    private final int generation;
+
+    CompactFile(CompactNodeStore store, int id) {
+        this.store = store;
+        this.id = id;
+        this.generation = store.getGeneration(id);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        check();
+        return store.getName(id);
+    }
+
+    public CompactFolder getParent() {
+        check();
+        return new CompactFolder(store, store.getParent(id));
+    }
+
+    public long getSize() {
+        check();
+        return store.getSize(id);
+    }
+
+    public long getCreatedMillis() {
+        check();
+        return store.getCreatedMillis(id);
+    }
+
+    /**
+     * @return the creation time as a new Date object.
+     */
+    public Date getCreatedDate() {
+        check();
+        return new Date(store.getCreatedMillis(id));
+    }
+
+    public byte[] getContent() {
+        check();
+        return store.getContent(id);
+    }
+
+    public String getExtension() {
+        check();
+        return store.getExtension(id);
+    }
+
+    private void check() {
+        store.checkGeneration(id, generation);
+    }
+
+    /**
+     * Compares files the same way {@link File#equals(Object)} does, by name, size and extension.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompactFile file = (CompactFile) o;
+        return getSize() == file.getSize() && Objects.equals(getName(), file.getName()) && Objects.equals(getExtension(), file.getExtension());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getName(), getSize(), getExtension());
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lightweight flyweight view of a folder in a {@link CompactNodeStore}. It holds only the store and the
+ * node id and the id's generation, so views can be created and dropped freely and a view of a deleted folder
+ * fails instead of reading whatever node reuses its id.
+ * @author Tshiamo
+ */
+public final class CompactFolder {
+    private final CompactNodeStore store;
+    private final int id;
+    private final int generation;
+
+    CompactFolder(CompactNodeStore store, int id) {
+        this.store = store;
+        this.id = id;
+        this.generation = store.getGeneration(id);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        check();
+        return store.getName(id);
+    }
+
+    /**
+     * @return the parent folder, or null for the root folder.
+     */
+    public CompactFolder getParent() {
+        check();
+        int parentId = store.getParent(id);
+        return parentId == CompactNodeStore.NONE ? null : new CompactFolder(store, parentId);
+    }
+
+    public List<CompactFile> getFiles() {
+        check();
+        List<CompactFile> files = new ArrayList<>();
+        for (int child = store.getFirstChild(id); child != CompactNodeStore.NONE; child = store.getNextSibling(child)) {
+            if (!store.isFolder(child)) {
+                files.add(new CompactFile(store, child));
+            }
+        }
+        return files;
+    }
+
+    public List<CompactFolder> getFolders() {
+        check();
+        List<CompactFolder> folders = new ArrayList<>();
+        for (int child = store.getFirstChild(id); child != CompactNodeStore.NONE; child = store.getNextSibling(child)) {
+            if (store.isFolder(child)) {
+                folders.add(new CompactFolder(store, child));
+            }
+        }
+        return folders;
+    }
+
+    public CompactFolder createFolder(String name) {
+        check();
+        return new CompactFolder(store, store.createFolder(id, name));
+    }
+
+    public CompactFile createFile(String name, String extension, long createdMillis, byte[] content) {
+        check();
+        return new CompactFile(store, store.createFile(id, name, extension, createdMillis, content));
+    }
+
+    public boolean containsFileWithSameName(String name, String extension) {
+        check();
+        return store.findChild(id, name, extension) != CompactNodeStore.NONE;
+    }
+
+    public boolean containsFolderWithSameName(String name) {
+        check();
+        return store.findChild(id, name, null) != CompactNodeStore.NONE;
+    }
+
+    private void check() {
+        store.checkGeneration(id, generation);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompactFolder folder = (CompactFolder) o;
+        return id == folder.id && generation == folder.generation && store == folder.store;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+}
@@ -0,0 +1,350 @@
+import java.util.Arrays;
+
+/**
+ * A compact alternative backend for very large trees. Instead of one object per entity, every node is an
+ * int id into primitive parallel arrays holding its parent, name, extension, size, creation time and its
+ * place in its parent's child list (first child / next sibling). Names and extensions are interned in a
+ * shared {@link NamePool}. {@link CompactFolder} and {@link CompactFile} are flyweight views over a node id.
+ * Ids of deleted nodes are reused by later nodes. Each id also has a generation, bumped when its node is
+ * deleted, so a view over a deleted node fails instead of silently reading whatever node reuses the id.
+ * @author Tshiamo
+ */
+public class CompactNodeStore {
+    public static final int ROOT = 0;
+    static final int NONE = -1;
+    private static final int FREE = -2;
+
+    private final NamePool names;
+    private int[] parent;
+    private int[] name;
+    private int[] extension;
+    private long[] size;
+    private long[] createdMillis;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private byte[][] content;
+    private int[] generation;
+    private int capacity;
+    private int highWater;
+    private int freeList = NONE;
+    private int nodeCount;
+
+    public CompactNodeStore() {
+        this(1024, new NamePool());
+    }
+
+    /**
+     * Creates a store with a root folder named "root".
+     * @param initialCapacity the number of nodes to allocate room for up front.
+     * @param names the pool used to intern names and extensions, which may be shared between stores.
+     */
+    public CompactNodeStore(int initialCapacity, NamePool names) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be at least 1.");
+        }
+        if (names == null) {
+            throw new IllegalArgumentException("NamePool parameter cannot be null.");
+        }
+        this.names = names;
+        this.capacity = initialCapacity;
+        this.parent = new int[initialCapacity];
+        this.name = new int[initialCapacity];
+        this.extension = new int[initialCapacity];
+        this.size = new long[initialCapacity];
+        this.createdMillis = new long[initialCapacity];
+        this.firstChild = new int[initialCapacity];
+        this.nextSibling = new int[initialCapacity];
+        this.content = new byte[initialCapacity][];
+        this.generation = new int[initialCapacity];
+        int root = allocate();
+        parent[root] = NONE;
+        name[root] = names.intern("root");
+        extension[root] = NONE;
+    }
+
+    public CompactFolder getRoot() {
+        return new CompactFolder(this, ROOT);
+    }
+
+    public NamePool getNames() {
+        return names;
+    }
+
+    /**
+     * @return the number of live nodes, including the root.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Creates a folder under a parent folder.
+     * @param parentId the id of the parent folder.
+     * @param folderName the name of the new folder.
+     * @return the id of the new folder.
+     * @throws IllegalArgumentException if a folder with the same name already exists in the parent folder.
+     */
+    public int createFolder(int parentId, String folderName) {
+        checkFolder(parentId);
+        checkName(folderName);
+        if (findChild(parentId, folderName, null) != NONE) {
+            throw new IllegalArgumentException("A folder with the name \""+folderName+"\" already exists in this folder.");
+        }
+        int id = allocate();
+        name[id] = names.intern(folderName);
+        extension[id] = NONE;
+        link(id, parentId);
+        return id;
+    }
+
+    /**
+     * Creates a file under a parent folder.
+     * @param parentId the id of the parent folder.
+     * @param fileName the name of the new file.
+     * @param fileExtension the extension of the new file.
+     * @param created the creation time of the file in epoch milliseconds.
+     * @param bytes the file content.
+     * @return the id of the new file.
+     * @throws IllegalArgumentException if a file with the same name and extension already exists in the parent folder.
+     */
+    public int createFile(int parentId, String fileName, String fileExtension, long created, byte[] bytes) {
+        checkFolder(parentId);
+        checkName(fileName);
+        if (fileExtension == null || bytes == null) {
+            throw new IllegalArgumentException("Extension and content cannot be null.");
+        }
+        if (findChild(parentId, fileName, fileExtension) != NONE) {
+            throw new IllegalArgumentException("A file with the name \""+fileName+"\" and extension \""+fileExtension+"\" already exists in this folder.");
+        }
+        int id = allocate();
+        name[id] = names.intern(fileName);
+        extension[id] = names.intern(fileExtension);
+        size[id] = bytes.length;
+        createdMillis[id] = created;
+        content[id] = bytes;
+        link(id, parentId);
+        return id;
+    }
+
+    /**
+     * Finds a child of a folder by name, ignoring case like {@link Folder} does.
+     * @param parentId the id of the folder to search.
+     * @param childName the name of the child.
+     * @param childExtension the extension of a file, or null to look for a folder.
+     * @return the id of the child, or -1 if there is none.
+     */
+    public int findChild(int parentId, String childName, String childExtension) {
+        int foldedName = names.findFolded(childName);
+        int foldedExtension = childExtension == null ? NONE : names.findFolded(childExtension);
+        if (foldedName == NONE || (childExtension != null && foldedExtension == NONE)) {
+            return NONE;
+        }
+        for (int child = firstChild[parentId]; child != NONE; child = nextSibling[child]) {
+            boolean childIsFolder = extension[child] == NONE;
+            if (childIsFolder != (childExtension == null)) {
+                continue;
+            }
+            if (names.getFolded(name[child]) == foldedName
+                    && (childIsFolder || names.getFolded(extension[child]) == foldedExtension)) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Deletes a node and, for a folder, everything beneath it.
+     * @param id the id of the node to delete.
+     */
+    public void delete(int id) {
+        checkLive(id);
+        if (id == ROOT) {
+            throw new IllegalArgumentException("The root folder cannot be deleted.");
+        }
+        unlink(id);
+        release(id);
+    }
+
+    /**
+     * Moves a node under a new parent folder. Only the child links change, so this is O(siblings) regardless
+     * of the size of the subtree.
+     * @param id the id of the node to move.
+     * @param newParentId the id of the destination folder.
+     * @throws IllegalStateException if a folder is moved into its own subtree.
+     */
+    public void move(int id, int newParentId) {
+        checkLive(id);
+        checkFolder(newParentId);
+        if (isAncestor(id, newParentId)) {
+            throw new IllegalStateException("Illegal operation: Cannot move a folder into its subfolder.");
+        }
+        String childExtension = isFolder(id) ? null : names.get(extension[id]);
+        if (findChild(newParentId, names.get(name[id]), childExtension) != NONE) {
+            throw new IllegalArgumentException("An entity with the same name already exists in the target folder.");
+        }
+        unlink(id);
+        link(id, newParentId);
+    }
+
+    public boolean isFolder(int id) {
+        return extension[id] == NONE;
+    }
+
+    public int getParent(int id) {
+        return parent[id];
+    }
+
+    public String getName(int id) {
+        return names.get(name[id]);
+    }
+
+    public String getExtension(int id) {
+        return isFolder(id) ? null : names.get(extension[id]);
+    }
+
+    public long getSize(int id) {
+        return size[id];
+    }
+
+    public long getCreatedMillis(int id) {
+        return createdMillis[id];
+    }
+
+    public byte[] getContent(int id) {
+        return content[id];
+    }
+
+    /**
+     * @param id the id of a node.
+     * @return the generation of the id, which changes each time a node holding it is deleted.
+     */
+    public int getGeneration(int id) {
+        return generation[id];
+    }
+
+    /**
+     * Checks that a view taken of a node still refers to it, and not to a later node reusing its id.
+     * @param id the id of the node.
+     * @param expected the generation of the id when the view was taken.
+     * @throws IllegalStateException if the node has been deleted since.
+     */
+    void checkGeneration(int id, int expected) {
+        if (generation[id] != expected) {
+            throw new IllegalStateException("Node " + id + " has been deleted.");
+        }
+    }
+
+    public int getFirstChild(int id) {
+        return firstChild[id];
+    }
+
+    public int getNextSibling(int id) {
+        return nextSibling[id];
+    }
+
+    private boolean isAncestor(int ancestor, int id) {
+        for (int current = id; current != NONE; current = parent[current]) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void link(int id, int parentId) {
+        parent[id] = parentId;
+        nextSibling[id] = firstChild[parentId];
+        firstChild[parentId] = id;
+    }
+
+    private void unlink(int id) {
+        int parentId = parent[id];
+        if (firstChild[parentId] == id) {
+            firstChild[parentId] = nextSibling[id];
+        } else {
+            int previous = firstChild[parentId];
+            while (nextSibling[previous] != id) {
+                previous = nextSibling[previous];
+            }
+            nextSibling[previous] = nextSibling[id];
+        }
+        parent[id] = NONE;
+        nextSibling[id] = NONE;
+    }
+
+    /**
+     * Returns a detached node and its descendants to the free list, iteratively so deep trees cannot overflow the stack.
+     */
+    private void release(int id) {
+        int pending = id;
+        while (pending != NONE) {
+            int current = pending;
+            pending = nextSibling[current];
+            for (int child = firstChild[current]; child != NONE; ) {
+                int next = nextSibling[child];
+                nextSibling[child] = pending;
+                pending = child;
+                child = next;
+            }
+            content[current] = null;
+            generation[current]++;
+            parent[current] = FREE;
+            firstChild[current] = NONE;
+            nextSibling[current] = freeList;
+            freeList = current;
+            nodeCount--;
+        }
+    }
+
+    private int allocate() {
+        int id;
+        if (freeList != NONE) {
+            id = freeList;
+            freeList = nextSibling[id];
+        } else {
+            if (highWater == capacity) {
+                grow();
+            }
+            id = highWater++;
+        }
+        parent[id] = NONE;
+        firstChild[id] = NONE;
+        nextSibling[id] = NONE;
+        size[id] = 0;
+        createdMillis[id] = 0;
+        nodeCount++;
+        return id;
+    }
+
+    private void grow() {
+        capacity = capacity * 2;
+        parent = Arrays.copyOf(parent, capacity);
+        name = Arrays.copyOf(name, capacity);
+        extension = Arrays.copyOf(extension, capacity);
+        size = Arrays.copyOf(size, capacity);
+        createdMillis = Arrays.copyOf(createdMillis, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        content = Arrays.copyOf(content, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+    }
+
+    private void checkLive(int id) {
+        if (id < 0 || id >= highWater || parent[id] == FREE) {
+            throw new IllegalArgumentException("Unknown node id " + id + ".");
+        }
+    }
+
+    private void checkFolder(int id) {
+        checkLive(id);
+        if (!isFolder(id)) {
+            throw new IllegalArgumentException("Node " + id + " is not a folder.");
+        }
+    }
+
+    private static void checkName(String nodeName) {
+        if (nodeName == null || nodeName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Name cannot be null or empty.");
+        }
+    }
+}
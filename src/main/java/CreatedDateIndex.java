@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * An ordered index of files by creation time, answering "files created between T1 and T2 under folder X"
+ * without walking the subtree.
+ * Every indexed file is kept once, in a single set ordered by its creation time as a primitive epoch millisecond
+ * value, so the index holds one entry per file whatever the depth of the tree. A range query is a sub-set lookup
+ * whose entries are kept if the queried folder is one of the file's ancestors, which takes a walk up the file's
+ * parents; a query on the root keeps every entry without walking.
+ * The index follows the tree through {@link FileSystemListener} callbacks, so only changes made through
+ * the manager are tracked. A deleted folder's files are dropped as soon as the folder is deleted, even when the
+ * manager has a {@link SubtreeReclaimer}, so queries never have to look for them. The index is thread-safe,
+ * since reclamation is reported from the reclaimer's thread.
+ * @author Tshiamo
+ */
+public class CreatedDateIndex implements FileSystemListener {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong((Entry e) -> e.createdMillis)
+            .thenComparingLong(e -> e.sequence);
+
+    private final NavigableSet<Entry> byDate = new TreeSet<>(ORDER);
+    private final Map<File, Entry> entries = new IdentityHashMap<>();
+    private final FileSystemManager manager;
+    private long nextSequence;
+
+    /**
+     * Builds the index over the manager's current tree and registers it to follow later changes.
+     * @param manager the FileSystemManager whose tree is indexed.
+     */
+    public CreatedDateIndex(FileSystemManager manager) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        this.manager = manager;
+        indexFolder(manager.getRoot());
+        manager.addListener(this);
+    }
+
+    /**
+     * Returns the files under a folder, at any depth, whose creation time lies within the given range.
+     * @param scope the folder whose subtree is searched.
+     * @param fromMillis the start of the range in epoch milliseconds, inclusive.
+     * @param toMillis the end of the range in epoch milliseconds, inclusive.
+     * @return the matching files ordered by creation time.
+     */
+    public synchronized List<File> filesCreatedBetween(Folder scope, long fromMillis, long toMillis) {
+        if (scope == null) {
+            throw new IllegalArgumentException("Folder parameter cannot be null.");
+        }
+        if (fromMillis > toMillis) {
+            return Collections.emptyList();
+        }
+        boolean everything = scope == manager.getRoot();
+        List<File> result = new ArrayList<>();
+        for (Entry entry : byDate.subSet(probe(fromMillis, Long.MIN_VALUE), true, probe(toMillis, Long.MAX_VALUE), true)) {
+            if (everything || scope.isParentOf(entry.file.getParent())) {
+                result.add(entry.file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of files in the index.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void fileCreated(File file) {
+        indexFile(file);
+    }
+
+    @Override
+    public synchronized void fileDeleted(File file) {
+        unindexFile(file);
+    }
+
+    @Override
+    public synchronized void folderCreated(Folder folder) {
+        indexFolder(folder);
+    }
+
+    @Override
+    public synchronized void folderDeleted(Folder folder) {
+        unindexFolder(folder);
+    }
+
+    private void indexFolder(Folder folder) {
+        for (File file : folder.getFiles()) {
+            indexFile(file);
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            indexFolder(subFolder);
+        }
+    }
+
+    private void indexFile(File file) {
+        Entry entry = new Entry(file.getCreatedMillis(), nextSequence++, file);
+        Entry previous = entries.put(file, entry);
+        if (previous != null) {
+            byDate.remove(previous);
+        }
+        byDate.add(entry);
+    }
+
+    private void unindexFolder(Folder folder) {
+        for (File file : folder.getFiles()) {
+            unindexFile(file);
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            unindexFolder(subFolder);
+        }
+    }
+
+    private void unindexFile(File file) {
+        Entry entry = entries.remove(file);
+        if (entry != null) {
+            byDate.remove(entry);
+        }
+    }
+
+    private static Entry probe(long createdMillis, long sequence) {
+        return new Entry(createdMillis, sequence, null);
+    }
+
+    private static final class Entry {
+        private final long createdMillis;
+        private final long sequence;
+        private final File file;
+
+        private Entry(long createdMillis, long sequence, File file) {
+            this.createdMillis = createdMillis;
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Writes a {@link Folder} to a local directory.
+ * The tree is walked once to create the directories and list the files to write, and the files are then
+ * written by parallel workers. Content left on disk by {@link DiskFileContent} is copied channel to channel with
+ * {@link FileChannel#transferTo}; other content is written straight from its buffer.
+ * {@link #mirror(Folder, Path)} keeps a directory in sync: it only rewrites files whose size or content hash
+ * changed since this exporter last wrote them, and deletes files and directories no longer in the tree. Content
+ * hashes are only computed by a mirror, and only for files whose size has not changed. An exporter owns a pool of
+ * worker threads and should be closed when no longer needed.
+ * @author Tshiamo
+ */
+public class DiskExporter implements AutoCloseable {
+
+    /**
+     * The outcome of an export.
+     * @param written the number of files written.
+     * @param unchanged the number of files left as they were.
+     * @param deleted the number of files and directories deleted.
+     * @param bytesWritten the number of bytes written.
+     * @param elapsedNanos how long the export took.
+     */
+    public record Result(long written, long unchanged, long deleted, long bytesWritten, long elapsedNanos) {
+    }
+
+    /**
+     * What was last written to a path. The hash is null if the file was written by a plain export.
+     */
+    private record Written(long size, byte[] hash) {
+    }
+
+    private record Job(File file, Path path, String relativePath) {
+    }
+
+    private final ForkJoinPool pool;
+    private final Map<Path, Map<String, Written>> manifests = new ConcurrentHashMap<>();
+
+    public DiskExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism the number of files written at the same time.
+     */
+    public DiskExporter(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Writes every file beneath a folder into a directory, overwriting files that are already there.
+     * @param source the Folder object to export.
+     * @param target the directory to write to, created if needed.
+     * @return the export counts.
+     * @throws UncheckedIOException if writing fails.
+     */
+    public Result export(Folder source, Path target) {
+        return run(source, target, false);
+    }
+
+    /**
+     * Brings a directory in line with a folder, writing only what changed and deleting what was removed.
+     * Files this exporter has written before are compared with what it wrote; other files already on disk are
+     * compared by size and then by content.
+     * @param source the Folder object to mirror.
+     * @param target the directory to keep in sync, created if needed.
+     * @return the mirror counts.
+     * @throws UncheckedIOException if writing or deleting fails.
+     */
+    public Result mirror(Folder source, Path target) {
+        return run(source, target, true);
+    }
+
+    private Result run(Folder source, Path target, boolean incremental) {
+        if (source == null || target == null) {
+            throw new IllegalArgumentException("Folder and Path parameters cannot be null.");
+        }
+        long start = System.nanoTime();
+        Path root = target.toAbsolutePath().normalize();
+        Map<String, Written> previous = manifests.getOrDefault(root, Map.of());
+        Map<String, Written> manifest = new ConcurrentHashMap<>();
+        List<Job> jobs = new ArrayList<>();
+        Set<Path> directories = new HashSet<>();
+        try {
+            plan(source, root, "", jobs, directories);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create directories under " + root + ".", e);
+        }
+
+        AtomicLong written = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        pool.invoke(new WriteTask(jobs, 0, jobs.size(), job -> {
+            File file = job.file();
+            if (!incremental || !isUpToDate(job, previous.get(job.relativePath()))) {
+                write(file, job.path());
+                written.incrementAndGet();
+                bytes.addAndGet(file.getSize());
+            }
+            manifest.put(job.relativePath(), new Written(file.getSize(), incremental ? file.getContentHash() : null));
+        }));
+        manifests.put(root, manifest);
+
+        long deleted = incremental ? deleteRemoved(root, manifest.keySet(), directories) : 0;
+        return new Result(written.get(), jobs.size() - written.get(), deleted, bytes.get(), System.nanoTime() - start);
+    }
+
+    private void plan(Folder folder, Path directory, String prefix, List<Job> jobs, Set<Path> directories) throws IOException {
+        Files.createDirectories(directory);
+        directories.add(directory);
+        for (File file : folder.getFiles()) {
+            String name = file.getFullName();
+            jobs.add(new Job(file, resolve(directory, name), prefix + name));
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            plan(subFolder, resolve(directory, subFolder.getName()), prefix + subFolder.getName() + "/", jobs, directories);
+        }
+    }
+
+    /**
+     * Resolves a name within a directory, rejecting names that would point anywhere else.
+     */
+    private static Path resolve(Path directory, String name) {
+        Path path = directory.resolve(name).normalize();
+        if (name.isEmpty() || !directory.equals(path.getParent())) {
+            throw new IllegalArgumentException("The name \"" + name + "\" cannot be written to disk.");
+        }
+        return path;
+    }
+
+    /**
+     * Compares a file with what is on disk, by size first, so content is only hashed when the sizes match.
+     */
+    private static boolean isUpToDate(Job job, Written previous) {
+        if (previous != null && previous.size() != job.file().getSize()) {
+            return false;
+        }
+        if (previous != null && previous.hash() != null) {
+            return Arrays.equals(previous.hash(), job.file().getContentHash());
+        }
+        try {
+            if (!Files.isRegularFile(job.path()) || Files.size(job.path()) != job.file().getSize()) {
+                return false;
+            }
+            MessageDigest digest = Digests.newDigest();
+            try (FileChannel channel = FileChannel.open(job.path(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            return Arrays.equals(digest.digest(), job.file().getContentHash());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static void write(File file, Path path) {
+        FileContent content = file.getFileContent();
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (content instanceof DiskFileContent diskContent) {
+                try (FileChannel in = FileChannel.open(diskContent.getPath(), StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < diskContent.size()) {
+                        position += in.transferTo(position, diskContent.size() - position, out);
+                    }
+                }
+            } else {
+                ByteBuffer buffer = content.asByteBuffer();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + path + ".", e);
+        }
+    }
+
+    private static long deleteRemoved(Path root, Set<String> kept, Set<Path> directories) {
+        AtomicLong deleted = new AtomicLong();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+                    String relativePath = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+                    if (!kept.contains(relativePath)) {
+                        Files.delete(path);
+                        deleted.incrementAndGet();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    if (!directories.contains(directory)) {
+                        Files.delete(directory);
+                        deleted.incrementAndGet();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete removed files under " + root + ".", e);
+        }
+        return deleted.get();
+    }
+
+    /**
+     * Runs a range of jobs, splitting it in half until it is small enough to run directly.
+     */
+    private static final class WriteTask extends RecursiveAction {
+        private static final int THRESHOLD = 16;
+
+        private final List<Job> jobs;
+        private final int from;
+        private final int to;
+        private final Consumer<Job> action;
+
+        private WriteTask(List<Job> jobs, int from, int to, Consumer<Job> action) {
+            this.jobs = jobs;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    action.accept(jobs.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new WriteTask(jobs, from, middle, action), new WriteTask(jobs, middle, to, action));
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File content that stays in a file on local disk and is only read when it is accessed. Large files are
+ * memory-mapped on first access, so their bytes live outside the heap; small files are read on each access
+ * since mapping them costs more than reading them. The disk file must not change while it is referenced.
+ * @author Tshiamo
+ */
+public final class DiskFileContent implements FileContent {
+    static final long MAP_THRESHOLD = 64 * 1024;
+
+    private final Path path;
+    private final long size;
+    private volatile MappedByteBuffer mapped;
+
+    /**
+     * @param path the local file holding the content.
+     * @param size the size of the local file.
+     */
+    public DiskFileContent(Path path, long size) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path parameter cannot be null.");
+        }
+        this.path = path;
+        this.size = size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Content of " + path + " is too large for a byte array.");
+        }
+        byte[] bytes = new byte[(int) size];
+        asByteBuffer().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads only the start of the file, or slices it from the mapping if the file is already mapped.
+     */
+    @Override
+    public ByteBuffer prefix(int length) {
+        int wanted = (int) Math.min(length, size);
+        MappedByteBuffer buffer = mapped;
+        if (buffer != null) {
+            return buffer.slice(0, wanted).asReadOnlyBuffer();
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(wanted);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, bytes.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path + ".", e);
+        }
+        return bytes.flip().asReadOnlyBuffer();
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        try {
+            if (size < MAP_THRESHOLD) {
+                return ByteBuffer.wrap(Files.readAllBytes(path)).asReadOnlyBuffer();
+            }
+            MappedByteBuffer buffer = mapped;
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+                mapped = buffer;
+            }
+            return buffer.asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path + ".", e);
+        }
+    }
+}
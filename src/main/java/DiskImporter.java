@@ -0,0 +1,195 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Imports a directory tree from local disk into a {@link FileSystemManager}.
+ * Each directory is listed with {@link Files#walkFileTree} by its own fork-join task, so directories are read
+ * in parallel. Files keep their content on disk as {@link DiskFileContent} and are only read when accessed.
+ * The whole subtree is built detached and then attached to the target folder in one step, so listeners see a
+ * single folder creation. An importer owns a pool of worker threads and should be closed when no longer needed.
+ * @author Tshiamo
+ */
+public class DiskImporter implements AutoCloseable {
+
+    /**
+     * The outcome of an import.
+     * @param folder the folder created for the imported directory.
+     * @param files the number of files imported.
+     * @param folders the number of folders imported, including the top folder.
+     * @param bytes the total size of the imported files.
+     * @param skipped the number of disk files and directories left out because their name clashed, ignoring case,
+     *                with a sibling's. What is beneath a skipped directory is neither imported nor counted.
+     * @param elapsedNanos how long the import took.
+     */
+    public record Result(Folder folder, long files, long folders, long bytes, long skipped, long elapsedNanos) {
+
+        public double filesPerSecond() {
+            return elapsedNanos == 0 ? 0 : files * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1_000_000_000.0 / elapsedNanos / (1024 * 1024);
+        }
+    }
+
+    private final FileSystemManager manager;
+    private final ForkJoinPool pool;
+
+    public DiskImporter(FileSystemManager manager) {
+        this(manager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param manager the FileSystemManager to import into.
+     * @param parallelism the number of directories read at the same time.
+     */
+    public DiskImporter(FileSystemManager manager, int parallelism) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        this.manager = manager;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Imports a local directory as a new folder, with the directory's name, inside a target folder.
+     * @param source the local directory to import.
+     * @param target the folder to import into, or null for the root folder.
+     * @return the imported folder and the throughput of the import.
+     * @throws IllegalArgumentException if the source is not a directory, or the target already has a folder with its name.
+     * @throws UncheckedIOException if the directory cannot be read.
+     */
+    public Result importDirectory(Path source, Folder target) {
+        if (source == null || !Files.isDirectory(source)) {
+            throw new IllegalArgumentException("Source must be an existing directory.");
+        }
+        long start = System.nanoTime();
+        Path fileName = source.toAbsolutePath().normalize().getFileName();
+        Subtree imported = pool.invoke(new DirectoryTask(source, fileName == null ? "root" : fileName.toString()));
+        Folder folder = imported.folder;
+        folder.setParent(target == null ? manager.getRoot() : target);
+        manager.attachFolder(folder);
+        return new Result(folder, imported.files, imported.folders, imported.bytes, imported.skipped,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Shuts down the worker threads.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Splits a disk file name into a name and an extension at its last dot. Names without a dot, or whose only
+     * dot is the first character, have an empty extension.
+     */
+    static String[] splitName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0 || dot == fileName.length() - 1) {
+            return new String[]{fileName, ""};
+        }
+        return new String[]{fileName.substring(0, dot), fileName.substring(dot + 1)};
+    }
+
+    /**
+     * A folder built from one directory, with what was imported into it and left out of it at any depth.
+     */
+    private static final class Subtree {
+        private final Folder folder;
+        private long files;
+        private long folders = 1;
+        private long bytes;
+        private long skipped;
+
+        private Subtree(Folder folder) {
+            this.folder = folder;
+        }
+    }
+
+    /**
+     * Builds the folder for one directory and forks a task for each subdirectory. Each task counts its own
+     * subtree, so a subdirectory left out because of a name clash leaves its counts out too.
+     */
+    private static final class DirectoryTask extends RecursiveTask<Subtree> {
+        private final Path directory;
+        private final String name;
+
+        private DirectoryTask(Path directory, String name) {
+            this.directory = directory;
+            this.name = name;
+        }
+
+        @Override
+        protected Subtree compute() {
+            Subtree subtree = new Subtree(new Folder(name, null));
+            Folder folder = subtree.folder;
+            Set<List<Name>> fileNames = new HashSet<>();
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            try {
+                Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                        if (attributes.isDirectory()) {
+                            DirectoryTask subTask = new DirectoryTask(path, path.getFileName().toString());
+                            subTask.fork();
+                            subTasks.add(subTask);
+                        } else if (attributes.isRegularFile()) {
+                            addFile(subtree, fileNames, path, attributes);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read " + directory + ".", e);
+            }
+            Set<Name> folderNames = new HashSet<>();
+            for (DirectoryTask subTask : subTasks) {
+                Subtree child = subTask.join();
+                if (!folderNames.add(child.folder.getInternedName().getFolded())) {
+                    subtree.skipped++;
+                    continue;
+                }
+                child.folder.setParent(folder);
+                folder.getFolders().add(child.folder);
+                subtree.files += child.files;
+                subtree.folders += child.folders;
+                subtree.bytes += child.bytes;
+                subtree.skipped += child.skipped;
+            }
+            return subtree;
+        }
+
+        /**
+         * Adds a file to a folder being built, using a set of the folded names already added instead of scanning the folder.
+         */
+        private void addFile(Subtree subtree, Set<List<Name>> fileNames, Path path, BasicFileAttributes attributes) {
+            String[] parts = splitName(path.getFileName().toString());
+            File file = new File(parts[0], null, new Date(attributes.creationTime().toMillis()),
+                    new DiskFileContent(path, attributes.size()), parts[1]);
+            if (!fileNames.add(List.of(file.getInternedName().getFolded(), file.getInternedExtension().getFolded()))) {
+                subtree.skipped++;
+                return;
+            }
+            file.setParent(subtree.folder);
+            subtree.folder.getFiles().add(file);
+            subtree.files++;
+            subtree.bytes += attributes.size();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Finds files with identical content anywhere beneath a folder, whatever their names. Candidates are narrowed in
+ * three steps, each more expensive than the last but applied to fewer files. First files are grouped by size, which
+ * needs no content at all. Then files that share a size are grouped by a CRC32C of their first 4 KiB, read through
+ * {@link FileContent#prefix(int)} so that no more than that is loaded or cached. Only the
+ * files still grouped are compared by their full SHA-256 content hash, which is cached on the file.
+ * <p>
+ * Each size group is resolved on its own, in parallel, as the returned stream is consumed, so only the hashes of
+ * the group being resolved are held at once and no content is kept after it has been hashed.
+ * @author Tshiamo
+ */
+public final class DuplicateFinder {
+
+    static final int PREFIX_SIZE = 4096;
+
+    private DuplicateFinder() {
+    }
+
+    /**
+     * Returns the groups of files beneath a folder that have the same content. Empty files are not reported.
+     * @param folder the top of the subtree to search.
+     * @return a parallel stream of groups, each holding two or more files with identical content.
+     */
+    public static Stream<List<File>> findDuplicates(Folder folder) {
+        if (folder == null) {
+            throw new IllegalArgumentException("Folder parameter cannot be null.");
+        }
+        Map<Long, List<File>> bySize = new HashMap<>();
+        collect(folder, bySize);
+        return bySize.values().parallelStream()
+                .filter(group -> group.size() > 1)
+                .flatMap(group -> candidates(group, DuplicateFinder::prefixHash))
+                .flatMap(group -> candidates(group, file -> ByteBuffer.wrap(file.getContentHash())));
+    }
+
+    private static void collect(Folder folder, Map<Long, List<File>> bySize) {
+        for (File file : folder.getFiles()) {
+            if (file.getSize() > 0) {
+                bySize.computeIfAbsent(file.getSize(), size -> new ArrayList<>(2)).add(file);
+            }
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            collect(subFolder, bySize);
+        }
+    }
+
+    /**
+     * Splits a group by a key, keeping only the parts that still hold more than one file.
+     */
+    private static <K> Stream<List<File>> candidates(List<File> group, Function<File, K> key) {
+        return group.parallelStream().collect(Collectors.groupingByConcurrent(key)).values().stream()
+                .filter(part -> part.size() > 1);
+    }
+
+    private static int prefixHash(File file) {
+        CRC32C crc = new CRC32C();
+        crc.update(file.getFileContent().prefix(PREFIX_SIZE));
+        return (int) crc.getValue();
+    }
+}
@@ -1,4 +1,5 @@
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.Date;
 import java.util.Objects;
 
@@ -7,9 +8,15 @@ import java.util.Objects;
  */
 public class File extends FileSystemEntity {
     private final long size;
-    private final Date created_date;
-    private final byte[] content;
-    private final String extension;
+    private final long createdMillis;
+    private final FileContent content;
+    private final Name extension;
+    private volatile byte[] contentHash;
+
+    /** Marks a file whose size is read from its content, which may grow or shrink. */
+    private static final long SIZE_OF_CONTENT = -1;
+    /** Marks a file created without a date, and is what {@link #getCreatedMillis()} returns for one. */
+    static final long NO_DATE = Long.MIN_VALUE;
 
     /**
      * File constructor
@@ -23,9 +30,32 @@ public class File extends FileSystemEntity {
     public File(String name, Folder parent, long size, Date created_date, byte[] content, String extension) {
         super(name, parent);
         this.size = size;
-        this.created_date = created_date;
+        this.createdMillis = created_date == null ? NO_DATE : created_date.getTime();
+        this.content = new ByteArrayContent(content);
+        this.extension = Name.of(extension);
+        if(parent != null) {
+            parent.addFile(this);
+        }
+    }
+
+    /**
+     * File constructor for content that is not held in a byte array, such as content left on disk until it is read.
+     * The size of the file is the size of its content, and follows it if the content changes.
+     * @param name the name of the file as a string.
+     * @param parent the parent Folder object of the file.
+     * @param created_date the date which the file was created, as a Date object.
+     * @param content the file content.
+     * @param extension the file extension for the file type, as a string.
+     */
+    public File(String name, Folder parent, Date created_date, FileContent content, String extension) {
+        super(name, parent);
+        if (content == null) {
+            throw new IllegalArgumentException("Content cannot be null.");
+        }
+        this.size = SIZE_OF_CONTENT;
+        this.createdMillis = created_date == null ? NO_DATE : created_date.getTime();
         this.content = content;
-        this.extension = extension;
+        this.extension = Name.of(extension);
         if(parent != null) {
             parent.addFile(this);
         }
@@ -37,26 +67,144 @@ public class File extends FileSystemEntity {
      * @param f the File object to copy.
      */
     public File(File f) {
+        this(f, f.content.copy());
+    }
+
+    private File(File f, FileContent content) {
         super(f.getName(), f.getParent());
-        this.size = f.getSize();
-        this.created_date = new Date(f.created_date.getTime());
-        this.content = Arrays.copyOf(f.getContent(), (int) f.getSize());
-        this.extension = f.getExtension();
+        this.size = f.size;
+        this.createdMillis = f.createdMillis;
+        this.content = content;
+        this.extension = f.extension;
+        this.contentHash = f.contentHash;
     }
 
+    /**
+     * Creates a detached copy of a file that shares its content as it is now, through
+     * {@link FileContent#snapshot()}, rather than copying it.
+     * @param f the File object to copy.
+     * @return the copy, with no parent.
+     */
+    static File snapshotOf(File f) {
+        File snapshot = new File(f, f.content.snapshot());
+        snapshot.setParent(null);
+        return snapshot;
+    }
+
+    /**
+     * @return the size of the file; for files built from a {@link FileContent}, the current size of the content.
+     */
     public long getSize() {
-        return size;
+        return size == SIZE_OF_CONTENT ? content.size() : size;
     }
 
+    /**
+     * The creation time is kept as epoch milliseconds rather than as a Date, which saves an object per file.
+     * @return a new Date holding the creation time, or null if the file was created without one.
+     */
     public Date getCreatedDate() {
-        return created_date;
+        return createdMillis == NO_DATE ? null : new Date(createdMillis);
+    }
+
+    /**
+     * @return the creation time in epoch milliseconds, without allocating a Date.
+     */
+    public long getCreatedMillis() {
+        return createdMillis;
     }
 
     public byte[] getContent() {
+        AccessTracker.recordRead(this);
+        return content.toByteArray();
+    }
+
+    /**
+     * @return the content of the file, without loading it into a byte array.
+     */
+    public FileContent getFileContent() {
         return content;
     }
 
+    /**
+     * @return the name of the file followed by a dot and its extension, or just the name if it has no extension.
+     */
+    public String getFullName() {
+        String fileExtension = getExtension();
+        return fileExtension == null || fileExtension.isEmpty() ? getName() : getName() + "." + fileExtension;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the file content. It is computed on first use and cached, since the content
+     * only changes through the manager's appends, writes and truncations, which clear it.
+     * @return the content hash.
+     */
+    public byte[] getContentHash() {
+        byte[] hash = contentHash;
+        if (hash == null) {
+            MessageDigest digest = Digests.newDigest();
+            ByteBuffer buffer = content.asByteBuffer();
+            long hashedSize = buffer.remaining();
+            digest.update(buffer);
+            hash = digest.digest();
+            // Content appended while hashing must not be covered by a stale hash.
+            if (hashedSize == getSize()) {
+                contentHash = hash;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Writes bytes into the file at an offset, copying only the content blocks the write touches, and clears the
+     * file's content hash and the Merkle hashes above it. Called by
+     * {@link FileSystemManager#writeFile(File, long, byte[])}, which also charges the memory budget and tells
+     * listeners.
+     * @param offset where the first byte goes; writing past the end grows the file.
+     * @param bytes the bytes to write.
+     * @throws IllegalStateException if the file's content is not {@link BlockContent}.
+     */
+    void write(long offset, byte[] bytes) {
+        blockContent().write(offset, bytes);
+        contentChanged();
+    }
+
+    /**
+     * Sets the length of the file, dropping content past the new end or growing it with zeros. Called by
+     * {@link FileSystemManager#truncateFile(File, long)}.
+     * @param length the new length in bytes.
+     * @throws IllegalStateException if the file's content is not {@link BlockContent}.
+     */
+    void truncate(long length) {
+        blockContent().truncate(length);
+        contentChanged();
+    }
+
+    private BlockContent blockContent() {
+        if (!(content instanceof BlockContent blocks)) {
+            throw new IllegalStateException("File \"" + getFullName() + "\" does not have block content.");
+        }
+        return blocks;
+    }
+
+    private void contentChanged() {
+        contentHash = null;
+        if (getParent() != null) {
+            getParent().invalidateMerkleHash();
+        }
+    }
+
+    void invalidateContentHash() {
+        contentHash = null;
+    }
+
     public String getExtension() {
+        return extension == null ? null : extension.getValue();
+    }
+
+    /**
+     * @return the interned Name of the file extension, used for fast case-insensitive comparisons.
+     */
+    public Name getInternedExtension() {
         return extension;
     }
 
@@ -69,22 +217,28 @@ public class File extends FileSystemEntity {
     @Override
     public void setName(String name) {
         Folder parentFolder = getParent();
-        if (parentFolder != null && parentFolder.containsFileWithSameName(name, this.extension)) {
-            throw new IllegalArgumentException("A file with the name \""+name+"\" and extension \"" +this.extension+"\" already exists in the parent folder.");
+        if (parentFolder != null && parentFolder.containsFileWithSameName(Name.of(name), this.extension)) {
+            throw new IllegalArgumentException("A file with the name \""+name+"\" and extension \"" +getExtension()+"\" already exists in the parent folder.");
         }
         super.setName(name);
     }
 
+    /**
+     * Files are equal if they have the same name, extension and size, however their content is held. The hash
+     * code leaves the size out, since content can grow or shrink, so a file's hash code stays the same when it is
+     * appended to, written or truncated.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         File file = (File) o;
-        return size == file.size && Objects.equals(getName(), file.getName()) && Objects.equals(extension, file.extension);
+        // Names are interned, so equal names are the same Name object.
+        return getSize() == file.getSize() && getInternedName() == file.getInternedName() && extension == file.extension;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getName(), getSize(), getExtension());
+        return Objects.hash(getName(), getExtension());
     }
 }
@@ -0,0 +1,69 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The content of a {@link File}. Implementations decide where the bytes live, so a file can hold its
+ * content in a heap array or refer to bytes that are only read from somewhere else when needed.
+ * Content is immutable.
+ * @author Tshiamo
+ */
+public interface FileContent {
+
+    /**
+     * @return the number of bytes of content.
+     */
+    long size();
+
+    /**
+     * Returns the content as a byte array. Implementations backed by an array return that array itself, so
+     * callers must not modify it.
+     * @return the content bytes.
+     */
+    byte[] toByteArray();
+
+    /**
+     * Returns a read-only buffer over the content, without copying it where the backend allows.
+     * @return a buffer positioned at the start of the content.
+     */
+    ByteBuffer asByteBuffer();
+
+    /**
+     * Returns the first bytes of the content, reading no more of it than that where the backend allows. Unlike
+     * the full reads, this never keeps the content in memory or counts as an access to it, so scanning the
+     * starts of many files leaves caches as they were.
+     * @param length the most bytes wanted.
+     * @return a read-only buffer holding the first length bytes, or all of them if the content is shorter.
+     */
+    default ByteBuffer prefix(int length) {
+        ByteBuffer buffer = asByteBuffer();
+        if (buffer.remaining() > length) {
+            buffer.limit(buffer.position() + length);
+        }
+        return buffer;
+    }
+
+    /**
+     * Checks the content against the checksums recorded when it was written. Content that records none, such as
+     * content read on demand from somewhere else, always passes.
+     * @return false if the content has been corrupted.
+     */
+    default boolean verify() {
+        return true;
+    }
+
+    /**
+     * Returns content for a copied file. Content that cannot change can simply be shared.
+     * @return the content for the copy.
+     */
+    default FileContent copy() {
+        return this;
+    }
+
+    /**
+     * Returns content holding the bytes as they are now, to be shared with readers that must not see later
+     * changes, such as a replication log. Unlike {@link #copy()}, bytes that cannot change are never copied.
+     * @return the shared content.
+     */
+    default FileContent snapshot() {
+        return copy();
+    }
+}
@@ -2,15 +2,22 @@
  * @author Tshiamo
  */
 public abstract class FileSystemEntity {
-    private String name;
+    private Name name;
     private Folder parent;
 
     public FileSystemEntity(String name, Folder parent) {
-        this.name = name;
+        this.name = Name.of(name);
         this.parent = parent;
     }
 
     public String getName() {
+        return name == null ? null : name.getValue();
+    }
+
+    /**
+     * @return the interned Name of this entity, used for fast case-insensitive comparisons.
+     */
+    public Name getInternedName() {
         return name;
     }
 
@@ -28,7 +35,11 @@ public abstract class FileSystemEntity {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Name cannot be null or empty.");
         }
-        this.name = name;
+        this.name = Name.of(name);
+        if (parent != null) {
+            parent.childRenamed();
+            parent.invalidateMerkleHash();
+        }
     }
 
     public void setParent(Folder parent) {
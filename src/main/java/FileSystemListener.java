@@ -0,0 +1,62 @@
+/**
+ * Receives notifications about changes made to the tree through a {@link FileSystemManager}.
+ * Moves are reported as a create in the destination followed by a delete of the original, which
+ * is how the manager performs them. When a folder is created its whole subtree is attached with it,
+ * so {@link #folderCreated(Folder)} and {@link #folderDeleted(Folder)} are raised once for the top
+ * folder only. When the manager has a {@link SubtreeReclaimer}, the files beneath a deleted folder are
+ * reported later, one at a time, as they are reclaimed.
+ * @author Tshiamo
+ */
+public interface FileSystemListener {
+
+    default void fileCreated(File file) {
+    }
+
+    default void fileDeleted(File file) {
+    }
+
+    default void folderCreated(Folder folder) {
+    }
+
+    default void folderDeleted(Folder folder) {
+    }
+
+    /**
+     * Called after bytes have been appended to a file through {@link FileSystemManager#appendToFile(File, byte[])}.
+     */
+    default void fileAppended(File file) {
+    }
+
+    /**
+     * Called after a file has been written to through {@link FileSystemManager#writeFile(File, long, byte[])} or
+     * truncated through {@link FileSystemManager#truncateFile(File, long)}.
+     */
+    default void fileWritten(File file) {
+    }
+
+    /**
+     * Called after a file has been renamed through {@link FileSystemManager#renameFile(File, String)}.
+     * @param previousName the name the file had before, without its extension, which does not change.
+     */
+    default void fileRenamed(File file, String previousName) {
+    }
+
+    /**
+     * Called after a folder has been renamed through {@link FileSystemManager#renameFolder(Folder, String)}.
+     * @param previousName the name the folder had before.
+     */
+    default void folderRenamed(Folder folder, String previousName) {
+    }
+
+    /**
+     * Called from the reclaimer's thread for each file beneath a deleted folder once it has been reclaimed.
+     */
+    default void fileReclaimed(File file) {
+    }
+
+    /**
+     * Called from the reclaimer's thread once everything beneath a deleted folder has been reclaimed.
+     */
+    default void folderReclaimed(Folder folder) {
+    }
+}
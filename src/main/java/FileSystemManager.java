@@ -1,9 +1,20 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * @author Tshiamo
  */
 public class FileSystemManager {
 
     private Folder root;
+    private final List<FileSystemListener> listeners = new CopyOnWriteArrayList<>();
+    private MemoryBudget memoryBudget;
+    private SubtreeReclaimer reclaimer;
+    private volatile WorkloadRecorder recorder;
+    // Set on the thread making a recorded call, so the calls the manager makes to itself are not recorded.
+    private final ThreadLocal<Boolean> inRecordedCall = new ThreadLocal<>();
+    // Set on the thread making a call through runReserved, so only that call draws on the memory reserved for it.
+    private final ThreadLocal<Reservation> reservation = new ThreadLocal<>();
 
     public FileSystemManager() {
         this.root = new Folder("root", null);
@@ -13,6 +24,72 @@ public class FileSystemManager {
         return root;
     }
 
+    /**
+     * Registers a listener to be notified of every change made to the tree through this manager. Listeners may be
+     * added and removed from any thread, including while a {@link SubtreeReclaimer} is notifying them.
+     * @param listener the listener to register.
+     */
+    public void addListener(FileSystemListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener parameter cannot be null.");
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(FileSystemListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Accounts the memory held by this tree against a budget, which may hold back writes that do not fit.
+     * Only what is added after this call is charged.
+     * @param memoryBudget the budget to charge, or null to stop accounting.
+     */
+    public void setMemoryBudget(MemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Hands deleted folders to a background reclaimer instead of releasing everything beneath them straight
+     * away. The folder still disappears from the tree as soon as it is deleted, and listeners are still told
+     * through {@link FileSystemListener#folderDeleted(Folder)}, but the memory budget and listeners only learn
+     * about the entities beneath it as they are reclaimed.
+     * @param reclaimer the reclaimer to use, or null to reclaim deleted folders synchronously.
+     */
+    public void setReclaimer(SubtreeReclaimer reclaimer) {
+        this.reclaimer = reclaimer;
+    }
+
+    public SubtreeReclaimer getReclaimer() {
+        return reclaimer;
+    }
+
+    /**
+     * Records every call made to this manager that completes, without its content, so that the workload can be
+     * replayed by a {@link WorkloadReplayer}.
+     * @param recorder the recorder to write calls to, or null to stop recording.
+     */
+    public void setRecorder(WorkloadRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public WorkloadRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Starts a transaction that stages operations on this file system and applies them all or none of them
+     * when it is committed.
+     * @return a new transaction.
+     */
+    public FileSystemTransaction beginTransaction() {
+        return new FileSystemTransaction(this);
+    }
+
     // Methods for managing file
 
     /**
@@ -25,7 +102,21 @@ public class FileSystemManager {
         if (f == null) {
             throw new IllegalArgumentException("File parameter cannot be null.");
         }
-        File file = new File(f);
+        recorded(WorkloadRecorder.Operation.CREATE_FILE, f, f.getParent() != null ? f.getParent() : root, null,
+                f.getSize(), 0, () -> {
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("createFile");
+            File file = new File(f);
+            attachFile(file);
+            event.end(file, null, null);
+        });
+    }
+
+    /**
+     * Adds a file instance to its parent, or to the root if it has no parent, after checking that the parent
+     * belongs to this file system and that no sibling file shares its name and extension.
+     * @param file the File object to attach.
+     */
+    void attachFile(File file) {
         Folder fileParentFolder = file.getParent();
         if(fileParentFolder != null ){
             if(root.isParentOf(fileParentFolder)) {
@@ -33,7 +124,9 @@ public class FileSystemManager {
                 if (fileParentFolder.containsFileWithSameName(file.getName(), file.getExtension())) {
                     throw new IllegalArgumentException("A file with the same name and extension already exists in the target folder.");
                 }
+                acquireMemory(fileParentFolder, file);
                 fileParentFolder.addFile(file);
+                fireFileCreated(file);
             } else {
                 throw new IllegalArgumentException("Parent folder not part of the root hierarchy. Create the parent before creating the file.");
             }
@@ -42,7 +135,9 @@ public class FileSystemManager {
             if (root.containsFileWithSameName(file.getName(), file.getExtension())) {
                 throw new IllegalArgumentException("A file with the same name and extension already exists in the target folder.");
             }
+            acquireMemory(root, file);
             root.addFile(file);
+            fireFileCreated(file);
         }
     }
 
@@ -56,10 +151,122 @@ public class FileSystemManager {
         if (f == null) {
             throw new IllegalArgumentException("File parameter cannot be null.");
         }
-        Folder fileParentFolder = f.getParent();
-        if (fileParentFolder != null) {
-            fileParentFolder.getFiles().remove(f);
+        recorded(WorkloadRecorder.Operation.DELETE_FILE, f, null, null, f.getSize(), 0, () -> {
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("deleteFile");
+            Folder fileParentFolder = f.getParent();
+            if (fileParentFolder != null) {
+                List<File> files = fileParentFolder.getFiles();
+                int index = files.indexOf(f);
+                if (index >= 0) {
+                    File removed = files.remove(index);
+                    fileParentFolder.invalidateMerkleHash();
+                    releaseMemory(fileParentFolder, removed);
+                    fireFileDeleted(removed);
+                    event.end(removed, null, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends bytes to a file whose content is {@link AppendableContent}, charging the memory budget for them and
+     * clearing the file's content hash and the Merkle hashes above it. The file keeps its identity, so no copy
+     * of what is already there is made.
+     * @param f the File object to append to.
+     * @param bytes the bytes to append; the array is kept, not copied.
+     * @throws IllegalStateException if the file's content cannot be appended to, or the budget refuses the bytes.
+     */
+    public void appendToFile(File f, byte[] bytes) {
+        if (f == null || bytes == null) {
+            throw new IllegalArgumentException("File and bytes parameters cannot be null.");
         }
+        if (!(f.getFileContent() instanceof AppendableContent content)) {
+            throw new IllegalStateException("File \"" + f.getFullName() + "\" does not have appendable content.");
+        }
+        recorded(WorkloadRecorder.Operation.APPEND_TO_FILE, f, null, null, bytes.length, 0, () -> {
+            Folder parent = f.getParent();
+            acquireMemory(parent, bytes.length);
+            content.append(bytes);
+            f.invalidateContentHash();
+            if (parent != null) {
+                parent.invalidateMerkleHash();
+            }
+            fireFileAppended(f);
+        });
+    }
+
+    /**
+     * Writes bytes into a file whose content is {@link BlockContent}, charging the memory budget for the blocks
+     * the write adds, clearing the file's content hash and the Merkle hashes above it, and telling listeners.
+     * Only the blocks the write touches are copied.
+     * @param f the File object to write to.
+     * @param offset where the first byte goes; writing past the end grows the file.
+     * @param bytes the bytes to write.
+     * @throws IllegalStateException if the file's content is not block content, or the budget refuses the blocks.
+     */
+    public void writeFile(File f, long offset, byte[] bytes) {
+        if (f == null || bytes == null) {
+            throw new IllegalArgumentException("File and bytes parameters cannot be null.");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset cannot be negative.");
+        }
+        if (!(f.getFileContent() instanceof BlockContent content)) {
+            throw new IllegalStateException("File \"" + f.getFullName() + "\" does not have block content.");
+        }
+        recorded(WorkloadRecorder.Operation.WRITE_FILE, f, null, null, bytes.length, offset, () -> {
+            long added = content.heapSizeAddedBy(offset, bytes.length);
+            if (added > 0) {
+                acquireMemory(f.getParent(), added);
+            }
+            f.write(offset, bytes);
+            fireFileWritten(f);
+        });
+    }
+
+    /**
+     * Sets the length of a file whose content is {@link BlockContent}, releasing the memory of the blocks it drops,
+     * clearing the file's content hash and the Merkle hashes above it, and telling listeners. Growing the file
+     * adds a hole, which takes no memory.
+     * @param f the File object to truncate.
+     * @param length the new length in bytes.
+     * @throws IllegalStateException if the file's content is not block content.
+     */
+    public void truncateFile(File f, long length) {
+        if (f == null) {
+            throw new IllegalArgumentException("File parameter cannot be null.");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Length cannot be negative.");
+        }
+        if (!(f.getFileContent() instanceof BlockContent content)) {
+            throw new IllegalStateException("File \"" + f.getFullName() + "\" does not have block content.");
+        }
+        recorded(WorkloadRecorder.Operation.TRUNCATE_FILE, f, null, null, length, 0, () -> {
+            long before = content.heapSize();
+            f.truncate(length);
+            long released = before - content.heapSize();
+            if (released > 0 && memoryBudget != null) {
+                memoryBudget.release(f.getParent(), released);
+            }
+            fireFileWritten(f);
+        });
+    }
+
+    /**
+     * Renames a file and tells listeners, so that replicas and indexes follow the change. Renaming a file in the
+     * tree with {@link File#setName(String)} directly changes it without telling anyone.
+     * @param f the File object to rename.
+     * @param name the new name of the file.
+     * @throws IllegalArgumentException if the name is empty, or a sibling file already has the name and extension.
+     */
+    public void renameFile(File f, String name) {
+        if (f == null) {
+            throw new IllegalArgumentException("File parameter cannot be null.");
+        }
+        String previousName = f.getName();
+        f.setName(name);
+        fireFileRenamed(f, previousName);
     }
 
     /**
@@ -72,9 +279,13 @@ public class FileSystemManager {
         if (f == null || d == null) {
             throw new IllegalArgumentException("File and Folder parameter cannot be null.");
         }
-        File copiedFile = new File(f);
-        copiedFile.setParent(d);
-        createFile(copiedFile);
+        recorded(WorkloadRecorder.Operation.COPY_FILE, f, null, d, f.getSize(), 0, () -> {
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("copyFile");
+            File copiedFile = new File(f);
+            copiedFile.setParent(d);
+            createFile(copiedFile);
+            event.end(f, d, null);
+        });
     }
 
     /**
@@ -86,8 +297,12 @@ public class FileSystemManager {
         if (f == null || d == null) {
             throw new IllegalArgumentException("File and Folder parameter cannot be null.");
         }
-        copyFile(f, d);
-        deleteFile(f);
+        recorded(WorkloadRecorder.Operation.MOVE_FILE, f, null, d, f.getSize(), 0, () -> {
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("moveFile");
+            copyFile(f, d);
+            deleteFile(f);
+            event.end(f, d, null);
+        });
     }
 
 
@@ -100,14 +315,30 @@ public class FileSystemManager {
         if (f == null) {
             throw new IllegalArgumentException("Folder parameter cannot be null.");
         }
-        Folder folder = new Folder(f);
+        recorded(WorkloadRecorder.Operation.CREATE_FOLDER, f, f.getParent() != null ? f.getParent() : root, null,
+                0, 0, () -> {
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("createFolder");
+            Folder folder = new Folder(f);
+            attachFolder(folder);
+            event.end(folder, null, null);
+        });
+    }
+
+    /**
+     * Adds a folder instance to its parent, or to the root if it has no parent, after checking that the parent
+     * belongs to this file system and that no sibling folder shares its name.
+     * @param folder the Folder object to attach.
+     */
+    void attachFolder(Folder folder) {
         Folder folderParentFolder = folder.getParent();
         if(folderParentFolder != null) {
             if (root.isParentOf(folderParentFolder)) {
                 if (folderParentFolder.containsFolderWithSameName(folder.getName())) {
                     throw new IllegalArgumentException("A folder with the same name already exists in the target folder.");
                 }
+                acquireMemory(folderParentFolder, folder);
                 folderParentFolder.addFolder(folder);
+                fireFolderCreated(folder);
             } else {
                 throw new IllegalArgumentException("Parent folder not part of the root hierarchy. Create the parent before creating the folder.");
             }
@@ -116,27 +347,57 @@ public class FileSystemManager {
             if(root.containsFolderWithSameName(folder.getName())) {
                 throw new IllegalArgumentException("A folder with the same name already exists in the target folder.");
             }
+            acquireMemory(root, folder);
             root.addFolder(folder);
+            fireFolderCreated(folder);
+        }
+    }
+
+    /**
+     * Renames a folder and tells listeners, so that replicas and indexes follow the change. Renaming a folder in
+     * the tree with {@link Folder#setName(String)} directly changes it without telling anyone.
+     * @param f the Folder object to rename.
+     * @param name the new name of the folder.
+     * @throws IllegalArgumentException if the name is empty, or a sibling folder already has the name.
+     */
+    public void renameFolder(Folder f, String name) {
+        if (f == null) {
+            throw new IllegalArgumentException("Folder parameter cannot be null.");
         }
+        String previousName = f.getName();
+        f.setName(name);
+        fireFolderRenamed(f, previousName);
     }
 
     /**
      * This method deletes a folder in the file system. It works by removing references to the parent by removing
      * this folder from the list of folders in the parent directory. Finally, it sets the folder instance to ull.
+     * With a {@link SubtreeReclaimer} the folder is only detached here, which does not depend on the size of its
+     * subtree, and the subtree is released in the background.
      * @param f the Folder object representing the folder to be deleted.
      */
     public void deleteFolder(Folder f) {
         if (f == null) {
             throw new IllegalArgumentException("Folder parameter cannot be null.");
         }
-        if (f.getParent() != null) {
-            f.getParent().getFolders().remove(f);
-        }
+        recorded(WorkloadRecorder.Operation.DELETE_FOLDER, f, null, null, 0, 0, () -> {
+            if (f.getParent() != null && f.getParent().getFolders().remove(f)) {
+                f.getParent().invalidateMerkleHash();
+                if (reclaimer != null) {
+                    fireFolderDeleted(f);
+                    reclaimer.submit(this, f);
+                } else {
+                    releaseMemory(f.getParent(), f);
+                    fireFolderDeleted(f);
+                }
+            }
+        });
     }
 
     /**
-     * This method copies a folder to a destination folder. It works by  creating a new instance of the original Folder
-     * object in the destination Folder.
+     * This method copies a folder to a destination folder. It works by creating a new instance of the original Folder
+     * object in the destination Folder, along with new instances of every file and folder beneath it, so that the copy
+     * shares no children with the original and every copied entity points at its copied parent.
      * @param f a Folder object representing the folder to be copied.
      * @param d a Folder object representing the destination folder.
      */
@@ -144,9 +405,56 @@ public class FileSystemManager {
         if (f == null || d == null) {
             throw new IllegalArgumentException("Folder parameters cannot be null.");
         }
-        Folder copiedFolder = new Folder(f);
+        recorded(WorkloadRecorder.Operation.COPY_FOLDER, f, null, d, 0, 0, () -> {
+            FileSystemOperationEvent event = FileSystemOperationEvent.begin("copyFolder");
+            Folder copiedFolder = attachCopy(f, d);
+            event.end(f, d, copiedFolder);
+        });
+    }
+
+    /**
+     * Copies a folder and everything beneath it into a destination folder.
+     * @return the attached copy.
+     */
+    private Folder attachCopy(Folder f, Folder d) {
+        Folder copiedFolder = copyTree(f);
         copiedFolder.setParent(d);
-        createFolder(copiedFolder);
+        attachFolder(copiedFolder);
+        return copiedFolder;
+    }
+
+    /**
+     * Creates a detached copy of a folder and everything beneath it.
+     * @param f the Folder object to copy.
+     * @return the copied folder, with no parent.
+     */
+    static Folder copyTree(Folder f) {
+        return copyTree(f, false);
+    }
+
+    /**
+     * Creates a detached copy of a folder and everything beneath it whose files share their content, as it is
+     * now, with the originals, through {@link FileContent#snapshot()}.
+     * @param f the Folder object to copy.
+     * @return the copied folder, with no parent.
+     */
+    static Folder snapshotTree(Folder f) {
+        return copyTree(f, true);
+    }
+
+    private static Folder copyTree(Folder f, boolean snapshot) {
+        Folder copy = new Folder(f.getName(), null);
+        for (File file : f.getFiles()) {
+            File copiedFile = snapshot ? File.snapshotOf(file) : new File(file);
+            copiedFile.setParent(copy);
+            copy.getFiles().add(copiedFile);
+        }
+        for (Folder folder : f.getFolders()) {
+            Folder copiedFolder = copyTree(folder, snapshot);
+            copiedFolder.setParent(copy);
+            copy.getFolders().add(copiedFolder);
+        }
+        return copy;
     }
 
     /**
@@ -158,11 +466,234 @@ public class FileSystemManager {
         if (f == null || d == null) {
             throw new IllegalArgumentException("Folder parameters cannot be null.");
         }
-        if(f.isParentOf(d)) {
-            throw new IllegalStateException("Illegal operation: Cannot move a folder into its subfolder.");
-        } else {
-            copyFolder(f, d);
-            deleteFolder(f);
+        recorded(WorkloadRecorder.Operation.MOVE_FOLDER, f, null, d, 0, 0, () -> {
+            if(f.isParentOf(d)) {
+                throw new IllegalStateException("Illegal operation: Cannot move a folder into its subfolder.");
+            } else {
+                FileSystemOperationEvent event = FileSystemOperationEvent.begin("moveFolder");
+                Folder movedFolder = attachCopy(f, d);
+                deleteFolder(f);
+                event.end(f, d, movedFolder);
+            }
+        });
+    }
+
+    /**
+     * Makes a call and, if calls are being recorded, records it once it completes. Calls the manager makes to
+     * itself while it runs, like the copy and delete of a move, are part of it and are not recorded on their own,
+     * and neither are calls that fail or that act on an entity outside any tree.
+     * @param entity the file or folder the call acts on.
+     * @param parent for a create, the folder the entity is created in; otherwise null, and the path the entity has
+     *               before the call is recorded.
+     * @param destination the destination folder of a copy or move, or null.
+     * @param size the bytes the call creates, appends, writes, copies, moves or deletes, or the new length.
+     * @param offset where a write starts, or 0.
+     */
+    private void recorded(WorkloadRecorder.Operation operation, FileSystemEntity entity, Folder parent,
+                          Folder destination, long size, long offset, Runnable call) {
+        WorkloadRecorder recorder = this.recorder;
+        if (recorder == null || inRecordedCall.get() != null || (parent == null && entity.getParent() == null)) {
+            call.run();
+            return;
+        }
+        long started = System.nanoTime();
+        String path = parent != null ? WorkloadRecorder.pathOf(parent, entity) : OperationLog.pathOf(entity);
+        FileContent content = operation == WorkloadRecorder.Operation.CREATE_FILE ? ((File) entity).getFileContent()
+                : null;
+        record(recorder, operation, path, destination, size, offset, content instanceof AppendableContent,
+                content instanceof BlockContent, started, call);
+    }
+
+    /**
+     * Attaches a copy of a folder that a caller built itself, outside the manager, and deletes the source if it is
+     * a move. The call is recorded and reported to Flight Recorder like {@link #copyFolder(Folder, Folder)} or
+     * {@link #moveFolder(Folder, Folder)} would be.
+     * @param f the folder that was copied.
+     * @param d the destination folder, which is already the parent of the copy.
+     * @param copy the detached copy of the folder.
+     * @param move whether the folder is deleted once its copy is attached.
+     * @param path the path of the source folder before the call.
+     * @param startedNanos the {@link System#nanoTime()} at which the caller started the call.
+     * @param event the event the caller began when it started the call.
+     */
+    void attachCopy(Folder f, Folder d, Folder copy, boolean move, String path, long startedNanos,
+                    FileSystemOperationEvent event) {
+        Runnable call = () -> {
+            attachFolder(copy);
+            if (move) {
+                deleteFolder(f);
+            }
+            event.end(f, d, copy);
+        };
+        WorkloadRecorder recorder = this.recorder;
+        if (recorder == null || inRecordedCall.get() != null) {
+            call.run();
+            return;
+        }
+        record(recorder, move ? WorkloadRecorder.Operation.MOVE_FOLDER : WorkloadRecorder.Operation.COPY_FOLDER, path,
+                d, 0, 0, false, false, startedNanos, call);
+    }
+
+    private void record(WorkloadRecorder recorder, WorkloadRecorder.Operation operation, String path,
+                        Folder destination, long size, long offset, boolean appendable, boolean blocks,
+                        long startedNanos, Runnable call) {
+        inRecordedCall.set(Boolean.TRUE);
+        try {
+            call.run();
+        } finally {
+            inRecordedCall.remove();
+        }
+        recorder.record(operation, startedNanos, path, destination == null ? null : OperationLog.pathOf(destination),
+                size, offset, appendable, blocks);
+    }
+
+    /**
+     * Charges the memory budget, if there is one, for an entity about to be added beneath a folder.
+     * @throws IllegalStateException if the budget refuses the write.
+     */
+    void acquireMemory(Folder parent, FileSystemEntity entity) {
+        if (memoryBudget != null) {
+            acquireMemory(parent, MemoryBudget.costOf(entity));
+        }
+    }
+
+    /**
+     * Charges the memory budget, if there is one, for bytes about to be added beneath a folder, drawing first on
+     * memory reserved by {@link #runReserved(Folder, long, Runnable)}.
+     * @throws IllegalStateException if the budget refuses the write.
+     */
+    void acquireMemory(Folder parent, long bytes) {
+        if (memoryBudget == null) {
+            return;
+        }
+        Reservation reserved = reservation.get();
+        if (reserved == null) {
+            memoryBudget.acquire(parent, bytes);
+            return;
+        }
+        if (parent == reserved.parent) {
+            long drawn = Math.min(bytes, reserved.bytes);
+            reserved.bytes -= drawn;
+            bytes -= drawn;
+        }
+        if (bytes > 0) {
+            memoryBudget.acquire(parent, bytes, false);
+        }
+    }
+
+    /**
+     * Makes a call whose memory the caller has already acquired from the budget beneath a folder, so that the call
+     * does not wait for the budget while the caller holds a lock that releasing writes need too. What the call
+     * needs beyond the reservation is rejected rather than waited for, and what it does not use is released. The
+     * reservation belongs to the calling thread, so calls made meanwhile on other threads neither draw on it nor
+     * stop waiting for the budget.
+     * @param parent the folder the memory was acquired beneath.
+     * @param bytes the bytes acquired.
+     * @param call the call to make.
+     */
+    void runReserved(Folder parent, long bytes, Runnable call) {
+        Reservation outer = reservation.get();
+        Reservation reserved = new Reservation(parent, bytes);
+        reservation.set(reserved);
+        try {
+            call.run();
+        } finally {
+            if (outer != null) {
+                reservation.set(outer);
+            } else {
+                reservation.remove();
+            }
+            if (reserved.bytes > 0 && memoryBudget != null) {
+                memoryBudget.release(parent, reserved.bytes);
+            }
+        }
+    }
+
+    /**
+     * Memory acquired beneath a folder ahead of a call, and how much of it the call has not drawn on yet.
+     */
+    private static final class Reservation {
+        private final Folder parent;
+        private long bytes;
+
+        private Reservation(Folder parent, long bytes) {
+            this.parent = parent;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Charges the memory budget, if there is one, without letting it refuse.
+     */
+    void chargeMemory(Folder parent, FileSystemEntity entity) {
+        if (memoryBudget != null) {
+            memoryBudget.charge(parent, MemoryBudget.costOf(entity));
+        }
+    }
+
+    void releaseMemory(Folder parent, FileSystemEntity entity) {
+        if (memoryBudget != null) {
+            memoryBudget.release(parent, MemoryBudget.costOf(entity));
+        }
+    }
+
+    void fireFileCreated(File file) {
+        for (FileSystemListener listener : listeners) {
+            listener.fileCreated(file);
+        }
+    }
+
+    void fireFileDeleted(File file) {
+        for (FileSystemListener listener : listeners) {
+            listener.fileDeleted(file);
+        }
+    }
+
+    void fireFolderCreated(Folder folder) {
+        for (FileSystemListener listener : listeners) {
+            listener.folderCreated(folder);
+        }
+    }
+
+    void fireFolderDeleted(Folder folder) {
+        for (FileSystemListener listener : listeners) {
+            listener.folderDeleted(folder);
+        }
+    }
+
+    void fireFileReclaimed(File file) {
+        for (FileSystemListener listener : listeners) {
+            listener.fileReclaimed(file);
+        }
+    }
+
+    void fireFileAppended(File file) {
+        for (FileSystemListener listener : listeners) {
+            listener.fileAppended(file);
+        }
+    }
+
+    void fireFileWritten(File file) {
+        for (FileSystemListener listener : listeners) {
+            listener.fileWritten(file);
+        }
+    }
+
+    void fireFileRenamed(File file, String previousName) {
+        for (FileSystemListener listener : listeners) {
+            listener.fileRenamed(file, previousName);
+        }
+    }
+
+    void fireFolderRenamed(Folder folder, String previousName) {
+        for (FileSystemListener listener : listeners) {
+            listener.folderRenamed(folder, previousName);
+        }
+    }
+
+    void fireFolderReclaimed(Folder folder) {
+        for (FileSystemListener listener : listeners) {
+            listener.folderReclaimed(folder);
         }
     }
 }
@@ -0,0 +1,103 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for an operation of a {@link FileSystemManager}, so that slow operations can be
+ * lined up with garbage collection and allocation in the same recording. The event is named
+ * {@code filesystem.Operation}, and like any JFR event it is only recorded while a recording enables it and only
+ * committed when the operation takes at least its threshold, 1 ms unless the recording's settings say otherwise.
+ * <p>
+ * The path, bytes and nodes are only worked out for events that are about to be committed, so when no recording
+ * is running an operation pays for little more than an enabled check. The nodes of a folder operation are those
+ * of the whole subtree, which is walked again to count them; a copied or moved folder is measured by its copy, since the original may be
+ * dismantled by a {@link SubtreeReclaimer} as soon as it is deleted.
+ * @author Tshiamo
+ */
+@jdk.jfr.Name(FileSystemOperationEvent.NAME)
+@Label("File System Operation")
+@Category("File System")
+@Description("An operation on the tree of a file system manager")
+@Threshold("1 ms")
+@StackTrace(false)
+final class FileSystemOperationEvent extends Event {
+
+    static final String NAME = "filesystem.Operation";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    @Description("Path of the file or folder operated on")
+    String path;
+
+    @Label("Destination")
+    @Description("Path of the destination folder of a copy or move")
+    String destination;
+
+    @Label("Bytes")
+    @Description("Bytes of file content created, deleted, copied or moved")
+    @DataAmount
+    long bytes;
+
+    @Label("Nodes")
+    @Description("Files and folders created, deleted, copied or moved")
+    long nodes;
+
+    private FileSystemOperationEvent(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Starts timing an operation.
+     * @param operation the name of the manager method.
+     * @return the event, to be passed the entity operated on when the operation completes.
+     */
+    static FileSystemOperationEvent begin(String operation) {
+        FileSystemOperationEvent event = new FileSystemOperationEvent(operation);
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event if it is enabled and the operation took at least the threshold. A deleted or moved
+     * entity keeps its parent, so its path is still the one it had before the operation.
+     * @param entity the file or folder operated on, or the one created.
+     * @param destination the destination folder of a copy or move, or null.
+     * @param copy the copy made of a folder, which is measured in its place, or null.
+     */
+    void end(FileSystemEntity entity, Folder destination, Folder copy) {
+        if (!isEnabled()) {
+            return;
+        }
+        end();
+        if (shouldCommit()) {
+            path = OperationLog.pathOf(entity);
+            this.destination = destination == null ? null : OperationLog.pathOf(destination);
+            if (copy != null) {
+                measure(copy);
+            } else if (entity instanceof Folder folder) {
+                measure(folder);
+            } else {
+                bytes = ((File) entity).getSize();
+                nodes = 1;
+            }
+            commit();
+        }
+    }
+
+    private void measure(Folder folder) {
+        nodes++;
+        for (File file : folder.getFiles()) {
+            bytes += file.getSize();
+            nodes++;
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            measure(subFolder);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stages a sequence of {@link FileSystemManager} operations and applies them atomically.
+ * Nothing changes until {@link #commit()}, which first validates every staged operation against the tree
+ * as it will be at that point in the sequence, and only then applies them. If validation fails, the tree is
+ * left untouched; if applying fails part way, the operations already applied are rolled back.
+ * Validation keeps one name set per target folder, built once from the folder's children, so a large
+ * transaction checks each operation in constant time instead of scanning the target folder every time.
+ * A file or folder created or moved earlier in the same transaction is referred to by the same File or Folder
+ * object that was given to that operation, so later operations act on the instance the transaction inserted.
+ * Folder copies are filled in as their step is applied, so they hold whatever earlier operations added to
+ * the source, as if every operation ran in order.
+ * @author Tshiamo
+ */
+public class FileSystemTransaction {
+
+    private enum Kind { CREATE_FILE, DELETE_FILE, COPY_FILE, MOVE_FILE, CREATE_FOLDER, DELETE_FOLDER, COPY_FOLDER, MOVE_FOLDER }
+
+    private final FileSystemManager manager;
+    private final List<Staged> staged = new ArrayList<>();
+    private boolean finished;
+
+    FileSystemTransaction(FileSystemManager manager) {
+        this.manager = manager;
+    }
+
+    public FileSystemTransaction createFile(File f) {
+        if (f == null) {
+            throw new IllegalArgumentException("File parameter cannot be null.");
+        }
+        return stage(Kind.CREATE_FILE, f, null);
+    }
+
+    public FileSystemTransaction deleteFile(File f) {
+        if (f == null) {
+            throw new IllegalArgumentException("File parameter cannot be null.");
+        }
+        return stage(Kind.DELETE_FILE, f, null);
+    }
+
+    public FileSystemTransaction copyFile(File f, Folder d) {
+        if (f == null || d == null) {
+            throw new IllegalArgumentException("File and Folder parameter cannot be null.");
+        }
+        return stage(Kind.COPY_FILE, f, d);
+    }
+
+    public FileSystemTransaction moveFile(File f, Folder d) {
+        if (f == null || d == null) {
+            throw new IllegalArgumentException("File and Folder parameter cannot be null.");
+        }
+        return stage(Kind.MOVE_FILE, f, d);
+    }
+
+    public FileSystemTransaction createFolder(Folder f) {
+        if (f == null) {
+            throw new IllegalArgumentException("Folder parameter cannot be null.");
+        }
+        return stage(Kind.CREATE_FOLDER, f, null);
+    }
+
+    public FileSystemTransaction deleteFolder(Folder f) {
+        if (f == null) {
+            throw new IllegalArgumentException("Folder parameter cannot be null.");
+        }
+        return stage(Kind.DELETE_FOLDER, f, null);
+    }
+
+    public FileSystemTransaction copyFolder(Folder f, Folder d) {
+        if (f == null || d == null) {
+            throw new IllegalArgumentException("Folder parameters cannot be null.");
+        }
+        return stage(Kind.COPY_FOLDER, f, d);
+    }
+
+    public FileSystemTransaction moveFolder(Folder f, Folder d) {
+        if (f == null || d == null) {
+            throw new IllegalArgumentException("Folder parameters cannot be null.");
+        }
+        return stage(Kind.MOVE_FOLDER, f, d);
+    }
+
+    /**
+     * @return the number of operations staged so far.
+     */
+    public int size() {
+        return staged.size();
+    }
+
+    /**
+     * Validates and applies every staged operation, or none of them.
+     * @throws IllegalArgumentException if an operation would fail, with the same message the manager would give.
+     * @throws IllegalStateException if a folder would be moved into its own subfolder, or the transaction is already finished.
+     */
+    public void commit() {
+        checkNotFinished();
+        finished = true;
+        List<Step> steps = plan();
+        new Validation().run(steps);
+        apply(steps);
+    }
+
+    /**
+     * Discards every staged operation without applying any of them.
+     */
+    public void rollback() {
+        checkNotFinished();
+        finished = true;
+        staged.clear();
+    }
+
+    private FileSystemTransaction stage(Kind kind, FileSystemEntity entity, Folder destination) {
+        checkNotFinished();
+        staged.add(new Staged(kind, entity, destination));
+        return this;
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("Transaction has already been committed or rolled back.");
+        }
+    }
+
+    /**
+     * Expands the staged operations into primitive add and remove steps, making the instances that will be
+     * inserted. Every entity an operation names is first mapped to the instance the transaction has put in its
+     * place, if any. Folder copies are only empty shells here and are filled when applied.
+     */
+    private List<Step> plan() {
+        Map<FileSystemEntity, FileSystemEntity> inserted = new IdentityHashMap<>();
+        List<Step> steps = new ArrayList<>();
+        for (Staged op : staged) {
+            FileSystemEntity entity = inserted.getOrDefault(op.entity, op.entity);
+            Folder destination = op.destination == null ? null : (Folder) inserted.getOrDefault(op.destination, op.destination);
+            switch (op.kind) {
+                case CREATE_FILE -> {
+                    File file = new File((File) entity);
+                    Folder parent = file.getParent() == null ? manager.getRoot() : (Folder) inserted.getOrDefault(file.getParent(), file.getParent());
+                    file.setParent(parent);
+                    inserted.put(op.entity, file);
+                    steps.add(Step.addFile(file, op));
+                }
+                case COPY_FILE, MOVE_FILE -> {
+                    File file = new File((File) entity);
+                    file.setParent(destination);
+                    steps.add(Step.addFile(file, op));
+                    if (op.kind == Kind.MOVE_FILE) {
+                        steps.add(Step.removeFile((File) entity, op));
+                        inserted.put(op.entity, file);
+                    }
+                }
+                case DELETE_FILE -> steps.add(Step.removeFile((File) entity, op));
+                case CREATE_FOLDER -> {
+                    Folder folder = new Folder((Folder) entity);
+                    Folder parent = folder.getParent() == null ? manager.getRoot() : (Folder) inserted.getOrDefault(folder.getParent(), folder.getParent());
+                    folder.setParent(parent);
+                    inserted.put(op.entity, folder);
+                    steps.add(Step.addFolder(folder, null, op));
+                }
+                case COPY_FOLDER, MOVE_FOLDER -> {
+                    Folder source = (Folder) entity;
+                    Folder folder = new Folder(source.getName(), null);
+                    folder.setParent(destination);
+                    steps.add(Step.addFolder(folder, source, op));
+                    if (op.kind == Kind.MOVE_FOLDER) {
+                        steps.add(Step.removeFolder(source, op));
+                        inserted.put(op.entity, folder);
+                    }
+                }
+                case DELETE_FOLDER -> steps.add(Step.removeFolder((Folder) entity, op));
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Applies the steps, undoing those already applied if one fails. With a {@link SubtreeReclaimer}, folders taken
+     * out of the tree are only detached, as {@link FileSystemManager#deleteFolder(Folder)} does, and handed to the
+     * reclaimer once the outcome is known, so a folder put back by the rollback is never reclaimed.
+     */
+    private void apply(List<Step> steps) {
+        Deque<Runnable> undo = new ArrayDeque<>();
+        List<Folder> detached = new ArrayList<>();
+        try {
+            for (Step step : steps) {
+                step.apply(manager, undo, detached);
+            }
+        } catch (RuntimeException e) {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+            throw e;
+        } finally {
+            for (Folder folder : detached) {
+                manager.getReclaimer().submit(manager, folder);
+            }
+        }
+    }
+
+    private static final class Staged {
+        private final Kind kind;
+        private final FileSystemEntity entity;
+        private final Folder destination;
+
+        private Staged(Kind kind, FileSystemEntity entity, Folder destination) {
+            this.kind = kind;
+            this.entity = entity;
+            this.destination = destination;
+        }
+    }
+
+    /**
+     * A primitive change: adding a new file or folder instance to its parent, or removing one from its parent.
+     * A folder added as a copy has a source, whose children are copied into it when the step is applied.
+     */
+    private static final class Step {
+        private final boolean add;
+        private final File file;
+        private final Folder folder;
+        private final Folder source;
+        private final Staged op;
+
+        private Step(boolean add, File file, Folder folder, Folder source, Staged op) {
+            this.add = add;
+            this.file = file;
+            this.folder = folder;
+            this.source = source;
+            this.op = op;
+        }
+
+        static Step addFile(File file, Staged op) {
+            return new Step(true, file, null, null, op);
+        }
+
+        static Step removeFile(File file, Staged op) {
+            return new Step(false, file, null, null, op);
+        }
+
+        static Step addFolder(Folder folder, Folder source, Staged op) {
+            return new Step(true, null, folder, source, op);
+        }
+
+        static Step removeFolder(Folder folder, Staged op) {
+            return new Step(false, null, folder, null, op);
+        }
+
+        /**
+         * Copies the source's children into the copy as it is at this point in the transaction.
+         */
+        private void fillCopy() {
+            for (File sourceFile : source.getFiles()) {
+                File copiedFile = new File(sourceFile);
+                copiedFile.setParent(folder);
+                folder.getFiles().add(copiedFile);
+            }
+            for (Folder sourceFolder : source.getFolders()) {
+                Folder copiedFolder = FileSystemManager.copyTree(sourceFolder);
+                copiedFolder.setParent(folder);
+                folder.getFolders().add(copiedFolder);
+            }
+        }
+
+        /**
+         * @param detached folders taken out of the tree for the manager's reclaimer, which the step and its undo
+         *                 add to or take back from.
+         */
+        void apply(FileSystemManager manager, Deque<Runnable> undo, List<Folder> detached) {
+            boolean reclaimed = manager.getReclaimer() != null;
+            Folder parent = file != null ? file.getParent() : folder.getParent();
+            if (parent == null) {
+                return;
+            }
+            if (file != null) {
+                List<File> files = parent.getFiles();
+                if (add) {
+                    manager.acquireMemory(parent, file);
+                    files.add(file);
+                    parent.invalidateMerkleHash();
+                    undo.push(() -> {
+                        files.remove(files.lastIndexOf(file));
+                        parent.invalidateMerkleHash();
+                        manager.releaseMemory(parent, file);
+                        manager.fireFileDeleted(file);
+                    });
+                    manager.fireFileCreated(file);
+                } else {
+                    int index = files.indexOf(file);
+                    if (index >= 0) {
+                        File removed = files.remove(index);
+                        parent.invalidateMerkleHash();
+                        manager.releaseMemory(parent, removed);
+                        undo.push(() -> {
+                            files.add(index, removed);
+                            parent.invalidateMerkleHash();
+                            manager.chargeMemory(parent, removed);
+                            manager.fireFileCreated(removed);
+                        });
+                        manager.fireFileDeleted(removed);
+                    }
+                }
+            } else {
+                List<Folder> folders = parent.getFolders();
+                if (add) {
+                    if (source != null) {
+                        fillCopy();
+                    }
+                    manager.acquireMemory(parent, folder);
+                    folders.add(folder);
+                    parent.invalidateMerkleHash();
+                    undo.push(() -> {
+                        folders.remove(folders.lastIndexOf(folder));
+                        parent.invalidateMerkleHash();
+                        if (reclaimed) {
+                            detached.add(folder);
+                        } else {
+                            manager.releaseMemory(parent, folder);
+                        }
+                        manager.fireFolderDeleted(folder);
+                    });
+                    manager.fireFolderCreated(folder);
+                } else {
+                    int index = folders.indexOf(folder);
+                    if (index >= 0) {
+                        folders.remove(index);
+                        parent.invalidateMerkleHash();
+                        if (reclaimed) {
+                            detached.add(folder);
+                        } else {
+                            manager.releaseMemory(parent, folder);
+                        }
+                        undo.push(() -> {
+                            folders.add(index, folder);
+                            parent.invalidateMerkleHash();
+                            if (reclaimed) {
+                                detached.remove(detached.lastIndexOf(folder));
+                            } else {
+                                manager.chargeMemory(parent, folder);
+                            }
+                            manager.fireFolderCreated(folder);
+                        });
+                        manager.fireFolderDeleted(folder);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replays the steps against a shadow of the affected folders' names, without touching the tree.
+     */
+    private final class Validation {
+        private final Map<Folder, Set<FileKey>> fileNames = new IdentityHashMap<>();
+        private final Map<Folder, Set<Name>> folderNames = new IdentityHashMap<>();
+        private final Set<Folder> removedFolders = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Folder> pendingFolders = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<File> removedFiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<File> addedFiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Folder> addedFolders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        void run(List<Step> steps) {
+            for (Step step : steps) {
+                if (step.add && step.folder != null) {
+                    pendingFolders.add(step.folder);
+                }
+            }
+            for (Step step : steps) {
+                if (step.file != null) {
+                    validateFile(step);
+                } else {
+                    validateFolder(step);
+                }
+            }
+        }
+
+        private void validateFile(Step step) {
+            Folder parent = step.file.getParent();
+            if (step.add) {
+                if (!isAttached(parent)) {
+                    throw new IllegalArgumentException("Parent folder not part of the root hierarchy. Create the parent before creating the file.");
+                }
+                if (!filesOf(parent).add(new FileKey(step.file))) {
+                    throw new IllegalArgumentException("A file with the same name and extension already exists in the target folder.");
+                }
+                addedFiles.add(step.file);
+            } else if (parent != null && removedFiles.add(step.file)
+                    && (addedFiles.contains(step.file) || parent.getFiles().contains(step.file))) {
+                filesOf(parent).remove(new FileKey(step.file));
+            }
+        }
+
+        private void validateFolder(Step step) {
+            Folder parent = step.folder.getParent();
+            if (step.add) {
+                if (step.op.kind == Kind.MOVE_FOLDER && step.source.isParentOf(parent)) {
+                    throw new IllegalStateException("Illegal operation: Cannot move a folder into its subfolder.");
+                }
+                if (!isAttached(parent)) {
+                    throw new IllegalArgumentException("Parent folder not part of the root hierarchy. Create the parent before creating the folder.");
+                }
+                if (!foldersOf(parent).add(step.folder.getInternedName().getFolded())) {
+                    throw new IllegalArgumentException("A folder with the same name already exists in the target folder.");
+                }
+                pendingFolders.remove(step.folder);
+                addedFolders.add(step.folder);
+            } else if (parent != null && removedFolders.add(step.folder)
+                    && (addedFolders.contains(step.folder) || parent.getFolders().contains(step.folder))) {
+                foldersOf(parent).remove(step.folder.getInternedName().getFolded());
+            }
+        }
+
+        /**
+         * Checks that a folder will be part of the root hierarchy at this point in the transaction.
+         */
+        private boolean isAttached(Folder folder) {
+            Folder root = manager.getRoot();
+            for (Folder current = folder; current != null; current = current.getParent()) {
+                if (removedFolders.contains(current) || pendingFolders.contains(current)) {
+                    return false;
+                }
+                if (current == root) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Set<FileKey> filesOf(Folder folder) {
+            return fileNames.computeIfAbsent(folder, f -> {
+                Set<FileKey> names = new HashSet<>();
+                for (File file : f.getFiles()) {
+                    names.add(new FileKey(file));
+                }
+                return names;
+            });
+        }
+
+        private Set<Name> foldersOf(Folder folder) {
+            return folderNames.computeIfAbsent(folder, f -> {
+                Set<Name> names = new HashSet<>();
+                for (Folder subFolder : f.getFolders()) {
+                    names.add(subFolder.getInternedName().getFolded());
+                }
+                return names;
+            });
+        }
+    }
+
+    /**
+     * The case-folded name and extension of a file, as compared by {@link Folder#containsFileWithSameName(Name, Name)}.
+     */
+    private record FileKey(Name name, Name extension) {
+        FileKey(File file) {
+            this(file.getInternedName().getFolded(), file.getInternedExtension().getFolded());
+        }
+    }
+}
@@ -1,12 +1,22 @@
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * @author Tshiamo
  */
 public class Folder extends FileSystemEntity {
-    private List<File> files;
-    private List<Folder> folders;
+    private static final Function<File, String> FILE_KEY = file -> Name.fold(file.getFullName());
+    private static final Function<Folder, String> FOLDER_KEY = folder -> Name.fold(folder.getName());
+
+    private Children<File> files;
+    private Children<Folder> folders;
+    private volatile byte[] merkleHash;
 
     /**
      * Folder constructor
@@ -16,8 +26,8 @@ public class Folder extends FileSystemEntity {
      */
     public Folder(String name, Folder parent) {
         super(name, parent);
-        this.files = new ArrayList<>();
-        this.folders = new ArrayList<>();
+        this.files = new Children<>(FILE_KEY);
+        this.folders = new Children<>(FOLDER_KEY);
         if (parent != null) {
             parent.addFolder(this);
         }
@@ -30,8 +40,8 @@ public class Folder extends FileSystemEntity {
      */
     public Folder(Folder f) {
         super(f.getName(), f.getParent());
-        this.files = new ArrayList<>(f.getFiles());
-        this.folders = new ArrayList<>(f.getFolders());
+        this.files = new Children<>(f.getFiles(), FILE_KEY);
+        this.folders = new Children<>(f.getFolders(), FOLDER_KEY);
     }
 
     public List<File> getFiles() {
@@ -42,12 +52,20 @@ public class Folder extends FileSystemEntity {
         return folders;
     }
 
+    /**
+     * Replaces the folder's files with a copy of the given list.
+     */
     public void setFiles(List<File> files) {
-        this.files = files;
+        this.files = new Children<>(files, FILE_KEY);
+        invalidateMerkleHash();
     }
 
+    /**
+     * Replaces the folder's sub-folders with a copy of the given list.
+     */
     public void setFolders(List<Folder> folders) {
-        this.folders = folders;
+        this.folders = new Children<>(folders, FOLDER_KEY);
+        invalidateMerkleHash();
     }
 
     /**
@@ -57,12 +75,11 @@ public class Folder extends FileSystemEntity {
      * @throws IllegalArgumentException if a file with the same name and extension already exists in the folder.
      */
     public void addFile(File file) {
-        String fileName = file.getName();
-        String fileExtension = file.getExtension();
-        if (containsFileWithSameName(fileName, fileExtension)) {
-            throw new IllegalArgumentException("A file with the name \""+fileName+"\" and extension \""+fileExtension+"\" already exists in this folder.");
+        if (containsFileWithSameName(file.getInternedName(), file.getInternedExtension())) {
+            throw new IllegalArgumentException("A file with the name \""+file.getName()+"\" and extension \""+file.getExtension()+"\" already exists in this folder.");
         } else {
             files.add(file);
+            invalidateMerkleHash();
         }
     }
 
@@ -73,16 +90,35 @@ public class Folder extends FileSystemEntity {
      *  @throws IllegalArgumentException if a folder with the same name already exists in the current folder.
      */
     public void addFolder(Folder folder) {
-        String folderName = folder.getName();
-        if(containsFolderWithSameName(folderName)) {
-            throw new IllegalArgumentException("A folder with the name \""+folderName+"\" already exists in this folder.");
+        if(containsFolderWithSameName(folder.getInternedName())) {
+            throw new IllegalArgumentException("A folder with the name \""+folder.getName()+"\" already exists in this folder.");
         }
         folders.add(folder);
+        invalidateMerkleHash();
     }
 
     public boolean containsFileWithSameName(String name, String extension) {
+        return containsFileWithSameName(Name.of(name), Name.of(extension));
+    }
+
+    /**
+     * Checks, ignoring case, whether a file with the given name and extension exists in this folder.
+     * Interned names share their case-folded form, so each check is a reference comparison.
+     * @param name the interned name of the file.
+     * @param extension the interned extension of the file.
+     * @return true if such a file exists.
+     */
+    public boolean containsFileWithSameName(Name name, Name extension) {
+        if (name == null || extension == null) {
+            return false;
+        }
+        Name foldedName = name.getFolded();
+        Name foldedExtension = extension.getFolded();
         for (File file : files) {
-            if (file.getName().equalsIgnoreCase(name) && file.getExtension().equalsIgnoreCase(extension)) {
+            Name fileName = file.getInternedName();
+            Name fileExtension = file.getInternedExtension();
+            if (fileName != null && fileName.getFolded() == foldedName
+                    && fileExtension != null && fileExtension.getFolded() == foldedExtension) {
                 return true;
             }
         }
@@ -90,8 +126,20 @@ public class Folder extends FileSystemEntity {
     }
 
     public boolean containsFolderWithSameName(String name) {
+        return containsFolderWithSameName(Name.of(name));
+    }
+
+    /**
+     * Checks, ignoring case, whether a folder with the given name exists in this folder.
+     * @param name the interned name of the folder.
+     * @return true if such a folder exists.
+     */
+    public boolean containsFolderWithSameName(Name name) {
+        if (name == null) {
+            return false;
+        }
         for (Folder folder: folders) {
-            if(folder.getName().equalsIgnoreCase(name)) {
+            if (name.equalsIgnoreCase(folder.getInternedName())) {
                 return true;
             }
         }
@@ -106,6 +154,26 @@ public class Folder extends FileSystemEntity {
         return folders.contains(folder);
     }
 
+    /**
+     * Finds the sub-folder or file with the given name, ignoring case. A file is named by its full name,
+     * "name.extension", and sub-folders are matched first.
+     * @param name the name to look for.
+     * @return the Folder or File object, or null if there is none.
+     */
+    FileSystemEntity findChild(String name) {
+        String key = Name.fold(name);
+        Folder folder = folders.find(key);
+        return folder != null ? folder : files.find(key);
+    }
+
+    /**
+     * Tells the folder that one of its children has been renamed, so that finding children by name looks again.
+     */
+    void childRenamed() {
+        files.forgetNames();
+        folders.forgetNames();
+    }
+
     /**
      * Sets the name of the folder. If the folder is part of a folder, it ensures that no other folder
      * in the same folder has the same name to avoid conflicts.
@@ -115,7 +183,7 @@ public class Folder extends FileSystemEntity {
     @Override
     public void setName(String name) {
         Folder parent = getParent();
-        if (parent != null && parent.containsFolderWithSameName(name)) {
+        if (parent != null && parent.containsFolderWithSameName(Name.of(name))) {
             throw new IllegalArgumentException("A folder with the name \""+name+"\" already exists in the same folder.");
         }
 
@@ -152,5 +220,131 @@ public class Folder extends FileSystemEntity {
         return false;
     }
 
+    /**
+     * Returns the Merkle hash of this folder: a SHA-256 hash over the name, extension and hash of each child,
+     * in name order, where a file's hash is its content hash and a folder's hash is its own Merkle hash.
+     * Two folders have the same Merkle hash when their subtrees have the same names and contents, regardless
+     * of creation dates or the order children were added in. The hash is computed on first use and cached until
+     * something beneath this folder changes.
+     * @return the Merkle hash.
+     */
+    public byte[] getMerkleHash() {
+        byte[] hash = merkleHash;
+        if (hash == null) {
+            hash = computeMerkleHash();
+            merkleHash = hash;
+        }
+        return hash;
+    }
 
+    /**
+     * Marks the Merkle hash of this folder and of every folder above it as stale. Climbing stops at the first
+     * folder that is already stale, since every folder above a stale one is stale too.
+     */
+    void invalidateMerkleHash() {
+        for (Folder folder = this; folder != null && folder.merkleHash != null; folder = folder.getParent()) {
+            folder.merkleHash = null;
+        }
+    }
+
+    private byte[] computeMerkleHash() {
+        MessageDigest digest = Digests.newDigest();
+        List<File> sortedFiles = new ArrayList<>(files);
+        sortedFiles.sort(Comparator.comparing(File::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(File::getExtension, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (File file : sortedFiles) {
+            digest.update((byte) 'F');
+            Digests.updateString(digest, file.getName());
+            Digests.updateString(digest, file.getExtension());
+            digest.update(file.getContentHash());
+        }
+        List<Folder> sortedFolders = new ArrayList<>(folders);
+        sortedFolders.sort(Comparator.comparing(Folder::getName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (Folder folder : sortedFolders) {
+            digest.update((byte) 'D');
+            Digests.updateString(digest, folder.getName());
+            digest.update(folder.getMerkleHash());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * A folder's files or sub-folders, which can also find a child by its case-folded name in constant time. The
+     * names are indexed on the first lookup, and the index is kept up to date as children are added and removed
+     * one at a time. Any other change to the list, or a child being renamed, drops the index to be built again on
+     * the next lookup. When two children share a name ignoring case, the first one in the list is found.
+     */
+    private static final class Children<T extends FileSystemEntity> extends ArrayList<T> {
+        private final Function<T, String> key;
+        private Map<String, T> index;
+        private int indexedModCount;
+        private boolean clashes;
+
+        private Children(Function<T, String> key) {
+            this.key = key;
+        }
+
+        private Children(Collection<? extends T> children, Function<T, String> key) {
+            super(children);
+            this.key = key;
+        }
+
+        private T find(String foldedName) {
+            if (index == null || indexedModCount != modCount) {
+                index = new HashMap<>();
+                clashes = false;
+                for (T child : this) {
+                    clashes |= index.putIfAbsent(key.apply(child), child) != null;
+                }
+                indexedModCount = modCount;
+            }
+            return index.get(foldedName);
+        }
+
+        private void forgetNames() {
+            index = null;
+        }
+
+        @Override
+        public boolean add(T child) {
+            boolean indexed = index != null && indexedModCount == modCount;
+            super.add(child);
+            if (indexed) {
+                clashes |= index.putIfAbsent(key.apply(child), child) != null;
+                indexedModCount = modCount;
+            }
+            return true;
+        }
+
+        @Override
+        public T remove(int position) {
+            boolean indexed = index != null && indexedModCount == modCount;
+            T removed = super.remove(position);
+            if (indexed) {
+                if (clashes) {
+                    index = null;
+                } else {
+                    index.remove(key.apply(removed), removed);
+                    indexedModCount = modCount;
+                }
+            }
+            return removed;
+        }
+
+        @Override
+        public T set(int position, T child) {
+            index = null;
+            return super.set(position, child);
+        }
+
+        @Override
+        public boolean remove(Object child) {
+            int position = indexOf(child);
+            if (position < 0) {
+                return false;
+            }
+            remove(position);
+            return true;
+        }
+    }
 }
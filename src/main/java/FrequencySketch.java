@@ -0,0 +1,61 @@
+/**
+ * A count-min sketch estimating how often each key has been seen recently, in a fixed amount of memory.
+ * Each key increments one 4-bit counter in each of four rows and its estimate is the smallest of those counters.
+ * Once the number of increments reaches ten times the width of a row every counter is halved, so the estimate
+ * favours recent accesses over old ones.
+ * @author Tshiamo
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private final byte[] table;
+    private final int width;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys roughly how many keys are tracked at once.
+     */
+    FrequencySketch(int expectedKeys) {
+        this.width = Integer.highestOneBit(Math.min(1 << 24, Math.max(16, expectedKeys)) - 1) << 1;
+        this.table = new byte[width * DEPTH];
+        this.sampleSize = 10 * width;
+    }
+
+    void increment(long key) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * width + index(key, row);
+            if (table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(long key) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, table[row * width + index(key, row)]);
+        }
+        return frequency;
+    }
+
+    private int index(long key, int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[row];
+        hash ^= hash >>> 32;
+        return (int) hash & (width - 1);
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] >>= 1;
+        }
+        additions /= 2;
+    }
+}
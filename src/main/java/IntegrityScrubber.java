@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verifies the content of every file in a tree against the checksums recorded when it was written, to detect
+ * silent corruption in memory or on disk. Files are checked in path order by a pool of threads, a window at a
+ * time, and the rate can be capped in bytes per second so that a continuous scrub does not compete with reads.
+ * <p>
+ * A pass remembers how far it has got, so a stopped pass resumes after the last file checked instead of
+ * starting over. Corrupt files are reported by path until a later pass finds them intact. The tree is listed
+ * at the start of each pass while holding the lock given to the constructor; pass the lock that guards the
+ * manager's writes if the tree changes while scrubbing.
+ * @author Tshiamo
+ */
+public class IntegrityScrubber implements AutoCloseable {
+
+    /**
+     * How far the scrubber has got.
+     * @param filesChecked files verified so far, across all passes.
+     * @param bytesChecked bytes of content verified so far, across all passes.
+     * @param passesCompleted passes that reached the end of the tree.
+     * @param position the path of the last file checked in the current pass, or null between passes.
+     */
+    public record Progress(long filesChecked, long bytesChecked, long passesCompleted, String position) {
+    }
+
+    private record Target(String path, File file) {
+    }
+
+    private static final Comparator<Target> BY_PATH = Comparator.comparing(Target::path);
+
+    private final FileSystemManager manager;
+    private volatile long bytesPerSecond;
+    private final Lock lock;
+    private final int window;
+    private final ExecutorService verifiers;
+    private final Set<String> corrupt = new ConcurrentSkipListSet<>();
+    private final Object passes = new Object();
+    private volatile boolean stopRequested;
+    private Thread background;
+    private String position;
+    private long filesChecked;
+    private long bytesChecked;
+    private long passesCompleted;
+
+    /**
+     * @param manager the FileSystemManager whose tree is scrubbed.
+     * @param parallelism the number of threads verifying content.
+     * @param bytesPerSecond the most content verified per second, or 0 for no limit.
+     * @param lock held while the tree is listed, or null to use a lock of the scrubber's own.
+     */
+    public IntegrityScrubber(FileSystemManager manager, int parallelism, long bytesPerSecond, Lock lock) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        if (parallelism < 1 || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Parallelism must be positive and the rate cannot be negative.");
+        }
+        this.manager = manager;
+        this.bytesPerSecond = bytesPerSecond;
+        this.lock = lock != null ? lock : new ReentrantLock();
+        this.window = parallelism * 8;
+        this.verifiers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Runs a pass over the tree, or finishes the pass that was stopped.
+     * @return true if the pass reached the end of the tree, false if it was stopped first.
+     */
+    public boolean scrub() throws InterruptedException {
+        synchronized (passes) {
+            List<Target> targets = listFiles();
+            int start = 0;
+            synchronized (this) {
+                if (position != null) {
+                    int found = Collections.binarySearch(targets, new Target(position, null), BY_PATH);
+                    start = found >= 0 ? found + 1 : -found - 1;
+                }
+            }
+            long began = System.nanoTime();
+            long passBytes = 0;
+            for (int from = start; from < targets.size(); from += window) {
+                if (stopRequested) {
+                    return false;
+                }
+                List<Target> batch = targets.subList(from, Math.min(from + window, targets.size()));
+                passBytes += verify(batch);
+                throttle(began, passBytes);
+            }
+            synchronized (this) {
+                position = null;
+                passesCompleted++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Scrubs the tree continuously in the background, waiting between passes.
+     * @param intervalMillis how long to wait after each pass.
+     */
+    public synchronized void start(long intervalMillis) {
+        if (background != null) {
+            throw new IllegalStateException("The scrubber is already running.");
+        }
+        stopRequested = false;
+        background = Thread.ofVirtual().name("integrity-scrubber").start(() -> {
+            try {
+                while (!stopRequested) {
+                    scrub();
+                    Thread.sleep(intervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Stops the running pass after the window it is checking, and the background scrub if there is one, and waits
+     * for them to end. The next pass resumes where this one stopped.
+     */
+    public void stop() throws InterruptedException {
+        Thread running;
+        synchronized (this) {
+            stopRequested = true;
+            running = background;
+            background = null;
+        }
+        if (running != null) {
+            running.interrupt();
+            running.join();
+        }
+        synchronized (passes) {
+            stopRequested = false;
+        }
+    }
+
+    /**
+     * Changes the rate limit, taking effect from the next window checked.
+     * @param bytesPerSecond the most content verified per second, or 0 for no limit.
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("The rate cannot be negative.");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public synchronized Progress getProgress() {
+        return new Progress(filesChecked, bytesChecked, passesCompleted, position);
+    }
+
+    /**
+     * @return the paths of the files found corrupt, in order.
+     */
+    public List<String> getCorruptPaths() {
+        return new ArrayList<>(corrupt);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stop();
+        verifiers.shutdown();
+    }
+
+    private List<Target> listFiles() {
+        List<Target> targets = new ArrayList<>();
+        lock.lock();
+        try {
+            collect(manager.getRoot(), "", targets);
+        } finally {
+            lock.unlock();
+        }
+        targets.sort(BY_PATH);
+        return targets;
+    }
+
+    private static void collect(Folder folder, String path, List<Target> targets) {
+        for (File file : folder.getFiles()) {
+            targets.add(new Target(path + "/" + file.getFullName(), file));
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            collect(subFolder, path + "/" + subFolder.getName(), targets);
+        }
+    }
+
+    /**
+     * Verifies a window of files in parallel and records the outcome.
+     * @return the bytes checked.
+     */
+    private long verify(List<Target> batch) throws InterruptedException {
+        List<Callable<Boolean>> checks = new ArrayList<>(batch.size());
+        for (Target target : batch) {
+            checks.add(() -> target.file.getFileContent().verify());
+        }
+        List<Future<Boolean>> results = verifiers.invokeAll(checks);
+        long bytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Target target = batch.get(i);
+            if (intact(results.get(i))) {
+                corrupt.remove(target.path);
+            } else {
+                corrupt.add(target.path);
+            }
+            bytes += target.file.getSize();
+        }
+        synchronized (this) {
+            position = batch.get(batch.size() - 1).path;
+            filesChecked += batch.size();
+            bytesChecked += bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Content that cannot even be read, such as a disk copy that has gone missing, counts as corrupt.
+     */
+    private static boolean intact(Future<Boolean> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    private void throttle(long began, long bytes) throws InterruptedException {
+        long rate = bytesPerSecond;
+        if (rate > 0) {
+            long due = (long) (bytes * 1e9 / rate) - (System.nanoTime() - began);
+            if (due > 0) {
+                TimeUnit.NANOSECONDS.sleep(due);
+            }
+        }
+    }
+}
@@ -0,0 +1,417 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs long background jobs, such as large folder copies and moves, imports, exports and reclamation, so that
+ * they share the machine fairly and leave room for interactive calls. Each job belongs to a tenant and has a
+ * priority. Queued jobs of a higher priority always start first; within a priority, tenants take turns, so one
+ * tenant queueing many jobs does not hold back another's. At most a set number of jobs run at once, and at most
+ * a set number per tenant.
+ * <p>
+ * Each job runs on its own virtual thread. Pausing and cancelling are cooperative: a job calls
+ * {@link Job#checkpoint()} between units of work, which throws once the job is cancelled and, once it is
+ * paused, waits there until it is resumed. A paused job gives up its place, so another job can run in the
+ * meantime, and a resumed job goes back to the front of its tenant's queue. A job reports its progress through
+ * {@link Job#progress(long, long)}, so it can be passed wherever a {@link ProgressListener} is taken.
+ * {@link SubtreeJobs} provides copies and moves that check in between chunks; other work is submitted as a
+ * {@link Task} and is paused or cancelled only as often as it checks in.
+ * @author Tshiamo
+ */
+public class JobScheduler implements AutoCloseable {
+
+    public enum Priority { HIGH, NORMAL, LOW }
+
+    public enum State { QUEUED, RUNNING, PAUSED, SUCCEEDED, FAILED, CANCELLED }
+
+    /**
+     * The work done by a job.
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * @param job the job running the task, to check in with and report progress to.
+         */
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * How far a job has got, in units of its own choosing.
+     * @param done the units done so far.
+     * @param total the units the job will do, or 0 if it has not said.
+     */
+    public record Progress(long done, long total) {
+    }
+
+    private final int maxRunning;
+    private final int maxRunningPerTenant;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Priority, Map<String, Deque<Job>>> queues = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> runningByTenant = new HashMap<>();
+    private final List<Job> jobs = new ArrayList<>();
+    private int running;
+    private boolean closed;
+
+    /**
+     * @param maxRunning the most jobs that run at once.
+     * @param maxRunningPerTenant the most jobs of one tenant that run at once.
+     */
+    public JobScheduler(int maxRunning, int maxRunningPerTenant) {
+        if (maxRunning < 1 || maxRunningPerTenant < 1) {
+            throw new IllegalArgumentException("Concurrency limits must be at least 1.");
+        }
+        this.maxRunning = maxRunning;
+        this.maxRunningPerTenant = maxRunningPerTenant;
+        for (Priority priority : Priority.values()) {
+            // Insertion ordered, so the first tenant is the one whose turn it is.
+            queues.put(priority, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Queues a job, which starts as soon as the priorities, turns and limits allow.
+     * @param tenant the tenant the job is run for.
+     * @param priority the priority of the job.
+     * @param name a name for the job, for reporting.
+     * @param task the work to do.
+     * @return the queued job.
+     */
+    public Job submit(String tenant, Priority priority, String name, Task task) {
+        if (tenant == null || priority == null || task == null) {
+            throw new IllegalArgumentException("Tenant, priority and task parameters cannot be null.");
+        }
+        Job job = new Job(tenant, priority, name, task);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("The scheduler has been closed.");
+            }
+            jobs.add(job);
+            enqueue(job, false);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+        return job;
+    }
+
+    /**
+     * @return the jobs that have not finished, in the order they were submitted.
+     */
+    public List<Job> getJobs() {
+        lock.lock();
+        try {
+            return List.copyOf(jobs);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of jobs running, not counting paused ones.
+     */
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels every job that has not finished and waits for the running ones to stop.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (Job job : List.copyOf(jobs)) {
+                job.cancel();
+                if (job.thread != null) {
+                    threads.add(job.thread);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void enqueue(Job job, boolean first) {
+        Deque<Job> queue = queues.get(job.priority).computeIfAbsent(job.tenant, tenant -> new ArrayDeque<>());
+        if (first) {
+            queue.addFirst(job);
+        } else {
+            queue.addLast(job);
+        }
+    }
+
+    private void dequeue(Job job) {
+        Map<String, Deque<Job>> tenants = queues.get(job.priority);
+        Deque<Job> queue = tenants.get(job.tenant);
+        if (queue != null && queue.remove(job) && queue.isEmpty()) {
+            tenants.remove(job.tenant);
+        }
+    }
+
+    /**
+     * Starts queued jobs while there is room, taking priorities in order and, within a priority, the first job
+     * of the first tenant with room of its own. That tenant then goes to the back of the turns.
+     */
+    private void dispatch() {
+        while (running < maxRunning) {
+            Job next = null;
+            for (Map<String, Deque<Job>> tenants : queues.values()) {
+                for (Map.Entry<String, Deque<Job>> entry : tenants.entrySet()) {
+                    String tenant = entry.getKey();
+                    Deque<Job> queue = entry.getValue();
+                    if (runningByTenant.getOrDefault(tenant, 0) < maxRunningPerTenant) {
+                        next = queue.poll();
+                        tenants.remove(tenant);
+                        if (!queue.isEmpty()) {
+                            tenants.put(tenant, queue);
+                        }
+                        break;
+                    }
+                }
+                if (next != null) {
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            running++;
+            runningByTenant.merge(next.tenant, 1, Integer::sum);
+            next.holdsSlot = true;
+            next.state = State.RUNNING;
+            if (next.thread == null) {
+                Job job = next;
+                next.thread = Thread.ofVirtual().name("job-" + next.name).start(() -> job.execute());
+            } else {
+                changed.signalAll();
+            }
+        }
+    }
+
+    private void releaseSlot(Job job) {
+        if (job.holdsSlot) {
+            job.holdsSlot = false;
+            running--;
+            runningByTenant.merge(job.tenant, -1, Integer::sum);
+            runningByTenant.remove(job.tenant, 0);
+        }
+    }
+
+    /**
+     * A job submitted to the scheduler, which its task uses to check in and report progress.
+     */
+    public final class Job implements ProgressListener {
+
+        private final String tenant;
+        private final Priority priority;
+        private final String name;
+        private final Task task;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        // The fields below are guarded by the scheduler's lock.
+        private State state = State.QUEUED;
+        private Thread thread;
+        private boolean holdsSlot;
+        private boolean pauseRequested;
+        private boolean cancelRequested;
+        private volatile long done;
+        private volatile long total;
+
+        private Job(String tenant, Priority priority, String name, Task task) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.name = name;
+            this.task = task;
+        }
+
+        public String getTenant() {
+            return tenant;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public State getState() {
+            lock.lock();
+            try {
+                return state;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Progress getProgress() {
+            return new Progress(done, total);
+        }
+
+        /**
+         * @return a future completed when the job succeeds, or completed exceptionally when it fails or is
+         * cancelled.
+         */
+        public CompletableFuture<Void> getFuture() {
+            return future;
+        }
+
+        /**
+         * Cancels the job. A queued job, or one paused before it started, is cancelled at once; a running job
+         * stops at its next check-in.
+         * @return false if the job had already finished.
+         */
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (isFinished()) {
+                    return false;
+                }
+                cancelRequested = true;
+                if (thread == null) {
+                    dequeue(this);
+                    finish(State.CANCELLED, new CancellationException("Job \"" + name + "\" was cancelled."));
+                } else {
+                    changed.signalAll();
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Pauses the job. A queued job is held back; a running job stops at its next check-in and gives up its
+         * place until it is resumed.
+         */
+        public void pause() {
+            lock.lock();
+            try {
+                if (state == State.QUEUED) {
+                    dequeue(this);
+                    state = State.PAUSED;
+                } else if (state == State.RUNNING) {
+                    pauseRequested = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Resumes a paused job, which continues once the priorities, turns and limits allow.
+         */
+        public void resume() {
+            lock.lock();
+            try {
+                pauseRequested = false;
+                if (state == State.PAUSED) {
+                    state = State.QUEUED;
+                    enqueue(this, thread != null);
+                    dispatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Called by the task between units of work. Returns straight away unless the job has been paused or
+         * cancelled.
+         * @throws CancellationException if the job has been cancelled.
+         * @throws InterruptedException if interrupted while paused.
+         */
+        public void checkpoint() throws InterruptedException {
+            lock.lock();
+            try {
+                if (pauseRequested && !cancelRequested) {
+                    pauseRequested = false;
+                    state = State.PAUSED;
+                    releaseSlot(this);
+                    dispatch();
+                    while (state != State.RUNNING && !cancelRequested) {
+                        changed.await();
+                    }
+                }
+                if (cancelRequested) {
+                    dequeue(this);
+                    throw new CancellationException("Job \"" + name + "\" was cancelled.");
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Records how far the job has got.
+         */
+        @Override
+        public void progress(long done, long total) {
+            this.done = done;
+            this.total = total;
+        }
+
+        private void execute() {
+            State outcome;
+            Throwable failure = null;
+            try {
+                task.run(this);
+                outcome = State.SUCCEEDED;
+            } catch (CancellationException e) {
+                outcome = State.CANCELLED;
+                failure = e;
+            } catch (Throwable e) {
+                outcome = State.FAILED;
+                failure = e;
+            }
+            lock.lock();
+            try {
+                releaseSlot(this);
+                finish(outcome, failure);
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish(State outcome, Throwable failure) {
+            state = outcome;
+            jobs.remove(this);
+            if (failure == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+
+        private boolean isFinished() {
+            return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+        }
+
+        @Override
+        public String toString() {
+            return "Job{name='" + name + "', tenant='" + tenant + "', priority=" + priority + ", state=" + state + '}';
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * File content that is only fetched when it is first read. The size is known up front, so a {@link File} built
+ * with this content can be listed, moved, renamed and counted without its bytes ever being loaded.
+ * When several threads read the content at once only one of them runs the loader and the rest wait for its
+ * result. A loader that fails is run again on the next read.
+ * <p>
+ * Reading a {@link #prefix(int)} of content that has not been fetched uses the prefix loader, if there is one,
+ * and otherwise fetches the whole content without keeping it.
+ * @author Tshiamo
+ */
+public final class LazyContent implements FileContent {
+    private final long size;
+    private final ReentrantLock loading = new ReentrantLock();
+    private final IntFunction<byte[]> prefixLoader;
+    private Supplier<byte[]> loader;
+    private volatile byte[] bytes;
+
+    /**
+     * @param size the size of the content, as stored in the catalog it comes from.
+     * @param loader fetches the content; called once successfully by the full reads, and again for each prefix
+     *               read while the content has not been fetched.
+     */
+    public LazyContent(long size, Supplier<byte[]> loader) {
+        this(size, loader, null);
+    }
+
+    /**
+     * @param size the size of the content, as stored in the catalog it comes from.
+     * @param loader fetches the content; called at most once successfully.
+     * @param prefixLoader fetches at most the given number of bytes from the start of the content, or null.
+     */
+    public LazyContent(long size, Supplier<byte[]> loader, IntFunction<byte[]> prefixLoader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader parameter cannot be null.");
+        }
+        this.size = size;
+        this.loader = loader;
+        this.prefixLoader = prefixLoader;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the content has been fetched.
+     */
+    public boolean isLoaded() {
+        return bytes != null;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] loaded = bytes;
+        if (loaded != null) {
+            return loaded;
+        }
+        loading.lock();
+        try {
+            loaded = bytes;
+            if (loaded == null) {
+                loaded = loader.get();
+                if (loaded == null || loaded.length != size) {
+                    throw new IllegalStateException("Loaded content does not match the expected size of " + size + " bytes.");
+                }
+                bytes = loaded;
+                loader = null;
+            }
+            return loaded;
+        } finally {
+            loading.unlock();
+        }
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the start of the content without fetching the rest of it, if there is a prefix loader, and without
+     * keeping what was fetched.
+     */
+    @Override
+    public ByteBuffer prefix(int length) {
+        byte[] loaded = bytes;
+        if (loaded == null) {
+            Supplier<byte[]> fullLoader;
+            loading.lock();
+            try {
+                loaded = bytes;
+                fullLoader = loader;
+            } finally {
+                loading.unlock();
+            }
+            if (loaded == null) {
+                loaded = prefixLoader != null ? prefixLoader.apply(length) : fullLoader.get();
+                if (loaded == null || loaded.length < Math.min(length, size)) {
+                    throw new IllegalStateException("Loaded content is shorter than " + Math.min(length, size) + " bytes.");
+                }
+            }
+        }
+        return ByteBuffer.wrap(loaded, 0, Math.min(length, loaded.length)).slice().asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Shard} backed by its own {@link FileSystemManager} in this process.
+ * Changes are serialised by the shard's write lock and queries run under its read lock, so each shard is its
+ * own lock domain. Paths locked by a prepared two-phase move reject every operation on them or beneath them.
+ * @author Tshiamo
+ */
+public class LocalShard implements Shard {
+
+    private enum Phase { REMOVE, ADD }
+
+    private record Prepared(Phase phase, List<String> path, FileSystemEntity entity, Folder target) {
+    }
+
+    private final String id;
+    private final FileSystemManager manager;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Prepared> prepared = new HashMap<>();
+
+    public LocalShard(String id) {
+        this(id, new FileSystemManager());
+    }
+
+    /**
+     * @param id the id of the shard, also used to place it on a hash ring.
+     * @param manager the FileSystemManager holding this shard's part of the namespace.
+     */
+    public LocalShard(String id, FileSystemManager manager) {
+        if (id == null || manager == null) {
+            throw new IllegalArgumentException("Id and FileSystemManager parameters cannot be null.");
+        }
+        this.id = id;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    public FileSystemManager getManager() {
+        return manager;
+    }
+
+    @Override
+    public void createFolder(String path) {
+        List<String> names = split(path);
+        String name = last(names);
+        write(() -> {
+            checkUnlocked(names);
+            Folder folder = new Folder(name, null);
+            folder.setParent(resolveFolder(names.subList(0, names.size() - 1)));
+            manager.createFolder(folder);
+        });
+    }
+
+    @Override
+    public void createFile(String path, Date createdDate, byte[] content) {
+        List<String> names = split(path);
+        String[] parts = DiskImporter.splitName(last(names));
+        write(() -> {
+            checkUnlocked(names);
+            File file = new File(parts[0], null, content.length, createdDate, content, parts[1]);
+            file.setParent(resolveFolder(names.subList(0, names.size() - 1)));
+            manager.createFile(file);
+        });
+    }
+
+    @Override
+    public void delete(String path) {
+        List<String> names = split(path);
+        last(names);
+        write(() -> {
+            checkUnlocked(names);
+            FileSystemEntity entity = resolve(names);
+            if (entity instanceof File file) {
+                manager.deleteFile(file);
+            } else {
+                manager.deleteFolder((Folder) entity);
+            }
+        });
+    }
+
+    @Override
+    public void move(String path, String targetFolderPath) {
+        List<String> names = split(path);
+        String name = last(names);
+        List<String> targetNames = split(targetFolderPath);
+        write(() -> {
+            checkUnlocked(names);
+            FileSystemEntity entity = resolve(names);
+            Folder target = resolveFolder(targetNames);
+            checkUnlocked(child(targetNames, name));
+            if (entity instanceof File file) {
+                manager.moveFile(file, target);
+            } else {
+                manager.moveFolder((Folder) entity, target);
+            }
+        });
+    }
+
+    @Override
+    public FileSystemEntity prepareRemove(String transactionId, String path) {
+        List<String> names = split(path);
+        last(names);
+        return write(() -> {
+            checkNewTransaction(transactionId);
+            checkUnlocked(names);
+            FileSystemEntity entity = resolve(names);
+            FileSystemEntity copy;
+            if (entity instanceof File file) {
+                copy = new File(file);
+                copy.setParent(null);
+            } else {
+                copy = FileSystemManager.copyTree((Folder) entity);
+            }
+            prepared.put(transactionId, new Prepared(Phase.REMOVE, names, entity, null));
+            return copy;
+        });
+    }
+
+    @Override
+    public void prepareAdd(String transactionId, String targetFolderPath, FileSystemEntity entity) {
+        if (entity == null) {
+            throw new IllegalArgumentException("Entity parameter cannot be null.");
+        }
+        List<String> targetNames = split(targetFolderPath);
+        write(() -> {
+            checkNewTransaction(transactionId);
+            Folder target = resolveFolder(targetNames);
+            if (entity instanceof File file) {
+                if (target.containsFileWithSameName(file.getInternedName(), file.getInternedExtension())) {
+                    throw new IllegalArgumentException("A file with the same name and extension already exists in the target folder.");
+                }
+                List<String> names = child(targetNames, file.getFullName());
+                checkUnlocked(names);
+                prepared.put(transactionId, new Prepared(Phase.ADD, names, entity, target));
+            } else {
+                if (target.containsFolderWithSameName(entity.getInternedName())) {
+                    throw new IllegalArgumentException("A folder with the same name already exists in the target folder.");
+                }
+                List<String> names = child(targetNames, entity.getName());
+                checkUnlocked(names);
+                prepared.put(transactionId, new Prepared(Phase.ADD, names, entity, target));
+            }
+        });
+    }
+
+    @Override
+    public void commit(String transactionId) {
+        write(() -> {
+            Prepared step = prepared.remove(transactionId);
+            if (step == null) {
+                throw new IllegalStateException("Transaction \"" + transactionId + "\" has not been prepared on shard " + id + ".");
+            }
+            if (step.phase() == Phase.REMOVE) {
+                if (step.entity() instanceof File file) {
+                    manager.deleteFile(file);
+                } else {
+                    manager.deleteFolder((Folder) step.entity());
+                }
+            } else {
+                step.entity().setParent(step.target());
+                if (step.entity() instanceof File file) {
+                    manager.createFile(file);
+                } else {
+                    manager.attachFolder((Folder) step.entity());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void abort(String transactionId) {
+        write(() -> {
+            prepared.remove(transactionId);
+        });
+    }
+
+    @Override
+    public <R> R query(Function<Folder, R> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(manager.getRoot());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits an absolute path into its names, ignoring empty names.
+     * @throws IllegalArgumentException if the path steps up with "..".
+     */
+    static List<String> split(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path parameter cannot be null.");
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (name.equals("..")) {
+                throw new IllegalArgumentException("Path \"" + path + "\" cannot contain \"..\".");
+            }
+            if (!name.isEmpty() && !name.equals(".")) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static String last(List<String> names) {
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("The root folder cannot be changed.");
+        }
+        return names.get(names.size() - 1);
+    }
+
+    private static List<String> child(List<String> names, String name) {
+        List<String> child = new ArrayList<>(names);
+        child.add(name);
+        return child;
+    }
+
+    private FileSystemEntity resolve(List<String> names) {
+        FileSystemEntity entity = manager.getRoot();
+        for (String name : names) {
+            entity = entity instanceof Folder folder ? folder.findChild(name) : null;
+            if (entity == null) {
+                throw new IllegalArgumentException("No file or folder exists at \"/" + String.join("/", names) + "\".");
+            }
+        }
+        return entity;
+    }
+
+    private Folder resolveFolder(List<String> names) {
+        if (!(resolve(names) instanceof Folder folder)) {
+            throw new IllegalArgumentException("\"/" + String.join("/", names) + "\" is not a folder.");
+        }
+        return folder;
+    }
+
+    private void checkNewTransaction(String transactionId) {
+        if (transactionId == null || prepared.containsKey(transactionId)) {
+            throw new IllegalStateException("Transaction \"" + transactionId + "\" is already prepared on shard " + id + ".");
+        }
+    }
+
+    /**
+     * Rejects a path that is locked by a prepared move, lies beneath one, or contains one.
+     */
+    private void checkUnlocked(List<String> names) {
+        for (Prepared step : prepared.values()) {
+            int common = Math.min(names.size(), step.path().size());
+            boolean overlaps = true;
+            for (int i = 0; i < common && overlaps; i++) {
+                overlaps = names.get(i).equalsIgnoreCase(step.path().get(i));
+            }
+            if (overlaps) {
+                throw new IllegalStateException("\"/" + String.join("/", names) + "\" is locked by a move in progress.");
+            }
+        }
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <R> R write(Supplier<R> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
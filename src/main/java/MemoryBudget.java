@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Accounts for the heap held by the trees of one or more {@link FileSystemManager}s and holds writes back when
+ * a limit would be exceeded. There is a global limit and, optionally, limits on individual subtrees.
+ * <p>
+ * Each file is charged a fixed metadata overhead plus its content when that content lives in heap arrays, which
+ * for {@link BlockContent} is its blocks, leaving out holes;
+ * content kept elsewhere, such as on disk or in a {@link TieredContentStore} with its own budget, is only
+ * charged its metadata. Each folder is charged a fixed overhead.
+ * <p>
+ * A write that does not fit is handled by the budget's {@link Policy}. Blocking is meant for budgets shared
+ * between managers, or trees cleaned up by another thread, since a blocked write holds up its own manager. A caller
+ * that serialises a manager behind its own lock, like {@link AsyncFileSystemManager}, acquires before taking that
+ * lock, and whatever is still missing once the lock is held is rejected rather than waited for.
+ * Only writes made through a manager or a transaction are accounted; entities added straight to a folder's
+ * lists are not. A subtree limit belongs to the folder instance it was set on and does not follow a moved folder.
+ * @author Tshiamo
+ */
+public class MemoryBudget {
+
+    public enum Policy {
+        /** Wait for memory to be released, up to the timeout. */
+        BLOCK,
+        /** Reject the write straight away. */
+        FAIL_FAST,
+        /** Ask the spiller to release memory, then reject the write if it still does not fit. */
+        SPILL
+    }
+
+    static final long FILE_OVERHEAD = 128;
+    static final long FOLDER_OVERHEAD = 160;
+
+    private static final class Account {
+        private final long limit;
+        private long usage;
+
+        private Account(long limit, long usage) {
+            this.limit = limit;
+            this.usage = usage;
+        }
+    }
+
+    private final Account global;
+    private final Policy policy;
+    private final long timeoutMillis;
+    private final LongConsumer spiller;
+    private final Map<Folder, Account> subtrees = new IdentityHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    /**
+     * @param limit the most bytes all accounted trees may hold together.
+     * @param policy what to do with a write that does not fit.
+     */
+    public MemoryBudget(long limit, Policy policy) {
+        this(limit, policy, 30_000, null);
+    }
+
+    /**
+     * @param limit the most bytes all accounted trees may hold together.
+     * @param policy what to do with a write that does not fit.
+     * @param timeoutMillis how long a blocked write waits before it is rejected.
+     * @param spiller called with the number of bytes missing when the policy is {@link Policy#SPILL}; it should
+     *                release memory through the manager, for example by moving content out of the heap.
+     */
+    public MemoryBudget(long limit, Policy policy, long timeoutMillis, LongConsumer spiller) {
+        if (limit < 0 || policy == null) {
+            throw new IllegalArgumentException("Limit cannot be negative and Policy parameter cannot be null.");
+        }
+        if (policy == Policy.SPILL && spiller == null) {
+            throw new IllegalArgumentException("A spiller is required for the SPILL policy.");
+        }
+        this.global = new Account(limit, 0);
+        this.policy = policy;
+        this.timeoutMillis = timeoutMillis;
+        this.spiller = spiller;
+    }
+
+    /**
+     * Limits the memory held beneath a folder. The folder's current contents are counted straight away.
+     * @param folder the top of the subtree.
+     * @param limit the most bytes the subtree may hold.
+     */
+    public void setLimit(Folder folder, long limit) {
+        if (folder == null) {
+            throw new IllegalArgumentException("Folder parameter cannot be null.");
+        }
+        long usage = costOf(folder) - FOLDER_OVERHEAD;
+        lock.lock();
+        try {
+            subtrees.put(folder, new Account(limit, usage));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void removeLimit(Folder folder) {
+        lock.lock();
+        try {
+            subtrees.remove(folder);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLimit() {
+        return global.limit;
+    }
+
+    /**
+     * @return the bytes currently charged across every accounted tree.
+     */
+    public long getUsage() {
+        lock.lock();
+        try {
+            return global.usage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param folder a folder with a subtree limit.
+     * @return the bytes currently charged beneath the folder.
+     */
+    public long getUsage(Folder folder) {
+        lock.lock();
+        try {
+            Account account = subtrees.get(folder);
+            if (account == null) {
+                throw new IllegalArgumentException("No limit is set on folder \"" + folder.getName() + "\".");
+            }
+            return account.usage;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the bytes charged for an entity and everything beneath it.
+     */
+    static long costOf(FileSystemEntity entity) {
+        if (entity instanceof File file) {
+            FileContent content = file.getFileContent();
+            if (content instanceof BlockContent blocks) {
+                return FILE_OVERHEAD + blocks.heapSize();
+            }
+            boolean onHeap = content instanceof ByteArrayContent || content instanceof AppendableContent;
+            return FILE_OVERHEAD + (onHeap ? content.size() : 0);
+        }
+        Folder folder = (Folder) entity;
+        long cost = FOLDER_OVERHEAD;
+        for (File file : folder.getFiles()) {
+            cost += costOf(file);
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            cost += costOf(subFolder);
+        }
+        return cost;
+    }
+
+    /**
+     * Charges bytes about to be added beneath a folder, first waiting, failing or spilling as the policy says
+     * if they do not fit.
+     * @throws IllegalStateException if the bytes do not fit.
+     */
+    void acquire(Folder parent, long bytes) {
+        acquire(parent, bytes, true);
+    }
+
+    /**
+     * Charges bytes about to be added beneath a folder as {@link #acquire(Folder, long)} does, except that with
+     * wait false a blocking budget rejects them straight away instead of waiting. Callers holding a lock that
+     * releasing writes also need must not wait.
+     * @throws IllegalStateException if the bytes do not fit.
+     */
+    void acquire(Folder parent, long bytes, boolean wait) {
+        if (policy == Policy.SPILL) {
+            long shortfall;
+            lock.lock();
+            try {
+                shortfall = shortfall(accountsFor(parent), bytes);
+                if (shortfall == 0) {
+                    charge(accountsFor(parent), bytes);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            spiller.accept(shortfall);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            List<Account> accounts = accountsFor(parent);
+            long shortfall = shortfall(accounts, bytes);
+            while (shortfall > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (policy != Policy.BLOCK || !wait || remaining <= 0 || !fitsAtAll(accounts, bytes)) {
+                    throw new IllegalStateException("Memory budget exceeded: " + bytes + " bytes do not fit, "
+                            + shortfall + " bytes short.");
+                }
+                released.awaitNanos(remaining);
+                accounts = accountsFor(parent);
+                shortfall = shortfall(accounts, bytes);
+            }
+            charge(accounts, bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for memory.", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Charges bytes without checking the limits, for changes that cannot be refused, such as undoing a removal.
+     */
+    void charge(Folder parent, long bytes) {
+        lock.lock();
+        try {
+            charge(accountsFor(parent), bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases bytes removed from beneath a folder and wakes any writes waiting for memory.
+     */
+    void release(Folder parent, long bytes) {
+        lock.lock();
+        try {
+            charge(accountsFor(parent), -bytes);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Account> accountsFor(Folder parent) {
+        List<Account> accounts = new ArrayList<>();
+        accounts.add(global);
+        if (!subtrees.isEmpty()) {
+            for (Folder folder = parent; folder != null; folder = folder.getParent()) {
+                Account account = subtrees.get(folder);
+                if (account != null) {
+                    accounts.add(account);
+                }
+            }
+        }
+        return accounts;
+    }
+
+    private static long shortfall(List<Account> accounts, long bytes) {
+        long shortfall = 0;
+        for (Account account : accounts) {
+            shortfall = Math.max(shortfall, account.usage + bytes - account.limit);
+        }
+        return shortfall;
+    }
+
+    private static boolean fitsAtAll(List<Account> accounts, long bytes) {
+        for (Account account : accounts) {
+            if (bytes > account.limit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void charge(List<Account> accounts, long bytes) {
+        for (Account account : accounts) {
+            account.usage += bytes;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An interned file or folder name or extension. Every distinct string has exactly one live Name, which also
+ * links to the interned Name of its case-folded form and carries its precomputed hash, so comparing two
+ * names ignoring case is a single reference comparison instead of a character by character fold.
+ * Names are held weakly by the dictionary, so a name is dropped once no entity uses it any more. The
+ * dictionary is a concurrent map, so entities can be created from many threads without queueing on one lock.
+ * @author Tshiamo
+ */
+public final class Name {
+    private static final ConcurrentMap<String, Entry> DICTIONARY = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Name> CLEARED = new ReferenceQueue<>();
+
+    private final String value;
+    private final Name folded;
+    private final int hash;
+
+    /**
+     * A dictionary entry, which remembers its key so it can be removed once its Name has been collected.
+     */
+    private static final class Entry extends WeakReference<Name> {
+        private final String key;
+
+        private Entry(Name name) {
+            super(name, CLEARED);
+            this.key = name.value;
+        }
+    }
+
+    private Name(String value, Name folded) {
+        this.value = value;
+        this.folded = folded == null ? this : folded;
+        this.hash = this.folded.value.hashCode();
+    }
+
+    /**
+     * Returns the interned Name for a string.
+     * @param value the string to intern.
+     * @return the Name of the string, or null if the string is null.
+     */
+    public static Name of(String value) {
+        if (value == null) {
+            return null;
+        }
+        expungeCleared();
+        return intern(value);
+    }
+
+    /**
+     * Looks up or adds the Name of a string. An entry is only ever replaced if it is still the one that was
+     * found cleared, so two threads interning the same string agree on one Name.
+     */
+    private static Name intern(String value) {
+        while (true) {
+            Entry entry = DICTIONARY.get(value);
+            Name name = entry == null ? null : entry.get();
+            if (name != null) {
+                return name;
+            }
+            String foldedValue = fold(value);
+            name = new Name(value, foldedValue.equals(value) ? null : intern(foldedValue));
+            Entry added = new Entry(name);
+            if (entry == null ? DICTIONARY.putIfAbsent(value, added) == null : DICTIONARY.replace(value, entry, added)) {
+                return name;
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of collected Names. An entry is removed only if it is still the one in the dictionary,
+     * so a collected Name never takes a newer Name for the same string with it.
+     */
+    private static void expungeCleared() {
+        for (Object cleared = CLEARED.poll(); cleared != null; cleared = CLEARED.poll()) {
+            Entry entry = (Entry) cleared;
+            DICTIONARY.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * Folds a string so that two strings are {@link String#equalsIgnoreCase(String) equal ignoring case}
+     * exactly when their folded forms are equal.
+     */
+    static String fold(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        value.codePoints().forEach(c -> builder.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return builder.toString();
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return the interned Name of the case-folded form of this name.
+     */
+    public Name getFolded() {
+        return folded;
+    }
+
+    /**
+     * Compares two names ignoring case.
+     * @param other the name to compare to.
+     * @return true if both names are equal ignoring case.
+     */
+    public boolean equalsIgnoreCase(Name other) {
+        return other != null && folded == other.folded;
+    }
+
+    /**
+     * @return the hash of the case-folded form, so names equal ignoring case share a hash.
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
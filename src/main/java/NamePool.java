@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A shared pool of names, handing out a small int id per distinct string so that repeated names
+ * and extensions are stored once. Each id also records the id of its case-folded form, so comparing
+ * two pooled names ignoring case is an int comparison.
+ * @author Tshiamo
+ */
+public class NamePool {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+    private int[] folded = new int[16];
+    private int count;
+
+    /**
+     * Returns the id of a name, adding it to the pool if it is not there yet.
+     * @param name the name to intern.
+     * @return the id of the name.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public int intern(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null.");
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        String foldedName = Name.fold(name);
+        int foldedId = foldedName.equals(name) ? count : intern(foldedName);
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            folded = Arrays.copyOf(folded, count * 2);
+        }
+        names[count] = name;
+        folded[count] = foldedId;
+        ids.put(name, count);
+        return count++;
+    }
+
+    /**
+     * Returns the id of the case-folded form of a name without adding anything to the pool.
+     * @param name the name to look up.
+     * @return the id of the folded form, or -1 if no pooled name folds to it.
+     */
+    public int findFolded(String name) {
+        Integer id = ids.get(Name.fold(name));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id an id previously returned by {@link #intern(String)}.
+     * @return the id of the case-folded form of that name.
+     */
+    public int getFolded(int id) {
+        if (id < 0 || id >= count) {
+            throw new IllegalArgumentException("Unknown name id " + id + ".");
+        }
+        return folded[id];
+    }
+
+    /**
+     * @param id an id previously returned by {@link #intern(String)}.
+     * @return the name with that id.
+     */
+    public String get(int id) {
+        if (id < 0 || id >= count) {
+            throw new IllegalArgumentException("Unknown name id " + id + ".");
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return count;
+    }
+}
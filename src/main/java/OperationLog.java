@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records every change made through a {@link FileSystemManager} as a numbered, path-addressed entry that can be
+ * replayed on another manager. Created entities are recorded as detached copies of their structure that share
+ * their content, as it was when they were created, through {@link FileContent#snapshot()}, so an entry stays
+ * valid after the tree it came from changes without holding a second copy of the bytes. Renames made through
+ * {@link FileSystemManager#renameFile(File, String)} and {@link FileSystemManager#renameFolder(Folder, String)}
+ * are recorded by path and new name. A file whose content changed, such as through
+ * {@link FileSystemManager#appendToFile(File, byte[])} or {@link FileSystemManager#writeFile(File, long, byte[])},
+ * is recorded as a detached copy of the file as it now is, which shares the segments or blocks already there. Only the most recent entries are retained, in a ring buffer indexed by
+ * sequence; readers that fall further behind have to start again from a snapshot.
+ * @author Tshiamo
+ */
+public class OperationLog implements FileSystemListener {
+
+    public enum Kind { CREATE_FILE, DELETE_FILE, UPDATE_FILE, CREATE_FOLDER, DELETE_FOLDER, RENAME_FILE, RENAME_FOLDER }
+
+    /**
+     * One change to the tree.
+     * @param sequence the position of the entry in the log, starting at 1.
+     * @param timestampMillis when the change was made.
+     * @param kind the kind of change.
+     * @param path the path of the changed file or folder, with the root as "/"; for renames, the path before.
+     * @param payload a detached copy of the created or updated file, or created folder, sharing its content, or
+     *                null otherwise.
+     * @param name the new name for renames, or null otherwise.
+     */
+    public record Entry(long sequence, long timestampMillis, Kind kind, String path, FileSystemEntity payload,
+                        String name) {
+    }
+
+    private final Entry[] entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long lastSequence;
+
+    /**
+     * @param retention the number of recent entries kept for readers.
+     */
+    public OperationLog(int retention) {
+        if (retention < 1) {
+            throw new IllegalArgumentException("Retention must be at least 1.");
+        }
+        this.entries = new Entry[retention];
+    }
+
+    @Override
+    public void fileCreated(File file) {
+        append(Kind.CREATE_FILE, pathOf(file), File.snapshotOf(file), null);
+    }
+
+    @Override
+    public void fileDeleted(File file) {
+        append(Kind.DELETE_FILE, pathOf(file), null, null);
+    }
+
+    @Override
+    public void fileAppended(File file) {
+        append(Kind.UPDATE_FILE, pathOf(file), File.snapshotOf(file), null);
+    }
+
+    @Override
+    public void fileWritten(File file) {
+        append(Kind.UPDATE_FILE, pathOf(file), File.snapshotOf(file), null);
+    }
+
+    @Override
+    public void folderCreated(Folder folder) {
+        append(Kind.CREATE_FOLDER, pathOf(folder), FileSystemManager.snapshotTree(folder), null);
+    }
+
+    @Override
+    public void folderDeleted(Folder folder) {
+        append(Kind.DELETE_FOLDER, pathOf(folder), null, null);
+    }
+
+    @Override
+    public void fileRenamed(File file, String previousName) {
+        String extension = file.getExtension();
+        String previousFullName = extension == null || extension.isEmpty() ? previousName : previousName + "." + extension;
+        append(Kind.RENAME_FILE, childPath(file.getParent(), previousFullName), null, file.getName());
+    }
+
+    @Override
+    public void folderRenamed(Folder folder, String previousName) {
+        append(Kind.RENAME_FOLDER, childPath(folder.getParent(), previousName), null, folder.getName());
+    }
+
+    private void append(Kind kind, String path, FileSystemEntity payload, String name) {
+        lock.lock();
+        try {
+            lastSequence++;
+            entries[slot(lastSequence)] = new Entry(lastSequence, System.currentTimeMillis(), kind, path, payload, name);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the sequence of the latest entry, or 0 if nothing has been logged.
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the sequence of the oldest retained entry, or the next sequence if none are retained.
+     */
+    public long firstSequence() {
+        lock.lock();
+        try {
+            return Math.max(1, lastSequence - entries.length + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param sequence the sequence of an entry.
+     * @return when that entry was logged, or -1 if it is not retained.
+     */
+    public long timestampOf(long sequence) {
+        lock.lock();
+        try {
+            if (sequence < Math.max(1, lastSequence - entries.length + 1) || sequence > lastSequence) {
+                return -1;
+            }
+            return entries[slot(sequence)].timestampMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads a batch of consecutive entries, waiting for the first one if it has not been logged yet.
+     * @param from the sequence of the first entry wanted.
+     * @param max the largest number of entries to return.
+     * @param timeout how long to wait for an entry.
+     * @param unit the unit of the timeout.
+     * @return the entries, empty if none arrived in time, or null if the entry at from is no longer retained.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public List<Entry> read(long from, int max, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (from > lastSequence) {
+                if (remaining <= 0) {
+                    return List.of();
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            if (from < Math.max(1, lastSequence - entries.length + 1)) {
+                return null;
+            }
+            int count = (int) Math.min(max, lastSequence - from + 1);
+            List<Entry> batch = new ArrayList<>(count);
+            for (long sequence = from; sequence < from + count; sequence++) {
+                batch.add(entries[slot(sequence)]);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % entries.length);
+    }
+
+    /**
+     * Builds the path of an entity from its parent chain. The root folder, which has no parent, is not named.
+     */
+    static String pathOf(FileSystemEntity entity) {
+        StringBuilder path = new StringBuilder();
+        for (FileSystemEntity current = entity; current.getParent() != null; current = current.getParent()) {
+            String name = current instanceof File file ? file.getFullName() : current.getName();
+            path.insert(0, name).insert(0, '/');
+        }
+        return path.isEmpty() ? "/" : path.toString();
+    }
+
+    private static String childPath(Folder parent, String name) {
+        String parentPath = parent == null ? "/" : pathOf(parent);
+        return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+    }
+}
@@ -0,0 +1,13 @@
+/**
+ * Receives progress updates from long-running operations.
+ * @author Tshiamo
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * @param done the number of entities processed so far.
+     * @param total the total number of entities the operation will process.
+     */
+    void progress(long done, long total);
+}
@@ -0,0 +1,218 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * What a {@link WorkloadReplayer} re-drives a trace against. The replayer finds each call's files and folders with
+ * {@link #query(Function)} and then makes the call, from several threads at once; any locking is the backend's own,
+ * so a replay measures it rather than a lock of the replayer's. Every call returns once it has taken effect.
+ * @author Tshiamo
+ */
+public interface ReplayBackend {
+
+    /**
+     * Runs a read-only lookup against the root folder, consistently with the backend's own calls.
+     * @param query the lookup to run.
+     * @return the lookup's result.
+     */
+    <R> R query(Function<Folder, R> query);
+
+    void createFile(File f);
+
+    void deleteFile(File f);
+
+    void appendToFile(File f, byte[] bytes);
+
+    void writeFile(File f, long offset, byte[] bytes);
+
+    void truncateFile(File f, long length);
+
+    void copyFile(File f, Folder d);
+
+    void moveFile(File f, Folder d);
+
+    void createFolder(Folder f);
+
+    void deleteFolder(Folder f);
+
+    void copyFolder(Folder f, Folder d);
+
+    void moveFolder(Folder f, Folder d);
+
+    /**
+     * Returns a backend that calls a manager directly. The manager is not thread-safe, so lookups run under a read
+     * lock and calls under a write lock, one at a time.
+     * @param manager the manager to replay against.
+     * @return the backend.
+     */
+    static ReplayBackend of(FileSystemManager manager) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+        return new ReplayBackend() {
+            @Override
+            public <R> R query(Function<Folder, R> query) {
+                lock.readLock().lock();
+                try {
+                    return query.apply(manager.getRoot());
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public void createFile(File f) {
+                write(() -> manager.createFile(f));
+            }
+
+            @Override
+            public void deleteFile(File f) {
+                write(() -> manager.deleteFile(f));
+            }
+
+            @Override
+            public void appendToFile(File f, byte[] bytes) {
+                write(() -> manager.appendToFile(f, bytes));
+            }
+
+            @Override
+            public void writeFile(File f, long offset, byte[] bytes) {
+                write(() -> manager.writeFile(f, offset, bytes));
+            }
+
+            @Override
+            public void truncateFile(File f, long length) {
+                write(() -> manager.truncateFile(f, length));
+            }
+
+            @Override
+            public void copyFile(File f, Folder d) {
+                write(() -> manager.copyFile(f, d));
+            }
+
+            @Override
+            public void moveFile(File f, Folder d) {
+                write(() -> manager.moveFile(f, d));
+            }
+
+            @Override
+            public void createFolder(Folder f) {
+                write(() -> manager.createFolder(f));
+            }
+
+            @Override
+            public void deleteFolder(Folder f) {
+                write(() -> manager.deleteFolder(f));
+            }
+
+            @Override
+            public void copyFolder(Folder f, Folder d) {
+                write(() -> manager.copyFolder(f, d));
+            }
+
+            @Override
+            public void moveFolder(Folder f, Folder d) {
+                write(() -> manager.moveFolder(f, d));
+            }
+
+            private void write(Runnable call) {
+                lock.writeLock().lock();
+                try {
+                    call.run();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a backend that makes each call through an asynchronous manager and waits for it, so that its own
+     * locking, memory reservations and subtree copies are what a replay measures.
+     * @param manager the manager to replay against.
+     * @return the backend.
+     */
+    static ReplayBackend of(AsyncFileSystemManager manager) {
+        if (manager == null) {
+            throw new IllegalArgumentException("AsyncFileSystemManager parameter cannot be null.");
+        }
+        return new ReplayBackend() {
+            @Override
+            public <R> R query(Function<Folder, R> query) {
+                return await(manager.read(query));
+            }
+
+            @Override
+            public void createFile(File f) {
+                await(manager.createFile(f));
+            }
+
+            @Override
+            public void deleteFile(File f) {
+                await(manager.deleteFile(f));
+            }
+
+            @Override
+            public void appendToFile(File f, byte[] bytes) {
+                await(manager.appendToFile(f, bytes));
+            }
+
+            @Override
+            public void writeFile(File f, long offset, byte[] bytes) {
+                await(manager.writeFile(f, offset, bytes));
+            }
+
+            @Override
+            public void truncateFile(File f, long length) {
+                await(manager.truncateFile(f, length));
+            }
+
+            @Override
+            public void copyFile(File f, Folder d) {
+                await(manager.copyFile(f, d));
+            }
+
+            @Override
+            public void moveFile(File f, Folder d) {
+                await(manager.moveFile(f, d));
+            }
+
+            @Override
+            public void createFolder(Folder f) {
+                await(manager.createFolder(f));
+            }
+
+            @Override
+            public void deleteFolder(Folder f) {
+                await(manager.deleteFolder(f));
+            }
+
+            @Override
+            public void copyFolder(Folder f, Folder d) {
+                await(manager.copyFolder(f, d));
+            }
+
+            @Override
+            public void moveFolder(Folder f, Folder d) {
+                await(manager.moveFolder(f, d));
+            }
+
+            /**
+             * Waits for a call, rethrowing what it failed with as it would have been thrown by the manager.
+             */
+            private <R> R await(CompletableFuture<R> future) {
+                try {
+                    return future.join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+}
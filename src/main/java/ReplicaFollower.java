@@ -0,0 +1,243 @@
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A read replica of a {@link ReplicationLeader}'s tree. Batches of log entries shipped by the leader are queued
+ * and applied in order on the follower's own virtual thread, so the leader never waits for a batch to be applied
+ * and can keep several in flight. Reads run against the follower's own {@link FileSystemManager} under a read
+ * lock and see every batch applied so far.
+ * If an entry cannot be applied, the follower asks the leader for a fresh snapshot instead of diverging.
+ * @author Tshiamo
+ */
+public class ReplicaFollower implements AutoCloseable {
+
+    private sealed interface Message permits Batch, Snapshot {
+    }
+
+    private record Batch(List<OperationLog.Entry> entries) implements Message {
+    }
+
+    private record Snapshot(Folder root, long sequence) implements Message {
+    }
+
+    private final FileSystemManager manager = new FileSystemManager();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final BlockingQueue<Message> inbox;
+    private final Thread applier;
+    private final ReentrantLock progressLock = new ReentrantLock();
+    private final Condition progressed = progressLock.newCondition();
+    private volatile long appliedSequence;
+    private volatile boolean needsSnapshot;
+    private volatile Runnable snapshotRequest;
+
+    public ReplicaFollower() {
+        this(16);
+    }
+
+    /**
+     * @param maxInFlight the number of shipped batches that may wait to be applied before the leader blocks.
+     */
+    public ReplicaFollower(int maxInFlight) {
+        this.inbox = new ArrayBlockingQueue<>(maxInFlight);
+        this.applier = Thread.ofVirtual().name("replica-applier").start(this::applyLoop);
+    }
+
+    /**
+     * Runs a read-only query against the replicated root folder.
+     * @param query the query to run.
+     * @return the query result.
+     */
+    public <R> R read(Function<Folder, R> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(manager.getRoot());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the sequence of the last log entry applied.
+     */
+    public long appliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Waits until the follower has applied a log entry.
+     * @param sequence the sequence to wait for.
+     * @param timeout how long to wait.
+     * @param unit the unit of the timeout.
+     * @return true if the entry was applied in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitSequence(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        progressLock.lock();
+        try {
+            while (appliedSequence < sequence) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = progressed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            progressLock.unlock();
+        }
+    }
+
+    /**
+     * Sets how the follower asks for a snapshot when it cannot apply an entry. A follower that is already waiting
+     * for one asks straight away.
+     * @param request called on the follower's applier thread, so it must not wait for the follower; or null.
+     */
+    void onSnapshotNeeded(Runnable request) {
+        snapshotRequest = request;
+        if (request != null && needsSnapshot) {
+            request.run();
+        }
+    }
+
+    void receive(List<OperationLog.Entry> entries) throws InterruptedException {
+        inbox.put(new Batch(entries));
+    }
+
+    void receiveSnapshot(Folder root, long sequence) throws InterruptedException {
+        inbox.put(new Snapshot(root, sequence));
+    }
+
+    private void applyLoop() {
+        try {
+            while (true) {
+                Message message = inbox.take();
+                lock.writeLock().lock();
+                try {
+                    if (message instanceof Snapshot snapshot) {
+                        install(snapshot);
+                        needsSnapshot = false;
+                        advance(snapshot.sequence());
+                    } else if (!needsSnapshot) {
+                        for (OperationLog.Entry entry : ((Batch) message).entries()) {
+                            if (entry.sequence() <= appliedSequence) {
+                                continue;
+                            }
+                            try {
+                                apply(entry);
+                            } catch (RuntimeException e) {
+                                needsSnapshot = true;
+                                Runnable request = snapshotRequest;
+                                if (request != null) {
+                                    request.run();
+                                }
+                                break;
+                            }
+                            advance(entry.sequence());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void advance(long sequence) {
+        progressLock.lock();
+        try {
+            appliedSequence = sequence;
+            progressed.signalAll();
+        } finally {
+            progressLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole tree with a copy of the snapshot, through the manager so its listeners see the change.
+     * The copy shares the snapshot's content, which may be shared with other followers too.
+     */
+    private void install(Snapshot snapshot) {
+        Folder root = manager.getRoot();
+        for (File file : List.copyOf(root.getFiles())) {
+            manager.deleteFile(file);
+        }
+        for (Folder folder : List.copyOf(root.getFolders())) {
+            manager.deleteFolder(folder);
+        }
+        for (File file : snapshot.root().getFiles()) {
+            File copy = File.snapshotOf(file);
+            copy.setParent(root);
+            manager.attachFile(copy);
+        }
+        for (Folder folder : snapshot.root().getFolders()) {
+            Folder copy = FileSystemManager.snapshotTree(folder);
+            copy.setParent(root);
+            manager.attachFolder(copy);
+        }
+    }
+
+    private void apply(OperationLog.Entry entry) {
+        List<String> names = LocalShard.split(entry.path());
+        FileSystemEntity parent = resolve(names.subList(0, names.size() - 1));
+        if (!(parent instanceof Folder folder)) {
+            throw new IllegalStateException("Parent of \"" + entry.path() + "\" is missing on the follower.");
+        }
+        switch (entry.kind()) {
+            case CREATE_FILE -> {
+                File copy = File.snapshotOf((File) entry.payload());
+                copy.setParent(folder);
+                manager.attachFile(copy);
+            }
+            case CREATE_FOLDER -> {
+                Folder copy = FileSystemManager.snapshotTree((Folder) entry.payload());
+                copy.setParent(folder);
+                manager.attachFolder(copy);
+            }
+            case UPDATE_FILE -> {
+                if (!(folder.findChild(names.get(names.size() - 1)) instanceof File file)) {
+                    throw new IllegalStateException("\"" + entry.path() + "\" is missing on the follower.");
+                }
+                File copy = File.snapshotOf((File) entry.payload());
+                copy.setParent(folder);
+                manager.deleteFile(file);
+                manager.attachFile(copy);
+            }
+            case DELETE_FILE, DELETE_FOLDER, RENAME_FILE, RENAME_FOLDER -> {
+                FileSystemEntity target = folder.findChild(names.get(names.size() - 1));
+                if (target instanceof File file && entry.kind() == OperationLog.Kind.DELETE_FILE) {
+                    manager.deleteFile(file);
+                } else if (target instanceof Folder subFolder && entry.kind() == OperationLog.Kind.DELETE_FOLDER) {
+                    manager.deleteFolder(subFolder);
+                } else if (target instanceof File file && entry.kind() == OperationLog.Kind.RENAME_FILE) {
+                    manager.renameFile(file, entry.name());
+                } else if (target instanceof Folder subFolder && entry.kind() == OperationLog.Kind.RENAME_FOLDER) {
+                    manager.renameFolder(subFolder, entry.name());
+                } else {
+                    throw new IllegalStateException("\"" + entry.path() + "\" is missing on the follower.");
+                }
+            }
+        }
+    }
+
+    private FileSystemEntity resolve(List<String> names) {
+        FileSystemEntity entity = manager.getRoot();
+        for (String name : names) {
+            entity = entity instanceof Folder folder ? folder.findChild(name) : null;
+        }
+        return entity;
+    }
+
+    @Override
+    public void close() {
+        applier.interrupt();
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Replicates a {@link FileSystemManager} to {@link ReplicaFollower}s by shipping its {@link OperationLog}.
+ * Changes go through {@link #write(Consumer)}, which serialises them so the log order is the order they were
+ * made in. Each follower has its own virtual thread that reads batches of up to {@code batchSize} entries and
+ * hands them to the follower without waiting for earlier batches to be applied; the follower's inbox bounds how
+ * far ahead it can get. A follower whose next entry has already left the log, or which failed to apply one,
+ * is sent a snapshot of the whole tree and continues from there.
+ * @author Tshiamo
+ */
+public class ReplicationLeader implements AutoCloseable {
+
+    /**
+     * How far a follower is behind the leader.
+     * @param entries the number of logged entries the follower has not applied yet.
+     * @param millis how long ago the oldest of those entries was logged, or 0 if it has caught up.
+     */
+    public record Lag(long entries, long millis) {
+    }
+
+    private static final long POLL_MILLIS = 100;
+
+    private final FileSystemManager manager;
+    private final OperationLog log;
+    private final int batchSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<ReplicaFollower, Thread> shippers = new ConcurrentHashMap<>();
+    private final Set<ReplicaFollower> snapshotRequests = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param manager the FileSystemManager to replicate.
+     * @param batchSize the largest number of entries shipped at once.
+     * @param retention the number of recent entries kept for followers that fall behind.
+     */
+    public ReplicationLeader(FileSystemManager manager, int batchSize, int retention) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.manager = manager;
+        this.batchSize = batchSize;
+        this.log = new OperationLog(retention);
+        manager.addListener(log);
+    }
+
+    public FileSystemManager getManager() {
+        return manager;
+    }
+
+    public OperationLog getLog() {
+        return log;
+    }
+
+    /**
+     * Makes changes to the replicated tree. Changes made to the manager any other way are still logged, but may
+     * interleave with a snapshot being taken.
+     * @param changes the changes to make.
+     */
+    public void write(Consumer<FileSystemManager> changes) {
+        lock.writeLock().lock();
+        try {
+            changes.accept(manager);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a read-only query against the leader's root folder.
+     * @param query the query to run.
+     * @return the query result.
+     */
+    public <R> R read(Function<Folder, R> query) {
+        lock.readLock().lock();
+        try {
+            return query.apply(manager.getRoot());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts shipping the log to a follower. A follower that has applied nothing yet starts from a snapshot, and
+     * one that fails to apply an entry asks for a snapshot, which its shipper sends next.
+     * @param follower the follower to replicate to.
+     */
+    public void addFollower(ReplicaFollower follower) {
+        if (follower == null) {
+            throw new IllegalArgumentException("Follower parameter cannot be null.");
+        }
+        shippers.computeIfAbsent(follower, f -> {
+            f.onSnapshotNeeded(() -> snapshotRequests.add(f));
+            return Thread.ofVirtual().name("replica-shipper").start(() -> ship(f));
+        });
+    }
+
+    public void removeFollower(ReplicaFollower follower) {
+        Thread shipper = shippers.remove(follower);
+        if (shipper != null) {
+            follower.onSnapshotNeeded(null);
+            snapshotRequests.remove(follower);
+            shipper.interrupt();
+        }
+    }
+
+    /**
+     * @param follower a follower added to this leader.
+     * @return how far the follower is behind.
+     */
+    public Lag lag(ReplicaFollower follower) {
+        long applied = follower.appliedSequence();
+        long behind = Math.max(0, log.lastSequence() - applied);
+        if (behind == 0) {
+            return new Lag(0, 0);
+        }
+        long timestamp = log.timestampOf(applied + 1);
+        if (timestamp < 0) {
+            timestamp = log.timestampOf(log.firstSequence());
+        }
+        return new Lag(behind, timestamp < 0 ? 0 : Math.max(0, System.currentTimeMillis() - timestamp));
+    }
+
+    private void ship(ReplicaFollower follower) {
+        long next = follower.appliedSequence() + 1;
+        long pendingSnapshot = -1;
+        // A follower that has applied nothing yet may be missing whatever the tree held before the log started.
+        boolean started = next > 1;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (pendingSnapshot >= 0) {
+                    if (!follower.awaitSequence(pendingSnapshot, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    pendingSnapshot = -1;
+                }
+                boolean requested = snapshotRequests.remove(follower);
+                List<OperationLog.Entry> batch = !started || requested ? null
+                        : log.read(next, batchSize, POLL_MILLIS, TimeUnit.MILLISECONDS);
+                started = true;
+                if (batch == null) {
+                    pendingSnapshot = sendSnapshot(follower);
+                    next = pendingSnapshot + 1;
+                } else if (!batch.isEmpty()) {
+                    follower.receive(batch);
+                    next = batch.get(batch.size() - 1).sequence() + 1;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies the tree under the read lock, so no change lands between the copy and the sequence it is taken at.
+     * @return the sequence the snapshot reflects.
+     */
+    private long sendSnapshot(ReplicaFollower follower) throws InterruptedException {
+        Folder root;
+        long sequence;
+        lock.readLock().lock();
+        try {
+            root = FileSystemManager.snapshotTree(manager.getRoot());
+            sequence = log.lastSequence();
+        } finally {
+            lock.readLock().unlock();
+        }
+        follower.receiveSnapshot(root, sequence);
+        return sequence;
+    }
+
+    @Override
+    public void close() {
+        for (ReplicaFollower follower : List.copyOf(shippers.keySet())) {
+            removeFollower(follower);
+        }
+        manager.removeListener(log);
+    }
+}
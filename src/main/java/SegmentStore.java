@@ -0,0 +1,105 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only storage for byte arrays in a directory of fixed-size segment files. Records are appended to the
+ * newest segment and a new one is started when it is full; each record is found again by its {@link Location}.
+ * Records are never rewritten, so reads need no lock.
+ * @author Tshiamo
+ */
+final class SegmentStore implements Closeable {
+
+    /**
+     * Where a record was written.
+     * @param segment the index of the segment file.
+     * @param offset the position of the record in the segment.
+     * @param length the length of the record.
+     */
+    record Location(int segment, long offset, int length) {
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final List<FileChannel> segments = new CopyOnWriteArrayList<>();
+    private long writeOffset;
+    private long bytesWritten;
+
+    /**
+     * @param directory the directory to create segment files in.
+     * @param segmentSize the size at which a segment is closed and a new one started.
+     */
+    SegmentStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create " + directory + ".", e);
+        }
+    }
+
+    synchronized Location append(byte[] data) {
+        try {
+            if (segments.isEmpty() || (writeOffset > 0 && writeOffset + data.length > segmentSize)) {
+                Path path = directory.resolve(String.format("segment-%05d.dat", segments.size()));
+                segments.add(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+                writeOffset = 0;
+            }
+            FileChannel channel = segments.get(segments.size() - 1);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long position = writeOffset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            Location location = new Location(segments.size() - 1, writeOffset, data.length);
+            writeOffset = position;
+            bytesWritten += data.length;
+            return location;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write to a segment in " + directory + ".", e);
+        }
+    }
+
+    byte[] read(Location location) {
+        return read(location, location.length());
+    }
+
+    /**
+     * Reads at most the given number of bytes from the start of a record.
+     */
+    byte[] read(Location location, int length) {
+        byte[] data = new byte[Math.min(length, location.length())];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        FileChannel channel = segments.get(location.segment());
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, location.offset() + buffer.position()) < 0) {
+                    throw new IOException("Segment " + location.segment() + " ends before the record does.");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read from a segment in " + directory + ".", e);
+        }
+        return data;
+    }
+
+    synchronized long bytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (FileChannel channel : segments) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * One partition of a {@link ShardedFileSystem}. A shard holds the top-level folders and files routed to it, and
+ * its root stands for the root of the whole namespace, so every path is absolute, "/"-separated and the same on
+ * every shard. Operations are addressed by path rather than by object so the interface can be carried over a
+ * transport; {@link LocalShard} is the in-process implementation.
+ * <p>
+ * Moves between shards use a two-phase protocol: the source prepares to remove the entity and hands out a
+ * detached copy, the target prepares to add that copy, and both then commit or abort under the same
+ * transaction id. A prepared path is locked on its shard until the transaction finishes.
+ * @author Tshiamo
+ */
+public interface Shard {
+
+    String getId();
+
+    /**
+     * Creates a folder.
+     * @param path the path of the new folder; its parent must exist.
+     */
+    void createFolder(String path);
+
+    /**
+     * Creates a file.
+     * @param path the path of the new file, ending in "name.extension"; its parent must exist.
+     * @param createdDate the date the file was created.
+     * @param content the content of the file.
+     */
+    void createFile(String path, Date createdDate, byte[] content);
+
+    /**
+     * Deletes a file or folder.
+     * @param path the path of the file or folder.
+     */
+    void delete(String path);
+
+    /**
+     * Moves a file or folder to another folder on this shard.
+     * @param path the path of the file or folder to move.
+     * @param targetFolderPath the path of the destination folder.
+     */
+    void move(String path, String targetFolderPath);
+
+    /**
+     * First phase of removing a file or folder for a move to another shard. Locks the path and returns a
+     * detached copy of the entity and everything beneath it.
+     * @param transactionId the id of the move.
+     * @param path the path of the file or folder.
+     * @return a copy with no parent.
+     */
+    FileSystemEntity prepareRemove(String transactionId, String path);
+
+    /**
+     * First phase of adding a file or folder moved from another shard. Checks that the target folder exists and
+     * has room for the entity's name, and locks the new path.
+     * @param transactionId the id of the move.
+     * @param targetFolderPath the path of the destination folder.
+     * @param entity the detached copy returned by the source shard.
+     */
+    void prepareAdd(String transactionId, String targetFolderPath, FileSystemEntity entity);
+
+    /**
+     * Second phase: applies what was prepared under a transaction id and releases its lock.
+     * @param transactionId the id of the move.
+     */
+    void commit(String transactionId);
+
+    /**
+     * Second phase: drops what was prepared under a transaction id and releases its lock.
+     * Aborting an unknown transaction does nothing.
+     * @param transactionId the id of the move.
+     */
+    void abort(String transactionId);
+
+    /**
+     * Runs a read-only query against this shard's root folder. Remote transports need queries they can ship.
+     * @param query the query to run.
+     * @return the query result.
+     */
+    <R> R query(Function<Folder, R> query);
+}
@@ -0,0 +1,245 @@
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Partitions one namespace across several {@link Shard}s. Each top-level folder or file, with everything beneath
+ * it, lives on the shard its name routes to, either by an explicit prefix table or by consistent hashing, so
+ * every path is served by exactly one shard and each shard is its own heap and lock domain.
+ * <p>
+ * Moves within a shard are delegated to it. Moves whose destination routes to another shard run as a two-phase
+ * operation: both shards prepare, then both commit, and if either side cannot prepare both abort and the source
+ * is left untouched. Queries that span the namespace fan out to every shard in parallel.
+ * @author Tshiamo
+ */
+public class ShardedFileSystem implements AutoCloseable {
+
+    private final List<Shard> shards;
+    private final Function<String, Shard> router;
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+    private ShardedFileSystem(List<Shard> shards, Function<String, Shard> router) {
+        this.shards = List.copyOf(shards);
+        this.router = router;
+    }
+
+    /**
+     * Routes each top-level name by an exact, case-insensitive prefix table.
+     * @param prefixes the shard for each top-level name.
+     * @param fallback the shard for top-level names not in the table.
+     * @return the sharded file system.
+     */
+    public static ShardedFileSystem byPrefix(Map<String, Shard> prefixes, Shard fallback) {
+        if (prefixes == null || fallback == null) {
+            throw new IllegalArgumentException("Prefixes and fallback Shard parameters cannot be null.");
+        }
+        Map<String, Shard> folded = new TreeMap<>();
+        List<Shard> shards = new ArrayList<>();
+        shards.add(fallback);
+        prefixes.forEach((prefix, shard) -> {
+            folded.put(Name.fold(prefix), shard);
+            if (!shards.contains(shard)) {
+                shards.add(shard);
+            }
+        });
+        return new ShardedFileSystem(shards, name -> folded.getOrDefault(name, fallback));
+    }
+
+    /**
+     * Routes each top-level name by consistent hashing, so adding a shard only moves the names that land on it.
+     * @param shards the shards to spread the namespace over.
+     * @param virtualNodes how many points each shard takes on the hash ring; more points even out the load.
+     * @return the sharded file system.
+     */
+    public static ShardedFileSystem byHash(List<Shard> shards, int virtualNodes) {
+        if (shards == null || shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one shard and one virtual node are required.");
+        }
+        NavigableMap<Integer, Shard> ring = new TreeMap<>();
+        for (Shard shard : shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard.getId() + "#" + i), shard);
+            }
+        }
+        return new ShardedFileSystem(shards, name -> {
+            Map.Entry<Integer, Shard> entry = ring.ceilingEntry(hash(name));
+            return (entry == null ? ring.firstEntry() : entry).getValue();
+        });
+    }
+
+    /**
+     * Spreads a string's hash code over all 32 bits, so nearby names land on distant points of the ring.
+     */
+    private static int hash(String value) {
+        int h = value.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param path an absolute path below the root.
+     * @return the shard holding the path.
+     */
+    public Shard shardFor(String path) {
+        List<String> names = LocalShard.split(path);
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("The root folder spans every shard.");
+        }
+        return route(names.get(0));
+    }
+
+    private Shard route(String topLevelName) {
+        return router.apply(Name.fold(topLevelName));
+    }
+
+    public void createFolder(String path) {
+        shardFor(path).createFolder(path);
+    }
+
+    public void createFile(String path, Date createdDate, byte[] content) {
+        shardFor(path).createFile(path, createdDate, content);
+    }
+
+    public void delete(String path) {
+        shardFor(path).delete(path);
+    }
+
+    /**
+     * Moves a file or folder into another folder, across shards if the destination routes elsewhere.
+     * @param path the path of the file or folder to move.
+     * @param targetFolderPath the path of the destination folder, or "/" for the root.
+     */
+    public void move(String path, String targetFolderPath) {
+        Shard source = shardFor(path);
+        List<String> names = LocalShard.split(path);
+        List<String> targetNames = LocalShard.split(targetFolderPath);
+        Shard target = route(targetNames.isEmpty() ? names.get(names.size() - 1) : targetNames.get(0));
+        if (source == target) {
+            source.move(path, targetFolderPath);
+            return;
+        }
+        String transactionId = UUID.randomUUID().toString();
+        FileSystemEntity copy = source.prepareRemove(transactionId, path);
+        try {
+            target.prepareAdd(transactionId, targetFolderPath, copy);
+        } catch (RuntimeException e) {
+            source.abort(transactionId);
+            throw e;
+        }
+        try {
+            target.commit(transactionId);
+        } catch (RuntimeException e) {
+            target.abort(transactionId);
+            source.abort(transactionId);
+            throw e;
+        }
+        source.commit(transactionId);
+    }
+
+    /**
+     * Runs a read-only query on every shard in parallel.
+     * @param query the query to run against each shard's root folder.
+     * @return the result from each shard, in shard order.
+     */
+    public <R> List<R> queryAll(Function<Folder, R> query) {
+        List<CompletableFuture<R>> futures = new ArrayList<>();
+        for (Shard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> shard.query(query), fanOut));
+        }
+        List<R> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<R> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Finds the paths of every file matching a predicate, searching all shards in parallel.
+     * @param predicate the test each file must pass.
+     * @return the matching paths, sorted.
+     */
+    public List<String> findFiles(Predicate<File> predicate) {
+        List<String> paths = new ArrayList<>();
+        for (List<String> shardPaths : queryAll(root -> {
+            List<String> found = new ArrayList<>();
+            collect(root, "", predicate, found);
+            return found;
+        })) {
+            paths.addAll(shardPaths);
+        }
+        paths.sort(null);
+        return paths;
+    }
+
+    private static void collect(Folder folder, String prefix, Predicate<File> predicate, List<String> found) {
+        for (File file : folder.getFiles()) {
+            if (predicate.test(file)) {
+                found.add(prefix + "/" + file.getFullName());
+            }
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            collect(subFolder, prefix + "/" + subFolder.getName(), predicate, found);
+        }
+    }
+
+    /**
+     * Lists the names of a folder's children. Listing the root gathers the top-level names from every shard.
+     * @param folderPath the path of the folder.
+     * @return the sub-folder names followed by the file names, each group sorted.
+     */
+    public List<String> list(String folderPath) {
+        List<String> names = LocalShard.split(folderPath);
+        Function<Folder, List<List<String>>> children = root -> {
+            FileSystemEntity entity = root;
+            for (String name : names) {
+                entity = entity instanceof Folder folder ? folder.findChild(name) : null;
+            }
+            if (!(entity instanceof Folder folder)) {
+                throw new IllegalArgumentException("\"" + folderPath + "\" is not a folder.");
+            }
+            return List.of(folder.getFolders().stream().map(Folder::getName).toList(),
+                    folder.getFiles().stream().map(File::getFullName).toList());
+        };
+        List<List<List<String>>> parts = names.isEmpty() ? queryAll(children) : List.of(route(names.get(0)).query(children));
+        List<String> folders = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (List<List<String>> part : parts) {
+            folders.addAll(part.get(0));
+            files.addAll(part.get(1));
+        }
+        folders.sort(null);
+        files.sort(null);
+        folders.addAll(files);
+        return folders;
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdown();
+    }
+}
@@ -0,0 +1,65 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The content of a small file, packed with many others into a shared slab of a {@link SlabStore} and found again
+ * by its slab, offset and length. The location may change when the store compacts its slabs. Copies of a file
+ * share its fragment, since content never changes.
+ * @author Tshiamo
+ */
+public final class SlabContent implements FileContent {
+
+    final SlabStore store;
+    final int length;
+    final int checksum;
+    // Where the fragment is, read without the store's lock and replaced as a whole; null once it has been freed.
+    volatile Location location;
+    // The fields below are guarded by the store.
+    int slab;
+    int references;
+    boolean dead;
+
+    /**
+     * A slab buffer and the offset of the fragment in it, published together so a reader never pairs one slab's
+     * buffer with an offset into another.
+     */
+    record Location(ByteBuffer buffer, int offset) {
+    }
+
+    SlabContent(SlabStore store, int length, int checksum) {
+        this.store = store;
+        this.length = length;
+        this.checksum = checksum;
+    }
+
+    @Override
+    public long size() {
+        return length;
+    }
+
+    /**
+     * Returns a copy of the content read out of its slab.
+     */
+    @Override
+    public byte[] toByteArray() {
+        return store.read(this);
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(store.read(this)).asReadOnlyBuffer();
+    }
+
+    @Override
+    public boolean verify() {
+        return store.verify(this);
+    }
+
+    /**
+     * Returns the bytes in their own array. Snapshots are kept by logs and replicas, outside any tree the store
+     * follows, so they cannot rely on the fragment staying live.
+     */
+    @Override
+    public FileContent snapshot() {
+        return new ByteArrayContent(store.read(this));
+    }
+}
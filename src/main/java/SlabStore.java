@@ -0,0 +1,329 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Packs the content of small files into large shared slabs, on the heap or off it. A small payload held in its own
+ * array pays for an array header, alignment padding and a content object around it, which for files under 1 KiB
+ * can be as much as the payload itself. Here each file's content is a fragment of a slab, allocated by bumping an
+ * offset, and {@link SlabContent} only records where it is.
+ * <p>
+ * Fragments are shared by copies of a file, so a store following a manager through
+ * {@link #follow(FileSystemManager)} counts the files in its tree holding each fragment, as the manager reports
+ * files created, deleted and reclaimed. A fragment that no attached file holds any more is dead, and
+ * {@link #compact()} moves the live fragments out of slabs that are at least half dead and frees them. Content that
+ * has never been attached, such as that of a file staged in an uncommitted transaction, is never dead, and content
+ * stored but then dropped without being attached is freed by {@link #release(SlabContent)}. Detached copies of an
+ * attached file read its fragment only while some attached file still holds it.
+ * <p>
+ * Reads do not take the store's lock. A fragment's slab buffer and offset are published together, in one write,
+ * after its bytes are in place, so a read sees either the old location or the new one. A read that races with
+ * compaction moving the fragment may read the old one; the buffer of a freed slab is never written again, so the
+ * old bytes stay readable until the read is done.
+ * @author Tshiamo
+ */
+public class SlabStore {
+
+    /**
+     * Counters for the store.
+     * @param slabs slabs currently allocated.
+     * @param slabBytes bytes allocated for slabs.
+     * @param usedBytes bytes of slab holding fragments, including dead ones not yet freed.
+     * @param deadBytes bytes of dead fragments not yet freed.
+     * @param fragments fragments held in slabs and not dead.
+     */
+    public record Stats(int slabs, long slabBytes, long usedBytes, long deadBytes, long fragments) {
+    }
+
+    static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+    static final int DEFAULT_MAX_FRAGMENT = 1024;
+
+    private static final class Slab {
+        private final ByteBuffer buffer;
+        private final List<SlabContent> fragments = new ArrayList<>();
+        private int used;
+        private long dead;
+
+        private Slab(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    private final int slabSize;
+    private final int maxFragment;
+    private final boolean direct;
+    private final List<Slab> slabs = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int current = -1;
+    private long usedBytes;
+    private long deadBytes;
+    private long fragments;
+
+    /**
+     * Creates a store of 1 MiB heap slabs for content of up to 1 KiB.
+     */
+    public SlabStore() {
+        this(DEFAULT_SLAB_SIZE, DEFAULT_MAX_FRAGMENT, false);
+    }
+
+    /**
+     * @param slabSize the size of each slab in bytes.
+     * @param maxFragment the largest content packed into a slab.
+     * @param direct true to allocate slabs off the heap.
+     */
+    public SlabStore(int slabSize, int maxFragment, boolean direct) {
+        if (maxFragment < 1 || slabSize < maxFragment) {
+            throw new IllegalArgumentException("Fragments must be positive and fit in a slab.");
+        }
+        this.slabSize = slabSize;
+        this.maxFragment = maxFragment;
+        this.direct = direct;
+    }
+
+    /**
+     * Counts the files beneath the manager's root holding content from this store, and registers the store to
+     * follow later changes. A folder deleted without a {@link SubtreeReclaimer} releases the content beneath it
+     * straight away; with one, each file's content is released as it is reclaimed. Deleted files put back by a
+     * transaction that rolls back take their content back, as long as it has not been compacted away in between.
+     * @param manager the manager whose files hold content from this store.
+     */
+    public void follow(FileSystemManager manager) {
+        if (manager == null) {
+            throw new IllegalArgumentException("FileSystemManager parameter cannot be null.");
+        }
+        Releaser releaser = new Releaser(manager);
+        releaser.folderCreated(manager.getRoot());
+        manager.addListener(releaser);
+    }
+
+    /**
+     * Returns content for a file, packed into a slab if it is small enough and held in its own array otherwise.
+     * @param bytes the content.
+     * @return the content, for use in a {@link File}.
+     */
+    public FileContent store(byte[] bytes) {
+        if (bytes != null && bytes.length > maxFragment) {
+            return new ByteArrayContent(bytes);
+        }
+        return put(bytes);
+    }
+
+    /**
+     * Packs content into a slab. The bytes are copied, so the array can be reused.
+     * @param bytes content of at most the maximum fragment size.
+     * @return the packed content.
+     */
+    public synchronized SlabContent put(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Content cannot be null.");
+        }
+        if (bytes.length > maxFragment) {
+            throw new IllegalArgumentException("Content of " + bytes.length + " bytes is larger than "
+                    + maxFragment + " bytes.");
+        }
+        SlabContent content = new SlabContent(this, bytes.length, Checksums.crc(bytes, 0, bytes.length));
+        place(content, bytes);
+        usedBytes += bytes.length;
+        fragments++;
+        return content;
+    }
+
+    /**
+     * Frees content that was stored but will never be attached to a followed tree, such as content of a file
+     * that failed to be created. Content held by attached files is left alone.
+     * @param content the content to drop.
+     */
+    public synchronized void release(SlabContent content) {
+        if (content.store != this) {
+            throw new IllegalArgumentException("Content does not belong to this store.");
+        }
+        if (content.references == 0 && !content.dead && content.location != null) {
+            kill(content);
+        }
+    }
+
+    /**
+     * Counts another attached file holding content, bringing the fragment back if it was dead and has not been
+     * freed.
+     */
+    private synchronized void retain(SlabContent content) {
+        if (content.location == null) {
+            return;
+        }
+        if (content.dead) {
+            content.dead = false;
+            slabs.get(content.slab).dead -= content.length;
+            deadBytes -= content.length;
+            fragments++;
+        }
+        content.references++;
+    }
+
+    /**
+     * Counts one attached file fewer holding content; the fragment is dead once none does.
+     */
+    private synchronized void drop(SlabContent content) {
+        if (content.references > 0 && --content.references == 0) {
+            kill(content);
+        }
+    }
+
+    private void kill(SlabContent content) {
+        content.dead = true;
+        slabs.get(content.slab).dead += content.length;
+        deadBytes += content.length;
+        fragments--;
+    }
+
+    /**
+     * Moves the live fragments out of every slab that is at least half dead, other than the one being filled, and
+     * frees those slabs. Only slabs and their fragments are visited, not the trees holding them, and reads carry
+     * on while fragments move.
+     * @return the number of bytes of slab freed.
+     */
+    public synchronized long compact() {
+        int filling = current;
+        long freed = 0;
+        for (int index = 0; index < slabs.size(); index++) {
+            Slab slab = slabs.get(index);
+            if (slab == null || index == filling || index == current || slab.dead * 2 < slab.used) {
+                continue;
+            }
+            for (SlabContent fragment : slab.fragments) {
+                if (fragment.dead) {
+                    fragment.location = null;
+                } else {
+                    byte[] bytes = new byte[fragment.length];
+                    slab.buffer.get(fragment.location.offset(), bytes);
+                    place(fragment, bytes);
+                }
+            }
+            usedBytes -= slab.dead;
+            deadBytes -= slab.dead;
+            slabs.set(index, null);
+            freeSlots.push(index);
+            freed += slabSize;
+        }
+        return freed;
+    }
+
+    public synchronized Stats getStats() {
+        int allocated = slabs.size() - freeSlots.size();
+        return new Stats(allocated, (long) allocated * slabSize, usedBytes, deadBytes, fragments);
+    }
+
+    byte[] read(SlabContent content) {
+        SlabContent.Location location = content.location;
+        if (location == null) {
+            throw new IllegalStateException("Content has been freed.");
+        }
+        byte[] bytes = new byte[content.length];
+        location.buffer().get(location.offset(), bytes);
+        return bytes;
+    }
+
+    boolean verify(SlabContent content) {
+        if (content.location == null) {
+            return true;
+        }
+        byte[] bytes = read(content);
+        return Checksums.crc(bytes, 0, bytes.length) == content.checksum;
+    }
+
+    /**
+     * Copies content to the end of the slab being filled, starting a new slab when it is full, then publishes its
+     * new location to readers.
+     */
+    private void place(SlabContent content, byte[] bytes) {
+        if (current < 0 || slabs.get(current).used + bytes.length > slabSize) {
+            Slab slab = new Slab(direct ? ByteBuffer.allocateDirect(slabSize) : ByteBuffer.allocate(slabSize));
+            if (freeSlots.isEmpty()) {
+                slabs.add(slab);
+                current = slabs.size() - 1;
+            } else {
+                current = freeSlots.pop();
+                slabs.set(current, slab);
+            }
+        }
+        Slab slab = slabs.get(current);
+        slab.buffer.put(slab.used, bytes);
+        content.slab = current;
+        content.location = new SlabContent.Location(slab.buffer, slab.used);
+        slab.used += bytes.length;
+        slab.fragments.add(content);
+    }
+
+    /**
+     * Counts the files holding content as a manager attaches, deletes and reclaims them.
+     */
+    private final class Releaser implements FileSystemListener {
+        private final FileSystemManager manager;
+        // Folders deleted for the reclaimer whose files still count as holders, until reclaimed or put back.
+        private final Set<Folder> detached = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        private Releaser(FileSystemManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public void fileCreated(File file) {
+            if (held(file) instanceof SlabContent content) {
+                retain(content);
+            }
+        }
+
+        @Override
+        public void folderCreated(Folder folder) {
+            if (detached.remove(folder)) {
+                return;
+            }
+            for (File file : folder.getFiles()) {
+                fileCreated(file);
+            }
+            for (Folder subFolder : folder.getFolders()) {
+                folderCreated(subFolder);
+            }
+        }
+
+        @Override
+        public void fileDeleted(File file) {
+            if (held(file) instanceof SlabContent content) {
+                drop(content);
+            }
+        }
+
+        @Override
+        public void folderDeleted(Folder folder) {
+            if (manager.getReclaimer() != null) {
+                detached.add(folder);
+                return;
+            }
+            for (File file : folder.getFiles()) {
+                fileDeleted(file);
+            }
+            for (Folder subFolder : folder.getFolders()) {
+                folderDeleted(subFolder);
+            }
+        }
+
+        @Override
+        public void fileReclaimed(File file) {
+            fileDeleted(file);
+        }
+
+        @Override
+        public void folderReclaimed(Folder folder) {
+            detached.remove(folder);
+        }
+
+        private FileContent held(File file) {
+            FileContent content = file.getFileContent();
+            return content instanceof SlabContent slab && slab.store == SlabStore.this ? content : null;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Folder copies and moves that run as {@link JobScheduler} jobs without shutting out interactive calls. Instead of
+ * holding the manager's lock for the whole subtree, the source is counted and then copied a chunk of entities at a
+ * time under the read lock, checking in with the job between chunks. Writers waiting for the lock get it between
+ * chunks, so the time an interactive call can wait is bounded by the chunk size rather than the size of the
+ * subtree. Only attaching the copy, and for a move deleting the source, takes the write lock.
+ * <p>
+ * A listener watches the source while it is copied. If anything beneath it is created, deleted, renamed, appended
+ * to or written between chunks, the copy no longer matches the source and is started again; a source that changes
+ * during three attempts in a row fails the job rather than being copied under the write lock. The listener also
+ * watches the source's ancestors and the destination, and the job fails if either is deleted or moved away, so a
+ * move never brings back a subtree that was deleted while it was being copied. The copy or move therefore reflects
+ * the source at one point in time, like {@link FileSystemManager#copyFolder(Folder, Folder)}. The memory the
+ * copy adds is acquired from the manager's budget before the write lock is taken, as
+ * {@link AsyncFileSystemManager} does, so a blocking budget waits while the writers that release memory can still
+ * run. Deleting the source of a move still releases it under the write lock, so a manager with a budget should
+ * also have a {@link SubtreeReclaimer} to keep the final step short. Jobs can run alongside an
+ * {@link AsyncFileSystemManager} by being given it in place of a manager and a lock.
+ * @author Tshiamo
+ */
+public final class SubtreeJobs {
+
+    private static final int ATTEMPTS = 3;
+
+    private SubtreeJobs() {
+    }
+
+    /**
+     * Returns a task that copies a folder and everything beneath it into a destination folder.
+     * @param manager the manager owning both folders.
+     * @param lock the lock guarding the manager, which interactive calls must also take.
+     * @param f the Folder object to copy.
+     * @param d the destination Folder object.
+     * @param chunkSize the most entities copied while holding the read lock.
+     * @return the task, to be submitted to a {@link JobScheduler}.
+     */
+    public static JobScheduler.Task copyFolder(FileSystemManager manager, ReadWriteLock lock, Folder f, Folder d,
+                                               int chunkSize) {
+        check(manager, lock, f, d, chunkSize);
+        return job -> transfer(job, manager, lock, f, d, chunkSize, false);
+    }
+
+    /**
+     * Returns a task that copies a folder and everything beneath it into a destination folder, taking the same
+     * lock as the asynchronous manager's own calls.
+     * @param manager the asynchronous manager owning both folders.
+     * @param f the Folder object to copy.
+     * @param d the destination Folder object.
+     * @param chunkSize the most entities copied while holding the read lock.
+     * @return the task, to be submitted to a {@link JobScheduler}.
+     */
+    public static JobScheduler.Task copyFolder(AsyncFileSystemManager manager, Folder f, Folder d, int chunkSize) {
+        if (manager == null) {
+            throw new IllegalArgumentException("AsyncFileSystemManager parameter cannot be null.");
+        }
+        return copyFolder(manager.getManager(), manager.lock(), f, d, chunkSize);
+    }
+
+    /**
+     * Returns a task that moves a folder and everything beneath it into a destination folder.
+     * @param manager the manager owning both folders.
+     * @param lock the lock guarding the manager, which interactive calls must also take.
+     * @param f the Folder object to move.
+     * @param d the destination Folder object.
+     * @param chunkSize the most entities copied while holding the read lock.
+     * @return the task, to be submitted to a {@link JobScheduler}.
+     */
+    public static JobScheduler.Task moveFolder(FileSystemManager manager, ReadWriteLock lock, Folder f, Folder d,
+                                               int chunkSize) {
+        check(manager, lock, f, d, chunkSize);
+        return job -> transfer(job, manager, lock, f, d, chunkSize, true);
+    }
+
+    /**
+     * Returns a task that moves a folder and everything beneath it into a destination folder, taking the same
+     * lock as the asynchronous manager's own calls.
+     * @param manager the asynchronous manager owning both folders.
+     * @param f the Folder object to move.
+     * @param d the destination Folder object.
+     * @param chunkSize the most entities copied while holding the read lock.
+     * @return the task, to be submitted to a {@link JobScheduler}.
+     */
+    public static JobScheduler.Task moveFolder(AsyncFileSystemManager manager, Folder f, Folder d, int chunkSize) {
+        if (manager == null) {
+            throw new IllegalArgumentException("AsyncFileSystemManager parameter cannot be null.");
+        }
+        return moveFolder(manager.getManager(), manager.lock(), f, d, chunkSize);
+    }
+
+    private static void check(FileSystemManager manager, ReadWriteLock lock, Folder f, Folder d, int chunkSize) {
+        if (manager == null || lock == null || f == null || d == null) {
+            throw new IllegalArgumentException("Manager, lock and folder parameters cannot be null.");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+    }
+
+    private static void transfer(JobScheduler.Job job, FileSystemManager manager, ReadWriteLock lock, Folder f,
+                                 Folder d, int chunkSize, boolean move) throws InterruptedException {
+        long started = System.nanoTime();
+        FileSystemOperationEvent event = FileSystemOperationEvent.begin(move ? "moveFolder" : "copyFolder");
+        for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+            Watcher watcher = new Watcher(f, d);
+            lock.writeLock().lock();
+            try {
+                checkAttached(manager, f, d);
+                if (move && f.isParentOf(d)) {
+                    throw new IllegalStateException("Illegal operation: Cannot move a folder into its subfolder.");
+                }
+                manager.addListener(watcher);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                Walk count = new Walk(job, lock, chunkSize, false, watcher);
+                count.run(f, 0);
+                Walk copy = new Walk(job, lock, chunkSize, true, watcher);
+                Folder copied = copy.run(f, count.done);
+                job.checkpoint();
+                if (watcher.changed) {
+                    continue;
+                }
+                long reserved = reserve(manager, d, copied);
+                boolean changed;
+                lock.writeLock().lock();
+                try {
+                    changed = watcher.changed;
+                    manager.runReserved(d, reserved, () -> {
+                        checkAttached(manager, f, d);
+                        if (!changed) {
+                            copied.setParent(d);
+                            manager.attachCopy(f, d, copied, move, OperationLog.pathOf(f), started, event);
+                        }
+                    });
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (!changed) {
+                    job.progress(count.done, count.done);
+                    return;
+                }
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    manager.removeListener(watcher);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        throw new IllegalStateException("Folder " + f.getName() + " changed during each of " + ATTEMPTS
+                + " attempts to copy it.");
+    }
+
+    /**
+     * Acquires the memory the copy adds beneath the destination before the write lock is taken. What is not used,
+     * because the copy is thrown away or the attach fails, is released by {@link FileSystemManager#runReserved(Folder, long, Runnable)}.
+     * @return the bytes acquired, or 0 if the manager has no budget.
+     */
+    private static long reserve(FileSystemManager manager, Folder d, Folder copy) {
+        MemoryBudget budget = manager.getMemoryBudget();
+        if (budget == null) {
+            return 0;
+        }
+        long bytes = MemoryBudget.costOf(copy);
+        budget.acquire(d, bytes);
+        return bytes;
+    }
+
+    /**
+     * Fails the job if the source or the destination is no longer part of the manager's tree. Deleted folders keep
+     * their parent, so each folder on the way up must still be listed by its parent.
+     */
+    private static void checkAttached(FileSystemManager manager, Folder f, Folder d) {
+        if (!isAttached(manager, f) || !isAttached(manager, d)) {
+            throw new IllegalStateException("Source or destination folder is no longer part of the root hierarchy.");
+        }
+    }
+
+    private static boolean isAttached(FileSystemManager manager, Folder folder) {
+        Folder root = manager.getRoot();
+        for (Folder current = folder; current != root; current = current.getParent()) {
+            if (current.getParent() == null || !current.getParent().getFolders().contains(current)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks a subtree depth first a chunk at a time, copying it or just counting it. The position in each folder
+     * is kept by index, so if the source changes between chunks the walk may skip or repeat entities; the
+     * watcher sees the change, and the walk stops early and its result is thrown away. The walk fails as soon as the
+     * watcher sees the source or the destination detached.
+     */
+    private static final class Walk {
+
+        private static final class Frame {
+            private final Folder source;
+            private final Folder copy;
+            private int files;
+            private int folders;
+
+            private Frame(Folder source, Folder copy) {
+                this.source = source;
+                this.copy = copy;
+            }
+        }
+
+        private final JobScheduler.Job job;
+        private final ReadWriteLock lock;
+        private final int chunkSize;
+        private final boolean copying;
+        private final Watcher watcher;
+        private long done;
+
+        private Walk(JobScheduler.Job job, ReadWriteLock lock, int chunkSize, boolean copying, Watcher watcher) {
+            this.job = job;
+            this.lock = lock;
+            this.chunkSize = chunkSize;
+            this.copying = copying;
+            this.watcher = watcher;
+        }
+
+        /**
+         * @param total the number of entities counted, for progress, or 0 when counting.
+         * @return the detached copy, or null when counting.
+         */
+        private Folder run(Folder root, long total) throws InterruptedException {
+            Deque<Frame> stack = new ArrayDeque<>();
+            Folder top = copying ? new Folder(root.getName(), null) : null;
+            stack.push(new Frame(root, top));
+            done = 1;
+            while (!stack.isEmpty() && !watcher.changed) {
+                job.checkpoint();
+                if (watcher.detached) {
+                    throw new IllegalStateException("Source or destination folder was deleted or moved away.");
+                }
+                lock.readLock().lock();
+                try {
+                    for (int n = 0; n < chunkSize && !stack.isEmpty(); n++) {
+                        step(stack);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (copying) {
+                    job.progress(done, total);
+                }
+            }
+            return top;
+        }
+
+        private void step(Deque<Frame> stack) {
+            Frame frame = stack.peek();
+            if (frame.files < frame.source.getFiles().size()) {
+                File file = frame.source.getFiles().get(frame.files++);
+                if (copying) {
+                    File copiedFile = new File(file);
+                    copiedFile.setParent(frame.copy);
+                    frame.copy.getFiles().add(copiedFile);
+                }
+                done++;
+            } else if (frame.folders < frame.source.getFolders().size()) {
+                Folder folder = frame.source.getFolders().get(frame.folders++);
+                Folder copiedFolder = null;
+                if (copying) {
+                    copiedFolder = new Folder(folder.getName(), null);
+                    copiedFolder.setParent(frame.copy);
+                    frame.copy.getFolders().add(copiedFolder);
+                }
+                stack.push(new Frame(folder, copiedFolder));
+                done++;
+            } else {
+                stack.pop();
+            }
+        }
+    }
+
+    /**
+     * Notices changes made beneath a folder while it is being copied, and the folder, one of its ancestors or the
+     * destination being deleted. Moves are reported as deletes, so a folder moved away is detached too.
+     */
+    private static final class Watcher implements FileSystemListener {
+        private final Folder folder;
+        private final Folder destination;
+        private volatile boolean changed;
+        private volatile boolean detached;
+
+        private Watcher(Folder folder, Folder destination) {
+            this.folder = folder;
+            this.destination = destination;
+        }
+
+        @Override
+        public void fileCreated(File file) {
+            note(file.getParent());
+        }
+
+        @Override
+        public void fileDeleted(File file) {
+            note(file.getParent());
+        }
+
+        @Override
+        public void fileAppended(File file) {
+            note(file.getParent());
+        }
+
+        @Override
+        public void fileWritten(File file) {
+            note(file.getParent());
+        }
+
+        @Override
+        public void fileRenamed(File file, String previousName) {
+            note(file.getParent());
+        }
+
+        @Override
+        public void folderCreated(Folder created) {
+            note(created.getParent());
+        }
+
+        @Override
+        public void folderDeleted(Folder deleted) {
+            if (deleted.isParentOf(folder) || deleted.isParentOf(destination)) {
+                detached = true;
+            }
+            note(deleted);
+        }
+
+        @Override
+        public void folderRenamed(Folder renamed, String previousName) {
+            note(renamed);
+        }
+
+        private void note(Folder parent) {
+            if (folder.isParentOf(parent)) {
+                changed = true;
+            }
+        }
+    }
+}
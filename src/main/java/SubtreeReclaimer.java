@@ -0,0 +1,179 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reclaims deleted subtrees in the background, so that deleting a folder does not cost time proportional
+ * to everything beneath it. A manager with a reclaimer only detaches a deleted folder from its parent; the
+ * reclaimer then walks the detached subtree in batches, releasing each entity's memory budget charge and
+ * telling listeners through {@link FileSystemListener#fileReclaimed(File)} so they can drop it from their
+ * indexes, and pausing between batches so it does not starve the writers.
+ * <p>
+ * A reclaimed folder is emptied as it goes, so its subtree can be garbage collected piece by piece even if
+ * the deleted folder itself is still referenced. Content shared with copies of the files is left alone.
+ * Each batch runs while holding the lock given to the constructor; pass the lock that guards the manager's
+ * writes if its listeners are not thread-safe.
+ * @author Tshiamo
+ */
+public class SubtreeReclaimer implements AutoCloseable {
+
+    /**
+     * How far the reclaimer has got.
+     * @param pendingFolders deleted folders not yet fully reclaimed.
+     * @param reclaimedFiles files reclaimed so far.
+     * @param reclaimedFolders folders reclaimed so far, including those beneath deleted folders.
+     * @param reclaimedBytes the size of the files reclaimed so far.
+     */
+    public record Progress(long pendingFolders, long reclaimedFiles, long reclaimedFolders, long reclaimedBytes) {
+    }
+
+    private record Job(FileSystemManager manager, Folder folder) {
+    }
+
+    private static final Job STOP = new Job(null, null);
+
+    private final int batchSize;
+    private final long pauseMillis;
+    private final Lock lock;
+    private final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final Object progress = new Object();
+    private final Thread worker;
+    private long pending;
+    private long reclaimedFiles;
+    private long reclaimedFolders;
+    private long reclaimedBytes;
+    private volatile boolean closed;
+
+    /**
+     * Creates a reclaimer that works through 1000 entities at a time with no pause between batches.
+     */
+    public SubtreeReclaimer() {
+        this(1_000, 0, null);
+    }
+
+    /**
+     * @param batchSize the most entities reclaimed while holding the lock.
+     * @param pauseMillis how long to wait between batches.
+     * @param lock held while each batch runs, or null to use a lock of the reclaimer's own.
+     */
+    public SubtreeReclaimer(int batchSize, long pauseMillis, Lock lock) {
+        if (batchSize < 1 || pauseMillis < 0) {
+            throw new IllegalArgumentException("Batch size must be positive and pause cannot be negative.");
+        }
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.lock = lock != null ? lock : new ReentrantLock();
+        this.worker = Thread.ofVirtual().name("subtree-reclaimer").start(this::run);
+    }
+
+    /**
+     * Queues a folder that has just been detached from its manager's tree.
+     */
+    void submit(FileSystemManager manager, Folder folder) {
+        if (closed) {
+            throw new IllegalStateException("The reclaimer has been closed.");
+        }
+        synchronized (progress) {
+            pending++;
+        }
+        queue.add(new Job(manager, folder));
+    }
+
+    public Progress getProgress() {
+        synchronized (progress) {
+            return new Progress(pending, reclaimedFiles, reclaimedFolders, reclaimedBytes);
+        }
+    }
+
+    /**
+     * Waits until every queued folder has been reclaimed.
+     * @return true if the reclaimer became idle, false if the timeout elapsed first.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (progress) {
+            while (pending > 0) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                progress.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reclaims whatever is still queued without pausing between batches, then stops the worker.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (!closed) {
+            closed = true;
+            queue.add(STOP);
+            worker.join();
+        }
+    }
+
+    private void run() {
+        try {
+            for (Job job = queue.take(); job != STOP; job = queue.take()) {
+                reclaim(job);
+                synchronized (progress) {
+                    pending--;
+                    progress.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Dismantles a subtree depth first, using the folders' own lists as the work list so nothing beneath
+     * the deleted folder has to be collected up front.
+     */
+    private void reclaim(Job job) throws InterruptedException {
+        Deque<Folder> stack = new ArrayDeque<>();
+        stack.push(job.folder);
+        while (!stack.isEmpty()) {
+            lock.lock();
+            try {
+                for (int done = 0; done < batchSize && !stack.isEmpty(); done++) {
+                    Folder folder = stack.peek();
+                    List<Folder> folders = folder.getFolders();
+                    List<File> files = folder.getFiles();
+                    if (!folders.isEmpty()) {
+                        stack.push(folders.remove(folders.size() - 1));
+                    } else if (!files.isEmpty()) {
+                        File file = files.remove(files.size() - 1);
+                        job.manager.releaseMemory(folder, file);
+                        job.manager.fireFileReclaimed(file);
+                        synchronized (progress) {
+                            reclaimedFiles++;
+                            reclaimedBytes += file.getSize();
+                        }
+                    } else {
+                        stack.pop();
+                        job.manager.releaseMemory(folder.getParent(), folder);
+                        synchronized (progress) {
+                            reclaimedFolders++;
+                        }
+                    }
+                }
+                if (stack.isEmpty()) {
+                    job.manager.fireFolderReclaimed(job.folder);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!stack.isEmpty() && pauseMillis > 0 && !closed) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+    }
+}
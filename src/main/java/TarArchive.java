@@ -0,0 +1,449 @@
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a {@link Folder} to and from a gzip-compressed tar archive.
+ * The writer turns the tree into a tar stream cut into fixed-size units, compresses the units in parallel as
+ * separate gzip members and writes them out in order; since concatenated gzip members form a valid gzip stream,
+ * the result is an ordinary .tar.gz file. Only a bounded number of units is held at once, so memory use does
+ * not depend on the size of the tree or of any one file.
+ * The reader builds the extracted subtree detached and attaches it to the target folder in one step.
+ * Names longer than the tar header allows are stored in PAX extended headers.
+ * @author Tshiamo
+ */
+public final class TarArchive {
+    static final int UNIT_SIZE = 1024 * 1024;
+    private static final int BLOCK = 512;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+
+    private TarArchive() {
+    }
+
+    /**
+     * Writes a folder and everything beneath it as a .tar.gz stream. Entries are stored under the folder's name.
+     * @param folder the Folder object to archive.
+     * @param out the stream to write to, which is left open.
+     * @param parallelism the number of units compressed at the same time.
+     * @throws UncheckedIOException if writing fails.
+     */
+    public static void write(Folder folder, OutputStream out, int parallelism) {
+        if (folder == null || out == null) {
+            throw new IllegalArgumentException("Folder and OutputStream parameters cannot be null.");
+        }
+        ExecutorService compressors = Executors.newFixedThreadPool(parallelism);
+        try {
+            UnitWriter writer = new UnitWriter(out, compressors, parallelism * 2);
+            writeFolder(folder, folder.getName() + "/", writer);
+            writer.write(new byte[BLOCK * 2], 0, BLOCK * 2);
+            writer.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive.", e);
+        } finally {
+            compressors.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a .tar.gz stream written by {@link #write(Folder, OutputStream, int)} and attaches its top folder to a target folder.
+     * @param in the stream to read from, which is left open.
+     * @param manager the FileSystemManager to attach the extracted folder through.
+     * @param target the folder to extract into, or null for the root folder.
+     * @return the extracted top folder.
+     * @throws IllegalArgumentException if the archive is malformed or holds two entries with the same name.
+     * @throws UncheckedIOException if reading fails.
+     */
+    public static Folder read(InputStream in, FileSystemManager manager, Folder target) {
+        if (in == null || manager == null) {
+            throw new IllegalArgumentException("InputStream and FileSystemManager parameters cannot be null.");
+        }
+        try {
+            Folder top = new Reader(new GZIPInputStream(in, 64 * 1024)).read();
+            top.setParent(target == null ? manager.getRoot() : target);
+            manager.attachFolder(top);
+            return top;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archive.", e);
+        }
+    }
+
+    private static void writeFolder(Folder folder, String path, UnitWriter writer) throws IOException {
+        writeHeader(writer, path, '5', 0, System.currentTimeMillis());
+        for (File file : folder.getFiles()) {
+            long size = file.getSize();
+            long created = file.getCreatedMillis();
+            writeHeader(writer, path + file.getFullName(), '0', size, created == File.NO_DATE ? 0 : created);
+            ByteBuffer content = file.getFileContent().asByteBuffer();
+            byte[] chunk = new byte[(int) Math.min(UNIT_SIZE, Math.max(size, 1))];
+            while (content.hasRemaining()) {
+                int length = Math.min(chunk.length, content.remaining());
+                content.get(chunk, 0, length);
+                writer.write(chunk, 0, length);
+            }
+            pad(writer, size);
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            writeFolder(subFolder, path + subFolder.getName() + "/", writer);
+        }
+    }
+
+    private static void writeHeader(UnitWriter writer, String path, char type, long size, long millis) throws IOException {
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 100 || size > MAX_OCTAL_SIZE) {
+            StringBuilder records = new StringBuilder();
+            records.append(paxRecord("path", path));
+            if (size > MAX_OCTAL_SIZE) {
+                records.append(paxRecord("size", Long.toString(size)));
+            }
+            byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+            writer.write(header("././@PaxHeader".getBytes(StandardCharsets.US_ASCII), 'x', data.length, millis), 0, BLOCK);
+            writer.write(data, 0, data.length);
+            pad(writer, data.length);
+            name = Arrays.copyOf(name, Math.min(name.length, 100));
+        }
+        writer.write(header(name, type, Math.min(size, MAX_OCTAL_SIZE), millis), 0, BLOCK);
+    }
+
+    private static String paxRecord(String key, String value) {
+        String body = " " + key + "=" + value + "\n";
+        int length = body.getBytes(StandardCharsets.UTF_8).length;
+        int digits = Integer.toString(length).length();
+        while (Integer.toString(length + digits).length() != digits) {
+            digits++;
+        }
+        return (length + digits) + body;
+    }
+
+    private static byte[] header(byte[] name, char type, long size, long millis) {
+        byte[] header = new byte[BLOCK];
+        System.arraycopy(name, 0, header, 0, Math.min(name.length, 100));
+        octal(header, 100, 8, type == '5' ? 0755 : 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, Math.max(0, millis / 1000));
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * Writes a number as zero-padded octal digits followed by a NUL, filling the field.
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int fromEnd = width - 1 - i;
+            header[offset + i] = (byte) (fromEnd < digits.length() ? digits.charAt(digits.length() - 1 - fromEnd) : '0');
+        }
+        header[offset + width] = 0;
+    }
+
+    private static void pad(UnitWriter writer, long size) throws IOException {
+        int padding = (int) ((BLOCK - size % BLOCK) % BLOCK);
+        if (padding > 0) {
+            writer.write(new byte[padding], 0, padding);
+        }
+    }
+
+    /**
+     * Collects the tar stream into units, compresses full units in the background and writes them in order,
+     * keeping at most a fixed number of units in flight.
+     */
+    private static final class UnitWriter {
+        private final OutputStream out;
+        private final ExecutorService compressors;
+        private final int maxInFlight;
+        private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        private byte[] unit = new byte[UNIT_SIZE];
+        private int length;
+
+        private UnitWriter(OutputStream out, ExecutorService compressors, int maxInFlight) {
+            this.out = out;
+            this.compressors = compressors;
+            this.maxInFlight = maxInFlight;
+        }
+
+        void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                int n = Math.min(count, UNIT_SIZE - length);
+                System.arraycopy(bytes, offset, unit, length, n);
+                length += n;
+                offset += n;
+                count -= n;
+                if (length == UNIT_SIZE) {
+                    submit();
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (length > 0) {
+                submit();
+            }
+            while (!inFlight.isEmpty()) {
+                writeNext();
+            }
+            out.flush();
+        }
+
+        private void submit() throws IOException {
+            byte[] full = unit;
+            int fullLength = length;
+            inFlight.add(compressors.submit(() -> compress(full, fullLength)));
+            unit = new byte[UNIT_SIZE];
+            length = 0;
+            while (inFlight.size() >= maxInFlight) {
+                writeNext();
+            }
+        }
+
+        private void writeNext() throws IOException {
+            try {
+                out.write(inFlight.poll().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while compressing archive.", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not compress archive.", e.getCause());
+            }
+        }
+
+        private static byte[] compress(byte[] bytes, int length) throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes, 0, length);
+            }
+            return compressed.toByteArray();
+        }
+    }
+
+    /**
+     * Parses the tar stream and builds the detached tree it describes.
+     */
+    private static final class Reader {
+        private final InputStream in;
+        private final byte[] header = new byte[BLOCK];
+        private final Map<String, Folder> folders = new HashMap<>();
+        private final Map<Folder, Set<List<Name>>> fileNames = new HashMap<>();
+        private Folder top;
+
+        private Reader(InputStream in) {
+            this.in = in;
+        }
+
+        Folder read() throws IOException {
+            Map<String, String> pax = new HashMap<>();
+            while (readFully(header)) {
+                if (isZero(header)) {
+                    break;
+                }
+                char type = (char) header[156];
+                long size = parseOctal(header, 124, 12);
+                String path = parseString(header, 0, 100);
+                String prefix = parseString(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    path = prefix + "/" + path;
+                }
+                if (type == 'x') {
+                    pax = parsePax(readData(size));
+                    continue;
+                }
+                path = pax.getOrDefault("path", path);
+                size = Long.parseLong(pax.getOrDefault("size", Long.toString(size)));
+                long millis = parseOctal(header, 136, 12) * 1000;
+                pax = new HashMap<>();
+                if (type == '5') {
+                    folder(path);
+                } else if (type == '0' || type == 0) {
+                    addFile(path, millis, readData(size));
+                } else {
+                    skip(size);
+                }
+            }
+            if (top == null) {
+                throw new IllegalArgumentException("The archive is empty.");
+            }
+            return top;
+        }
+
+        private Folder folder(String path) {
+            String trimmed = trim(path);
+            Folder folder = folders.get(trimmed);
+            if (folder != null) {
+                return folder;
+            }
+            int slash = trimmed.lastIndexOf('/');
+            String name = trimmed.substring(slash + 1);
+            folder = new Folder(name, null);
+            if (slash < 0) {
+                if (top != null) {
+                    throw new IllegalArgumentException("The archive has more than one top folder.");
+                }
+                top = folder;
+            } else {
+                Folder parent = folder(trimmed.substring(0, slash));
+                if (parent.containsFolderWithSameName(folder.getInternedName())) {
+                    throw new IllegalArgumentException("The archive holds two folders named \"" + trimmed + "\".");
+                }
+                folder.setParent(parent);
+                parent.getFolders().add(folder);
+            }
+            folders.put(trimmed, folder);
+            return folder;
+        }
+
+        private void addFile(String path, long millis, byte[] content) {
+            String trimmed = trim(path);
+            int slash = trimmed.lastIndexOf('/');
+            if (slash < 0) {
+                throw new IllegalArgumentException("The file \"" + trimmed + "\" is not inside the archive's top folder.");
+            }
+            Folder parent = folder(trimmed.substring(0, slash));
+            String[] parts = DiskImporter.splitName(trimmed.substring(slash + 1));
+            File file = new File(parts[0], null, content.length, new Date(millis), content, parts[1]);
+            Set<List<Name>> names = fileNames.computeIfAbsent(parent, k -> new HashSet<>());
+            if (!names.add(List.of(file.getInternedName().getFolded(), file.getInternedExtension().getFolded()))) {
+                throw new IllegalArgumentException("The archive holds two files named \"" + trimmed + "\".");
+            }
+            file.setParent(parent);
+            parent.getFiles().add(file);
+        }
+
+        private static String trim(String path) {
+            String trimmed = path;
+            while (trimmed.endsWith("/")) {
+                trimmed = trimmed.substring(0, trimmed.length() - 1);
+            }
+            while (trimmed.startsWith("./")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.isEmpty()) {
+                throw new IllegalArgumentException("The archive holds an entry with an empty name.");
+            }
+            return trimmed;
+        }
+
+        private byte[] readData(long size) throws IOException {
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("An archive entry is too large to hold in memory.");
+            }
+            byte[] data = new byte[(int) size];
+            if (!readFully(data)) {
+                throw new EOFException("The archive ends inside an entry.");
+            }
+            skip((BLOCK - size % BLOCK) % BLOCK);
+            return data;
+        }
+
+        private void skip(long count) throws IOException {
+            long remaining = count;
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException("The archive ends inside an entry.");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        private boolean readFully(byte[] buffer) throws IOException {
+            int read = 0;
+            while (read < buffer.length) {
+                int n = in.read(buffer, read, buffer.length - read);
+                if (n < 0) {
+                    if (read == 0) {
+                        return false;
+                    }
+                    throw new EOFException("The archive ends inside an entry.");
+                }
+                read += n;
+            }
+            return true;
+        }
+
+        private static boolean isZero(byte[] block) {
+            for (byte b : block) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long parseOctal(byte[] block, int offset, int length) {
+            long value = 0;
+            for (int i = offset; i < offset + length; i++) {
+                byte b = block[i];
+                if (b == 0 || b == ' ') {
+                    if (value != 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (b < '0' || b > '7') {
+                    throw new IllegalArgumentException("The archive holds a malformed header.");
+                }
+                value = value * 8 + (b - '0');
+            }
+            return value;
+        }
+
+        private static String parseString(byte[] block, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && block[end] != 0) {
+                end++;
+            }
+            return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static Map<String, String> parsePax(byte[] data) {
+            Map<String, String> records = new HashMap<>();
+            String text = new String(data, StandardCharsets.UTF_8);
+            int position = 0;
+            while (position < text.length()) {
+                int space = text.indexOf(' ', position);
+                int equals = text.indexOf('=', space);
+                int newline = text.indexOf('\n', equals);
+                if (space < 0 || equals < 0 || newline < 0) {
+                    break;
+                }
+                records.put(text.substring(space + 1, equals), text.substring(equals + 1, newline));
+                position = newline + 1;
+            }
+            return records;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.nio.ByteBuffer;
+
+/**
+ * File content kept by a {@link TieredContentStore}: in memory while it is read often enough, and in the store's
+ * disk segments otherwise. Reading cold content faults it back into memory.
+ * @author Tshiamo
+ */
+public final class TieredContent implements FileContent {
+
+    enum Region { NONE, WINDOW, PROBATION, PROTECTED }
+
+    final TieredContentStore store;
+    final long id;
+    final int size;
+    final int[] checksums;
+    // The fields below are guarded by the store.
+    byte[] data;
+    SegmentStore.Location location;
+    Region region = Region.NONE;
+    int references = 1;
+    boolean released;
+
+    TieredContent(TieredContentStore store, long id, int size, int[] checksums) {
+        this.store = store;
+        this.id = id;
+        this.size = size;
+        this.checksums = checksums;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the content, reading it back from disk if it is not in memory.
+     */
+    @Override
+    public byte[] toByteArray() {
+        return store.read(this);
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(store.read(this)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the start of the content from memory, or reads just that much from disk, without counting as a
+     * read or bringing the content back into memory.
+     */
+    @Override
+    public ByteBuffer prefix(int length) {
+        return ByteBuffer.wrap(store.prefix(this, length)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Checks both the copy in memory and the copy on disk, whichever exist, without counting as a read.
+     */
+    @Override
+    public boolean verify() {
+        return store.verify(this);
+    }
+
+    /**
+     * Shares this content with the copied file, taking another reference to it that the copy's holder releases
+     * through {@link TieredContentStore#release(TieredContent)}.
+     */
+    @Override
+    public FileContent copy() {
+        store.retain(this);
+        return this;
+    }
+
+    /**
+     * @return true if the content is currently held in memory.
+     */
+    public boolean isResident() {
+        return store.isResident(this);
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps file content in memory up to a byte budget and the rest in append-only disk segments.
+ * <p>
+ * What stays in memory is decided by a W-TinyLFU policy. New and faulted-in content enters a small window
+ * ordered by recency. Content leaving the window joins the probation part of the main area, and is promoted to
+ * the protected part when it is read again there. When memory is over budget, the content that most recently
+ * left the window is compared with the least recently used probation content using a {@link FrequencySketch},
+ * and the less frequently read of the two is moved to disk. A burst of content read once therefore cannot push
+ * out content that is read often.
+ * <p>
+ * Content is written to disk the first time it is evicted and keeps that copy, since content never changes.
+ * Checksums are recorded when content is stored, so both copies can be verified.
+ * Disk reads and writes happen outside the store's lock: evicted content keeps its bytes until its disk copy has
+ * been written, so readers are served from memory meanwhile instead of waiting for the write.
+ * <p>
+ * Copying a file holding stored content shares the content and takes another reference to it, and each holder
+ * releases its own reference, so releasing one file's content does not break the others.
+ * @author Tshiamo
+ */
+public class TieredContentStore implements AutoCloseable {
+
+    /**
+     * Counters for the store.
+     * @param hits reads served from memory.
+     * @param misses reads that went to disk.
+     * @param evictions times content was moved out of memory.
+     * @param memoryBytes bytes of content currently in memory.
+     * @param diskBytes bytes written to the disk segments.
+     */
+    public record Stats(long hits, long misses, long evictions, long memoryBytes, long diskBytes) {
+
+        public double hitRate() {
+            long reads = hits + misses;
+            return reads == 0 ? 0 : (double) hits / reads;
+        }
+    }
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final long budget;
+    private final long windowBudget;
+    private final long protectedBudget;
+    private final SegmentStore segments;
+    private final FrequencySketch sketch;
+    private final AtomicLong nextId = new AtomicLong();
+    private final LinkedHashSet<TieredContent> window = new LinkedHashSet<>();
+    private final LinkedHashSet<TieredContent> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<TieredContent> protectedArea = new LinkedHashSet<>();
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param directory the directory for the disk segments.
+     * @param memoryBudget the most bytes of content kept in memory.
+     */
+    public TieredContentStore(Path directory, long memoryBudget) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Path parameter cannot be null.");
+        }
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive.");
+        }
+        this.budget = memoryBudget;
+        this.windowBudget = Math.max(1, memoryBudget / 100);
+        this.protectedBudget = (memoryBudget - windowBudget) * 4 / 5;
+        this.segments = new SegmentStore(directory, SEGMENT_SIZE);
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, memoryBudget / 4096));
+    }
+
+    /**
+     * Stores content, keeping it in memory if the policy admits it. The array is not copied, so callers must not
+     * modify it afterwards.
+     * @param bytes the content.
+     * @return the stored content, for use in a {@link File}.
+     */
+    public TieredContent put(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Content cannot be null.");
+        }
+        TieredContent content = new TieredContent(this, nextId.incrementAndGet(), bytes.length, Checksums.of(bytes));
+        List<Eviction> evicted = new ArrayList<>();
+        synchronized (this) {
+            content.data = bytes;
+            sketch.increment(content.id);
+            admit(content, evicted);
+        }
+        write(evicted);
+        return content;
+    }
+
+    /**
+     * Drops a reference to content, taken by {@link #put(byte[])} or by copying a file holding it. Once every
+     * reference has been dropped the content is forgotten; its disk copy, if any, stays in its segment.
+     * @param content the content to drop.
+     */
+    public synchronized void release(TieredContent content) {
+        if (content.released || --content.references > 0) {
+            return;
+        }
+        remove(content);
+        content.data = null;
+        content.released = true;
+    }
+
+    /**
+     * Takes another reference to content, for a copied file.
+     * @throws IllegalStateException if the content has already been released.
+     */
+    synchronized void retain(TieredContent content) {
+        if (content.released) {
+            throw new IllegalStateException("Content has been released.");
+        }
+        content.references++;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, windowBytes + probationBytes + protectedBytes, segments.bytesWritten());
+    }
+
+    synchronized boolean isResident(TieredContent content) {
+        return content.region != TieredContent.Region.NONE;
+    }
+
+    /**
+     * Checks the memory and disk copies of content against the checksums recorded when it was stored. The disk
+     * copy is read outside the lock and is not admitted to memory.
+     */
+    boolean verify(TieredContent content) {
+        byte[] data;
+        SegmentStore.Location location;
+        synchronized (this) {
+            if (content.released) {
+                return true;
+            }
+            data = content.data;
+            location = content.location;
+        }
+        if (data != null && !Checksums.matches(data, content.checksums)) {
+            return false;
+        }
+        return location == null || Checksums.matches(segments.read(location), content.checksums);
+    }
+
+    /**
+     * Reads the start of content without counting a hit or a miss and without admitting it to memory.
+     */
+    byte[] prefix(TieredContent content, int length) {
+        SegmentStore.Location location;
+        synchronized (this) {
+            if (content.released) {
+                throw new IllegalStateException("Content has been released.");
+            }
+            if (content.data != null) {
+                return Arrays.copyOf(content.data, Math.min(length, content.size));
+            }
+            location = content.location;
+        }
+        return segments.read(location, length);
+    }
+
+    byte[] read(TieredContent content) {
+        SegmentStore.Location location;
+        List<Eviction> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (content.released) {
+                throw new IllegalStateException("Content has been released.");
+            }
+            sketch.increment(content.id);
+            if (content.data != null) {
+                hits++;
+                onHit(content);
+                return content.data;
+            }
+            misses++;
+            location = content.location;
+        }
+        byte[] bytes = segments.read(location);
+        synchronized (this) {
+            if (content.data != null) {
+                return content.data;
+            }
+            if (!content.released) {
+                content.data = bytes;
+                admit(content, evicted);
+            }
+        }
+        write(evicted);
+        return bytes;
+    }
+
+    private void onHit(TieredContent content) {
+        switch (content.region) {
+            case WINDOW -> {
+                window.remove(content);
+                window.add(content);
+            }
+            case PROBATION -> {
+                probation.remove(content);
+                probationBytes -= content.size;
+                protectedArea.add(content);
+                protectedBytes += content.size;
+                content.region = TieredContent.Region.PROTECTED;
+                while (protectedBytes > protectedBudget) {
+                    TieredContent demoted = first(protectedArea);
+                    protectedArea.remove(demoted);
+                    protectedBytes -= demoted.size;
+                    probation.add(demoted);
+                    probationBytes += demoted.size;
+                    demoted.region = TieredContent.Region.PROBATION;
+                }
+            }
+            case PROTECTED -> {
+                protectedArea.remove(content);
+                protectedArea.add(content);
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Adds content to the window and evicts until memory is back within budget.
+     * @param evicted collects the evicted content that still has to be written to disk.
+     */
+    private void admit(TieredContent content, List<Eviction> evicted) {
+        if (content.size > budget) {
+            evict(content, evicted);
+            return;
+        }
+        window.add(content);
+        windowBytes += content.size;
+        content.region = TieredContent.Region.WINDOW;
+        List<TieredContent> candidates = new ArrayList<>();
+        while (windowBytes > windowBudget) {
+            TieredContent candidate = first(window);
+            window.remove(candidate);
+            windowBytes -= candidate.size;
+            probation.add(candidate);
+            probationBytes += candidate.size;
+            candidate.region = TieredContent.Region.PROBATION;
+            candidates.add(candidate);
+        }
+        Iterator<TieredContent> pending = candidates.iterator();
+        while (windowBytes + probationBytes + protectedBytes > budget) {
+            TieredContent victim = probation.isEmpty() ? first(protectedArea) : first(probation);
+            TieredContent candidate = null;
+            while (candidate == null && pending.hasNext()) {
+                TieredContent next = pending.next();
+                if (next.region == TieredContent.Region.PROBATION && next != victim) {
+                    candidate = next;
+                }
+            }
+            if (candidate != null && sketch.frequency(candidate.id) <= sketch.frequency(victim.id)) {
+                evict(candidate, evicted);
+            } else {
+                evict(victim, evicted);
+            }
+        }
+    }
+
+    /**
+     * Moves content out of memory. Content without a disk copy keeps its bytes until {@link #write(List)} has
+     * written one, after the lock is released.
+     */
+    private void evict(TieredContent content, List<Eviction> evicted) {
+        remove(content);
+        if (content.location == null) {
+            evicted.add(new Eviction(content, content.data));
+        } else {
+            content.data = null;
+        }
+        evictions++;
+    }
+
+    /**
+     * Writes evicted content to disk without holding the lock, then drops its bytes unless it has been released
+     * or taken back into memory meanwhile.
+     */
+    private void write(List<Eviction> evicted) {
+        for (Eviction eviction : evicted) {
+            SegmentStore.Location location = segments.append(eviction.data());
+            synchronized (this) {
+                TieredContent content = eviction.content();
+                content.location = location;
+                if (content.region == TieredContent.Region.NONE) {
+                    content.data = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicted content and the bytes to write for it.
+     */
+    private record Eviction(TieredContent content, byte[] data) {
+    }
+
+    private void remove(TieredContent content) {
+        switch (content.region) {
+            case WINDOW -> {
+                window.remove(content);
+                windowBytes -= content.size;
+            }
+            case PROBATION -> {
+                probation.remove(content);
+                probationBytes -= content.size;
+            }
+            case PROTECTED -> {
+                protectedArea.remove(content);
+                protectedBytes -= content.size;
+            }
+            default -> {
+            }
+        }
+        content.region = TieredContent.Region.NONE;
+    }
+
+    private static TieredContent first(LinkedHashSet<TieredContent> area) {
+        return area.iterator().next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments.close();
+    }
+}
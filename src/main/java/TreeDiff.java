@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares two folders using their Merkle hashes. Subtrees with equal hashes are skipped after a single
+ * comparison, so the cost of a diff depends on how much changed rather than on the size of the trees.
+ * Differences are produced lazily as the returned stream is consumed.
+ * @author Tshiamo
+ */
+public final class TreeDiff {
+
+    public enum Change { ADDED, REMOVED, MODIFIED }
+
+    /**
+     * A single difference between two trees.
+     * @param change whether the entity only exists in the second tree, only in the first, or differs between them.
+     * @param path the path of the entity relative to the compared folders, with "/" between names.
+     * @param folder true if the entity is a folder.
+     */
+    public record Difference(Change change, String path, boolean folder) {
+    }
+
+    private TreeDiff() {
+    }
+
+    /**
+     * Lists the differences between two folders. Files are matched by name and extension and differ when their
+     * content does; a folder that only exists on one side is reported once, without its contents.
+     * @param a the Folder object to compare from.
+     * @param b the Folder object to compare to.
+     * @return the differences, from a to b.
+     */
+    public static Stream<Difference> diff(Folder a, Folder b) {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("Folder parameters cannot be null.");
+        }
+        return diff("", a, b);
+    }
+
+    private static Stream<Difference> diff(String prefix, Folder a, Folder b) {
+        if (Arrays.equals(a.getMerkleHash(), b.getMerkleHash())) {
+            return Stream.empty();
+        }
+        Map<String, File> filesA = filesByName(a);
+        Map<String, File> filesB = filesByName(b);
+        Stream<Difference> files = Stream.concat(
+                filesA.entrySet().stream().flatMap(e -> {
+                    File other = filesB.get(e.getKey());
+                    if (other == null) {
+                        return Stream.of(new Difference(Change.REMOVED, prefix + e.getKey(), false));
+                    }
+                    if (!Arrays.equals(e.getValue().getContentHash(), other.getContentHash())) {
+                        return Stream.of(new Difference(Change.MODIFIED, prefix + e.getKey(), false));
+                    }
+                    return Stream.empty();
+                }),
+                filesB.keySet().stream()
+                        .filter(name -> !filesA.containsKey(name))
+                        .map(name -> new Difference(Change.ADDED, prefix + name, false)));
+
+        Map<String, Folder> foldersA = foldersByName(a);
+        Map<String, Folder> foldersB = foldersByName(b);
+        Stream<Difference> folders = Stream.concat(
+                foldersA.entrySet().stream().flatMap(e -> {
+                    Folder other = foldersB.get(e.getKey());
+                    if (other == null) {
+                        return Stream.of(new Difference(Change.REMOVED, prefix + e.getKey(), true));
+                    }
+                    return diff(prefix + e.getKey() + "/", e.getValue(), other);
+                }),
+                foldersB.keySet().stream()
+                        .filter(name -> !foldersA.containsKey(name))
+                        .map(name -> new Difference(Change.ADDED, prefix + name, true)));
+        return Stream.concat(files, folders);
+    }
+
+    private static Map<String, File> filesByName(Folder folder) {
+        Map<String, File> files = new LinkedHashMap<>();
+        for (File file : folder.getFiles()) {
+            files.put(file.getFullName(), file);
+        }
+        return files;
+    }
+
+    private static Map<String, Folder> foldersByName(Folder folder) {
+        Map<String, Folder> folders = new LinkedHashMap<>();
+        for (Folder subFolder : folder.getFolders()) {
+            folders.put(subFolder.getName(), subFolder);
+        }
+        return folders;
+    }
+}
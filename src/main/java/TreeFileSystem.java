@@ -0,0 +1,238 @@
+import java.net.URI;
+import java.nio.file.ClosedFileSystemException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Exposes the folders and files of a {@link FileSystemManager} as a read-only {@link FileSystem}.
+ * Paths are "/"-separated and "/" is the manager's root folder. A file is named by its full name, "name.extension".
+ * Names are matched ignoring case, the same way the manager keeps them unique.
+ * Like the manager itself, the file system is not safe to use while the tree is being changed on another thread.
+ * @author Tshiamo
+ */
+public class TreeFileSystem extends FileSystem {
+    private final TreeFileSystemProvider provider;
+    private final FileSystemManager manager;
+    private final URI uri;
+    private final Store store = new Store();
+    private volatile boolean open = true;
+
+    TreeFileSystem(TreeFileSystemProvider provider, FileSystemManager manager, URI uri) {
+        this.provider = provider;
+        this.manager = manager;
+        this.uri = uri;
+    }
+
+    /**
+     * @return the URI this file system was registered under with its provider, such as "tree://name".
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+    public FileSystemManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Finds the folder or file a path points to.
+     * Relative paths are resolved against the root folder, and "." and ".." are applied first.
+     * @param path the path to look up.
+     * @return the Folder or File object, or null if nothing exists at the path.
+     */
+    FileSystemEntity find(TreePath path) {
+        FileSystemEntity entity = manager.getRoot();
+        for (String name : ((TreePath) path.normalize()).names()) {
+            if (!(entity instanceof Folder folder) || name.equals("..")) {
+                return null;
+            }
+            entity = folder.findChild(name);
+        }
+        return entity;
+    }
+
+    /**
+     * @return the single store holding every folder and file of this file system.
+     */
+    FileStore getFileStore() {
+        return store;
+    }
+
+    void checkOpen() {
+        if (!open) {
+            throw new ClosedFileSystemException();
+        }
+    }
+
+    @Override
+    public TreeFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        provider.remove(this);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return List.of(new TreePath(this, true, new String[0]));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return List.of(store);
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        StringBuilder path = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) {
+                path.append('/').append(name);
+            }
+        }
+        return TreePath.parse(this, path.toString());
+    }
+
+    /**
+     * Supports the "glob" and "regex" syntaxes. Globs understand "*", "**" and "?".
+     */
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Pattern must be of the form syntax:pattern.");
+        }
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(globToRegex(pattern));
+        } else {
+            throw new UnsupportedOperationException("Syntax \"" + syntax + "\" is not supported.");
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("User principals are not supported.");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Watching is not supported.");
+    }
+
+    /**
+     * The tree as a read-only store. Its space is the manager's memory budget, if it has one: the limit is the
+     * total space and what the budget has not charged is unallocated. Nothing is usable, since nothing can be
+     * written.
+     */
+    private final class Store extends FileStore {
+
+        @Override
+        public String name() {
+            return uri.toString();
+        }
+
+        @Override
+        public String type() {
+            return TreeFileSystemProvider.SCHEME;
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return true;
+        }
+
+        @Override
+        public long getTotalSpace() {
+            MemoryBudget budget = manager.getMemoryBudget();
+            return budget == null ? Long.MAX_VALUE : budget.getLimit();
+        }
+
+        @Override
+        public long getUsableSpace() {
+            return 0;
+        }
+
+        @Override
+        public long getUnallocatedSpace() {
+            MemoryBudget budget = manager.getMemoryBudget();
+            return budget == null ? Long.MAX_VALUE : Math.max(0, budget.getLimit() - budget.getUsage());
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+            return type == BasicFileAttributeView.class;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(String name) {
+            return name.equals("basic");
+        }
+
+        @Override
+        public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            throw new UnsupportedOperationException("File store attributes are not supported.");
+        }
+    }
+}
@@ -0,0 +1,460 @@
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link FileSystemProvider} for the "tree" scheme, exposing a {@link FileSystemManager} as a read-only
+ * {@link TreeFileSystem} so code written against {@link java.nio.file.Files} can read the tree in place.
+ * Byte channels read straight from each file's {@link FileContent} buffer, and directory streams iterate the
+ * folder's own child lists, so nothing is copied out of the tree.
+ * <p>
+ * File systems are created with {@link #newFileSystem(FileSystemManager)}, or with
+ * {@link #newFileSystem(URI, Map)} passing the manager under the "manager" key, and are looked up by URI
+ * until they are closed.
+ * @author Tshiamo
+ */
+public class TreeFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "tree";
+
+    private final Map<String, TreeFileSystem> fileSystems = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    /**
+     * Exposes a manager under a newly generated URI.
+     * @param manager the FileSystemManager to expose.
+     * @return the file system.
+     */
+    public TreeFileSystem newFileSystem(FileSystemManager manager) {
+        return newFileSystem(URI.create(SCHEME + "://fs" + nextId.incrementAndGet()), Map.of("manager", manager));
+    }
+
+    /**
+     * Exposes a manager under a URI such as "tree://name".
+     * @param uri the URI to register the file system under; only its authority is used.
+     * @param env must map "manager" to the FileSystemManager to expose.
+     * @return the file system.
+     * @throws FileSystemAlreadyExistsException if a file system is already registered under the URI.
+     */
+    @Override
+    public TreeFileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        String key = key(uri);
+        if (!(env.get("manager") instanceof FileSystemManager manager)) {
+            throw new IllegalArgumentException("The environment must map \"manager\" to a FileSystemManager.");
+        }
+        TreeFileSystem fileSystem = new TreeFileSystem(this, manager, URI.create(SCHEME + "://" + key));
+        if (fileSystems.putIfAbsent(key, fileSystem) != null) {
+            throw new FileSystemAlreadyExistsException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public TreeFileSystem getFileSystem(URI uri) {
+        TreeFileSystem fileSystem = fileSystems.get(key(uri));
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        return getFileSystem(uri).getPath(uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath());
+    }
+
+    void remove(TreeFileSystem fileSystem) {
+        fileSystems.remove(fileSystem.getUri().getAuthority(), fileSystem);
+    }
+
+    private static String key(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme()) || uri.getAuthority() == null) {
+            throw new IllegalArgumentException("URI must be of the form " + SCHEME + "://name.");
+        }
+        return uri.getAuthority();
+    }
+
+    /**
+     * Looks up the entity a path points to.
+     * @throws NoSuchFileException if nothing exists at the path.
+     */
+    private static FileSystemEntity find(Path path) throws NoSuchFileException {
+        TreePath treePath = check(path);
+        treePath.getFileSystem().checkOpen();
+        FileSystemEntity entity = treePath.getFileSystem().find(treePath);
+        if (entity == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return entity;
+    }
+
+    private static TreePath check(Path path) {
+        if (!(path instanceof TreePath treePath)) {
+            throw new ProviderMismatchException();
+        }
+        return treePath;
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        for (OpenOption option : options) {
+            if (option != StandardOpenOption.READ && option != LinkOption.NOFOLLOW_LINKS) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+        if (!(find(path) instanceof File file)) {
+            throw new FileSystemException(path.toString(), null, "Is a directory");
+        }
+        AccessTracker.recordRead(file);
+        return new ContentChannel(file.getFileContent().asByteBuffer());
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        if (!(find(dir) instanceof Folder folder)) {
+            throw new NotDirectoryException(dir.toString());
+        }
+        AccessTracker.recordRead(folder);
+        return new ChildStream(dir, folder, filter);
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        return path.equals(path2) || find(path) == find(path2);
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null && fileName.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        find(path);
+        return check(path).getFileSystem().getFileStore();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        find(path);
+        for (AccessMode mode : modes) {
+            if (mode == AccessMode.WRITE) {
+                throw new AccessDeniedException(path.toString(), null, "Read-only file system");
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return new Attributes(find(path));
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (!type.isAssignableFrom(Attributes.class)) {
+            throw new UnsupportedOperationException("Only basic file attributes are supported.");
+        }
+        return (A) new Attributes(find(path));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        int colon = attributes.indexOf(':');
+        if (colon >= 0 && !attributes.substring(0, colon).equals("basic")) {
+            throw new UnsupportedOperationException("Only basic file attributes are supported.");
+        }
+        Attributes values = new Attributes(find(path));
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("lastModifiedTime", values.lastModifiedTime());
+        all.put("lastAccessTime", values.lastAccessTime());
+        all.put("creationTime", values.creationTime());
+        all.put("size", values.size());
+        all.put("isRegularFile", values.isRegularFile());
+        all.put("isDirectory", values.isDirectory());
+        all.put("isSymbolicLink", values.isSymbolicLink());
+        all.put("isOther", values.isOther());
+        all.put("fileKey", values.fileKey());
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : attributes.substring(colon + 1).split(",")) {
+            if (name.equals("*")) {
+                result.putAll(all);
+            } else if (all.containsKey(name)) {
+                result.put(name, all.get(name));
+            } else {
+                throw new IllegalArgumentException("Unknown attribute \"" + name + "\".");
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    /**
+     * The basic attributes of a folder or file. Only files carry a date, which is used for every time attribute.
+     */
+    private record Attributes(FileSystemEntity entity) implements BasicFileAttributes {
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return creationTime();
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return creationTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            if (entity instanceof File file && file.getCreatedDate() != null) {
+                return FileTime.fromMillis(file.getCreatedDate().getTime());
+            }
+            return FileTime.fromMillis(0);
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return entity instanceof File;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return entity instanceof Folder;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+
+        @Override
+        public boolean isOther() {
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return entity instanceof File file ? file.getSize() : 0;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    }
+
+    /**
+     * A read-only channel over a file's content buffer. Reads copy straight from that buffer into the caller's.
+     */
+    private static final class ContentChannel implements SeekableByteChannel {
+        private final ByteBuffer content;
+        private boolean open = true;
+
+        private ContentChannel(ByteBuffer content) {
+            this.content = content.duplicate();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            checkOpen();
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(dst.remaining(), content.remaining());
+            dst.put(dst.position(), content, content.position(), count);
+            dst.position(dst.position() + count);
+            content.position(content.position() + count);
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            checkOpen();
+            return content.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            checkOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Position cannot be negative.");
+            }
+            content.position((int) Math.min(newPosition, content.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            checkOpen();
+            return content.limit();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void checkOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+
+    /**
+     * Lists a folder's sub-folders and then its files, straight from the folder's lists.
+     */
+    private static final class ChildStream implements DirectoryStream<Path> {
+        private final Path dir;
+        private final Folder folder;
+        private final DirectoryStream.Filter<? super Path> filter;
+        private boolean iterated;
+        private boolean closed;
+
+        private ChildStream(Path dir, Folder folder, DirectoryStream.Filter<? super Path> filter) {
+            this.dir = dir;
+            this.folder = folder;
+            this.filter = filter;
+        }
+
+        @Override
+        public Iterator<Path> iterator() {
+            if (closed || iterated) {
+                throw new IllegalStateException("Directory stream is closed or has already been iterated.");
+            }
+            iterated = true;
+            Iterator<Folder> folders = folder.getFolders().iterator();
+            Iterator<File> files = folder.getFiles().iterator();
+            return new Iterator<>() {
+                private Path next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next == null && !closed && (folders.hasNext() || files.hasNext())) {
+                        String name = folders.hasNext() ? folders.next().getName() : files.next().getFullName();
+                        Path path = dir.resolve(name);
+                        try {
+                            if (filter == null || filter.accept(path)) {
+                                next = path;
+                            }
+                        } catch (IOException e) {
+                            throw new DirectoryIteratorException(e);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Path next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Path path = next;
+                    next = null;
+                    return path;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
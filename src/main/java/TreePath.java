@@ -0,0 +1,211 @@
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A path in a {@link TreeFileSystem}: a sequence of names separated by "/", absolute when it starts with "/".
+ * The absolute path "/" is the manager's root folder.
+ * @author Tshiamo
+ */
+final class TreePath implements Path {
+    private final TreeFileSystem fileSystem;
+    private final boolean absolute;
+    private final String[] names;
+
+    TreePath(TreeFileSystem fileSystem, boolean absolute, String[] names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    static TreePath parse(TreeFileSystem fileSystem, String path) {
+        List<String> names = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return new TreePath(fileSystem, path.startsWith("/"), names.toArray(new String[0]));
+    }
+
+    String[] names() {
+        return names;
+    }
+
+    @Override
+    public TreeFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public Path getRoot() {
+        return absolute ? new TreePath(fileSystem, true, new String[0]) : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        return names.length == 0 ? null : new TreePath(fileSystem, false, new String[]{names[names.length - 1]});
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.length == 0 || (names.length == 1 && !absolute)) {
+            return null;
+        }
+        return new TreePath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        return names.length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        if (index < 0 || index >= names.length) {
+            throw new IllegalArgumentException("Invalid name index " + index + ".");
+        }
+        return new TreePath(fileSystem, false, new String[]{names[index]});
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException("Invalid subpath range.");
+        }
+        return new TreePath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        TreePath path = check(other);
+        if (path.absolute != absolute || path.names.length > names.length) {
+            return false;
+        }
+        return Arrays.equals(names, 0, path.names.length, path.names, 0, path.names.length);
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        TreePath path = check(other);
+        if (path.absolute) {
+            return equals(path);
+        }
+        if (path.names.length > names.length) {
+            return false;
+        }
+        return Arrays.equals(names, names.length - path.names.length, names.length, path.names, 0, path.names.length);
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> normalized = new ArrayList<>();
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..") && !normalized.isEmpty() && !normalized.get(normalized.size() - 1).equals("..")) {
+                normalized.remove(normalized.size() - 1);
+            } else if (!(name.equals("..") && absolute)) {
+                normalized.add(name);
+            }
+        }
+        return new TreePath(fileSystem, absolute, normalized.toArray(new String[0]));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        TreePath path = check(other);
+        if (path.absolute) {
+            return path;
+        }
+        String[] resolved = Arrays.copyOf(names, names.length + path.names.length);
+        System.arraycopy(path.names, 0, resolved, names.length, path.names.length);
+        return new TreePath(fileSystem, absolute, resolved);
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        TreePath path = check(other);
+        if (path.absolute != absolute) {
+            throw new IllegalArgumentException("Cannot relativize an absolute path against a relative one.");
+        }
+        int common = 0;
+        while (common < names.length && common < path.names.length && names[common].equals(path.names[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            relative.add("..");
+        }
+        relative.addAll(Arrays.asList(path.names).subList(common, path.names.length));
+        return new TreePath(fileSystem, false, relative.toArray(new String[0]));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            return new URI(TreeFileSystemProvider.SCHEME, fileSystem.getUri().getAuthority(), toAbsolutePath().toString(), null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Path \"" + this + "\" cannot be turned into a URI.", e);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return absolute ? this : new TreePath(fileSystem, true, names);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) {
+        return toAbsolutePath().normalize();
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Watching is not supported.");
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(check(other).toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TreePath path = (TreePath) o;
+        return fileSystem == path.fileSystem && absolute == path.absolute && Arrays.equals(names, path.names);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + (absolute ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return (absolute ? "/" : "") + String.join("/", names);
+    }
+
+    private TreePath check(Path other) {
+        if (!(other instanceof TreePath path) || path.fileSystem != fileSystem) {
+            throw new ProviderMismatchException();
+        }
+        return path;
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the calls made to a {@link FileSystemManager} as a compact binary trace, to be re-driven by a
+ * {@link WorkloadReplayer}. Each call is recorded with its operation, paths, the number of bytes it created,
+ * appended, written, copied, moved or deleted, when it started and how long it took, but never with any content. Only calls
+ * that complete are recorded, and only the calls made from outside the manager: a move is one call, not a copy
+ * and a delete. A trace is replayed against a fresh manager, so recording should start with the tree.
+ * <p>
+ * A trace starts with a magic number and version. Each call is then written as its operation, with flags for
+ * appendable and block content, the change in start time since the previous call and its duration, in
+ * microseconds, its path and, for copies and moves, its destination, for file calls its size, and for writes
+ * their offset. Numbers are written as
+ * variable-length integers. A path is written as the number of its folder, followed by its name; a folder seen
+ * for the first time is given the next number and written out in full. Most calls therefore take a few bytes plus
+ * the name of the entity.
+ * @author Tshiamo
+ */
+public class WorkloadRecorder implements AutoCloseable {
+
+    public enum Operation {
+        CREATE_FILE, DELETE_FILE, APPEND_TO_FILE, COPY_FILE, MOVE_FILE,
+        CREATE_FOLDER, DELETE_FOLDER, COPY_FOLDER, MOVE_FOLDER,
+        WRITE_FILE, TRUNCATE_FILE
+    }
+
+    /**
+     * One recorded call.
+     * @param operation the manager method called.
+     * @param startNanos when the call started, from the start of the recording.
+     * @param durationNanos how long the call took.
+     * @param path the path of the file or folder, with the root as "/"; for a create, the path it was created at.
+     * @param destination the path of the destination folder of a copy or move, or null.
+     * @param size the bytes created, appended, written, copied, moved or deleted by a file call, the new length of
+     *             a truncated file, or 0 for a folder call.
+     * @param offset where a write started, or 0 for other calls.
+     * @param appendable true if a created file has {@link AppendableContent}.
+     * @param blocks true if a created file has {@link BlockContent}.
+     */
+    public record Call(Operation operation, long startNanos, long durationNanos, String path, String destination,
+                       long size, long offset, boolean appendable, boolean blocks) {
+    }
+
+    static final int MAGIC = 0x46535754;
+    static final int VERSION = 1;
+    private static final int APPENDABLE = 0x80;
+    private static final int BLOCKS = 0x40;
+
+    private final DataOutputStream out;
+    private final long startNanos;
+    private final Map<String, Integer> folders = new HashMap<>();
+    private long lastStartMicros;
+    private long calls;
+
+    /**
+     * Starts a trace.
+     * @param out the stream to write the trace to, which is closed with the recorder.
+     * @throws UncheckedIOException if the header cannot be written.
+     */
+    public WorkloadRecorder(OutputStream out) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output stream parameter cannot be null.");
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.startNanos = System.nanoTime();
+        try {
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the number of calls recorded so far.
+     */
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Appends a call to the trace. Calls are written in the order they are recorded.
+     * @param operation the manager method called.
+     * @param startedNanos the {@link System#nanoTime()} at which the call started.
+     * @param path the path of the file or folder.
+     * @param destination the path of the destination folder of a copy or move, or null.
+     * @param size the bytes created, appended, written, copied, moved or deleted, or the new length.
+     * @param offset where a write started.
+     * @param appendable true if a created file has appendable content.
+     * @param blocks true if a created file has block content.
+     * @throws UncheckedIOException if the call cannot be written.
+     */
+    synchronized void record(Operation operation, long startedNanos, String path, String destination, long size,
+                             long offset, boolean appendable, boolean blocks) {
+        long startMicros = (startedNanos - startNanos) / 1000;
+        long durationMicros = (System.nanoTime() - startedNanos) / 1000;
+        try {
+            out.writeByte(operation.ordinal() | (appendable ? APPENDABLE : 0) | (blocks ? BLOCKS : 0));
+            writeLong(out, zigZag(startMicros - lastStartMicros));
+            writeLong(out, durationMicros);
+            writePath(path);
+            if (hasDestination(operation)) {
+                writePath(destination);
+            }
+            if (hasSize(operation)) {
+                writeLong(out, size);
+            }
+            if (operation == Operation.WRITE_FILE) {
+                writeLong(out, offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lastStartMicros = startMicros;
+        calls++;
+    }
+
+    /**
+     * Writes out any buffered calls.
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Reads a whole trace.
+     * @param in the stream to read the trace from, which is not closed.
+     * @return the calls, in the order they were recorded.
+     * @throws IOException if the trace cannot be read or is not a trace.
+     */
+    public static List<Call> read(InputStream in) throws IOException {
+        if (in == null) {
+            throw new IllegalArgumentException("Input stream parameter cannot be null.");
+        }
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a workload trace of version " + VERSION + ".");
+        }
+        List<String> folders = new ArrayList<>();
+        List<Call> calls = new ArrayList<>();
+        long startMicros = 0;
+        Operation[] operations = Operation.values();
+        while (true) {
+            int header = data.read();
+            if (header < 0) {
+                return calls;
+            }
+            int ordinal = header & ~(APPENDABLE | BLOCKS);
+            if (ordinal >= operations.length) {
+                throw new IOException("Unknown operation " + ordinal + " in workload trace.");
+            }
+            Operation operation = operations[ordinal];
+            startMicros += unZigZag(readLong(data));
+            long durationMicros = readLong(data);
+            String path = readPath(data, folders);
+            String destination = hasDestination(operation) ? readPath(data, folders) : null;
+            long size = hasSize(operation) ? readLong(data) : 0;
+            long offset = operation == Operation.WRITE_FILE ? readLong(data) : 0;
+            calls.add(new Call(operation, startMicros * 1000, durationMicros * 1000, path, destination, size, offset,
+                    (header & APPENDABLE) != 0, (header & BLOCKS) != 0));
+        }
+    }
+
+    /**
+     * Builds the path an entity has, or will have once added, beneath a folder.
+     */
+    static String pathOf(Folder parent, FileSystemEntity entity) {
+        String name = entity instanceof File file ? file.getFullName() : entity.getName();
+        String folder = OperationLog.pathOf(parent);
+        return folder.equals("/") ? "/" + name : folder + "/" + name;
+    }
+
+    private static boolean hasDestination(Operation operation) {
+        return switch (operation) {
+            case COPY_FILE, MOVE_FILE, COPY_FOLDER, MOVE_FOLDER -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean hasSize(Operation operation) {
+        return switch (operation) {
+            case CREATE_FILE, DELETE_FILE, APPEND_TO_FILE, COPY_FILE, MOVE_FILE, WRITE_FILE, TRUNCATE_FILE -> true;
+            default -> false;
+        };
+    }
+
+    private void writePath(String path) throws IOException {
+        int slash = path.lastIndexOf('/');
+        String folder = path.substring(0, Math.max(1, slash));
+        Integer number = folders.get(folder);
+        if (number == null) {
+            writeLong(out, folders.size());
+            out.writeUTF(folder);
+            folders.put(folder, folders.size());
+        } else {
+            writeLong(out, number);
+        }
+        out.writeUTF(path.substring(slash + 1));
+    }
+
+    private static String readPath(DataInputStream in, List<String> folders) throws IOException {
+        int number = (int) readLong(in);
+        if (number == folders.size()) {
+            folders.add(in.readUTF());
+        } else if (number > folders.size()) {
+            throw new IOException("Unknown folder " + number + " in workload trace.");
+        }
+        String folder = folders.get(number);
+        String name = in.readUTF();
+        if (name.isEmpty()) {
+            return folder;
+        }
+        return folder.equals("/") ? "/" + name : folder + "/" + name;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Workload trace ends part-way through a call.");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in workload trace.");
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-drives a trace recorded by a {@link WorkloadRecorder} against a fresh {@link ReplayBackend}, such as a
+ * {@link FileSystemManager} or an {@link AsyncFileSystemManager}, so that backends and changes can be compared on a
+ * real mix of calls rather than a synthetic one. Files are created with zeroed content of their recorded size, so
+ * appends, writes, copies and deletes touch as many bytes as they did.
+ * <p>
+ * Calls are handed to the replaying threads in trace order, either as fast as the threads can take them or at the
+ * recorded pace, sped up or slowed down by a factor. The replayer takes no lock of its own: each thread looks up
+ * its call's paths and makes the call through the backend, which does whatever locking it does. Calls that are in
+ * flight together may therefore apply in a different order than they were recorded; a call that then finds its
+ * path missing, or any call that fails, is counted as an error. When replaying at the recorded
+ * pace, a call's latency is measured from when it was due rather than from when a thread got to it, so that
+ * falling behind shows up in the latencies instead of hiding in a slower replay.
+ * @author Tshiamo
+ */
+public final class WorkloadReplayer {
+
+    /**
+     * Latency percentiles of the calls that succeeded, in microseconds.
+     */
+    public record Latencies(long count, long p50Micros, long p90Micros, long p99Micros, long p999Micros,
+                            long maxMicros) {
+    }
+
+    /**
+     * The outcome of a replay.
+     * @param calls the calls replayed, including those that failed.
+     * @param errors the calls that failed.
+     * @param elapsedNanos how long the replay took.
+     * @param callsPerSecond the calls replayed per second.
+     * @param overall latencies of all successful calls.
+     * @param byOperation latencies of the successful calls of each operation in the trace.
+     */
+    public record Report(long calls, long errors, long elapsedNanos, double callsPerSecond, Latencies overall,
+                         Map<WorkloadRecorder.Operation, Latencies> byOperation) {
+    }
+
+    private static final long FAILED = -1;
+
+    private final List<WorkloadRecorder.Call> calls;
+    private final ReplayBackend backend;
+    private final AtomicInteger next = new AtomicInteger();
+    private final long[] latencies;
+    private long startNanos;
+
+    private WorkloadReplayer(List<WorkloadRecorder.Call> calls, ReplayBackend backend) {
+        this.calls = calls;
+        this.backend = backend;
+        this.latencies = new long[calls.size()];
+    }
+
+    /**
+     * Replays a trace against a manager, whose calls are made one at a time since it is not thread-safe.
+     * @see #replay(List, ReplayBackend, int, double)
+     */
+    public static Report replay(List<WorkloadRecorder.Call> calls, FileSystemManager manager, int threads,
+                                double speed) throws InterruptedException {
+        return replay(calls, ReplayBackend.of(manager), threads, speed);
+    }
+
+    /**
+     * Replays a trace and waits for it to finish.
+     * @param calls the recorded calls.
+     * @param backend the backend to replay against, normally over a fresh manager configured as the one to measure.
+     * @param threads the number of threads making calls.
+     * @param speed 1 to replay at the recorded pace, 2 for twice as fast and so on, or 0 for as fast as possible.
+     * @return the throughput and latencies of the replay.
+     * @throws InterruptedException if interrupted while waiting for the replay.
+     */
+    public static Report replay(List<WorkloadRecorder.Call> calls, ReplayBackend backend, int threads,
+                                double speed) throws InterruptedException {
+        if (calls == null || backend == null) {
+            throw new IllegalArgumentException("Calls and backend parameters cannot be null.");
+        }
+        if (threads < 1 || speed < 0) {
+            throw new IllegalArgumentException("Threads must be at least 1 and speed cannot be negative.");
+        }
+        WorkloadReplayer replayer = new WorkloadReplayer(calls, backend);
+        List<Thread> workers = new ArrayList<>(threads);
+        replayer.startNanos = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().name("workload-replayer-" + i).start(() -> replayer.work(speed)));
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            replayer.next.set(calls.size());
+            throw e;
+        }
+        return replayer.report(System.nanoTime() - replayer.startNanos);
+    }
+
+    private void work(double speed) {
+        for (int index = next.getAndIncrement(); index < calls.size(); index = next.getAndIncrement()) {
+            WorkloadRecorder.Call call = calls.get(index);
+            long due = System.nanoTime();
+            if (speed > 0) {
+                due = startNanos + (long) (call.startNanos() / speed);
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            try {
+                apply(call);
+                latencies[index] = Math.max(0, System.nanoTime() - due);
+            } catch (RuntimeException e) {
+                latencies[index] = FAILED;
+            }
+        }
+    }
+
+    private void apply(WorkloadRecorder.Call call) {
+        switch (call.operation()) {
+            case CREATE_FILE -> {
+                String[] parts = DiskImporter.splitName(name(call.path()));
+                byte[] bytes = new byte[Math.toIntExact(call.size())];
+                FileContent content = call.appendable() ? new AppendableContent(bytes)
+                        : call.blocks() ? new BlockContent(bytes, BlockContent.DEFAULT_BLOCK_SIZE)
+                        : new ByteArrayContent(bytes);
+                File file = new File(parts[0], null, new Date(), content, parts[1]);
+                file.setParent(folderAt(parentOf(call.path())));
+                backend.createFile(file);
+            }
+            case DELETE_FILE -> backend.deleteFile(fileAt(call.path()));
+            case APPEND_TO_FILE -> backend.appendToFile(fileAt(call.path()), new byte[Math.toIntExact(call.size())]);
+            case WRITE_FILE -> backend.writeFile(fileAt(call.path()), call.offset(), new byte[Math.toIntExact(call.size())]);
+            case TRUNCATE_FILE -> backend.truncateFile(fileAt(call.path()), call.size());
+            case COPY_FILE -> backend.copyFile(fileAt(call.path()), folderAt(call.destination()));
+            case MOVE_FILE -> backend.moveFile(fileAt(call.path()), folderAt(call.destination()));
+            case CREATE_FOLDER -> {
+                Folder folder = new Folder(name(call.path()), null);
+                folder.setParent(folderAt(parentOf(call.path())));
+                backend.createFolder(folder);
+            }
+            case DELETE_FOLDER -> backend.deleteFolder(folderAt(call.path()));
+            case COPY_FOLDER -> backend.copyFolder(folderAt(call.path()), folderAt(call.destination()));
+            case MOVE_FOLDER -> backend.moveFolder(folderAt(call.path()), folderAt(call.destination()));
+        }
+    }
+
+    private FileSystemEntity entityAt(String path) {
+        return backend.query(root -> {
+            FileSystemEntity entity = root;
+            for (String name : LocalShard.split(path)) {
+                entity = entity instanceof Folder folder ? folder.findChild(name) : null;
+                if (entity == null) {
+                    throw new IllegalStateException("No file or folder exists at \"" + path + "\".");
+                }
+            }
+            return entity;
+        });
+    }
+
+    private File fileAt(String path) {
+        if (!(entityAt(path) instanceof File file)) {
+            throw new IllegalStateException("\"" + path + "\" is not a file.");
+        }
+        return file;
+    }
+
+    private Folder folderAt(String path) {
+        if (!(entityAt(path) instanceof Folder folder)) {
+            throw new IllegalStateException("\"" + path + "\" is not a folder.");
+        }
+        return folder;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? "/" : path.substring(0, slash);
+    }
+
+    private static String name(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private Report report(long elapsedNanos) {
+        Map<WorkloadRecorder.Operation, List<Long>> byOperation = new EnumMap<>(WorkloadRecorder.Operation.class);
+        List<Long> all = new ArrayList<>(latencies.length);
+        long errors = 0;
+        for (int i = 0; i < latencies.length; i++) {
+            if (latencies[i] == FAILED) {
+                errors++;
+                continue;
+            }
+            all.add(latencies[i]);
+            byOperation.computeIfAbsent(calls.get(i).operation(), operation -> new ArrayList<>()).add(latencies[i]);
+        }
+        Map<WorkloadRecorder.Operation, Latencies> percentiles = new EnumMap<>(WorkloadRecorder.Operation.class);
+        byOperation.forEach((operation, nanos) -> percentiles.put(operation, percentiles(nanos)));
+        double seconds = Math.max(1, elapsedNanos) / 1e9;
+        return new Report(calls.size(), errors, elapsedNanos, calls.size() / seconds, percentiles(all),
+                Collections.unmodifiableMap(percentiles));
+    }
+
+    private static Latencies percentiles(List<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return new Latencies(sorted.length, percentile(sorted, 0.5), percentile(sorted, 0.9),
+                percentile(sorted, 0.99), percentile(sorted, 0.999), percentile(sorted, 1));
+    }
+
+    /**
+     * Returns the latency at or below which a fraction of the calls completed, by the nearest rank.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1000;
+    }
+}
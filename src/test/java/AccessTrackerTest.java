@@ -0,0 +1,128 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessTrackerTest {
+
+    private FileSystemManager fileSystemManager;
+    private Folder logs;
+
+    /**
+     * Set up a tree with one folder of 100 files.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        logs = new Folder("logs", fileSystemManager.getRoot());
+        for (int i = 0; i < 100; i++) {
+            new File("file" + i, logs, 1, new Date(), new byte[1], "log");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        AccessTracker.disable();
+    }
+
+    /**
+     * Tests that nothing is tracked until a tracker is enabled, and that reads stop being tracked once it is disabled.
+     */
+    @Test
+    void testTrackingIsOptIn() {
+        File file = logs.getFiles().get(0);
+        file.getContent();
+        assertNull(AccessTracker.active());
+        AccessTracker tracker = AccessTracker.enable(1, 0.01);
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            file.getContent();
+        }
+        assertEquals(5, tracker.estimateReads(file));
+        assertTrue(tracker.lastAccessMillis(file) >= before - 1_000);
+        AccessTracker.disable();
+        file.getContent();
+        assertEquals(5, tracker.estimateReads(file));
+        assertEquals(0, tracker.lastAccessMillis(logs.getFiles().get(1)));
+    }
+
+    /**
+     * Tests that the hottest files are reported by path, most read first, from sampled reads.
+     */
+    @Test
+    void testHottestPaths() {
+        AccessTracker tracker = AccessTracker.enable(4, 0.01);
+        for (int i = 0; i < 100; i++) {
+            for (int reads = 0; reads < (i < 3 ? 2_000 * (i + 1) : 10); reads++) {
+                logs.getFiles().get(i).getContent();
+            }
+        }
+        List<AccessTracker.Hotspot> hottest = tracker.hottest(3);
+        assertEquals(List.of("/logs/file2.log", "/logs/file1.log", "/logs/file0.log"),
+                hottest.stream().map(AccessTracker.Hotspot::path).toList());
+        long estimate = hottest.get(0).reads();
+        assertTrue(estimate > 4_000 && estimate < 8_000, "estimate was " + estimate);
+    }
+
+    /**
+     * Tests that reads and listings through the tree file system are tracked.
+     */
+    @Test
+    void testTreeFileSystemReadsAreTracked() throws IOException {
+        AccessTracker tracker = AccessTracker.enable(1, 0.01);
+        try (FileSystem fileSystem = new TreeFileSystemProvider().newFileSystem(fileSystemManager)) {
+            Path folder = fileSystem.getPath("/logs");
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+                children.forEach(child -> { });
+            }
+            Files.readAllBytes(folder.resolve("file7.log"));
+        }
+        assertEquals(1, tracker.estimateReads(logs));
+        assertEquals(1, tracker.estimateReads(logs.getFiles().get(7)));
+    }
+
+    /**
+     * Tests that a following tracker stops reporting files once they are deleted, directly or with a folder above
+     * them, even while they are still referenced.
+     */
+    @Test
+    void testDeletedEntitiesAreNotReported() {
+        AccessTracker tracker = AccessTracker.enable(1, 0.01);
+        tracker.follow(fileSystemManager);
+        Folder archive = new Folder("archive", logs);
+        File old = new File("old", archive, 1, new Date(), new byte[1], "log");
+        File deleted = logs.getFiles().get(0);
+        File kept = logs.getFiles().get(1);
+        for (int i = 0; i < 3; i++) {
+            old.getContent();
+            deleted.getContent();
+        }
+        kept.getContent();
+        assertEquals(3, tracker.hottest(10).size());
+
+        fileSystemManager.deleteFile(deleted);
+        fileSystemManager.deleteFolder(archive);
+        assertEquals(List.of("/logs/file1.log"), tracker.hottest(10).stream().map(AccessTracker.Hotspot::path).toList());
+        assertEquals(3, tracker.estimateReads(deleted));
+    }
+
+    /**
+     * Tests that the sketches are sized by the error asked for rather than by the number of entities.
+     */
+    @Test
+    void testSketchesAreSizedByError() {
+        assertEquals(512, AccessTracker.enable(1, 0.01).sketchWidth());
+        assertEquals(32_768, AccessTracker.enable(1, 0.0001).sketchWidth());
+        assertThrows(IllegalArgumentException.class, () -> AccessTracker.enable(1, 0.00001));
+        assertThrows(IllegalArgumentException.class, () -> AccessTracker.enable(1, 1));
+    }
+}
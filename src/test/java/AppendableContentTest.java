@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppendableContentTest {
+
+    private static byte[] line(int i) {
+        return ("line " + i + "\n").getBytes();
+    }
+
+    /**
+     * Tests that appends through the manager grow the file, refresh its hashes, are charged to the memory budget
+     * and are seen by listeners.
+     */
+    @Test
+    void testAppendsAreChargedAndSeen() {
+        FileSystemManager fileSystemManager = new FileSystemManager();
+        MemoryBudget budget = new MemoryBudget(1_000_000, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(budget);
+        List<File> appended = new ArrayList<>();
+        fileSystemManager.addListener(new FileSystemListener() {
+            @Override
+            public void fileAppended(File file) {
+                appended.add(file);
+            }
+        });
+        fileSystemManager.createFile(new File("app", null, new Date(), new AppendableContent(), "log"));
+        File log = fileSystemManager.getRoot().getFiles().get(0);
+        byte[] emptyHash = log.getContentHash();
+        byte[] emptyMerkleHash = fileSystemManager.getRoot().getMerkleHash();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            fileSystemManager.appendToFile(log, line(i));
+            expected.writeBytes(line(i));
+        }
+        assertEquals(expected.size(), log.getSize());
+        assertArrayEquals(expected.toByteArray(), log.getContent());
+        assertFalse(Arrays.equals(emptyHash, log.getContentHash()));
+        assertFalse(Arrays.equals(emptyMerkleHash, fileSystemManager.getRoot().getMerkleHash()));
+        assertEquals(MemoryBudget.FILE_OVERHEAD + expected.size(), budget.getUsage());
+        assertEquals(10, appended.size());
+        assertSame(log, appended.get(9));
+
+        File plain = new File("plain", fileSystemManager.getRoot(), 1, new Date(), new byte[1], "txt");
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.appendToFile(plain, line(0)));
+    }
+
+    /**
+     * Tests that compaction merges small segments without changing the content, and that a copy does not see
+     * later appends.
+     */
+    @Test
+    void testCompactionAndCopies() {
+        AppendableContent content = new AppendableContent();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < AppendableContent.COMPACTION_THRESHOLD - 1; i++) {
+            content.append(line(i));
+            expected.writeBytes(line(i));
+        }
+        FileContent copy = content.copy();
+        content.compact();
+        assertEquals(1, content.segmentCount());
+        assertArrayEquals(expected.toByteArray(), content.toByteArray());
+
+        byte[] large = new byte[AppendableContent.TARGET_SEGMENT_SIZE];
+        content.append(large);
+        content.append(line(-1));
+        content.compact();
+        assertEquals(3, content.segmentCount());
+        assertEquals(expected.size(), copy.size());
+        assertArrayEquals(expected.toByteArray(), copy.toByteArray());
+    }
+
+    /**
+     * Tests that readers running alongside a writer and the background compactor always see a prefix of the
+     * final content, with a size that never goes backwards.
+     */
+    @Test
+    void testReadersSeeStablePrefix() throws Exception {
+        AppendableContent content = new AppendableContent();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 5_000; i++) {
+            expected.writeBytes(line(i));
+        }
+        byte[] all = expected.toByteArray();
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            long lastSize = 0;
+            while (lastSize < all.length) {
+                byte[] read = content.toByteArray();
+                assertTrue(read.length >= lastSize);
+                assertArrayEquals(Arrays.copyOf(all, read.length), read);
+                lastSize = read.length;
+            }
+        });
+        for (int i = 0; i < 5_000; i++) {
+            content.append(line(i));
+        }
+        reader.get(30, TimeUnit.SECONDS);
+        assertEquals(all.length, content.size());
+        assertTrue(content.segmentCount() < 5_000);
+        assertArrayEquals(all, content.toByteArray());
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncFileSystemManagerTest {
+
+    private FileSystemManager fileSystemManager;
+    private AsyncFileSystemManager asyncManager;
+    private Folder root;
+    private Folder source;
+    private Folder destination;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+    private final String fileExtension = "txt";
+    private final Date createdDate = new Date();
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        asyncManager = new AsyncFileSystemManager(fileSystemManager, 2);
+        root = fileSystemManager.getRoot();
+        source = new Folder("source", root);
+        destination = new Folder("destination", root);
+        for (int i = 0; i < 10; i++) {
+            Folder folder = new Folder("folder" + i, source);
+            for (int j = 0; j < 300; j++) {
+                new File("file" + j, folder, fileSize, createdDate, fileContent, fileExtension);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncManager.close();
+    }
+
+    /**
+     * Tests that file operations complete and are applied to the tree.
+     */
+    @Test
+    void testFileOperations() throws Exception {
+        File file = new File("newFile", null, fileSize, createdDate, fileContent, fileExtension);
+        asyncManager.createFile(file).get();
+        assertTrue(root.containsFile(file));
+        asyncManager.moveFile(root.getFiles().get(0), destination).get();
+        assertTrue(destination.containsFile(file));
+        assertFalse(root.containsFile(file));
+    }
+
+    /**
+     * Tests that a write waiting on a blocking memory budget does not hold the write lock, so a delete that
+     * releases the memory it needs can run and let it through.
+     */
+    @Test
+    void testBlockedWriteLetsReleasingWritesRun() throws Exception {
+        MemoryBudget budget = new MemoryBudget(MemoryBudget.FILE_OVERHEAD + fileSize, MemoryBudget.Policy.BLOCK, 10_000, null);
+        fileSystemManager.setMemoryBudget(budget);
+        asyncManager.createFile(new File("first", null, fileSize, createdDate, fileContent, fileExtension)).get();
+        File first = root.getFiles().get(0);
+
+        CompletableFuture<Void> blocked = asyncManager.createFile(new File("second", null, fileSize, createdDate, fileContent, fileExtension));
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+        asyncManager.deleteFile(first).get(5, TimeUnit.SECONDS);
+        blocked.get(5, TimeUnit.SECONDS);
+        assertEquals("second", root.getFiles().get(0).getName());
+        assertEquals(MemoryBudget.FILE_OVERHEAD + fileSize, budget.getUsage());
+    }
+
+    /**
+     * Tests that a failing operation completes its future exceptionally with the manager's exception.
+     */
+    @Test
+    void testFailureCompletesExceptionally() {
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> asyncManager.createFolder(new Folder("source", null)).get());
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        assertInstanceOf(IllegalArgumentException.class, assertThrows(ExecutionException.class, () -> asyncManager.copyFolder(null, destination).get()).getCause());
+    }
+
+    /**
+     * Tests that copying a folder copies the whole subtree and reports progress up to the total.
+     */
+    @Test
+    void testCopyFolderReportsProgress() throws Exception {
+        AtomicLong last = new AtomicLong();
+        asyncManager.copyFolder(source, destination, (done, total) -> {
+            assertTrue(done <= total);
+            last.set(done);
+        }).get();
+
+        assertEquals(3011, last.get());
+        Folder copy = destination.getFolders().get(0);
+        assertEquals(10, copy.getFolders().size());
+        assertEquals(300, copy.getFolders().get(0).getFiles().size());
+        assertSame(copy, copy.getFolders().get(0).getParent());
+    }
+
+    /**
+     * Tests that moving a folder removes the original and that moving it into itself fails.
+     */
+    @Test
+    void testMoveFolder() throws Exception {
+        asyncManager.moveFolder(source, destination).get();
+        assertFalse(root.containsFolder(source));
+        assertEquals("source", destination.getFolders().get(0).getName());
+
+        Folder moved = destination.getFolders().get(0);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> asyncManager.moveFolder(destination, moved).get());
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    /**
+     * Tests that cancelling a folder copy part way leaves the destination untouched.
+     */
+    @Test
+    void testCancelCopyFolder() {
+        AtomicReference<CompletableFuture<Void>> future = new AtomicReference<>();
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        future.set(asyncManager.copyFolder(source, destination, (done, total) -> {
+            started.join();
+            future.get().cancel(true);
+        }));
+        started.complete(null);
+
+        assertThrows(CancellationException.class, () -> future.get().get());
+        assertTrue(destination.getFolders().isEmpty());
+    }
+}
@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockContentTest {
+
+    private FileSystemManager fileSystemManager;
+    private MemoryBudget budget;
+    private final List<String> written = new ArrayList<>();
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * Set up a manager with a memory budget and a listener that notes which files are written.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        budget = new MemoryBudget(1_000_000, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(budget);
+        fileSystemManager.addListener(new FileSystemListener() {
+            @Override
+            public void fileWritten(File file) {
+                written.add(file.getName());
+            }
+        });
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private File create(String name, BlockContent content) {
+        fileSystemManager.createFile(new File(name, null, new Date(), content, "bin"));
+        return fileSystemManager.getRoot().getFiles().get(fileSystemManager.getRoot().getFiles().size() - 1);
+    }
+
+    /**
+     * Tests that writes through the manager patch only the region they cover, are charged for the blocks they add
+     * and not for holes or blocks already held, and are seen by listeners.
+     */
+    @Test
+    void testWritesAreChargedAndSeen() {
+        File file = create("image", new BlockContent(BLOCK_SIZE));
+        assertEquals(MemoryBudget.FILE_OVERHEAD, budget.getUsage());
+
+        fileSystemManager.writeFile(file, 100 * BLOCK_SIZE, filled(4, 7));
+        assertEquals(100 * BLOCK_SIZE + 4, file.getSize());
+        assertEquals(MemoryBudget.FILE_OVERHEAD + BLOCK_SIZE, budget.getUsage());
+
+        byte[] hash = file.getContentHash();
+        fileSystemManager.writeFile(file, BLOCK_SIZE - 2, filled(4, 9));
+        fileSystemManager.writeFile(file, BLOCK_SIZE, filled(1, 9));
+        assertFalse(Arrays.equals(hash, file.getContentHash()));
+        byte[] expected = new byte[100 * BLOCK_SIZE + 4];
+        Arrays.fill(expected, BLOCK_SIZE - 2, BLOCK_SIZE + 2, (byte) 9);
+        Arrays.fill(expected, 100 * BLOCK_SIZE, 100 * BLOCK_SIZE + 4, (byte) 7);
+        assertArrayEquals(expected, file.getContent());
+        assertEquals(MemoryBudget.FILE_OVERHEAD + 3 * BLOCK_SIZE, budget.getUsage());
+        assertEquals(MemoryBudget.costOf(file), budget.getUsage());
+        assertEquals(List.of("image", "image", "image"), written);
+
+        File plain = new File("plain", null, 1, new Date(), new byte[1], "txt");
+        fileSystemManager.createFile(plain);
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.writeFile(plain, 0, new byte[1]));
+    }
+
+    /**
+     * Tests that a write the budget refuses leaves the file as it was.
+     */
+    @Test
+    void testRefusedWriteChangesNothing() {
+        MemoryBudget small = new MemoryBudget(MemoryBudget.FILE_OVERHEAD + BLOCK_SIZE, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(small);
+        File file = create("data", new BlockContent(BLOCK_SIZE));
+        fileSystemManager.writeFile(file, 0, filled(BLOCK_SIZE, 1));
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.writeFile(file, BLOCK_SIZE, new byte[1]));
+        assertEquals(BLOCK_SIZE, file.getSize());
+        assertEquals(1, ((BlockContent) file.getFileContent()).blockCount());
+        assertEquals(List.of("data"), written);
+    }
+
+    /**
+     * Tests that truncating through the manager releases the blocks it drops, so growing the file again reads
+     * zeros and charges nothing.
+     */
+    @Test
+    void testTruncateReleasesBlocks() {
+        File file = create("data", new BlockContent(filled(3 * BLOCK_SIZE, 5), BLOCK_SIZE));
+        assertEquals(MemoryBudget.FILE_OVERHEAD + 3 * BLOCK_SIZE, budget.getUsage());
+
+        fileSystemManager.truncateFile(file, BLOCK_SIZE + 3);
+        assertEquals(BLOCK_SIZE + 3, file.getSize());
+        assertEquals(MemoryBudget.FILE_OVERHEAD + 2 * BLOCK_SIZE, budget.getUsage());
+        fileSystemManager.truncateFile(file, 2 * BLOCK_SIZE);
+        byte[] expected = new byte[2 * BLOCK_SIZE];
+        Arrays.fill(expected, 0, BLOCK_SIZE + 3, (byte) 5);
+        assertArrayEquals(expected, file.getContent());
+        assertEquals(MemoryBudget.FILE_OVERHEAD + 2 * BLOCK_SIZE, budget.getUsage());
+
+        fileSystemManager.truncateFile(file, 0);
+        assertEquals(0, file.getSize());
+        assertEquals(MemoryBudget.FILE_OVERHEAD, budget.getUsage());
+        fileSystemManager.deleteFile(file);
+        assertEquals(0, budget.getUsage());
+        assertEquals(List.of("data", "data", "data"), written);
+    }
+
+    /**
+     * Tests that a copied file shares its blocks with the original, that writes to either stay separate, and
+     * that the operation log records each write as the file now is.
+     */
+    @Test
+    void testCopiesAndLogFollowWrites() throws InterruptedException {
+        OperationLog log = new OperationLog(16);
+        fileSystemManager.addListener(log);
+        File original = create("disk", new BlockContent(filled(4 * BLOCK_SIZE, 1), BLOCK_SIZE));
+        Folder backups = new Folder("backups", null);
+        fileSystemManager.createFolder(backups);
+        backups = fileSystemManager.getRoot().getFolders().get(0);
+        fileSystemManager.copyFile(original, backups);
+        File copy = backups.getFiles().get(0);
+        fileSystemManager.writeFile(copy, 0, filled(BLOCK_SIZE, 2));
+        fileSystemManager.writeFile(original, 3 * BLOCK_SIZE, filled(BLOCK_SIZE, 3));
+
+        assertEquals(1, copy.getContent()[BLOCK_SIZE]);
+        assertEquals(2, copy.getContent()[0]);
+        assertEquals(1, copy.getContent()[3 * BLOCK_SIZE]);
+        assertEquals(1, original.getContent()[0]);
+        assertEquals(3, original.getContent()[3 * BLOCK_SIZE]);
+
+        List<OperationLog.Entry> entries = log.read(4, 2, 0, TimeUnit.MILLISECONDS);
+        assertEquals(OperationLog.Kind.UPDATE_FILE, entries.get(0).kind());
+        assertEquals("/backups/disk.bin", entries.get(0).path());
+        assertArrayEquals(copy.getContent(), ((File) entries.get(0).payload()).getContent());
+        assertEquals("/disk.bin", entries.get(1).path());
+        assertArrayEquals(original.getContent(), ((File) entries.get(1).payload()).getContent());
+    }
+}
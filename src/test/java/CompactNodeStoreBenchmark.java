@@ -0,0 +1,61 @@
+import java.util.Date;
+
+/**
+ * Compares the heap used per node by the object model ({@link Folder}/{@link File}) and by
+ * {@link CompactNodeStore}. Run with a large heap, for example {@code java -Xmx4g CompactNodeStoreBenchmark 1000000}.
+ * Every file shares one content array so the numbers reflect the metadata cost of a node only.
+ * @author Tshiamo
+ */
+public class CompactNodeStoreBenchmark {
+    private static final int FILES_PER_FOLDER = 100;
+    private static final String[] EXTENSIONS = {"txt", "log", "json"};
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        byte[] content = new byte[16];
+
+        long before = usedHeap();
+        Folder root = new Folder("root", null);
+        Folder folder = root;
+        for (int i = 0; i < nodes; i++) {
+            if (i % FILES_PER_FOLDER == 0) {
+                folder = new Folder("folder" + i, root);
+            } else {
+                new File("file" + (i % FILES_PER_FOLDER), folder, content.length, new Date(i), content, EXTENSIONS[i % EXTENSIONS.length]);
+            }
+        }
+        long objectModel = usedHeap() - before;
+        report("object model", objectModel, nodes, root);
+        root = null;
+        folder = null;
+
+        before = usedHeap();
+        CompactNodeStore store = new CompactNodeStore(nodes + 1, new NamePool());
+        int folderId = CompactNodeStore.ROOT;
+        for (int i = 0; i < nodes; i++) {
+            if (i % FILES_PER_FOLDER == 0) {
+                folderId = store.createFolder(CompactNodeStore.ROOT, "folder" + i);
+            } else {
+                store.createFile(folderId, "file" + (i % FILES_PER_FOLDER), EXTENSIONS[i % EXTENSIONS.length], i, content);
+            }
+        }
+        long compact = usedHeap() - before;
+        report("compact store", compact, nodes, store);
+        System.out.printf("compact store uses %.1f%% of the object model's heap%n", 100.0 * compact / objectModel);
+    }
+
+    private static void report(String label, long bytes, int nodes, Object keepAlive) {
+        System.out.printf("%-14s %,d nodes: %,d bytes, %.1f bytes/node%n", label, nodes, bytes, (double) bytes / nodes);
+        if (keepAlive == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactNodeStoreTest {
+
+    private CompactNodeStore store;
+    private CompactFolder root;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final String fileExtension = "txt";
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        store = new CompactNodeStore(2, new NamePool());
+        root = store.getRoot();
+    }
+
+    /**
+     * Tests that created files and folders can be read back through their flyweight views.
+     */
+    @Test
+    void testCreateAndRead() {
+        CompactFolder subFolder = root.createFolder("subFolder");
+        CompactFile file = subFolder.createFile("testFile", fileExtension, 1_000, fileContent);
+
+        assertEquals("subFolder", subFolder.getName());
+        assertEquals(root, subFolder.getParent());
+        assertEquals("testFile", file.getName());
+        assertEquals(fileExtension, file.getExtension());
+        assertEquals(fileContent.length, file.getSize());
+        assertEquals(1_000, file.getCreatedDate().getTime());
+        assertSame(fileContent, file.getContent());
+        assertEquals(subFolder, file.getParent());
+        assertEquals(1, subFolder.getFiles().size());
+        assertEquals(1, root.getFolders().size());
+        assertEquals(3, store.getNodeCount());
+    }
+
+    /**
+     * Tests that duplicate names are rejected ignoring case, like Folder does.
+     */
+    @Test
+    void testDuplicateNamesNotAllowed() {
+        root.createFolder("subFolder");
+        root.createFile("testFile", fileExtension, 0, fileContent);
+
+        assertThrows(IllegalArgumentException.class, () -> root.createFolder("SUBFOLDER"));
+        assertThrows(IllegalArgumentException.class, () -> root.createFile("TestFile", "TXT", 0, fileContent));
+        assertDoesNotThrow(() -> root.createFile("testFile", "doc", 0, fileContent));
+        assertDoesNotThrow(() -> root.createFolder("testFile"));
+    }
+
+    /**
+     * Tests that names and extensions are stored once in the shared pool.
+     */
+    @Test
+    void testNamesAreInterned() {
+        for (int i = 0; i < 10; i++) {
+            root.createFolder("folder" + i).createFile("testFile", fileExtension, 0, fileContent);
+        }
+        // "root", ten folder names, "testFile", its folded form "testfile" and "txt".
+        assertEquals(14, store.getNames().size());
+    }
+
+    /**
+     * Tests that deleting a folder releases its subtree and that the ids are reused.
+     */
+    @Test
+    void testDeleteReleasesSubtree() {
+        CompactFolder subFolder = root.createFolder("subFolder");
+        subFolder.createFolder("nested").createFile("testFile", fileExtension, 0, fileContent);
+        assertEquals(4, store.getNodeCount());
+
+        store.delete(subFolder.getId());
+        assertEquals(1, store.getNodeCount());
+        assertTrue(root.getFolders().isEmpty());
+
+        root.createFolder("again");
+        assertEquals(2, store.getNodeCount());
+        assertThrows(IllegalArgumentException.class, () -> store.delete(CompactNodeStore.ROOT));
+    }
+
+    /**
+     * Tests that moving a folder relinks it under its new parent and that a folder cannot be moved into itself.
+     */
+    @Test
+    void testMove() {
+        CompactFolder source = root.createFolder("source");
+        CompactFolder destination = root.createFolder("destination");
+        CompactFolder nested = source.createFolder("nested");
+
+        store.move(source.getId(), destination.getId());
+        assertEquals(destination, source.getParent());
+        assertEquals(1, root.getFolders().size());
+        assertThrows(IllegalStateException.class, () -> store.move(source.getId(), nested.getId()));
+    }
+
+    /**
+     * Tests that views of a deleted node fail once its id is reused, rather than reading the new node.
+     */
+    @Test
+    void testStaleViewsFail() {
+        CompactFolder subFolder = root.createFolder("subFolder");
+        CompactFile file = subFolder.createFile("testFile", fileExtension, 0, fileContent);
+        store.delete(subFolder.getId());
+
+        CompactFolder reused = root.createFolder("reused");
+        CompactFile reusedFile = reused.createFile("other", fileExtension, 0, new byte[1]);
+        assertTrue(reused.getId() == file.getId() || reusedFile.getId() == file.getId());
+        assertThrows(IllegalStateException.class, file::getName);
+        assertThrows(IllegalStateException.class, file::getContent);
+        assertThrows(IllegalStateException.class, subFolder::getFiles);
+        assertThrows(IllegalStateException.class, () -> subFolder.createFolder("nested"));
+        assertNotEquals(subFolder, reused);
+        assertEquals("reused", reused.getName());
+    }
+}
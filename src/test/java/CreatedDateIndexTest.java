@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreatedDateIndexTest {
+
+    private FileSystemManager fileSystemManager;
+    private Folder root;
+    private Folder subFolder;
+    private Folder otherFolder;
+    private CreatedDateIndex index;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+    private final String fileExtension = "txt";
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        root = fileSystemManager.getRoot();
+        subFolder = new Folder("subFolder", root);
+        otherFolder = new Folder("otherFolder", root);
+        new File("existing", subFolder, fileSize, new Date(1_000), fileContent, fileExtension);
+        index = new CreatedDateIndex(fileSystemManager);
+    }
+
+    private File fileAt(String name, Folder parent, long createdMillis) {
+        File file = new File(name, null, fileSize, new Date(createdMillis), fileContent, fileExtension);
+        file.setParent(parent);
+        return file;
+    }
+
+    /**
+     * Tests that files already in the tree when the index is built can be found.
+     */
+    @Test
+    void testExistingFilesAreIndexed() {
+        List<File> result = index.filesCreatedBetween(root, 0, 2_000);
+        assertEquals(1, result.size());
+        assertEquals("existing", result.get(0).getName());
+    }
+
+    /**
+     * Tests that a range query only returns files in the requested subtree and range, in creation order.
+     */
+    @Test
+    void testRangeQueryIsScopedToSubtree() {
+        fileSystemManager.createFile(fileAt("late", subFolder, 5_000));
+        fileSystemManager.createFile(fileAt("early", subFolder, 2_000));
+        fileSystemManager.createFile(fileAt("elsewhere", otherFolder, 3_000));
+
+        List<File> result = index.filesCreatedBetween(subFolder, 1_500, 5_000);
+        assertEquals(2, result.size());
+        assertEquals("early", result.get(0).getName());
+        assertEquals("late", result.get(1).getName());
+        assertEquals(3, index.filesCreatedBetween(root, 1_500, 5_000).size());
+    }
+
+    /**
+     * Tests that deleted files and folders are removed from the index.
+     */
+    @Test
+    void testDeleteRemovesFromIndex() {
+        fileSystemManager.createFile(fileAt("toDelete", otherFolder, 2_000));
+        fileSystemManager.deleteFile(otherFolder.getFiles().get(0));
+        assertTrue(index.filesCreatedBetween(root, 2_000, 2_000).isEmpty());
+
+        fileSystemManager.deleteFolder(subFolder);
+        assertTrue(index.filesCreatedBetween(root, 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Tests that moving a folder re-labels its files under the destination subtree.
+     */
+    @Test
+    void testMoveFolderUpdatesIndex() {
+        fileSystemManager.moveFolder(subFolder, otherFolder);
+        assertEquals(1, index.filesCreatedBetween(otherFolder, 0, 2_000).size());
+        assertTrue(index.filesCreatedBetween(subFolder, 0, 2_000).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    /**
+     * Tests that moving a file re-labels it under the destination folder.
+     */
+    @Test
+    void testMoveFileUpdatesIndex() {
+        File existing = subFolder.getFiles().get(0);
+        fileSystemManager.moveFile(existing, otherFolder);
+        assertTrue(index.filesCreatedBetween(subFolder, 0, 2_000).isEmpty());
+        assertEquals(1, index.filesCreatedBetween(otherFolder, 0, 2_000).size());
+    }
+
+    /**
+     * Tests that a query on a folder part way down a deep tree finds the files at any depth beneath it and none
+     * beside it, with each file indexed once.
+     */
+    @Test
+    void testQueriesPartWayDownADeepTree() {
+        Folder middle = null;
+        Folder current = otherFolder;
+        for (int depth = 0; depth < 20; depth++) {
+            current = new Folder("level" + depth, current);
+            if (depth == 10) {
+                middle = current;
+            }
+            fileSystemManager.createFile(fileAt("file" + depth, current, 10_000 + depth));
+        }
+        assertEquals(21, index.size());
+        List<File> result = index.filesCreatedBetween(middle, 10_000, 20_000);
+        assertEquals(10, result.size());
+        assertEquals("file10", result.get(0).getName());
+        assertEquals("file19", result.get(9).getName());
+        assertTrue(index.filesCreatedBetween(subFolder, 10_000, 20_000).isEmpty());
+    }
+}
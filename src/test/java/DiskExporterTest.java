@@ -0,0 +1,185 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskExporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemManager fileSystemManager;
+    private Folder source;
+    private Folder nested;
+    private Path target;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        source = new Folder("source", fileSystemManager.getRoot());
+        nested = new Folder("nested", source);
+        new File("readme", source, fileSize, new Date(), fileContent, "txt");
+        new File("Makefile", source, fileSize, new Date(), fileContent, "");
+        for (int i = 0; i < 40; i++) {
+            new File("data" + i, nested, fileSize, new Date(), fileContent, "json");
+        }
+        target = tempDir.resolve("export");
+    }
+
+    /**
+     * Tests that an export writes every file with its content.
+     */
+    @Test
+    void testExportWritesTree() throws IOException {
+        DiskExporter.Result result;
+        try (DiskExporter exporter = new DiskExporter(2)) {
+            result = exporter.export(source, target);
+        }
+
+        assertEquals(42, result.written());
+        assertEquals(42 * fileSize, result.bytesWritten());
+        assertArrayEquals(fileContent, Files.readAllBytes(target.resolve("readme.txt")));
+        assertArrayEquals(fileContent, Files.readAllBytes(target.resolve("Makefile")));
+        assertArrayEquals(fileContent, Files.readAllBytes(target.resolve("nested").resolve("data39.json")));
+    }
+
+    /**
+     * Tests that a mirror only rewrites changed files and deletes removed ones.
+     */
+    @Test
+    void testMirrorIsIncremental() throws IOException {
+        try (DiskExporter exporter = new DiskExporter(2)) {
+            exporter.export(source, target);
+
+            fileSystemManager.deleteFile(source.getFiles().get(0));
+            File changed = new File("data0", null, 3, new Date(), "new".getBytes(), "json");
+            fileSystemManager.deleteFile(nested.getFiles().get(0));
+            changed.setParent(nested);
+            fileSystemManager.createFile(changed);
+            Files.write(target.resolve("stray.log"), fileContent);
+
+            DiskExporter.Result result = exporter.mirror(source, target);
+            assertEquals(1, result.written());
+            assertEquals(40, result.unchanged());
+            assertEquals(2, result.deleted());
+        }
+        assertFalse(Files.exists(target.resolve("readme.txt")));
+        assertFalse(Files.exists(target.resolve("stray.log")));
+        assertArrayEquals("new".getBytes(), Files.readAllBytes(target.resolve("nested").resolve("data0.json")));
+    }
+
+    /**
+     * Tests that a new exporter compares against the files already on disk.
+     */
+    @Test
+    void testMirrorWithoutPreviousExportComparesDisk() throws IOException {
+        try (DiskExporter exporter = new DiskExporter()) {
+            exporter.export(source, target);
+        }
+        Files.write(target.resolve("readme.txt"), "edited on disk".getBytes());
+        Files.createDirectories(target.resolve("removed"));
+
+        DiskExporter.Result result;
+        try (DiskExporter exporter = new DiskExporter()) {
+            result = exporter.mirror(source, target);
+        }
+        assertEquals(1, result.written());
+        assertEquals(1, result.deleted());
+        assertArrayEquals(fileContent, Files.readAllBytes(target.resolve("readme.txt")));
+    }
+
+    /**
+     * Tests that content left on disk by an import is exported by copying between channels.
+     */
+    @Test
+    void testExportDiskBackedContent() throws IOException {
+        Path disk = Files.createDirectory(tempDir.resolve("disk"));
+        Files.write(disk.resolve("big.bin"), new byte[100_000]);
+        Folder imported;
+        try (DiskImporter importer = new DiskImporter(fileSystemManager)) {
+            imported = importer.importDirectory(disk, null).folder();
+        }
+
+        try (DiskExporter exporter = new DiskExporter()) {
+            exporter.export(imported, target);
+        }
+        assertEquals(100_000, Files.size(target.resolve("big.bin")));
+    }
+
+    /**
+     * Tests that names that would escape the target directory are rejected.
+     */
+    @Test
+    void testUnsafeNamesAreRejected() {
+        new Folder("..", source);
+        try (DiskExporter exporter = new DiskExporter()) {
+            assertThrows(IllegalArgumentException.class, () -> exporter.export(source, target));
+        }
+    }
+
+    /**
+     * Tests that a plain export reads each file's content once, to write it, without hashing it, and that a
+     * mirror only hashes files whose size has not changed.
+     */
+    @Test
+    void testOnlyMirrorHashesContent() {
+        CountingContent counted = new CountingContent(fileContent);
+        File file = new File("counted", null, new Date(), counted, "bin");
+        file.setParent(source);
+        fileSystemManager.createFile(file);
+        File grown = new File("grown", null, new Date(), new AppendableContent(fileContent), "bin");
+        grown.setParent(source);
+        fileSystemManager.createFile(grown);
+
+        try (DiskExporter exporter = new DiskExporter(2)) {
+            exporter.export(source, target);
+            assertEquals(1, counted.reads);
+
+            fileSystemManager.appendToFile(source.getFiles().get(3), new byte[5]);
+            DiskExporter.Result result = exporter.mirror(source, target);
+            assertEquals(1, result.written());
+            assertEquals(2, counted.reads);
+        }
+    }
+
+    /**
+     * Content that counts how often it is read.
+     */
+    private static final class CountingContent implements FileContent {
+        private final byte[] bytes;
+        private volatile int reads;
+
+        private CountingContent(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long size() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            reads++;
+            return bytes;
+        }
+
+        @Override
+        public ByteBuffer asByteBuffer() {
+            reads++;
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemManager fileSystemManager;
+    private Path source;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+
+    /**
+     * Set up a small directory tree on disk before each test.
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        fileSystemManager = new FileSystemManager();
+        source = Files.createDirectory(tempDir.resolve("source"));
+        Files.write(source.resolve("readme.txt"), fileContent);
+        Files.write(source.resolve(".hidden"), fileContent);
+        Path nested = Files.createDirectories(source.resolve("a").resolve("b"));
+        Files.write(nested.resolve("data.json"), fileContent);
+        Files.write(nested.resolve("large.bin"), new byte[(int) DiskFileContent.MAP_THRESHOLD + 1]);
+    }
+
+    /**
+     * Tests that the directory tree is imported with its names, extensions and content.
+     */
+    @Test
+    void testImportDirectory() {
+        DiskImporter.Result result;
+        try (DiskImporter importer = new DiskImporter(fileSystemManager, 2)) {
+            result = importer.importDirectory(source, null);
+        }
+
+        Folder imported = result.folder();
+        assertSame(fileSystemManager.getRoot(), imported.getParent());
+        assertEquals("source", imported.getName());
+        assertTrue(imported.containsFileWithSameName("readme", "txt"));
+        assertTrue(imported.containsFileWithSameName(".hidden", ""));
+
+        Folder nested = imported.getFolders().get(0).getFolders().get(0);
+        assertEquals("b", nested.getName());
+        assertSame(imported.getFolders().get(0), nested.getParent());
+        File data = nested.getFiles().stream().filter(f -> f.getExtension().equals("json")).findFirst().orElseThrow();
+        assertArrayEquals(fileContent, data.getContent());
+        assertInstanceOf(DiskFileContent.class, data.getFileContent());
+
+        assertEquals(4, result.files());
+        assertEquals(3, result.folders());
+        assertEquals(3L * fileContent.length + DiskFileContent.MAP_THRESHOLD + 1, result.bytes());
+        assertTrue(result.filesPerSecond() > 0);
+    }
+
+    /**
+     * Tests that a directory whose name clashes, ignoring case, with a sibling's is left out and counted as skipped
+     * once, with nothing beneath it counted as imported.
+     */
+    @Test
+    void testClashingDirectoryIsNotCounted() throws IOException {
+        Path upper = Files.createDirectories(source.resolve("A").resolve("c"));
+        Files.write(upper.resolve("one.txt"), fileContent);
+        Files.write(upper.resolve("two.txt"), fileContent);
+        Files.write(upper.resolve("TWO.TXT"), fileContent);
+        DiskImporter.Result result;
+        try (DiskImporter importer = new DiskImporter(fileSystemManager, 2)) {
+            result = importer.importDirectory(source, null);
+        }
+
+        Folder imported = result.folder();
+        assertEquals(1, imported.getFolders().size());
+        long files = 0;
+        long folders = 0;
+        long bytes = 0;
+        for (Folder folder = imported; folder != null; folder = folder.getFolders().isEmpty() ? null : folder.getFolders().get(0)) {
+            folders++;
+            files += folder.getFiles().size();
+            for (File file : folder.getFiles()) {
+                bytes += file.getSize();
+            }
+        }
+        assertEquals(files, result.files());
+        assertEquals(folders, result.folders());
+        assertEquals(bytes, result.bytes());
+        assertEquals(imported.getFolders().get(0).getName().equals("a") ? 1 : 2, result.skipped());
+    }
+
+    /**
+     * Tests that large files are memory-mapped and can be read back.
+     */
+    @Test
+    void testLargeFileIsReadThroughMapping() {
+        Folder imported;
+        try (DiskImporter importer = new DiskImporter(fileSystemManager)) {
+            imported = importer.importDirectory(source, null).folder();
+        }
+        File large = imported.getFolders().get(0).getFolders().get(0).getFiles().stream()
+                .filter(f -> f.getName().equals("large")).findFirst().orElseThrow();
+        assertEquals(DiskFileContent.MAP_THRESHOLD + 1, large.getSize());
+        assertEquals(DiskFileContent.MAP_THRESHOLD + 1, large.getFileContent().asByteBuffer().remaining());
+    }
+
+    /**
+     * Tests that names are split at their last dot.
+     */
+    @Test
+    void testSplitName() {
+        assertArrayEquals(new String[]{"archive.tar", "gz"}, DiskImporter.splitName("archive.tar.gz"));
+        assertArrayEquals(new String[]{"Makefile", ""}, DiskImporter.splitName("Makefile"));
+        assertArrayEquals(new String[]{"trailing.", ""}, DiskImporter.splitName("trailing."));
+    }
+
+    /**
+     * Tests that importing something other than a directory is rejected.
+     */
+    @Test
+    void testImportRequiresDirectory() {
+        try (DiskImporter importer = new DiskImporter(fileSystemManager)) {
+            assertThrows(IllegalArgumentException.class, () -> importer.importDirectory(source.resolve("readme.txt"), null));
+        }
+    }
+}
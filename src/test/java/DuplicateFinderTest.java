@@ -0,0 +1,127 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateFinderTest {
+
+    private FileSystemManager fileSystemManager;
+    private Folder photos;
+    private Folder backup;
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        photos = new Folder("photos", fileSystemManager.getRoot());
+        backup = new Folder("backup", fileSystemManager.getRoot());
+    }
+
+    private static File file(String name, Folder parent, byte[] content) {
+        return new File(name, parent, content.length, new Date(), content, "bin");
+    }
+
+    private static byte[] bytes(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    private static Set<Set<String>> names(List<List<File>> groups) {
+        return groups.stream()
+                .map(group -> group.stream().map(File::getName).collect(Collectors.toSet()))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Tests that files with the same content are grouped whatever their names and folders.
+     */
+    @Test
+    void testFindsDuplicatesAcrossFolders() {
+        file("a", photos, bytes(100, 1));
+        file("b", backup, bytes(100, 1));
+        file("c", new Folder("old", backup), bytes(100, 1));
+        file("d", photos, bytes(100, 2));
+        file("e", backup, bytes(100, 2));
+        file("unique", photos, bytes(100, 3));
+        file("other", photos, bytes(50, 1));
+
+        List<List<File>> groups = DuplicateFinder.findDuplicates(fileSystemManager.getRoot()).toList();
+        assertEquals(Set.of(Set.of("a", "b", "c"), Set.of("d", "e")), names(groups));
+        assertEquals(1, DuplicateFinder.findDuplicates(photos).count() + DuplicateFinder.findDuplicates(backup).count());
+    }
+
+    /**
+     * Tests that files which share a size and a prefix but differ later are told apart by the full hash.
+     */
+    @Test
+    void testSamePrefixDifferentContent() {
+        byte[] first = bytes(DuplicateFinder.PREFIX_SIZE * 3, 7);
+        byte[] second = first.clone();
+        second[second.length - 1] = 8;
+        file("first", photos, first);
+        file("second", photos, second);
+        file("copy", backup, first.clone());
+
+        List<List<File>> groups = DuplicateFinder.findDuplicates(fileSystemManager.getRoot()).toList();
+        assertEquals(Set.of(Set.of("first", "copy")), names(groups));
+    }
+
+    /**
+     * Tests that empty files are not reported as duplicates and that a tree without duplicates yields nothing.
+     */
+    @Test
+    void testNoDuplicates() {
+        file("empty1", photos, new byte[0]);
+        file("empty2", backup, new byte[0]);
+        for (int i = 0; i < 100; i++) {
+            file("file" + i, photos, bytes(10 + i, i));
+        }
+        assertEquals(0, DuplicateFinder.findDuplicates(fileSystemManager.getRoot()).count());
+    }
+
+    /**
+     * Tests that files told apart by their first bytes are never read in full, so lazy content is not fetched
+     * and tiered content is neither counted as read nor brought back into memory, whichever backend holds it.
+     */
+    @Test
+    void testPrefixesAreReadWithoutLoading(@TempDir Path directory) throws IOException {
+        int size = 4 * DuplicateFinder.PREFIX_SIZE;
+        AtomicInteger fullLoads = new AtomicInteger();
+        LazyContent lazy = new LazyContent(size, () -> {
+            fullLoads.incrementAndGet();
+            return bytes(size, 1);
+        }, length -> bytes(length, 1));
+        try (TieredContentStore store = new TieredContentStore(directory, size - 1)) {
+            TieredContent tiered = store.put(bytes(size, 2));
+            assertFalse(tiered.isResident());
+            TieredContentStore.Stats before = store.getStats();
+
+            BlockContent blocks = new BlockContent(bytes(size, 3), 1024);
+            AppendableContent appendable = new AppendableContent(bytes(size / 2, 4));
+            fileSystemManager.appendToFile(new File("log", photos, new Date(), appendable, "log"), bytes(size / 2, 4));
+            new File("lazy", photos, new Date(), lazy, "bin");
+            new File("tiered", photos, new Date(), tiered, "bin");
+            new File("blocks", photos, new Date(), blocks, "bin");
+            file("plain", backup, bytes(size, 5));
+
+            assertEquals(0, DuplicateFinder.findDuplicates(fileSystemManager.getRoot()).count());
+            assertEquals(0, fullLoads.get());
+            assertFalse(lazy.isLoaded());
+            assertFalse(tiered.isResident());
+            assertEquals(before, store.getStats());
+        }
+    }
+}
@@ -1,7 +1,9 @@
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -420,6 +422,62 @@ class FileSystemManagerTest {
         assertNull(newFolder.getParent());
     }
 
+    /**
+     * Tests that the copyFolder() method copies the whole subtree, so the copy shares no children with the original
+     * and every copied entity points at its copied parent.
+     */
+    @Test
+    void testCopyFolderCopiesSubtree() {
+        fileSystemManager.copyFolder(newFolder, rootSubFolder);
+        Folder copiedFolder = rootSubFolder.getFolders().get(0);
+        Folder copiedExternalFolder = copiedFolder.getFolders().get(0);
+        File copiedFile = copiedExternalFolder.getFiles().get(0);
+
+        assertNotSame(externalFolder, copiedExternalFolder);
+        assertSame(copiedFolder, copiedExternalFolder.getParent());
+        assertNotSame(file3, copiedFile);
+        assertSame(copiedExternalFolder, copiedFile.getParent());
+    }
+
+    /**
+     * Tests that registered listeners are notified of the entities actually added to and removed from the tree.
+     */
+    @Test
+    void testListenerIsNotified() {
+        List<FileSystemEntity> created = new ArrayList<>();
+        List<FileSystemEntity> deleted = new ArrayList<>();
+        fileSystemManager.addListener(new FileSystemListener() {
+            @Override
+            public void fileCreated(File file) {
+                created.add(file);
+            }
+
+            @Override
+            public void fileDeleted(File file) {
+                deleted.add(file);
+            }
+
+            @Override
+            public void folderCreated(Folder folder) {
+                created.add(folder);
+            }
+
+            @Override
+            public void folderDeleted(Folder folder) {
+                deleted.add(folder);
+            }
+        });
+        fileSystemManager.moveFile(file1, rootSubFolder);
+        fileSystemManager.createFolder(newFolder);
+        fileSystemManager.deleteFolder(rootSubFolder);
+
+        assertEquals(2, created.size());
+        assertSame(rootSubFolder.getFiles().get(0), created.get(0));
+        assertEquals(newFolderName, created.get(1).getName());
+        assertEquals(List.of(file1, rootSubFolder), deleted);
+        assertSame(file1, deleted.get(0));
+    }
+
     /**
      * Tests and verifies that the moveFolder() method throws an IllegalArgumentException if the original folder
      * parameter is null.
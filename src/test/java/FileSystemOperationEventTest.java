@@ -0,0 +1,160 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemOperationEventTest {
+
+    @TempDir
+    Path directory;
+
+    private FileSystemManager fileSystemManager;
+    private Folder source;
+    private Folder target;
+    private static final int CONTENT_SIZE = 100;
+
+    /**
+     * Set up a source folder holding three files and a subfolder with two more, and an empty target folder.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        source = new Folder("source", fileSystemManager.getRoot());
+        target = new Folder("target", fileSystemManager.getRoot());
+        Folder nested = new Folder("nested", source);
+        for (int i = 0; i < 3; i++) {
+            new File("file" + i, source, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "bin");
+        }
+        for (int i = 0; i < 2; i++) {
+            new File("file" + i, nested, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "bin");
+        }
+    }
+
+    /**
+     * Tests that file operations are recorded with their path, destination, bytes and nodes.
+     */
+    @Test
+    void testFileOperationsAreRecorded() throws IOException {
+        List<RecordedEvent> events = record(Duration.ZERO, () -> {
+            fileSystemManager.createFile(new File("log", null, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "txt"));
+            fileSystemManager.copyFile(source.getFiles().get(0), target);
+            fileSystemManager.moveFile(source.getFiles().get(1), target);
+            fileSystemManager.deleteFile(target.getFiles().get(0));
+        });
+
+        RecordedEvent created = events.get(0);
+        assertEquals("createFile", created.getString("operation"));
+        assertEquals("/log.txt", created.getString("path"));
+        assertNull(created.getString("destination"));
+        assertEquals(CONTENT_SIZE, created.getLong("bytes"));
+        assertEquals(1, created.getLong("nodes"));
+
+        RecordedEvent moved = events.stream()
+                .filter(event -> event.getString("operation").equals("moveFile"))
+                .findFirst().orElseThrow();
+        assertEquals("/source/file1.bin", moved.getString("path"));
+        assertEquals("/target", moved.getString("destination"));
+        assertFalse(moved.getDuration().isNegative());
+
+        Map<String, Long> counts = events.stream()
+                .collect(Collectors.groupingBy(event -> event.getString("operation"), Collectors.counting()));
+        assertEquals(Map.of("createFile", 3L, "copyFile", 2L, "moveFile", 1L, "deleteFile", 2L), counts);
+    }
+
+    /**
+     * Tests that folder operations count the bytes and nodes of the whole subtree.
+     */
+    @Test
+    void testFolderOperationsMeasureSubtree() throws IOException {
+        List<RecordedEvent> events = record(Duration.ZERO, () -> {
+            fileSystemManager.createFolder(new Folder("empty", null));
+            fileSystemManager.copyFolder(source, target);
+            fileSystemManager.moveFolder(target.getFolders().get(0), source);
+        });
+
+        Map<String, RecordedEvent> byOperation = events.stream()
+                .collect(Collectors.toMap(event -> event.getString("operation"), Function.identity()));
+        assertEquals(3, byOperation.size());
+        assertEquals(1, byOperation.get("createFolder").getLong("nodes"));
+        assertEquals("/empty", byOperation.get("createFolder").getString("path"));
+
+        RecordedEvent copied = byOperation.get("copyFolder");
+        assertEquals("/source", copied.getString("path"));
+        assertEquals("/target", copied.getString("destination"));
+        assertEquals(7, copied.getLong("nodes"));
+        assertEquals(5L * CONTENT_SIZE, copied.getLong("bytes"));
+
+        RecordedEvent moved = byOperation.get("moveFolder");
+        assertEquals("/target/source", moved.getString("path"));
+        assertEquals("/source", moved.getString("destination"));
+        assertEquals(7, moved.getLong("nodes"));
+    }
+
+    /**
+     * Tests that folder copies and moves made through the asynchronous manager are recorded like the manager's own.
+     */
+    @Test
+    void testAsyncFolderOperationsAreRecorded() throws IOException {
+        List<RecordedEvent> events = record(Duration.ZERO, () -> {
+            try (AsyncFileSystemManager asyncManager = new AsyncFileSystemManager(fileSystemManager)) {
+                asyncManager.copyFolder(source, target).join();
+                asyncManager.moveFolder(target.getFolders().get(0), source).join();
+            }
+        });
+
+        Map<String, RecordedEvent> byOperation = events.stream()
+                .collect(Collectors.toMap(event -> event.getString("operation"), Function.identity()));
+        assertEquals(2, byOperation.size());
+
+        RecordedEvent copied = byOperation.get("copyFolder");
+        assertEquals("/source", copied.getString("path"));
+        assertEquals("/target", copied.getString("destination"));
+        assertEquals(7, copied.getLong("nodes"));
+        assertEquals(5L * CONTENT_SIZE, copied.getLong("bytes"));
+
+        RecordedEvent moved = byOperation.get("moveFolder");
+        assertEquals("/target/source", moved.getString("path"));
+        assertEquals("/source", moved.getString("destination"));
+        assertEquals(7, moved.getLong("nodes"));
+    }
+
+    /**
+     * Tests that operations quicker than the recording's threshold are not recorded.
+     */
+    @Test
+    void testThresholdFiltersQuickOperations() throws IOException {
+        List<RecordedEvent> events = record(Duration.ofSeconds(10), () -> {
+            fileSystemManager.copyFolder(source, target);
+            fileSystemManager.deleteFile(source.getFiles().get(0));
+        });
+        assertTrue(events.isEmpty());
+    }
+
+    private List<RecordedEvent> record(Duration threshold, Runnable operations) throws IOException {
+        Path file = directory.resolve("operations.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FileSystemOperationEvent.NAME).withThreshold(threshold);
+            recording.start();
+            operations.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(FileSystemOperationEvent.NAME))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .toList();
+    }
+}
@@ -0,0 +1,217 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemTransactionTest {
+
+    private FileSystemManager fileSystemManager;
+    private Folder root;
+    private Folder source;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+    private final String fileExtension = "txt";
+    private final Date createdDate = new Date();
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        root = fileSystemManager.getRoot();
+        source = new Folder("source", root);
+        for (int i = 0; i < 100; i++) {
+            new File("file" + i, source, fileSize, createdDate, fileContent, fileExtension);
+        }
+    }
+
+    /**
+     * Tests that a transaction can create a folder, copy files into it and delete the source as one unit.
+     */
+    @Test
+    void testCommitAppliesAllOperations() {
+        Folder target = new Folder("target", null);
+        FileSystemTransaction transaction = fileSystemManager.beginTransaction().createFolder(target);
+        for (File file : source.getFiles()) {
+            transaction.copyFile(file, target);
+        }
+        transaction.deleteFolder(source);
+        transaction.commit();
+
+        assertEquals(1, root.getFolders().size());
+        Folder created = root.getFolders().get(0);
+        assertEquals("target", created.getName());
+        assertEquals(100, created.getFiles().size());
+        assertSame(created, created.getFiles().get(0).getParent());
+        assertFalse(root.containsFolder(source));
+    }
+
+    /**
+     * Tests that a duplicate name part way through a transaction leaves the tree untouched.
+     */
+    @Test
+    void testValidationFailureLeavesTreeUnchanged() {
+        Folder target = new Folder("target", null);
+        FileSystemTransaction transaction = fileSystemManager.beginTransaction()
+                .createFolder(target)
+                .copyFile(source.getFiles().get(0), target)
+                .copyFile(source.getFiles().get(0), target)
+                .deleteFolder(source);
+
+        Exception exception = assertThrows(IllegalArgumentException.class, transaction::commit);
+        assertEquals("A file with the same name and extension already exists in the target folder.", exception.getMessage());
+        assertEquals(1, root.getFolders().size());
+        assertTrue(root.containsFolder(source));
+        assertEquals(100, source.getFiles().size());
+    }
+
+    /**
+     * Tests that validation sees the effect of earlier operations in the same transaction.
+     */
+    @Test
+    void testValidationFollowsStagedOrder() {
+        File file = source.getFiles().get(0);
+        File replacement = new File(file);
+        fileSystemManager.beginTransaction().deleteFile(file).createFile(replacement).commit();
+        assertEquals(100, source.getFiles().size());
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                fileSystemManager.beginTransaction().deleteFolder(source).copyFile(file, source).commit());
+        assertEquals("Parent folder not part of the root hierarchy. Create the parent before creating the file.", exception.getMessage());
+        assertTrue(root.containsFolder(source));
+    }
+
+    /**
+     * Tests that moving a folder into its own subfolder is rejected.
+     */
+    @Test
+    void testMoveFolderIntoSubfolderNotAllowed() {
+        Folder nested = new Folder("nested", source);
+        Exception exception = assertThrows(IllegalStateException.class, () ->
+                fileSystemManager.beginTransaction().moveFolder(source, nested).commit());
+        assertEquals("Illegal operation: Cannot move a folder into its subfolder.", exception.getMessage());
+    }
+
+    /**
+     * Tests that operations already applied are rolled back when a later one fails while being applied.
+     */
+    @Test
+    void testFailureWhileApplyingRollsBack() {
+        Folder target = new Folder("target", root);
+        fileSystemManager.addListener(new FileSystemListener() {
+            @Override
+            public void folderDeleted(Folder folder) {
+                if (folder == source) {
+                    throw new IllegalStateException("listener failure");
+                }
+            }
+        });
+        FileSystemTransaction transaction = fileSystemManager.beginTransaction().moveFolder(source, target);
+        assertThrows(IllegalStateException.class, transaction::commit);
+
+        assertTrue(target.getFolders().isEmpty());
+        assertTrue(root.containsFolder(source));
+    }
+
+    /**
+     * Tests that a transaction cannot be reused once it has been committed or rolled back.
+     */
+    @Test
+    void testFinishedTransactionCannotBeReused() {
+        FileSystemTransaction transaction = fileSystemManager.beginTransaction();
+        transaction.rollback();
+        assertThrows(IllegalStateException.class, () -> transaction.createFolder(new Folder("late", null)));
+        assertThrows(IllegalStateException.class, transaction::commit);
+    }
+
+    /**
+     * Tests that later operations on a folder created in the same transaction act on the folder that was
+     * inserted, and follow it when it is moved.
+     */
+    @Test
+    void testOperationsFollowCreatedEntities() {
+        Folder created = new Folder("created", null);
+        fileSystemManager.beginTransaction().createFolder(created).deleteFolder(created).commit();
+        assertFalse(root.containsFolderWithSameName("created"));
+
+        File file = new File("staged", null, fileSize, createdDate, fileContent, fileExtension);
+        fileSystemManager.beginTransaction().createFile(file).deleteFile(file).commit();
+        assertFalse(root.containsFileWithSameName("staged", fileExtension));
+
+        Folder target = new Folder("target", root);
+        Folder moved = new Folder("moved", null);
+        File inMoved = new File("inMoved", null, fileSize, createdDate, fileContent, fileExtension);
+        inMoved.setParent(moved);
+        fileSystemManager.beginTransaction().createFolder(moved).moveFolder(moved, target).createFile(inMoved).commit();
+        assertFalse(root.containsFolderWithSameName("moved"));
+        assertEquals(1, target.getFolders().size());
+        assertEquals("inMoved", target.getFolders().get(0).getFiles().get(0).getName());
+    }
+
+    /**
+     * Tests that a folder copy holds what earlier operations in the transaction added to its source.
+     */
+    @Test
+    void testFolderCopyFollowsEarlierOperations() {
+        Folder target = new Folder("target", root);
+        File added = new File("added", null, fileSize, createdDate, fileContent, fileExtension);
+        added.setParent(source);
+        fileSystemManager.beginTransaction()
+                .createFile(added)
+                .deleteFile(source.getFiles().get(0))
+                .copyFolder(source, target)
+                .commit();
+
+        assertEquals(100, source.getFiles().size());
+        Folder copied = target.getFolders().get(0);
+        assertEquals(100, copied.getFiles().size());
+        assertTrue(copied.containsFileWithSameName("added", fileExtension));
+        assertFalse(copied.containsFileWithSameName("file0", fileExtension));
+        assertArrayEquals(source.getMerkleHash(), copied.getMerkleHash());
+    }
+
+    /**
+     * Tests that with a reclaimer, a folder deleted by a transaction that rolls back is put back whole and stays in
+     * the date index and the slab store, and that one deleted by a committed transaction is reclaimed and dropped
+     * from both.
+     */
+    @Test
+    void testFolderDeletesGoThroughTheReclaimer() throws InterruptedException {
+        SlabStore store = new SlabStore(1_000, 100, false);
+        for (int i = 0; i < 2; i++) {
+            new File("slab" + i, source, createdDate, store.put(fileContent), fileExtension);
+        }
+        try (SubtreeReclaimer reclaimer = new SubtreeReclaimer()) {
+            fileSystemManager.setReclaimer(reclaimer);
+            store.follow(fileSystemManager);
+            CreatedDateIndex index = new CreatedDateIndex(fileSystemManager);
+            fileSystemManager.addListener(new FileSystemListener() {
+                @Override
+                public void folderCreated(Folder folder) {
+                    if (folder.getName().equals("trigger")) {
+                        throw new IllegalStateException("listener failure");
+                    }
+                }
+            });
+            FileSystemTransaction failing = fileSystemManager.beginTransaction()
+                    .deleteFolder(source)
+                    .createFolder(new Folder("trigger", null));
+            assertThrows(IllegalStateException.class, failing::commit);
+            assertTrue(reclaimer.awaitIdle(10, TimeUnit.SECONDS));
+            assertTrue(root.containsFolder(source));
+            assertEquals(102, source.getFiles().size());
+            assertEquals(102, index.filesCreatedBetween(root, Long.MIN_VALUE, Long.MAX_VALUE).size());
+            assertEquals(2, store.getStats().fragments());
+
+            fileSystemManager.beginTransaction().deleteFolder(source).commit();
+            assertTrue(reclaimer.awaitIdle(10, TimeUnit.SECONDS));
+            assertEquals(102, reclaimer.getProgress().reclaimedFiles());
+            assertEquals(0, index.size());
+            assertEquals(0, store.getStats().fragments());
+        }
+    }
+}
@@ -2,6 +2,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 class FileTest {
 
@@ -274,6 +276,28 @@ class FileTest {
         assertEquals(file.hashCode(), newFile1.hashCode());
     }
 
+    /**
+     * Tests that a file whose size follows its content is still found in a hash set after it has been appended to,
+     * and that files are compared by the size of their content however it is held.
+     */
+    @Test
+    public void testEqualityIsStableAcrossAppends() {
+        FileSystemManager fileSystemManager = new FileSystemManager();
+        fileSystemManager.createFile(new File(fileName, null, createdDate, new AppendableContent(fileContent), fileExtension));
+        File appended = fileSystemManager.getRoot().getFiles().get(0);
+        Set<File> files = new HashSet<>(Set.of(appended));
+        int hashCode = appended.hashCode();
+
+        fileSystemManager.appendToFile(appended, fileContent);
+        assertEquals(2 * fileSize, appended.getSize());
+        assertEquals(hashCode, appended.hashCode());
+        assertTrue(files.contains(appended));
+        assertNotEquals(appended, new File(fileName, null, createdDate, new AppendableContent(fileContent), fileExtension));
+        byte[] twice = new byte[2 * fileContent.length];
+        assertEquals(appended, new File(fileName, null, createdDate, new AppendableContent(twice), fileExtension));
+        assertEquals(appended, new File(fileName, null, twice.length, createdDate, twice, fileExtension));
+    }
+
     @Test
     public void testHashCodeDifferentObjects() {
         File differentFile = file2;
@@ -0,0 +1,114 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegrityScrubberTest {
+
+    @TempDir
+    Path directory;
+
+    private FileSystemManager fileSystemManager;
+    private IntegrityScrubber scrubber;
+    private static final int CONTENT_SIZE = 1_000;
+
+    /**
+     * Set up a tree of 100 files in ten folders.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        for (int i = 0; i < 10; i++) {
+            Folder folder = new Folder("folder" + i, fileSystemManager.getRoot());
+            for (int j = 0; j < 10; j++) {
+                new File("file" + j, folder, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "bin");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (scrubber != null) {
+            scrubber.close();
+        }
+    }
+
+    /**
+     * Tests that a pass finds a file whose bytes changed after they were written, and reports it by path until it
+     * is repaired.
+     */
+    @Test
+    void testReportsCorruptFiles() throws InterruptedException {
+        scrubber = new IntegrityScrubber(fileSystemManager, 4, 0, null);
+        assertTrue(scrubber.scrub());
+        assertTrue(scrubber.getCorruptPaths().isEmpty());
+
+        File damaged = fileSystemManager.getRoot().getFolders().get(3).getFiles().get(7);
+        damaged.getContent()[500] ^= 1;
+        assertTrue(scrubber.scrub());
+        assertEquals(List.of("/folder3/file7.bin"), scrubber.getCorruptPaths());
+        IntegrityScrubber.Progress progress = scrubber.getProgress();
+        assertEquals(200, progress.filesChecked());
+        assertEquals(200L * CONTENT_SIZE, progress.bytesChecked());
+        assertEquals(2, progress.passesCompleted());
+        assertNull(progress.position());
+
+        damaged.getContent()[500] ^= 1;
+        scrubber.scrub();
+        assertTrue(scrubber.getCorruptPaths().isEmpty());
+    }
+
+    /**
+     * Tests that a throttled background scrub can be stopped part-way and that the next pass resumes after the
+     * last file checked.
+     */
+    @Test
+    void testStoppedPassResumes() throws InterruptedException {
+        scrubber = new IntegrityScrubber(fileSystemManager, 2, 20_000, null);
+        scrubber.start(0);
+        while (scrubber.getProgress().filesChecked() == 0) {
+            Thread.sleep(5);
+        }
+        scrubber.stop();
+        IntegrityScrubber.Progress stopped = scrubber.getProgress();
+        assertNotNull(stopped.position());
+        assertTrue(stopped.filesChecked() < 100);
+
+        scrubber.setBytesPerSecond(0);
+        assertTrue(scrubber.scrub());
+        assertEquals(100, scrubber.getProgress().filesChecked());
+        assertEquals(1, scrubber.getProgress().passesCompleted());
+    }
+
+    /**
+     * Tests that appendable content and tiered content, in memory and on disk, record checksums that catch
+     * corruption, and that patched block content still verifies.
+     */
+    @Test
+    void testOtherContentIsVerified() throws Exception {
+        AppendableContent appendable = new AppendableContent(new byte[CONTENT_SIZE]);
+        assertTrue(appendable.verify());
+        appendable.toByteArray()[0] = 1;
+        assertFalse(appendable.verify());
+
+        try (TieredContentStore store = new TieredContentStore(directory, CONTENT_SIZE)) {
+            TieredContent resident = store.put(new byte[CONTENT_SIZE / 2]);
+            assertTrue(resident.verify());
+            resident.toByteArray()[0] = 1;
+            assertFalse(resident.verify());
+            TieredContent onDisk = store.put(new byte[CONTENT_SIZE * 2]);
+            assertFalse(onDisk.isResident());
+            assertTrue(onDisk.verify());
+        }
+
+        BlockContent blocks = new BlockContent(new byte[CONTENT_SIZE], 64);
+        blocks.write(100, new byte[]{1, 2, 3});
+        assertTrue(blocks.verify());
+    }
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobSchedulerTest {
+
+    private JobScheduler scheduler;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * Tests that queued jobs start by priority and that, within a priority, tenants take turns.
+     */
+    @Test
+    void testPrioritiesAndTenantTurns() throws Exception {
+        scheduler = new JobScheduler(1, 1);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        JobScheduler.Job blocker = scheduler.submit("x", JobScheduler.Priority.NORMAL, "blocker", job -> release.await());
+        List<JobScheduler.Job> jobs = new ArrayList<>();
+        for (String[] spec : new String[][]{{"a", "NORMAL", "a1"}, {"a", "NORMAL", "a2"}, {"a", "NORMAL", "a3"},
+                {"b", "NORMAL", "b1"}, {"b", "LOW", "b2"}, {"c", "HIGH", "c1"}}) {
+            jobs.add(scheduler.submit(spec[0], JobScheduler.Priority.valueOf(spec[1]), spec[2],
+                    job -> started.add(job.getName())));
+        }
+        assertEquals(JobScheduler.State.RUNNING, blocker.getState());
+        assertEquals(JobScheduler.State.QUEUED, jobs.get(0).getState());
+
+        release.countDown();
+        for (JobScheduler.Job job : jobs) {
+            job.getFuture().get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("c1", "a1", "b1", "a2", "a3", "b2"), started);
+        assertTrue(scheduler.getJobs().isEmpty());
+    }
+
+    /**
+     * Tests that no more than the set number of jobs run at once, in all and for each tenant.
+     */
+    @Test
+    void testConcurrencyLimits() throws Exception {
+        scheduler = new JobScheduler(3, 2);
+        List<JobScheduler.Job> a = new ArrayList<>();
+        List<JobScheduler.Job> b = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            a.add(scheduler.submit("a", JobScheduler.Priority.NORMAL, "a" + i, job -> release.await()));
+        }
+        for (int i = 0; i < 2; i++) {
+            b.add(scheduler.submit("b", JobScheduler.Priority.NORMAL, "b" + i, job -> release.await()));
+        }
+        assertEquals(3, scheduler.getRunning());
+        assertEquals(List.of(JobScheduler.State.RUNNING, JobScheduler.State.RUNNING, JobScheduler.State.QUEUED,
+                JobScheduler.State.QUEUED), a.stream().map(JobScheduler.Job::getState).toList());
+        assertEquals(List.of(JobScheduler.State.RUNNING, JobScheduler.State.QUEUED),
+                b.stream().map(JobScheduler.Job::getState).toList());
+
+        release.countDown();
+        for (JobScheduler.Job job : scheduler.getJobs()) {
+            job.getFuture().get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, scheduler.getRunning());
+        assertEquals(JobScheduler.State.SUCCEEDED, a.get(3).getState());
+    }
+
+    /**
+     * Tests that a paused job stops at its next check-in and gives up its place, that it carries on from there
+     * when resumed, and that cancelled and failing jobs finish with their own states.
+     */
+    @Test
+    void testPauseResumeAndCancel() throws Exception {
+        scheduler = new JobScheduler(1, 1);
+        JobScheduler.Job worker = scheduler.submit("a", JobScheduler.Priority.NORMAL, "worker", job -> {
+            for (int i = 1; i <= 1_000_000; i++) {
+                job.checkpoint();
+                job.progress(i, 1_000_000);
+                Thread.sleep(1);
+            }
+        });
+        awaitTrue(() -> worker.getProgress().done() > 0);
+        worker.pause();
+        awaitTrue(() -> worker.getState() == JobScheduler.State.PAUSED);
+        assertEquals(0, scheduler.getRunning());
+        JobScheduler.Job other = scheduler.submit("b", JobScheduler.Priority.NORMAL, "other", job -> {
+        });
+        other.getFuture().get(5, TimeUnit.SECONDS);
+        long paused = worker.getProgress().done();
+        Thread.sleep(50);
+        assertEquals(paused, worker.getProgress().done());
+
+        worker.resume();
+        awaitTrue(() -> worker.getProgress().done() > paused);
+        assertEquals(JobScheduler.State.RUNNING, worker.getState());
+        JobScheduler.Job queued = scheduler.submit("a", JobScheduler.Priority.NORMAL, "queued", job -> fail());
+        assertTrue(queued.cancel());
+        assertEquals(JobScheduler.State.CANCELLED, queued.getState());
+
+        assertTrue(worker.cancel());
+        assertThrows(CancellationException.class, () -> worker.getFuture().join());
+        assertEquals(JobScheduler.State.CANCELLED, worker.getState());
+        assertFalse(worker.cancel());
+
+        JobScheduler.Job failing = scheduler.submit("a", JobScheduler.Priority.NORMAL, "failing", job -> {
+            throw new IllegalStateException("broken");
+        });
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> failing.getFuture().get(5, TimeUnit.SECONDS));
+        assertEquals("broken", failure.getCause().getMessage());
+        assertEquals(JobScheduler.State.FAILED, failing.getState());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyContentTest {
+
+    private FileSystemManager fileSystemManager;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+    private AtomicInteger loads;
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        loads = new AtomicInteger();
+    }
+
+    private LazyContent countingContent() {
+        return new LazyContent(fileSize, () -> {
+            loads.incrementAndGet();
+            return fileContent.clone();
+        });
+    }
+
+    /**
+     * Tests that creating, moving and renaming a file never loads its content, and that reading it does.
+     */
+    @Test
+    void testMetadataOperationsDoNotLoad() {
+        LazyContent content = countingContent();
+        Folder target = new Folder("target", fileSystemManager.getRoot());
+        File file = new File("lazy", fileSystemManager.getRoot(), new Date(), content, "txt");
+        assertEquals(fileSize, file.getSize());
+        fileSystemManager.moveFile(file, target);
+        target.getFiles().get(0).setName("renamed");
+        assertFalse(content.isLoaded());
+        assertEquals(0, loads.get());
+        assertArrayEquals(fileContent, target.getFiles().get(0).getContent());
+        assertArrayEquals(fileContent, file.getContent());
+        assertTrue(content.isLoaded());
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Tests that concurrent first reads run the loader only once.
+     */
+    @Test
+    void testSingleFlightLoading() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        LazyContent content = new LazyContent(fileSize, () -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fileContent.clone();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> reads = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                reads.add(executor.submit(() -> {
+                    start.await();
+                    return content.toByteArray();
+                }));
+            }
+            start.countDown();
+            for (Future<byte[]> read : reads) {
+                assertArrayEquals(fileContent, read.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Tests that a failed load is retried on the next read and that content of the wrong size is rejected.
+     */
+    @Test
+    void testFailedLoadIsRetried() {
+        LazyContent content = new LazyContent(fileSize, () -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("Backend unavailable.");
+            }
+            return fileContent.clone();
+        });
+        assertThrows(IllegalStateException.class, content::toByteArray);
+        assertFalse(content.isLoaded());
+        assertArrayEquals(fileContent, content.toByteArray());
+        assertEquals(2, loads.get());
+
+        LazyContent wrongSize = new LazyContent(fileSize + 1, fileContent::clone);
+        assertThrows(IllegalStateException.class, wrongSize::toByteArray);
+    }
+}
@@ -0,0 +1,165 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+
+    private FileSystemManager fileSystemManager;
+    private static final int CONTENT_SIZE = 1_000;
+    private static final long FILE_COST = MemoryBudget.FILE_OVERHEAD + CONTENT_SIZE;
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+    }
+
+    private static File file(String name, Folder parent) {
+        File file = new File(name, null, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "bin");
+        file.setParent(parent);
+        return file;
+    }
+
+    /**
+     * Tests that files and folders are charged when added and released when deleted, globally and per subtree.
+     */
+    @Test
+    void testUsageIsTracked() {
+        MemoryBudget budget = new MemoryBudget(1_000_000, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(budget);
+        fileSystemManager.createFolder(new Folder("docs", null));
+        Folder docs = fileSystemManager.getRoot().getFolders().get(0);
+        budget.setLimit(docs, 10_000);
+        fileSystemManager.createFile(file("a", docs));
+        fileSystemManager.createFile(file("b", null));
+        assertEquals(MemoryBudget.FOLDER_OVERHEAD + 2 * FILE_COST, budget.getUsage());
+        assertEquals(FILE_COST, budget.getUsage(docs));
+        fileSystemManager.deleteFile(docs.getFiles().get(0));
+        assertEquals(0, budget.getUsage(docs));
+        fileSystemManager.deleteFolder(docs);
+        assertEquals(FILE_COST, budget.getUsage());
+    }
+
+    /**
+     * Tests that a fail-fast budget rejects writes past the global or a subtree limit and leaves the tree unchanged.
+     */
+    @Test
+    void testFailFast() {
+        MemoryBudget budget = new MemoryBudget(3 * FILE_COST, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(budget);
+        Folder root = fileSystemManager.getRoot();
+        budget.setLimit(root, FILE_COST);
+        fileSystemManager.createFile(file("a", null));
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.createFile(file("b", null)));
+        assertEquals(1, root.getFiles().size());
+        budget.removeLimit(root);
+        fileSystemManager.createFile(file("b", null));
+        fileSystemManager.createFile(file("c", null));
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.createFile(file("d", null)));
+        assertEquals(3 * FILE_COST, budget.getUsage());
+    }
+
+    /**
+     * Tests that a write to one manager blocks until another manager sharing the budget releases memory.
+     */
+    @Test
+    void testBlockingWaitsForRelease() throws Exception {
+        MemoryBudget budget = new MemoryBudget(FILE_COST, MemoryBudget.Policy.BLOCK, 10_000, null);
+        FileSystemManager other = new FileSystemManager();
+        fileSystemManager.setMemoryBudget(budget);
+        other.setMemoryBudget(budget);
+        fileSystemManager.createFile(file("a", null));
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> other.createFile(file("b", null)));
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+        fileSystemManager.deleteFile(fileSystemManager.getRoot().getFiles().get(0));
+        blocked.get(5, TimeUnit.SECONDS);
+        assertEquals(1, other.getRoot().getFiles().size());
+        assertEquals(FILE_COST, budget.getUsage());
+
+        MemoryBudget shortWait = new MemoryBudget(FILE_COST, MemoryBudget.Policy.BLOCK, 20, null);
+        other.setMemoryBudget(null);
+        fileSystemManager.setMemoryBudget(shortWait);
+        fileSystemManager.createFile(file("c", null));
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.createFile(file("d", null)));
+    }
+
+    /**
+     * Tests that memory reserved for a call on one thread is only drawn on by that call, so a write made meanwhile
+     * on another thread waits for the budget instead of using the reservation up.
+     */
+    @Test
+    void testReservationsBelongToTheirThread() throws Exception {
+        MemoryBudget budget = new MemoryBudget(2 * FILE_COST, MemoryBudget.Policy.BLOCK, 10_000, null);
+        fileSystemManager.setMemoryBudget(budget);
+        Folder root = fileSystemManager.getRoot();
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CompletableFuture<Void> reserving = CompletableFuture.runAsync(() -> {
+            budget.acquire(root, FILE_COST);
+            fileSystemManager.runReserved(root, FILE_COST, () -> {
+                reserved.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                fileSystemManager.createFile(file("a", null));
+            });
+        });
+        reserved.await();
+        CompletableFuture<Void> others = CompletableFuture.runAsync(() -> {
+            fileSystemManager.createFile(file("b", null));
+            fileSystemManager.createFile(file("c", null));
+        });
+        Thread.sleep(50);
+        assertFalse(others.isDone());
+        proceed.countDown();
+        reserving.get(5, TimeUnit.SECONDS);
+        fileSystemManager.deleteFile(root.getFiles().get(0));
+        others.get(5, TimeUnit.SECONDS);
+        assertEquals(2, root.getFiles().size());
+        assertEquals(2 * FILE_COST, budget.getUsage());
+    }
+
+    /**
+     * Tests that the spill policy asks for memory to be released before retrying the write.
+     */
+    @Test
+    void testSpill() {
+        long[] requested = new long[1];
+        MemoryBudget budget = new MemoryBudget(FILE_COST, MemoryBudget.Policy.SPILL, 0, shortfall -> {
+            requested[0] = shortfall;
+            fileSystemManager.deleteFile(fileSystemManager.getRoot().getFiles().get(0));
+        });
+        fileSystemManager.setMemoryBudget(budget);
+        fileSystemManager.createFile(file("a", null));
+        fileSystemManager.createFile(file("b", null));
+        assertEquals(FILE_COST, requested[0]);
+        assertEquals("b", fileSystemManager.getRoot().getFiles().get(0).getName());
+        assertEquals(FILE_COST, budget.getUsage());
+    }
+
+    /**
+     * Tests that a transaction refused by the budget part-way through is undone and releases what it charged.
+     */
+    @Test
+    void testTransactionIsUndoneWhenRefused() {
+        MemoryBudget budget = new MemoryBudget(FILE_COST, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(budget);
+        FileSystemTransaction transaction = fileSystemManager.beginTransaction()
+                .createFile(file("a", null))
+                .createFile(file("b", null));
+        assertThrows(IllegalStateException.class, transaction::commit);
+        assertTrue(fileSystemManager.getRoot().getFiles().isEmpty());
+        assertEquals(0, budget.getUsage());
+    }
+}
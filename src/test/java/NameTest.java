@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class NameTest {
+
+    /**
+     * Tests that interning the same string twice returns the same Name and shares the String instance.
+     */
+    @Test
+    void testSameStringIsInternedOnce() {
+        Name first = Name.of(new String("report"));
+        Name second = Name.of(new String("report"));
+        assertSame(first, second);
+        assertSame(first.getValue(), second.getValue());
+    }
+
+    /**
+     * Tests that names differing only in case share their folded form and hash.
+     */
+    @Test
+    void testNamesEqualIgnoringCaseShareFoldedForm() {
+        Name lower = Name.of("readme");
+        Name mixed = Name.of("ReadMe");
+        assertNotSame(lower, mixed);
+        assertSame(lower, mixed.getFolded());
+        assertTrue(lower.equalsIgnoreCase(mixed));
+        assertEquals(lower.hashCode(), mixed.hashCode());
+        assertFalse(lower.equalsIgnoreCase(Name.of("readme2")));
+        assertFalse(lower.equalsIgnoreCase(null));
+    }
+
+    /**
+     * Tests that folding agrees with String.equalsIgnoreCase for characters whose case mapping is irregular.
+     */
+    @Test
+    void testFoldingMatchesEqualsIgnoreCase() {
+        String[][] pairs = {{"İ", "i"}, {"Σ", "ς"}, {"K", "K"}, {"Straße", "STRASSE"}};
+        for (String[] pair : pairs) {
+            assertEquals(pair[0].equalsIgnoreCase(pair[1]), Name.of(pair[0]).equalsIgnoreCase(Name.of(pair[1])));
+        }
+    }
+
+    /**
+     * Tests that interning null returns null.
+     */
+    @Test
+    void testNullIsNotInterned() {
+        assertNull(Name.of(null));
+    }
+
+    /**
+     * Tests that once a Name has been collected, a new Name for the same string stays the only one, even after
+     * the collected Name's dictionary entry is cleaned up.
+     */
+    @Test
+    void testNewNameSurvivesCleanupOfCollectedOne() throws InterruptedException {
+        String value = "collected-" + System.nanoTime();
+        WeakReference<Name> collected = new WeakReference<>(Name.of(new String(value)));
+        for (int i = 0; i < 50 && collected.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assumeTrue(collected.get() == null, "the first name was not collected");
+
+        Name second = Name.of(new String(value));
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(10);
+            Name.of("expunge");
+        }
+        assertSame(second, Name.of(new String(value)));
+    }
+
+    /**
+     * Tests that threads interning the same strings at once all get the same Names.
+     */
+    @Test
+    void testConcurrentInterningAgrees() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Name[]>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    Name[] names = new Name[1_000];
+                    for (int i = 0; i < names.length; i++) {
+                        names[i] = Name.of(new String("Concurrent" + i));
+                    }
+                    return names;
+                }));
+            }
+            Name[] first = results.get(0).get();
+            for (Future<Name[]> result : results) {
+                Name[] names = result.get();
+                for (int i = 0; i < names.length; i++) {
+                    assertSame(first[i], names[i]);
+                    assertSame(first[i].getFolded(), Name.of("concurrent" + i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
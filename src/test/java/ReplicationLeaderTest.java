@@ -0,0 +1,180 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationLeaderTest {
+
+    private FileSystemManager fileSystemManager;
+    private ReplicationLeader leader;
+    private ReplicaFollower follower;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+
+    /**
+     * Set up a leader whose tree already holds a folder before replication starts.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        new Folder("existing", fileSystemManager.getRoot());
+        leader = new ReplicationLeader(fileSystemManager, 8, 1024);
+        follower = new ReplicaFollower();
+    }
+
+    @AfterEach
+    void tearDown() {
+        leader.close();
+        follower.close();
+    }
+
+    private void createFile(String name, Folder parent) {
+        File file = new File(name, null, fileSize, new Date(), fileContent, "txt");
+        file.setParent(parent);
+        leader.write(manager -> manager.createFile(file));
+    }
+
+    private void awaitCaughtUp(ReplicaFollower replica) throws InterruptedException {
+        assertTrue(replica.awaitSequence(leader.getLog().lastSequence(), 10, TimeUnit.SECONDS));
+        assertArrayEquals(leader.read(Folder::getMerkleHash), replica.read(Folder::getMerkleHash));
+    }
+
+    /**
+     * Tests that a follower receives the tree that existed before it joined and every change made afterwards.
+     */
+    @Test
+    void testFollowerReplaysChanges() throws InterruptedException {
+        leader.addFollower(follower);
+        Folder docs = new Folder("docs", null);
+        leader.write(manager -> manager.createFolder(docs));
+        Folder createdDocs = fileSystemManager.getRoot().getFolders().get(1);
+        createFile("readme", createdDocs);
+        createFile("notes", createdDocs);
+        leader.write(manager -> manager.moveFolder(createdDocs, fileSystemManager.getRoot().getFolders().get(0)));
+        leader.write(manager -> manager.deleteFile(fileSystemManager.getRoot().getFolders().get(0).getFolders().get(0).getFiles().get(0)));
+        awaitCaughtUp(follower);
+        assertEquals(List.of("notes"), follower.read(root ->
+                root.getFolders().get(0).getFolders().get(0).getFiles().stream().map(File::getName).toList()));
+        assertEquals(new ReplicationLeader.Lag(0, 0), leader.lag(follower));
+    }
+
+    /**
+     * Tests that every follower converges when several are replicating at once.
+     */
+    @Test
+    void testSeveralFollowers() throws InterruptedException {
+        try (ReplicaFollower second = new ReplicaFollower(1)) {
+            leader.addFollower(follower);
+            leader.addFollower(second);
+            for (int i = 0; i < 100; i++) {
+                createFile("file" + i, fileSystemManager.getRoot());
+            }
+            awaitCaughtUp(follower);
+            awaitCaughtUp(second);
+            assertEquals(Integer.valueOf(100), second.read(root -> root.getFiles().size()));
+        }
+    }
+
+    /**
+     * Tests that a follower that falls behind the retained log catches up from a snapshot.
+     */
+    @Test
+    void testCatchUpFromSnapshot() throws InterruptedException {
+        try (ReplicationLeader shortLog = new ReplicationLeader(new FileSystemManager(), 2, 4);
+             ReplicaFollower replica = new ReplicaFollower(1)) {
+            for (int i = 0; i < 20; i++) {
+                File file = new File("file" + i, null, fileSize, new Date(), fileContent, "txt");
+                shortLog.write(manager -> manager.createFile(file));
+            }
+            assertNull(shortLog.getLog().read(1, 10, 0, TimeUnit.MILLISECONDS));
+            assertEquals(20, shortLog.lag(replica).entries());
+            shortLog.addFollower(replica);
+            for (int i = 20; i < 60; i++) {
+                File file = new File("file" + i, null, fileSize, new Date(), fileContent, "txt");
+                shortLog.write(manager -> manager.createFile(file));
+            }
+            assertTrue(replica.awaitSequence(shortLog.getLog().lastSequence(), 10, TimeUnit.SECONDS));
+            assertArrayEquals(shortLog.read(Folder::getMerkleHash), replica.read(Folder::getMerkleHash));
+        }
+    }
+
+    /**
+     * Tests that a follower that cannot apply an entry asks for a snapshot and catches up without further writes.
+     */
+    @Test
+    void testFailedEntryIsRepairedFromSnapshot() throws InterruptedException {
+        leader.addFollower(follower);
+        createFile("readme", fileSystemManager.getRoot());
+        awaitCaughtUp(follower);
+        File stray = new File("stray", fileSystemManager.getRoot(), fileSize, new Date(), fileContent, "txt");
+        leader.write(manager -> manager.renameFile(stray, "renamed"));
+        awaitCaughtUp(follower);
+        assertEquals(List.of("readme", "renamed"), follower.read(root ->
+                root.getFiles().stream().map(File::getName).sorted().toList()));
+    }
+
+    /**
+     * Tests that the log hands out consecutive batches and reports how long ago unapplied entries were made.
+     */
+    @Test
+    void testLogBatchesAndLag() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            createFile("file" + i, fileSystemManager.getRoot());
+        }
+        List<OperationLog.Entry> batch = leader.getLog().read(2, 3, 0, TimeUnit.MILLISECONDS);
+        assertEquals(List.of(2L, 3L, 4L), batch.stream().map(OperationLog.Entry::sequence).toList());
+        assertEquals("/file1.txt", batch.get(0).path());
+        assertEquals(OperationLog.Kind.CREATE_FILE, batch.get(0).kind());
+        assertTrue(leader.getLog().read(6, 3, 10, TimeUnit.MILLISECONDS).isEmpty());
+        ReplicationLeader.Lag lag = leader.lag(follower);
+        assertEquals(5, lag.entries());
+        assertTrue(lag.millis() >= 0);
+    }
+
+    /**
+     * Tests that the log and the follower share the leader's content instead of copying it, and that renames
+     * made through the manager reach the follower.
+     */
+    @Test
+    void testContentIsSharedAndRenamesReplicate() throws InterruptedException {
+        leader.addFollower(follower);
+        createFile("readme", fileSystemManager.getRoot());
+        File created = fileSystemManager.getRoot().getFiles().get(0);
+        Folder existing = fileSystemManager.getRoot().getFolders().get(0);
+        leader.write(manager -> manager.renameFile(created, "renamed"));
+        leader.write(manager -> manager.renameFolder(existing, "moved"));
+        awaitCaughtUp(follower);
+
+        OperationLog.Entry logged = leader.getLog().read(1, 1, 0, TimeUnit.MILLISECONDS).get(0);
+        assertSame(created.getContent(), ((File) logged.payload()).getContent());
+        assertSame(created.getContent(), follower.read(root -> root.getFiles().get(0).getContent()));
+        assertEquals("renamed", follower.read(root -> root.getFiles().get(0).getName()));
+        assertEquals("moved", follower.read(root -> root.getFolders().get(0).getName()));
+        OperationLog.Entry rename = leader.getLog().read(2, 1, 0, TimeUnit.MILLISECONDS).get(0);
+        assertEquals(OperationLog.Kind.RENAME_FILE, rename.kind());
+        assertEquals("/readme.txt", rename.path());
+        assertEquals("renamed", rename.name());
+    }
+
+    /**
+     * Tests that appends made through the manager reach the follower.
+     */
+    @Test
+    void testAppendsReplicate() throws InterruptedException {
+        leader.addFollower(follower);
+        File log = new File("log", null, new Date(), new AppendableContent(fileContent), "txt");
+        leader.write(manager -> manager.createFile(log));
+        File created = fileSystemManager.getRoot().getFiles().get(0);
+        leader.write(manager -> manager.appendToFile(created, "more".getBytes()));
+        awaitCaughtUp(follower);
+
+        assertEquals(OperationLog.Kind.UPDATE_FILE, leader.getLog().read(2, 1, 0, TimeUnit.MILLISECONDS).get(0).kind());
+        assertArrayEquals(created.getContent(), follower.read(root -> root.getFiles().get(0).getContent()));
+        assertEquals(Long.valueOf(fileSize + 4), follower.read(root -> root.getFiles().get(0).getSize()));
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedFileSystemTest {
+
+    private LocalShard alpha;
+    private LocalShard beta;
+    private LocalShard other;
+    private ShardedFileSystem shardedFileSystem;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+
+    /**
+     * Set up three shards routed by prefix: "alpha" and "beta" have their own shards and everything else
+     * falls back to the third.
+     */
+    @BeforeEach
+    void setUp() {
+        alpha = new LocalShard("alpha");
+        beta = new LocalShard("beta");
+        other = new LocalShard("other");
+        shardedFileSystem = ShardedFileSystem.byPrefix(Map.of("alpha", alpha, "beta", beta), other);
+        shardedFileSystem.createFolder("/alpha");
+        shardedFileSystem.createFolder("/alpha/docs");
+        shardedFileSystem.createFile("/alpha/docs/readme.txt", new Date(), fileContent);
+        shardedFileSystem.createFolder("/beta");
+        shardedFileSystem.createFolder("/misc");
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardedFileSystem.close();
+    }
+
+    /**
+     * Tests that each top-level folder is created only on the shard its name routes to.
+     */
+    @Test
+    void testTopLevelNamesArePartitioned() {
+        assertSame(alpha, shardedFileSystem.shardFor("/ALPHA/docs"));
+        assertEquals(List.of("alpha"), topLevel(alpha));
+        assertEquals(List.of("beta"), topLevel(beta));
+        assertEquals(List.of("misc"), topLevel(other));
+        assertEquals(List.of("alpha", "beta", "misc"), shardedFileSystem.list("/"));
+        assertEquals(List.of("readme.txt"), shardedFileSystem.list("/alpha/docs"));
+    }
+
+    /**
+     * Tests that a folder moved across shards arrives with its subtree and leaves the source.
+     */
+    @Test
+    void testCrossShardMove() {
+        shardedFileSystem.move("/alpha/docs", "/beta");
+        assertEquals(List.of(), shardedFileSystem.list("/alpha"));
+        assertEquals(List.of("docs"), shardedFileSystem.list("/beta"));
+        assertEquals(List.of("/beta/docs/readme.txt"), shardedFileSystem.findFiles(file -> true));
+        Folder moved = beta.getManager().getRoot().getFolders().get(0).getFolders().get(0);
+        assertSame(moved, moved.getFiles().get(0).getParent());
+    }
+
+    /**
+     * Tests that a cross-shard move the target cannot accept is aborted on both shards and leaves the source intact.
+     */
+    @Test
+    void testFailedCrossShardMoveIsAborted() {
+        shardedFileSystem.createFolder("/beta/docs");
+        assertThrows(IllegalArgumentException.class, () -> shardedFileSystem.move("/alpha/docs", "/beta"));
+        assertEquals(List.of("docs"), shardedFileSystem.list("/alpha"));
+        shardedFileSystem.delete("/alpha/docs");
+        assertEquals(List.of(), shardedFileSystem.list("/alpha"));
+    }
+
+    /**
+     * Tests that a path prepared for a move is locked until the move commits or aborts.
+     */
+    @Test
+    void testPreparedPathIsLocked() {
+        FileSystemEntity copy = alpha.prepareRemove("move-1", "/alpha/docs");
+        assertTrue(copy instanceof Folder);
+        assertNull(copy.getParent());
+        assertThrows(IllegalStateException.class, () -> alpha.delete("/alpha/docs/readme.txt"));
+        assertThrows(IllegalStateException.class, () -> alpha.delete("/alpha"));
+        assertThrows(IllegalStateException.class, () -> alpha.prepareRemove("move-1", "/alpha"));
+        alpha.abort("move-1");
+        alpha.delete("/alpha/docs/readme.txt");
+        assertEquals(List.of(), shardedFileSystem.findFiles(file -> true));
+    }
+
+    /**
+     * Tests that consistent hashing spreads top-level names over every shard and that fan-out queries cover them all.
+     */
+    @Test
+    void testConsistentHashing() {
+        List<Shard> shards = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            shards.add(new LocalShard("shard-" + i));
+        }
+        try (ShardedFileSystem hashed = ShardedFileSystem.byHash(shards, 64)) {
+            for (int i = 0; i < 200; i++) {
+                hashed.createFile("/file" + i + ".txt", new Date(), fileContent);
+            }
+            List<Integer> counts = hashed.queryAll(root -> root.getFiles().size());
+            assertEquals(200, counts.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(counts.stream().allMatch(count -> count > 0));
+            assertEquals(200, hashed.findFiles(file -> file.getExtension().equals("txt")).size());
+            assertSame(hashed.shardFor("/File7.TXT"), hashed.shardFor("/file7.txt"));
+        }
+    }
+
+    private static List<String> topLevel(LocalShard shard) {
+        return shard.query(root -> root.getFolders().stream().map(Folder::getName).toList());
+    }
+}
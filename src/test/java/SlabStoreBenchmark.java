@@ -0,0 +1,55 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap used by the content of small files held in their own arrays ({@link ByteArrayContent}) and
+ * packed into a {@link SlabStore}, and reports the memory saved per million files. Run with a large heap, for
+ * example {@code java -Xmx4g SlabStoreBenchmark 1000000 1024}. Payloads range from 1 byte to the given size,
+ * 1 KiB by default.
+ * @author Tshiamo
+ */
+public class SlabStoreBenchmark {
+    public static void main(String[] args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int maxPayload = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+
+        long before = usedHeap();
+        List<FileContent> arrays = new ArrayList<>(files);
+        long payload = 0;
+        for (int i = 0; i < files; i++) {
+            byte[] bytes = new byte[1 + i % maxPayload];
+            payload += bytes.length;
+            arrays.add(new ByteArrayContent(bytes));
+        }
+        long arrayHeap = usedHeap() - before;
+        report("own arrays", arrayHeap, files, arrays);
+        arrays = null;
+
+        before = usedHeap();
+        SlabStore store = new SlabStore();
+        List<FileContent> packed = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            packed.add(store.put(new byte[1 + i % maxPayload]));
+        }
+        long slabHeap = usedHeap() - before;
+        report("slabs", slabHeap, files, packed);
+
+        System.out.printf("payload %,d bytes; slabs save %,d bytes per million files (%.1f%%)%n", payload,
+                (arrayHeap - slabHeap) * 1_000_000L / files, 100.0 * (arrayHeap - slabHeap) / arrayHeap);
+    }
+
+    private static void report(String label, long bytes, int files, Object keepAlive) {
+        System.out.printf("%-10s %,d files: %,d bytes, %.1f bytes/file%n", label, files, bytes, (double) bytes / files);
+        if (keepAlive == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,206 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlabStoreTest {
+
+    private FileSystemManager fileSystemManager;
+    private SlabStore store;
+    private static final int SLAB_SIZE = 1_000;
+
+    /**
+     * Set up a store of 1000-byte slabs for content of up to 100 bytes, following a fresh manager.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        store = new SlabStore(SLAB_SIZE, 100, false);
+        store.follow(fileSystemManager);
+    }
+
+    private static byte[] payload(int seed) {
+        byte[] bytes = new byte[50];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return bytes;
+    }
+
+    private File create(String name, Folder parent, int seed) {
+        File file = new File(name, null, new Date(), store.put(payload(seed)), "txt");
+        file.setParent(parent);
+        fileSystemManager.createFile(file);
+        return file;
+    }
+
+    /**
+     * Tests that small content is packed into shared slabs and read back intact, and that large content is not.
+     */
+    @Test
+    void testPacksSmallContent() {
+        List<FileContent> contents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contents.add(store.store(payload(i)));
+        }
+        assertInstanceOf(ByteArrayContent.class, store.store(new byte[101]));
+        assertEquals(5, store.getStats().slabs());
+        assertEquals(5_000, store.getStats().usedBytes());
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(payload(i), contents.get(i).toByteArray());
+            assertTrue(contents.get(i).verify());
+        }
+        assertThrows(IllegalArgumentException.class, () -> store.put(new byte[101]));
+    }
+
+    /**
+     * Tests that deleting files releases their fragments, and that compaction moves the survivors and frees slabs
+     * whose fragments are mostly released.
+     */
+    @Test
+    void testDeletedFilesAreCompactedAway() {
+        Folder folder = new Folder("small", fileSystemManager.getRoot());
+        for (int i = 0; i < 100; i++) {
+            create("file" + i, folder, i);
+        }
+        for (File file : new ArrayList<>(folder.getFiles())) {
+            if (!file.getName().endsWith("0")) {
+                fileSystemManager.deleteFile(file);
+            }
+        }
+        assertEquals(10, store.getStats().fragments());
+        assertEquals(4_500, store.getStats().deadBytes());
+
+        assertEquals(4L * SLAB_SIZE, store.compact());
+        SlabStore.Stats stats = store.getStats();
+        assertEquals(2, stats.slabs());
+        assertEquals(1_400, stats.usedBytes());
+        assertEquals(900, stats.deadBytes());
+        assertEquals(10, stats.fragments());
+        for (File file : folder.getFiles()) {
+            assertArrayEquals(payload(Integer.parseInt(file.getName().substring(4))), file.getContent());
+            assertTrue(file.getFileContent().verify());
+        }
+    }
+
+    /**
+     * Tests that content never attached, such as that of a file staged in an uncommitted transaction, survives
+     * compaction, that a file moved out of a folder keeps its content, and that deleting the folder frees the
+     * content of the files still beneath it.
+     */
+    @Test
+    void testLiveHoldersOutsideTheTreeKeepTheirContent() {
+        Folder folder = new Folder("gone", fileSystemManager.getRoot());
+        fileSystemManager.moveFile(create("moved", folder, 1), fileSystemManager.getRoot());
+        File staged = new File("staged", null, new Date(), store.put(payload(2)), "txt");
+        staged.setParent(fileSystemManager.getRoot());
+        FileSystemTransaction transaction = fileSystemManager.beginTransaction().createFile(staged);
+        for (int i = 0; i < 40; i++) {
+            create("filler" + i, folder, i);
+        }
+        File filler = folder.getFiles().get(1);
+        fileSystemManager.deleteFolder(folder);
+        assertEquals(2, store.getStats().fragments());
+
+        assertEquals(2L * SLAB_SIZE, store.compact());
+        transaction.commit();
+        List<File> files = fileSystemManager.getRoot().getFiles();
+        assertEquals(2, files.size());
+        assertArrayEquals(payload(1), files.get(0).getContent());
+        assertArrayEquals(payload(2), files.get(1).getContent());
+        assertEquals(2, store.getStats().fragments());
+        assertThrows(IllegalStateException.class, filler::getContent);
+    }
+
+    /**
+     * Tests that slabs can live off the heap and that reads neither wait for the store's lock nor see a fragment
+     * half moved.
+     */
+    @Test
+    void testReadsDoNotTakeTheStoreLock() throws InterruptedException {
+        store = new SlabStore(SLAB_SIZE, 100, true);
+        SlabContent content = store.put(payload(3));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = Thread.ofPlatform().start(() -> {
+            synchronized (store) {
+                locked.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                assertArrayEquals(payload(3), content.toByteArray());
+                assertTrue(content.verify());
+            });
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+    }
+
+    /**
+     * Tests that reads running while compaction keeps moving their fragments from slab to slab always see the
+     * fragment's own bytes, never those of another slab at the new offset.
+     */
+    @Test
+    void testReadsWhileCompactionMovesFragments() throws InterruptedException {
+        List<SlabContent> kept = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            kept.add(store.put(payload(i)));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                while (!stop.get() && failure.get() == null) {
+                    for (int i = 0; i < kept.size(); i++) {
+                        try {
+                            assertArrayEquals(payload(i), kept.get(i).toByteArray());
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                }
+            }));
+        }
+        long freed = 0;
+        try {
+            Folder folder = new Folder("churn", fileSystemManager.getRoot());
+            for (int round = 0; round < 500 && failure.get() == null; round++) {
+                for (int i = 0; i < 10; i++) {
+                    create("round" + round + "-" + i, folder, 100 + i);
+                }
+                for (File file : new ArrayList<>(folder.getFiles())) {
+                    fileSystemManager.deleteFile(file);
+                }
+                freed += store.compact();
+            }
+        } finally {
+            stop.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        assertNull(failure.get());
+        assertTrue(freed > 0);
+        for (int i = 0; i < kept.size(); i++) {
+            assertArrayEquals(payload(i), kept.get(i).toByteArray());
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubtreeJobsTest {
+
+    private FileSystemManager fileSystemManager;
+    private final HookedLock lock = new HookedLock();
+    private JobScheduler scheduler;
+    private Folder source;
+    private Folder target;
+    private static final int CONTENT_SIZE = 10;
+
+    /**
+     * Set up a source folder of 50 sub-folders with 40 files each, and an empty target folder.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        scheduler = new JobScheduler(2, 2);
+        source = new Folder("source", fileSystemManager.getRoot());
+        target = new Folder("target", fileSystemManager.getRoot());
+        for (int i = 0; i < 50; i++) {
+            Folder folder = new Folder("folder" + i, source);
+            for (int j = 0; j < 40; j++) {
+                byte[] content = new byte[CONTENT_SIZE];
+                content[0] = (byte) j;
+                new File("file" + j, folder, CONTENT_SIZE, new Date(), content, "bin");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.close();
+    }
+
+    /**
+     * Tests that a chunked copy and a chunked move leave the same tree as the manager's own copy and move, and
+     * report every entity as done.
+     */
+    @Test
+    void testCopyAndMoveMatchSource() throws Exception {
+        byte[] hash = source.getMerkleHash();
+        JobScheduler.Job copy = scheduler.submit("a", JobScheduler.Priority.LOW, "copy",
+                SubtreeJobs.copyFolder(fileSystemManager, lock, source, target, 64));
+        copy.getFuture().get(10, TimeUnit.SECONDS);
+        assertEquals(1, target.getFolders().size());
+        Folder copied = target.getFolders().get(0);
+        assertArrayEquals(hash, copied.getMerkleHash());
+        assertNotSame(source.getFolders().get(0).getFiles().get(0), copied.getFolders().get(0).getFiles().get(0));
+        assertEquals(new JobScheduler.Progress(2_051, 2_051), copy.getProgress());
+
+        Folder destination = new Folder("destination", fileSystemManager.getRoot());
+        JobScheduler.Job move = scheduler.submit("a", JobScheduler.Priority.LOW, "move",
+                SubtreeJobs.moveFolder(fileSystemManager, lock, source, destination, 64));
+        move.getFuture().get(10, TimeUnit.SECONDS);
+        assertFalse(fileSystemManager.getRoot().getFolders().contains(source));
+        assertArrayEquals(hash, destination.getFolders().get(0).getMerkleHash());
+    }
+
+    /**
+     * Tests that writers get the lock while a copy is in progress, and that a change they make to the source
+     * is in the finished copy, because the copy starts again when its source changes.
+     */
+    @Test
+    void testWritersGetInBetweenChunks() throws Exception {
+        CompletableFuture<JobScheduler.Job> submitted = new CompletableFuture<>();
+        lock.onRead(200, () -> submitted.join().pause());
+        JobScheduler.Job copy = scheduler.submit("a", JobScheduler.Priority.LOW, "copy",
+                SubtreeJobs.copyFolder(fileSystemManager, lock, source, target, 16));
+        submitted.complete(copy);
+        awaitTrue(() -> copy.getState() == JobScheduler.State.PAUSED);
+
+        assertTrue(lock.writeLock().tryLock(1, TimeUnit.SECONDS));
+        try {
+            File added = new File("added", null, 1, new Date(), new byte[1], "txt");
+            added.setParent(source.getFolders().get(0));
+            fileSystemManager.createFile(added);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        copy.resume();
+        copy.getFuture().get(10, TimeUnit.SECONDS);
+
+        Folder copied = target.getFolders().get(0);
+        assertEquals(41, copied.getFolders().get(0).getFiles().size());
+        assertArrayEquals(source.getMerkleHash(), copied.getMerkleHash());
+    }
+
+    /**
+     * Tests that a cancelled copy attaches nothing and that a move into the folder's own subfolder fails.
+     */
+    @Test
+    void testCancelledCopyAttachesNothing() throws Exception {
+        CompletableFuture<JobScheduler.Job> submitted = new CompletableFuture<>();
+        lock.onRead(200, () -> submitted.join().cancel());
+        JobScheduler.Job copy = scheduler.submit("a", JobScheduler.Priority.LOW, "copy",
+                SubtreeJobs.copyFolder(fileSystemManager, lock, source, target, 16));
+        submitted.complete(copy);
+        assertThrows(CancellationException.class, () -> copy.getFuture().join());
+        assertTrue(target.getFolders().isEmpty());
+
+        JobScheduler.Job move = scheduler.submit("a", JobScheduler.Priority.LOW, "move",
+                SubtreeJobs.moveFolder(fileSystemManager, lock, source, source.getFolders().get(0), 64));
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> move.getFuture().get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(JobScheduler.State.FAILED, move.getState());
+    }
+
+    /**
+     * Tests that renaming a folder beneath the source restarts the copy, so the finished copy has the new name.
+     */
+    @Test
+    void testRenamesRestartTheCopy() throws Exception {
+        CompletableFuture<JobScheduler.Job> submitted = new CompletableFuture<>();
+        lock.onRead(200, () -> submitted.join().pause());
+        JobScheduler.Job copy = scheduler.submit("a", JobScheduler.Priority.LOW, "copy",
+                SubtreeJobs.copyFolder(fileSystemManager, lock, source, target, 16));
+        submitted.complete(copy);
+        awaitTrue(() -> copy.getState() == JobScheduler.State.PAUSED);
+
+        lock.writeLock().lock();
+        try {
+            fileSystemManager.renameFolder(source.getFolders().get(0), "renamed");
+        } finally {
+            lock.writeLock().unlock();
+        }
+        copy.resume();
+        copy.getFuture().get(10, TimeUnit.SECONDS);
+
+        Folder copied = target.getFolders().get(0);
+        assertEquals("renamed", copied.getFolders().get(0).getName());
+        assertArrayEquals(source.getMerkleHash(), copied.getMerkleHash());
+    }
+
+    /**
+     * Tests that a move fails, without bringing anything back, when an ancestor of its source is deleted while it
+     * runs, and that a copy fails when its destination is deleted.
+     */
+    @Test
+    void testDetachedSourceOrDestinationFailsTheJob() throws Exception {
+        Folder parent = new Folder("parent", fileSystemManager.getRoot());
+        fileSystemManager.moveFolder(source, parent);
+        Folder nested = parent.getFolders().get(0);
+        CompletableFuture<JobScheduler.Job> submitted = new CompletableFuture<>();
+        lock.onRead(200, () -> submitted.join().pause());
+        JobScheduler.Job move = scheduler.submit("a", JobScheduler.Priority.LOW, "move",
+                SubtreeJobs.moveFolder(fileSystemManager, lock, nested, target, 16));
+        submitted.complete(move);
+        awaitTrue(() -> move.getState() == JobScheduler.State.PAUSED);
+
+        lock.writeLock().lock();
+        try {
+            fileSystemManager.deleteFolder(parent);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        move.resume();
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> move.getFuture().get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertTrue(target.getFolders().isEmpty());
+        assertEquals(1, fileSystemManager.getRoot().getFolders().size());
+
+        Folder kept = new Folder("kept", fileSystemManager.getRoot());
+        new Folder("child", kept);
+        fileSystemManager.deleteFolder(target);
+        JobScheduler.Job copy = scheduler.submit("a", JobScheduler.Priority.LOW, "copy",
+                SubtreeJobs.copyFolder(fileSystemManager, lock, kept, target, 16));
+        failure = assertThrows(ExecutionException.class, () -> copy.getFuture().get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertTrue(target.getFolders().isEmpty());
+    }
+
+    /**
+     * Tests that a job run alongside an asynchronous manager acquires the copy's memory before taking the write
+     * lock, so that a blocking budget lets the manager's own calls release memory while the job waits for it.
+     */
+    @Test
+    void testMemoryIsAcquiredBeforeTheWriteLock() throws Exception {
+        try (AsyncFileSystemManager async = new AsyncFileSystemManager(fileSystemManager)) {
+            File filler = new File("filler", null, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "bin");
+            MemoryBudget budget = new MemoryBudget(MemoryBudget.costOf(source) + MemoryBudget.costOf(filler) - 1,
+                    MemoryBudget.Policy.BLOCK, 10_000, null);
+            fileSystemManager.setMemoryBudget(budget);
+            async.createFile(filler).get(5, TimeUnit.SECONDS);
+            JobScheduler.Job copy = scheduler.submit("a", JobScheduler.Priority.LOW, "copy",
+                    SubtreeJobs.copyFolder(async, source, target, 64));
+            Thread.sleep(100);
+            assertFalse(copy.getFuture().isDone());
+
+            async.deleteFile(fileSystemManager.getRoot().getFiles().get(0)).get(5, TimeUnit.SECONDS);
+            copy.getFuture().get(10, TimeUnit.SECONDS);
+            assertArrayEquals(source.getMerkleHash(), target.getFolders().get(0).getMerkleHash());
+            assertEquals(MemoryBudget.costOf(source), budget.getUsage());
+        }
+    }
+
+    /**
+     * A read-write lock that runs a hook, once, when its read lock has been taken a given number of times, so a test can act
+     * part-way through a job.
+     */
+    private static final class HookedLock implements ReadWriteLock {
+        private final ReentrantReadWriteLock delegate = new ReentrantReadWriteLock();
+        private final AtomicInteger reads = new AtomicInteger();
+        private volatile int hookAt;
+        private volatile Runnable hook;
+
+        private final Lock readLock = new Lock() {
+            @Override
+            public void lock() {
+                if (reads.incrementAndGet() == hookAt) {
+                    hook.run();
+                }
+                delegate.readLock().lock();
+            }
+
+            @Override
+            public void lockInterruptibly() throws InterruptedException {
+                delegate.readLock().lockInterruptibly();
+            }
+
+            @Override
+            public boolean tryLock() {
+                return delegate.readLock().tryLock();
+            }
+
+            @Override
+            public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+                return delegate.readLock().tryLock(time, unit);
+            }
+
+            @Override
+            public void unlock() {
+                delegate.readLock().unlock();
+            }
+
+            @Override
+            public Condition newCondition() {
+                return delegate.readLock().newCondition();
+            }
+        };
+
+        void onRead(int count, Runnable hook) {
+            this.hook = hook;
+            this.hookAt = count;
+        }
+
+        @Override
+        public Lock readLock() {
+            return readLock;
+        }
+
+        @Override
+        public Lock writeLock() {
+            return delegate.writeLock();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubtreeReclaimerTest {
+
+    private FileSystemManager fileSystemManager;
+    private SubtreeReclaimer reclaimer;
+    private static final int CONTENT_SIZE = 100;
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (reclaimer != null) {
+            reclaimer.close();
+        }
+    }
+
+    /**
+     * Builds a folder under the root holding the given number of sub-folders, each with ten files.
+     */
+    private Folder populate(String name, int subFolders) {
+        Folder top = new Folder(name, fileSystemManager.getRoot());
+        for (int i = 0; i < subFolders; i++) {
+            Folder folder = new Folder("sub" + i, top);
+            for (int j = 0; j < 10; j++) {
+                new File("file" + j, folder, CONTENT_SIZE, new Date(1_000L * j), new byte[CONTENT_SIZE], "txt");
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Tests that a deleted folder disappears from the tree and from the index straight away, and that its
+     * subtree is reclaimed afterwards.
+     */
+    @Test
+    void testDeletedFolderIsHiddenThenReclaimed() throws InterruptedException {
+        Folder kept = populate("kept", 1);
+        Folder deleted = populate("deleted", 5);
+        CreatedDateIndex index = new CreatedDateIndex(fileSystemManager);
+        Folder root = fileSystemManager.getRoot();
+        reclaimer = new SubtreeReclaimer(7, 5, null);
+        fileSystemManager.setReclaimer(reclaimer);
+
+        fileSystemManager.deleteFolder(deleted);
+        assertEquals(1, root.getFolders().size());
+        assertSame(kept, root.getFolders().get(0));
+        assertEquals(10, index.size());
+        assertEquals(10, index.filesCreatedBetween(root, 0, Long.MAX_VALUE).size());
+
+        assertTrue(reclaimer.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(10, index.size());
+        assertEquals(10, index.filesCreatedBetween(root, 0, Long.MAX_VALUE).size());
+        assertTrue(deleted.getFolders().isEmpty());
+        SubtreeReclaimer.Progress progress = reclaimer.getProgress();
+        assertEquals(0, progress.pendingFolders());
+        assertEquals(50, progress.reclaimedFiles());
+        assertEquals(6, progress.reclaimedFolders());
+        assertEquals(50L * CONTENT_SIZE, progress.reclaimedBytes());
+    }
+
+    /**
+     * Tests that memory is released as the subtree is reclaimed rather than when the folder is deleted.
+     */
+    @Test
+    void testMemoryIsReleasedByReclaimer() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(1_000_000, MemoryBudget.Policy.FAIL_FAST);
+        fileSystemManager.setMemoryBudget(budget);
+        Folder docs = new Folder("docs", null);
+        for (int i = 0; i < 20; i++) {
+            File file = new File("file" + i, null, CONTENT_SIZE, new Date(), new byte[CONTENT_SIZE], "txt");
+            file.setParent(docs);
+            docs.getFiles().add(file);
+        }
+        fileSystemManager.createFolder(docs);
+        long charged = budget.getUsage();
+        assertEquals(MemoryBudget.FOLDER_OVERHEAD + 20 * (MemoryBudget.FILE_OVERHEAD + CONTENT_SIZE), charged);
+
+        reclaimer = new SubtreeReclaimer(1, 0, null);
+        fileSystemManager.setReclaimer(reclaimer);
+        fileSystemManager.deleteFolder(fileSystemManager.getRoot().getFolders().get(0));
+        assertTrue(reclaimer.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(0, budget.getUsage());
+    }
+
+    /**
+     * Tests that listeners can be added and removed while the reclaimer is notifying listeners on its own thread.
+     */
+    @Test
+    void testListenersChangeWhileReclaiming() throws InterruptedException {
+        Folder deleted = populate("deleted", 200);
+        AtomicLong reclaimed = new AtomicLong();
+        fileSystemManager.addListener(new FileSystemListener() {
+            @Override
+            public void fileReclaimed(File file) {
+                reclaimed.incrementAndGet();
+            }
+        });
+        reclaimer = new SubtreeReclaimer(1, 0, null);
+        fileSystemManager.setReclaimer(reclaimer);
+        fileSystemManager.deleteFolder(deleted);
+        while (!reclaimer.awaitIdle(0, TimeUnit.MILLISECONDS)) {
+            FileSystemListener listener = new FileSystemListener() {
+            };
+            fileSystemManager.addListener(listener);
+            fileSystemManager.removeListener(listener);
+        }
+        assertEquals(2_000, reclaimed.get());
+    }
+
+    /**
+     * Tests that a throttled reclaimer works in batches and that closing it finishes the remaining work.
+     */
+    @Test
+    void testThrottledReclaimerFinishesOnClose() throws InterruptedException {
+        Folder deleted = populate("deleted", 10);
+        reclaimer = new SubtreeReclaimer(10, 200, null);
+        fileSystemManager.setReclaimer(reclaimer);
+        fileSystemManager.deleteFolder(deleted);
+        assertFalse(reclaimer.awaitIdle(50, TimeUnit.MILLISECONDS));
+        assertEquals(1, reclaimer.getProgress().pendingFolders());
+        reclaimer.close();
+        SubtreeReclaimer.Progress progress = reclaimer.getProgress();
+        assertEquals(0, progress.pendingFolders());
+        assertEquals(100, progress.reclaimedFiles());
+        assertThrows(IllegalStateException.class, () -> fileSystemManager.deleteFolder(populate("other", 1)));
+    }
+}
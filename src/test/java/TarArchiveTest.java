@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TarArchiveTest {
+
+    private FileSystemManager fileSystemManager;
+    private Folder source;
+    private byte[] largeContent;
+    private final String longName = "a-name-that-is-much-longer-than-the-one-hundred-bytes-a-plain-tar-header-can-hold-for-a-path-entry";
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        source = new Folder("source", fileSystemManager.getRoot());
+        Folder nested = new Folder("nested", source);
+        new Folder("empty", source);
+        new File("readme", source, fileSize, new Date(1_000_000), fileContent, "txt");
+        new File(longName, nested, fileSize, new Date(), fileContent, "json");
+        new File("Makefile", nested, 0, new Date(), new byte[0], "");
+        largeContent = new byte[TarArchive.UNIT_SIZE * 3 + 123];
+        new Random(42).nextBytes(largeContent);
+        new File("large", nested, largeContent.length, new Date(), largeContent, "bin");
+    }
+
+    private byte[] archive(Folder folder) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TarArchive.write(folder, out, 3);
+        return out.toByteArray();
+    }
+
+    /**
+     * Tests that a folder written to an archive is read back with the same names and contents.
+     */
+    @Test
+    void testRoundTrip() {
+        byte[] archive = archive(source);
+        Folder destination = new Folder("destination", fileSystemManager.getRoot());
+
+        Folder extracted = TarArchive.read(new ByteArrayInputStream(archive), fileSystemManager, destination);
+
+        assertSame(destination, extracted.getParent());
+        assertTrue(destination.containsFolder(extracted));
+        assertArrayEquals(source.getMerkleHash(), extracted.getMerkleHash());
+        assertEquals(1_000_000, extracted.getFiles().get(0).getCreatedDate().getTime());
+        assertTrue(extracted.containsFolderWithSameName("empty"));
+        Folder nested = extracted.getFolders().stream().filter(f -> f.getName().equals("nested")).findFirst().orElseThrow();
+        assertTrue(nested.containsFileWithSameName(longName, "json"));
+        assertSame(nested, nested.getFiles().get(0).getParent());
+    }
+
+    /**
+     * Tests that the archive is a standard gzip stream made of several members, one per compressed unit.
+     */
+    @Test
+    void testArchiveIsStandardGzip() throws IOException {
+        byte[] archive = archive(source);
+        int members = 0;
+        for (int i = 0; i + 1 < archive.length; i++) {
+            if ((archive[i] & 0xff) == 0x1f && (archive[i + 1] & 0xff) == 0x8b && archive[i + 2] == 8) {
+                members++;
+            }
+        }
+        assertTrue(members >= 4);
+        byte[] tar = new GZIPInputStream(new ByteArrayInputStream(archive)).readAllBytes();
+        assertEquals(0, tar.length % 512);
+        assertEquals("ustar", new String(tar, 257, 5));
+    }
+
+    /**
+     * Tests that a file without a creation date is archived with the epoch as its date.
+     */
+    @Test
+    void testFileWithoutDate() {
+        Folder undated = new Folder("undated", fileSystemManager.getRoot());
+        new File("notes", undated, fileSize, null, fileContent, "txt");
+        Folder destination = new Folder("destination", fileSystemManager.getRoot());
+
+        Folder extracted = TarArchive.read(new ByteArrayInputStream(archive(undated)), fileSystemManager, destination);
+
+        assertArrayEquals(undated.getMerkleHash(), extracted.getMerkleHash());
+        assertEquals(0, extracted.getFiles().get(0).getCreatedMillis());
+    }
+
+    /**
+     * Tests that reading a stream that is not an archive fails.
+     */
+    @Test
+    void testReadMalformedArchive() {
+        assertThrows(RuntimeException.class, () ->
+                TarArchive.read(new ByteArrayInputStream("not an archive".getBytes()), fileSystemManager, null));
+    }
+}
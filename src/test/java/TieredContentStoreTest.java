@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredContentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private TieredContentStore store;
+    private static final int BUDGET = 10_000;
+    private static final int ITEM_SIZE = 1_000;
+
+    /**
+     * Set up a store that holds ten 1000-byte items in memory.
+     */
+    @BeforeEach
+    void setUp() {
+        store = new TieredContentStore(directory, BUDGET);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    private static byte[] item(int seed) {
+        byte[] bytes = new byte[ITEM_SIZE];
+        Arrays.fill(bytes, (byte) seed);
+        return bytes;
+    }
+
+    /**
+     * Tests that memory stays within budget and that evicted content is read back intact from disk.
+     */
+    @Test
+    void testColdContentIsFaultedBackFromDisk() {
+        List<TieredContent> contents = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            contents.add(store.put(item(i)));
+        }
+        TieredContentStore.Stats stats = store.getStats();
+        assertTrue(stats.memoryBytes() <= BUDGET);
+        assertTrue(stats.evictions() >= 40);
+        assertTrue(stats.diskBytes() >= 40L * ITEM_SIZE);
+        for (int i = 0; i < 50; i++) {
+            assertArrayEquals(item(i), contents.get(i).toByteArray());
+        }
+        assertTrue(store.getStats().misses() > 0);
+        assertTrue(store.getStats().memoryBytes() <= BUDGET);
+    }
+
+    /**
+     * Tests that content read often stays in memory while a scan of content read once passes through.
+     */
+    @Test
+    void testFrequentlyReadContentSurvivesScan() {
+        TieredContent hot = store.put(item(1));
+        for (int i = 0; i < 10; i++) {
+            hot.toByteArray();
+        }
+        for (int i = 0; i < 200; i++) {
+            store.put(item(i));
+        }
+        assertTrue(hot.isResident());
+        long hitsBefore = store.getStats().hits();
+        assertArrayEquals(item(1), hot.toByteArray());
+        assertEquals(hitsBefore + 1, store.getStats().hits());
+        assertTrue(store.getStats().hitRate() > 0);
+    }
+
+    /**
+     * Tests that a File can hold tiered content, that content larger than the budget goes straight to disk, and
+     * that a copied file holds its own reference to the content.
+     */
+    @Test
+    void testFileWithTieredContent() {
+        FileSystemManager fileSystemManager = new FileSystemManager();
+        byte[] large = new byte[BUDGET * 2];
+        large[0] = 42;
+        TieredContent content = store.put(large);
+        assertFalse(content.isResident());
+        File file = new File("large", fileSystemManager.getRoot(), new Date(), content, "bin");
+        assertEquals(BUDGET * 2, file.getSize());
+        assertEquals(42, file.getContent()[0]);
+        File copy = new File(file);
+        assertSame(content, copy.getFileContent());
+        store.release(content);
+        assertEquals(42, copy.getContent()[0]);
+        store.release(content);
+        assertThrows(IllegalStateException.class, content::toByteArray);
+        assertThrows(IllegalStateException.class, () -> new File(file));
+    }
+}
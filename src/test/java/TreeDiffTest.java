@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeDiffTest {
+
+    private FileSystemManager fileSystemManager;
+    private Folder root;
+    private Folder original;
+    private Folder nested;
+    private Folder copy;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+    private final String fileExtension = "txt";
+
+    /**
+     * Set up the test environment before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        root = fileSystemManager.getRoot();
+        original = new Folder("original", root);
+        nested = new Folder("nested", original);
+        new File("top", original, fileSize, new Date(), fileContent, fileExtension);
+        new File("deep", nested, fileSize, new Date(), fileContent, fileExtension);
+        Folder copies = new Folder("copies", root);
+        fileSystemManager.copyFolder(original, copies);
+        copy = copies.getFolders().get(0);
+    }
+
+    private List<String> describe(Folder a, Folder b) {
+        return TreeDiff.diff(a, b).map(d -> d.change() + " " + d.path()).collect(Collectors.toList());
+    }
+
+    /**
+     * Tests that a copied subtree has the same Merkle hash as the original and no differences.
+     */
+    @Test
+    void testCopiedSubtreeIsIdentical() {
+        assertArrayEquals(original.getMerkleHash(), copy.getMerkleHash());
+        assertTrue(describe(original, copy).isEmpty());
+    }
+
+    /**
+     * Tests that changes deep in a tree change the Merkle hash of every folder above them.
+     */
+    @Test
+    void testMerkleHashIsInvalidatedUpTheParentChain() {
+        byte[] before = original.getMerkleHash();
+        File changed = new File("deep", null, 3, new Date(), "new".getBytes(), fileExtension);
+        fileSystemManager.deleteFile(nested.getFiles().get(0));
+        changed.setParent(nested);
+        fileSystemManager.createFile(changed);
+
+        assertFalse(Arrays.equals(before, original.getMerkleHash()));
+        assertEquals(List.of("MODIFIED nested/deep.txt"), describe(copy, original));
+    }
+
+    /**
+     * Tests that added, removed and renamed entities are reported.
+     */
+    @Test
+    void testAddedAndRemovedEntities() {
+        original.getMerkleHash();
+        Folder extra = new Folder("extra", null);
+        extra.setParent(original);
+        fileSystemManager.createFolder(extra);
+        original.getFiles().get(0).setName("renamed");
+
+        assertEquals(List.of("REMOVED top.txt", "ADDED renamed.txt", "ADDED extra"), describe(copy, original));
+    }
+
+    /**
+     * Tests that the order children were added in does not affect the Merkle hash.
+     */
+    @Test
+    void testMerkleHashIgnoresChildOrder() {
+        Folder first = new Folder("first", null);
+        new File("a", first, fileSize, new Date(), fileContent, fileExtension);
+        new File("b", first, fileSize, new Date(), fileContent, fileExtension);
+        Folder second = new Folder("second", null);
+        new File("b", second, fileSize, new Date(), fileContent, fileExtension);
+        new File("a", second, fileSize, new Date(), fileContent, fileExtension);
+        assertArrayEquals(first.getMerkleHash(), second.getMerkleHash());
+    }
+}
@@ -0,0 +1,183 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeFileSystemProviderTest {
+
+    private TreeFileSystemProvider provider;
+    private TreeFileSystem fileSystem;
+    private final byte[] fileContent = "Basic file content example.".getBytes();
+    private final long fileSize = (long) fileContent.length;
+    private final Date createdDate = new Date(1_000_000L);
+
+    /**
+     * Set up a tree of /docs/readme.txt, /docs/notes/todo.md and /empty before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        FileSystemManager fileSystemManager = new FileSystemManager();
+        Folder docs = new Folder("docs", fileSystemManager.getRoot());
+        Folder notes = new Folder("notes", docs);
+        new Folder("empty", fileSystemManager.getRoot());
+        new File("readme", docs, fileSize, createdDate, fileContent, "txt");
+        new File("todo", notes, 4, createdDate, "todo".getBytes(), "md");
+        provider = new TreeFileSystemProvider();
+        fileSystem = provider.newFileSystem(fileSystemManager);
+    }
+
+    /**
+     * Tests that Files reads file content through the provider.
+     */
+    @Test
+    void testReadAllBytes() throws IOException {
+        assertArrayEquals(fileContent, Files.readAllBytes(fileSystem.getPath("/docs/readme.txt")));
+        assertEquals(List.of("todo"), Files.readAllLines(fileSystem.getPath("/docs", "notes", "todo.md")));
+    }
+
+    /**
+     * Tests that byte channels can seek within a file.
+     */
+    @Test
+    void testSeekableChannel() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(fileSystem.getPath("/docs/readme.txt"))) {
+            assertEquals(fileSize, channel.size());
+            channel.position(6);
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            assertEquals(4, channel.read(buffer));
+            assertEquals("file", new String(buffer.array()));
+            assertEquals(10, channel.position());
+            channel.position(fileSize);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    /**
+     * Tests that directory listings and walks see the folder's children.
+     */
+    @Test
+    void testListAndWalk() throws IOException {
+        try (Stream<Path> children = Files.list(fileSystem.getPath("/docs"))) {
+            assertEquals(List.of("/docs/notes", "/docs/readme.txt"),
+                    children.map(Path::toString).sorted().collect(Collectors.toList()));
+        }
+        try (Stream<Path> all = Files.walk(fileSystem.getPath("/"))) {
+            assertEquals(List.of("/", "/docs", "/docs/notes", "/docs/notes/todo.md", "/docs/readme.txt", "/empty"),
+                    all.map(Path::toString).sorted().collect(Collectors.toList()));
+        }
+        assertThrows(NotDirectoryException.class, () -> Files.list(fileSystem.getPath("/docs/readme.txt")));
+    }
+
+    /**
+     * Tests that basic attributes and existence checks reflect the tree, and that names ignore case.
+     */
+    @Test
+    void testAttributes() throws IOException {
+        Path readme = fileSystem.getPath("/DOCS/Readme.TXT");
+        assertTrue(Files.exists(readme));
+        assertTrue(Files.isRegularFile(readme));
+        assertTrue(Files.isDirectory(fileSystem.getPath("/docs/notes")));
+        assertFalse(Files.exists(fileSystem.getPath("/docs/missing.txt")));
+        BasicFileAttributes attributes = Files.readAttributes(readme, BasicFileAttributes.class);
+        assertEquals(fileSize, attributes.size());
+        assertEquals(createdDate.getTime(), attributes.creationTime().toMillis());
+        assertEquals(fileSize, Files.readAttributes(readme, "basic:size,isDirectory").get("size"));
+        assertThrows(NoSuchFileException.class, () -> Files.size(fileSystem.getPath("/nothing")));
+    }
+
+    /**
+     * Tests that the file system rejects changes.
+     */
+    @Test
+    void testReadOnly() {
+        assertTrue(fileSystem.isReadOnly());
+        assertThrows(ReadOnlyFileSystemException.class, () -> Files.createDirectory(fileSystem.getPath("/new")));
+        assertThrows(ReadOnlyFileSystemException.class, () -> Files.delete(fileSystem.getPath("/empty")));
+        assertThrows(ReadOnlyFileSystemException.class, () -> Files.write(fileSystem.getPath("/docs/readme.txt"), fileContent));
+    }
+
+    /**
+     * Tests that every path is in the file system's one read-only store, whose space is the manager's budget.
+     */
+    @Test
+    void testFileStore() throws IOException {
+        FileStore store = Files.getFileStore(fileSystem.getPath("/docs/readme.txt"));
+        assertSame(store, fileSystem.getFileStores().iterator().next());
+        assertSame(store, Files.getFileStore(fileSystem.getPath("/")));
+        assertTrue(store.isReadOnly());
+        assertEquals("tree", store.type());
+        assertTrue(store.supportsFileAttributeView("basic"));
+        assertEquals(0, store.getUsableSpace());
+        fileSystem.getManager().setMemoryBudget(new MemoryBudget(10_000, MemoryBudget.Policy.FAIL_FAST));
+        assertEquals(10_000, store.getTotalSpace());
+        assertEquals(10_000, store.getUnallocatedSpace());
+        assertThrows(NoSuchFileException.class, () -> Files.getFileStore(fileSystem.getPath("/nothing")));
+    }
+
+    /**
+     * Tests that paths in a wide folder still resolve as files are added, removed and renamed through the manager.
+     */
+    @Test
+    void testLookupInWideFolder() {
+        FileSystemManager fileSystemManager = fileSystem.getManager();
+        Folder wide = new Folder("wide", fileSystemManager.getRoot());
+        for (int i = 0; i < 10_000; i++) {
+            new File("file" + i, wide, fileSize, createdDate, fileContent, "txt");
+        }
+        assertTrue(Files.exists(fileSystem.getPath("/WIDE/File9999.TXT")));
+        File added = new File("added", null, fileSize, createdDate, fileContent, "txt");
+        added.setParent(wide);
+        fileSystemManager.createFile(added);
+        assertTrue(Files.exists(fileSystem.getPath("/wide/added.txt")));
+        fileSystemManager.deleteFile(wide.getFiles().get(0));
+        assertFalse(Files.exists(fileSystem.getPath("/wide/file0.txt")));
+        fileSystemManager.renameFile(wide.getFiles().get(0), "renamed");
+        assertFalse(Files.exists(fileSystem.getPath("/wide/file1.txt")));
+        assertTrue(Files.exists(fileSystem.getPath("/wide/renamed.txt")));
+        assertTrue(Files.exists(fileSystem.getPath("/wide/file2.txt")));
+    }
+
+    /**
+     * Tests path operations and the round trip through URIs.
+     */
+    @Test
+    void testPaths() {
+        Path path = fileSystem.getPath("/docs/./notes/../readme.txt");
+        assertEquals("/docs/readme.txt", path.normalize().toString());
+        assertEquals("readme.txt", path.getFileName().toString());
+        assertEquals("notes/todo.md", fileSystem.getPath("/docs").relativize(fileSystem.getPath("/docs/notes/todo.md")).toString());
+        URI uri = fileSystem.getPath("/docs/readme.txt").toUri();
+        assertEquals(fileSystem.getPath("/docs/readme.txt"), provider.getPath(uri));
+        assertTrue(fileSystem.getPathMatcher("glob:/docs/**.md").matches(fileSystem.getPath("/docs/notes/todo.md")));
+    }
+
+    /**
+     * Tests that file systems can be registered under a URI and are forgotten when closed.
+     */
+    @Test
+    void testNewFileSystemByUri() throws IOException {
+        URI uri = URI.create("tree://named");
+        TreeFileSystem named = provider.newFileSystem(uri, Map.of("manager", new FileSystemManager()));
+        assertSame(named, provider.getFileSystem(uri));
+        named.close();
+        assertThrows(FileSystemNotFoundException.class, () -> provider.getFileSystem(uri));
+    }
+}
@@ -0,0 +1,147 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadRecorderTest {
+
+    private FileSystemManager fileSystemManager;
+    private ByteArrayOutputStream trace;
+    private WorkloadRecorder recorder;
+
+    /**
+     * Set up a manager recording to an in-memory trace.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        trace = new ByteArrayOutputStream();
+        recorder = new WorkloadRecorder(trace);
+        fileSystemManager.setRecorder(recorder);
+    }
+
+    /**
+     * Tests that each call made to the manager is recorded once with its paths and size, and that calls the
+     * manager makes to itself, like the copy and delete of a move, are not.
+     */
+    @Test
+    void testRecordsCallsMadeToTheManager() throws IOException {
+        Folder root = fileSystemManager.getRoot();
+        fileSystemManager.createFolder(new Folder("docs", null));
+        Folder docs = root.getFolders().get(0);
+        File report = new File("report", null, new Date(), new ByteArrayContent(new byte[10]), "txt");
+        report.setParent(docs);
+        fileSystemManager.createFile(report);
+        fileSystemManager.createFile(new File("log", null, new Date(), new AppendableContent(new byte[5]), "log"));
+        fileSystemManager.appendToFile(root.getFiles().get(0), new byte[7]);
+        fileSystemManager.copyFile(docs.getFiles().get(0), root);
+        fileSystemManager.createFolder(new Folder("archive", null));
+        Folder archive = root.getFolders().get(1);
+        fileSystemManager.moveFile(root.getFiles().get(1), archive);
+        fileSystemManager.copyFolder(docs, archive);
+        fileSystemManager.moveFolder(docs, archive.getFolders().get(0));
+        fileSystemManager.deleteFile(root.getFiles().get(0));
+        fileSystemManager.deleteFolder(archive);
+        recorder.close();
+
+        List<WorkloadRecorder.Call> calls = WorkloadRecorder.read(new ByteArrayInputStream(trace.toByteArray()));
+        assertEquals(List.of(WorkloadRecorder.Operation.CREATE_FOLDER, WorkloadRecorder.Operation.CREATE_FILE,
+                WorkloadRecorder.Operation.CREATE_FILE, WorkloadRecorder.Operation.APPEND_TO_FILE,
+                WorkloadRecorder.Operation.COPY_FILE, WorkloadRecorder.Operation.CREATE_FOLDER,
+                WorkloadRecorder.Operation.MOVE_FILE, WorkloadRecorder.Operation.COPY_FOLDER,
+                WorkloadRecorder.Operation.MOVE_FOLDER, WorkloadRecorder.Operation.DELETE_FILE,
+                WorkloadRecorder.Operation.DELETE_FOLDER), calls.stream().map(WorkloadRecorder.Call::operation).toList());
+        assertEquals(11, recorder.getCalls());
+
+        assertEquals("/docs/report.txt", calls.get(1).path());
+        assertEquals(10, calls.get(1).size());
+        assertFalse(calls.get(1).appendable());
+        assertTrue(calls.get(2).appendable());
+        assertEquals("/log.log", calls.get(3).path());
+        assertEquals(7, calls.get(3).size());
+        assertEquals("/", calls.get(4).destination());
+        assertEquals("/report.txt", calls.get(6).path());
+        assertEquals("/archive", calls.get(6).destination());
+        assertEquals("/docs", calls.get(8).path());
+        assertEquals("/archive/docs", calls.get(8).destination());
+        for (int i = 1; i < calls.size(); i++) {
+            assertTrue(calls.get(i).startNanos() >= calls.get(i - 1).startNanos());
+        }
+    }
+
+    /**
+     * Tests that a call that fails is not recorded, and that recording stops once the recorder is removed.
+     */
+    @Test
+    void testOnlyCompletedCallsAreRecorded() throws IOException {
+        fileSystemManager.createFile(new File("a", null, 1, new Date(), new byte[1], "txt"));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileSystemManager.createFile(new File("a", null, 1, new Date(), new byte[1], "txt")));
+        fileSystemManager.setRecorder(null);
+        fileSystemManager.deleteFile(fileSystemManager.getRoot().getFiles().get(0));
+        recorder.close();
+
+        List<WorkloadRecorder.Call> calls = WorkloadRecorder.read(new ByteArrayInputStream(trace.toByteArray()));
+        assertEquals(1, calls.size());
+        assertEquals(WorkloadRecorder.Operation.CREATE_FILE, calls.get(0).operation());
+    }
+
+    /**
+     * Tests that writes and truncations made through the manager are recorded with their offset and length, and
+     * that replaying them leaves a file of the same size holding as many blocks.
+     */
+    @Test
+    void testWritesAreRecordedAndReplayed() throws Exception {
+        fileSystemManager.createFile(new File("disk", null, new Date(), new BlockContent(), "img"));
+        File disk = fileSystemManager.getRoot().getFiles().get(0);
+        fileSystemManager.writeFile(disk, 3 * BlockContent.DEFAULT_BLOCK_SIZE, new byte[10]);
+        fileSystemManager.truncateFile(disk, 100);
+        fileSystemManager.writeFile(disk, 50, new byte[60]);
+        recorder.close();
+
+        List<WorkloadRecorder.Call> calls = WorkloadRecorder.read(new ByteArrayInputStream(trace.toByteArray()));
+        assertEquals(List.of(WorkloadRecorder.Operation.CREATE_FILE, WorkloadRecorder.Operation.WRITE_FILE,
+                WorkloadRecorder.Operation.TRUNCATE_FILE, WorkloadRecorder.Operation.WRITE_FILE),
+                calls.stream().map(WorkloadRecorder.Call::operation).toList());
+        assertTrue(calls.get(0).blocks());
+        assertEquals(3 * BlockContent.DEFAULT_BLOCK_SIZE, calls.get(1).offset());
+        assertEquals(10, calls.get(1).size());
+        assertEquals(100, calls.get(2).size());
+        assertEquals("/disk.img", calls.get(3).path());
+
+        FileSystemManager replayed = new FileSystemManager();
+        assertEquals(0, WorkloadReplayer.replay(calls, replayed, 1, 0).errors());
+        File copy = replayed.getRoot().getFiles().get(0);
+        assertEquals(disk.getSize(), copy.getSize());
+        assertEquals(((BlockContent) disk.getFileContent()).blockCount(), ((BlockContent) copy.getFileContent()).blockCount());
+    }
+
+    /**
+     * Tests that a folder's path is written once however many calls are made in it, keeping a call to a few
+     * bytes more than its name.
+     */
+    @Test
+    void testTraceIsCompact() throws IOException {
+        fileSystemManager.createFolder(new Folder("logs", null));
+        Folder logs = fileSystemManager.getRoot().getFolders().get(0);
+        int files = 10_000;
+        for (int i = 0; i < files; i++) {
+            File file = new File("file" + i, null, 100, new Date(), new byte[100], "log");
+            file.setParent(logs);
+            fileSystemManager.createFile(file);
+        }
+        recorder.close();
+
+        String text = trace.toString(StandardCharsets.ISO_8859_1);
+        assertEquals(text.indexOf("/logs"), text.lastIndexOf("/logs"));
+        assertTrue(trace.size() < files * 24, "trace of " + trace.size() + " bytes");
+        assertEquals(files + 1, WorkloadRecorder.read(new ByteArrayInputStream(trace.toByteArray())).size());
+    }
+}
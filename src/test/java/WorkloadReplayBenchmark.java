@@ -0,0 +1,52 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a recorded workload trace against a fresh {@link FileSystemManager} and reports its throughput and
+ * latencies, overall and per operation. Run with the trace, the number of threads, the speed and the backend, for
+ * example {@code java WorkloadReplayBenchmark workload.trace 8 0 async}; a speed of 1 keeps the recorded pace and 0,
+ * the default, replays as fast as possible. The backend is "manager", the default, to call the manager one call at a
+ * time, or "async" to call it through an {@link AsyncFileSystemManager}.
+ * @author Tshiamo
+ */
+public class WorkloadReplayBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: WorkloadReplayBenchmark <trace> [threads] [speed] [manager|async]");
+            System.exit(1);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        double speed = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        boolean async = args.length > 3 && args[3].equals("async");
+        List<WorkloadRecorder.Call> calls;
+        try (InputStream in = Files.newInputStream(Path.of(args[0]))) {
+            calls = WorkloadRecorder.read(in);
+        }
+
+        WorkloadReplayer.Report report;
+        if (async) {
+            try (AsyncFileSystemManager manager = new AsyncFileSystemManager(new FileSystemManager())) {
+                report = WorkloadReplayer.replay(calls, ReplayBackend.of(manager), threads, speed);
+            }
+        } else {
+            report = WorkloadReplayer.replay(calls, new FileSystemManager(), threads, speed);
+        }
+        System.out.printf("%,d calls, %,d errors in %.3f s: %,.0f calls/s%n", report.calls(), report.errors(),
+                report.elapsedNanos() / 1e9, report.callsPerSecond());
+        System.out.printf("%-14s %10s %8s %8s %8s %8s %8s%n", "operation", "calls", "p50 us", "p90 us", "p99 us",
+                "p99.9 us", "max us");
+        print("all", report.overall());
+        for (Map.Entry<WorkloadRecorder.Operation, WorkloadReplayer.Latencies> entry : report.byOperation().entrySet()) {
+            print(entry.getKey().name().toLowerCase(), entry.getValue());
+        }
+    }
+
+    private static void print(String label, WorkloadReplayer.Latencies latencies) {
+        System.out.printf("%-14s %,10d %8d %8d %8d %8d %8d%n", label, latencies.count(), latencies.p50Micros(),
+                latencies.p90Micros(), latencies.p99Micros(), latencies.p999Micros(), latencies.maxMicros());
+    }
+}
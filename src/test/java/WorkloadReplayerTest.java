@@ -0,0 +1,184 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadReplayerTest {
+
+    private FileSystemManager fileSystemManager;
+    private ByteArrayOutputStream trace;
+    private WorkloadRecorder recorder;
+
+    /**
+     * Set up a manager recording to an in-memory trace.
+     */
+    @BeforeEach
+    void setUp() {
+        fileSystemManager = new FileSystemManager();
+        trace = new ByteArrayOutputStream();
+        recorder = new WorkloadRecorder(trace);
+        fileSystemManager.setRecorder(recorder);
+    }
+
+    /**
+     * Tests that replaying a trace on a fresh manager rebuilds the same tree and reports every call.
+     */
+    @Test
+    void testReplayRebuildsTree() throws Exception {
+        Folder root = fileSystemManager.getRoot();
+        for (int i = 0; i < 5; i++) {
+            fileSystemManager.createFolder(new Folder("folder" + i, null));
+            Folder folder = root.getFolders().get(i);
+            for (int j = 0; j < 20; j++) {
+                File file = new File("file" + j, null, new Date(), new ByteArrayContent(new byte[i * 100 + j]), "bin");
+                file.setParent(folder);
+                fileSystemManager.createFile(file);
+            }
+        }
+        fileSystemManager.createFile(new File("log", null, new Date(), new AppendableContent(new byte[3]), "txt"));
+        fileSystemManager.appendToFile(root.getFiles().get(0), new byte[40]);
+        fileSystemManager.copyFolder(root.getFolders().get(0), root.getFolders().get(1));
+        fileSystemManager.moveFolder(root.getFolders().get(2), root.getFolders().get(3));
+        fileSystemManager.moveFile(root.getFolders().get(0).getFiles().get(4), root);
+        fileSystemManager.deleteFolder(root.getFolders().get(1).getFolders().get(0));
+        fileSystemManager.deleteFile(root.getFolders().get(0).getFiles().get(0));
+        recorder.close();
+
+        List<WorkloadRecorder.Call> calls = read();
+        FileSystemManager replayed = new FileSystemManager();
+        WorkloadReplayer.Report report = WorkloadReplayer.replay(calls, replayed, 1, 0);
+
+        assertEquals(shapeOf(fileSystemManager.getRoot()), shapeOf(replayed.getRoot()));
+        assertEquals(calls.size(), report.calls());
+        assertEquals(0, report.errors());
+        assertEquals(calls.size(), report.overall().count());
+        assertEquals(101, report.byOperation().get(WorkloadRecorder.Operation.CREATE_FILE).count());
+        assertEquals(1, report.byOperation().get(WorkloadRecorder.Operation.MOVE_FOLDER).count());
+        WorkloadReplayer.Latencies overall = report.overall();
+        assertTrue(overall.p50Micros() <= overall.p99Micros() && overall.p99Micros() <= overall.maxMicros());
+        assertTrue(report.callsPerSecond() > 0);
+    }
+
+    /**
+     * Tests that calls whose paths do not exist in the replayed tree are counted as errors without stopping the
+     * replay.
+     */
+    @Test
+    void testMissingPathsAreErrors() throws Exception {
+        File file = new File("kept", null, 1, new Date(), new byte[1], "txt");
+        fileSystemManager.setRecorder(null);
+        fileSystemManager.createFile(file);
+        fileSystemManager.setRecorder(recorder);
+        fileSystemManager.deleteFile(fileSystemManager.getRoot().getFiles().get(0));
+        fileSystemManager.createFolder(new Folder("after", null));
+        recorder.close();
+
+        FileSystemManager replayed = new FileSystemManager();
+        WorkloadReplayer.Report report = WorkloadReplayer.replay(read(), replayed, 2, 0);
+        assertEquals(2, report.calls());
+        assertEquals(1, report.errors());
+        assertEquals(1, report.overall().count());
+        assertFalse(report.byOperation().containsKey(WorkloadRecorder.Operation.DELETE_FILE));
+        assertEquals("after", replayed.getRoot().getFolders().get(0).getName());
+    }
+
+    /**
+     * Tests that a replay at the recorded pace takes as long as the recording, that speeding it up shortens it,
+     * and that several threads replay independent calls without errors.
+     */
+    @Test
+    void testReplayPace() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            fileSystemManager.createFolder(new Folder("folder" + i, null));
+            Thread.sleep(50);
+        }
+        recorder.close();
+        List<WorkloadRecorder.Call> calls = read();
+        long span = calls.get(3).startNanos();
+        assertTrue(span >= 150_000_000L);
+
+        WorkloadReplayer.Report recordedPace = WorkloadReplayer.replay(calls, new FileSystemManager(), 4, 1);
+        assertTrue(recordedPace.elapsedNanos() >= span);
+        assertEquals(0, recordedPace.errors());
+
+        WorkloadReplayer.Report doubled = WorkloadReplayer.replay(calls, new FileSystemManager(), 4, 2);
+        assertTrue(doubled.elapsedNanos() >= span / 2);
+        assertTrue(doubled.elapsedNanos() < recordedPace.elapsedNanos());
+    }
+
+    /**
+     * Tests that calls made concurrently through an asynchronous manager are each recorded once, and that the trace
+     * replays against an asynchronous manager to the same tree.
+     */
+    @Test
+    void testRecordsAndReplaysThroughAsyncManager() throws Exception {
+        Folder root = fileSystemManager.getRoot();
+        try (AsyncFileSystemManager async = new AsyncFileSystemManager(fileSystemManager)) {
+            List<CompletableFuture<Void>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                calls.add(async.createFolder(new Folder("folder" + i, null)));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+            calls.clear();
+            for (Folder folder : root.getFolders()) {
+                File log = new File("log" + folder.getName(), null, new Date(), new AppendableContent(new byte[2]), "txt");
+                log.setParent(folder);
+                calls.add(async.createFile(log));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+            calls.clear();
+            for (int i = 0; i < 8; i++) {
+                File log = root.getFolders().get(i).getFiles().get(0);
+                calls.add(i < 4 ? async.moveFile(log, root) : async.appendToFile(log, new byte[5]));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        }
+        recorder.close();
+
+        List<WorkloadRecorder.Call> calls = read();
+        Map<WorkloadRecorder.Operation, Long> counts = new TreeMap<>();
+        calls.forEach(call -> counts.merge(call.operation(), 1L, Long::sum));
+        assertEquals(Map.of(WorkloadRecorder.Operation.CREATE_FOLDER, 8L, WorkloadRecorder.Operation.CREATE_FILE, 8L,
+                WorkloadRecorder.Operation.MOVE_FILE, 4L, WorkloadRecorder.Operation.APPEND_TO_FILE, 4L), counts);
+
+        FileSystemManager replayed = new FileSystemManager();
+        try (AsyncFileSystemManager async = new AsyncFileSystemManager(replayed)) {
+            WorkloadReplayer.Report report = WorkloadReplayer.replay(calls, ReplayBackend.of(async), 1, 0);
+            assertEquals(0, report.errors());
+        }
+        assertEquals(shapeOf(root), shapeOf(replayed.getRoot()));
+    }
+
+    private List<WorkloadRecorder.Call> read() throws IOException {
+        return WorkloadRecorder.read(new ByteArrayInputStream(trace.toByteArray()));
+    }
+
+    /**
+     * Maps the path of every file and folder beneath a folder to its size, or -1 for folders.
+     */
+    private static Map<String, Long> shapeOf(Folder folder) {
+        Map<String, Long> shape = new TreeMap<>();
+        collect(folder, shape);
+        return shape;
+    }
+
+    private static void collect(Folder folder, Map<String, Long> shape) {
+        shape.put(OperationLog.pathOf(folder), -1L);
+        for (File file : folder.getFiles()) {
+            shape.put(OperationLog.pathOf(file), file.getSize());
+        }
+        for (Folder subFolder : folder.getFolders()) {
+            collect(subFolder, shape);
+        }
+    }
+}